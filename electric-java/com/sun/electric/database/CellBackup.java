@@ -215,6 +215,28 @@ public class CellBackup {
         return new CellBackup(newRevision, restrictedPool, modified);
     }
 
+    /**
+     * Writes this CellBackup to IdWriter as a difference from an older CellBackup of the same cell.
+     * @param writer where to write.
+     * @param oldBackup the older CellBackup, which the reader has.
+     */
+    void writeDiff(IdWriter writer, CellBackup oldBackup) throws IOException {
+        cellRevision.writeDiff(writer, oldBackup.cellRevision);
+        writer.writeBoolean(modified);
+    }
+
+    /**
+     * Reads CellBackup written by writeDiff from SnapshotReader.
+     * @param reader where to read.
+     * @param techPool the TechPool of the new Snapshot.
+     */
+    CellBackup readDiff(IdReader reader, TechPool techPool) throws IOException {
+        CellRevision newRevision = CellRevision.readDiff(reader, cellRevision);
+        boolean modified = reader.readBoolean();
+        TechPool restrictedPool = techPool.restrict(newRevision.techUsages, techPool);
+        return new CellBackup(newRevision, restrictedPool, modified);
+    }
+
     /**
      * Checks invariant of this CellBackup.
      * @throws AssertionError if invariant is broken.
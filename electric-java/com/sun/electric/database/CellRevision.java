@@ -40,6 +40,7 @@ import java.lang.reflect.Field;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.BitSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.List;
@@ -802,6 +803,132 @@ public abstract class CellRevision {
         return revision;
     }
 
+    /**
+     * Writes this CellRevision to IdWriter as a difference from an older revision of the same cell.
+     * Elements which are in the old revision are written as runs of indices in the old lists,
+     * so a small change of a big cell writes only the changed elements.
+     *
+     * @param writer where to write.
+     * @param oldRevision the older revision, which the reader has.
+     */
+    void writeDiff(IdWriter writer, CellRevision oldRevision) throws IOException {
+        assert oldRevision.d.cellId == d.cellId;
+        boolean cellChanged = oldRevision.d != d;
+        writer.writeBoolean(cellChanged);
+        if (cellChanged) {
+            d.write(writer);
+        }
+        writeListDiff(writer, toArray(oldRevision.nodes, oldRevision.nodes.size()), toArray(nodes, nodes.size()));
+        writeListDiff(writer, toArray(oldRevision.arcs, oldRevision.arcs.size()), toArray(arcs, arcs.size()));
+        writeListDiff(writer, toArray(oldRevision.exports, oldRevision.exports.size()), toArray(exports, exports.size()));
+    }
+
+    /**
+     * Reads CellRevision written by writeDiff from SnapshotReader.
+     *
+     * @param reader where to read.
+     * @param oldRevision the older revision, from which the difference was written.
+     */
+    static CellRevision readDiff(IdReader reader, CellRevision oldRevision) throws IOException {
+        ImmutableCell d = reader.readBoolean() ? ImmutableCell.read(reader) : oldRevision.d;
+        ImmutableNodeInst[] nodes = new ImmutableNodeInst[reader.readInt()];
+        readListDiff(reader, toArray(oldRevision.nodes, oldRevision.nodes.size()), nodes);
+        ImmutableArcInst[] arcs = new ImmutableArcInst[reader.readInt()];
+        readListDiff(reader, toArray(oldRevision.arcs, oldRevision.arcs.size()), arcs);
+        ImmutableExport[] exports = new ImmutableExport[reader.readInt()];
+        readListDiff(reader, toArray(oldRevision.exports, oldRevision.exports.size()), exports);
+        return oldRevision.with(d, nodes, arcs, exports);
+    }
+
+    private static ImmutableElectricObject[] toArray(java.lang.Iterable<? extends ImmutableElectricObject> list, int size) {
+        ImmutableElectricObject[] array = new ImmutableElectricObject[size];
+        int i = 0;
+        for (ImmutableElectricObject elem : list) {
+            array[i++] = elem;
+        }
+        return array;
+    }
+
+    /**
+     * Writes a list of elements as a sequence of runs.
+     * A positive count is followed by the index of the first of count consecutive elements of the old list.
+     * A negative count is followed by -count new elements.
+     */
+    private static void writeListDiff(IdWriter writer, ImmutableElectricObject[] oldElems, ImmutableElectricObject[] newElems) throws IOException {
+        writer.writeInt(newElems.length);
+        // most changes leave long unchanged runs at both ends
+        int minLength = Math.min(oldElems.length, newElems.length);
+        int prefix = 0;
+        while (prefix < minLength && oldElems[prefix] == newElems[prefix]) {
+            prefix++;
+        }
+        int suffix = 0;
+        while (suffix < minLength - prefix
+                && oldElems[oldElems.length - 1 - suffix] == newElems[newElems.length - 1 - suffix]) {
+            suffix++;
+        }
+        if (prefix > 0) {
+            writer.writeInt(prefix);
+            writer.writeInt(0);
+        }
+        int newEnd = newElems.length - suffix;
+        IdentityHashMap<ImmutableElectricObject, Integer> oldIndices = new IdentityHashMap<ImmutableElectricObject, Integer>();
+        for (int i = prefix; i < oldElems.length - suffix; i++) {
+            oldIndices.put(oldElems[i], Integer.valueOf(i));
+        }
+        int i = prefix;
+        while (i < newEnd) {
+            Integer oldIndex = oldIndices.get(newElems[i]);
+            int runEnd = i + 1;
+            if (oldIndex != null) {
+                int start = oldIndex.intValue();
+                while (runEnd < newEnd && start + runEnd - i < oldElems.length
+                        && oldElems[start + runEnd - i] == newElems[runEnd]) {
+                    runEnd++;
+                }
+                writer.writeInt(runEnd - i);
+                writer.writeInt(start);
+            } else {
+                while (runEnd < newEnd && !oldIndices.containsKey(newElems[runEnd])) {
+                    runEnd++;
+                }
+                writer.writeInt(i - runEnd);
+                for (int j = i; j < runEnd; j++) {
+                    newElems[j].write(writer);
+                }
+            }
+            i = runEnd;
+        }
+        if (suffix > 0) {
+            writer.writeInt(suffix);
+            writer.writeInt(oldElems.length - suffix);
+        }
+    }
+
+    private static void readListDiff(IdReader reader, ImmutableElectricObject[] oldElems, ImmutableElectricObject[] newElems) throws IOException {
+        int i = 0;
+        while (i < newElems.length) {
+            int count = reader.readInt();
+            if (count > 0) {
+                int start = reader.readInt();
+                System.arraycopy(oldElems, start, newElems, i, count);
+                i += count;
+            } else {
+                for (int j = 0; j < -count; j++) {
+                    ImmutableElectricObject elem;
+                    if (newElems instanceof ImmutableNodeInst[]) {
+                        elem = ImmutableNodeInst.read(reader);
+                    } else if (newElems instanceof ImmutableArcInst[]) {
+                        elem = ImmutableArcInst.read(reader);
+                    } else {
+                        elem = ImmutableExport.read(reader);
+                    }
+                    newElems[i++] = elem;
+                }
+            }
+        }
+    }
+
     /**
      * Checks invariant of this CellRevision.
      *
@@ -797,8 +797,9 @@ public class Snapshot {
             } else if (newBackup == null) {
                 writer.writeInt(~i);
             } else {
+                // the reader has the old backup, so send only what changed
                 writer.writeInt(i);
-                newBackup.write(writer);
+                newBackup.writeDiff(writer, oldBackup);
             }
         }
         writer.writeInt(Integer.MAX_VALUE);
@@ -874,7 +875,8 @@ public class Snapshot {
                 break;
             }
             if (cellIndex >= 0) {
-                CellBackup newBackup = CellBackup.read(reader, techPool);
+                CellBackup oldBackup = cellIndex < cellMax ? cellBackupsArray[cellIndex] : null;
+                CellBackup newBackup = oldBackup != null ? oldBackup.readDiff(reader, techPool) : CellBackup.read(reader, techPool);
                 cellBackupsArray[cellIndex] = newBackup;
             } else {
                 cellIndex = ~cellIndex;
@@ -45,7 +45,8 @@ public abstract class GeometryHandler implements LayoutMerger {
     public enum GHMode // GH GeometryHandler mode
     {
 	    ALGO_MERGE,   // using merge structure
-	    ALGO_SWEEP; // using sweep structure
+	    ALGO_SWEEP, // using sweep structure
+	    ALGO_SCANLINE; // using integer scanline structure (Manhattan geometry)
     }
     public static final ShapeSort shapeSort = new ShapeSort();
     public static final AreaSort areaSort = new AreaSort();
@@ -64,6 +65,8 @@ public abstract class GeometryHandler implements LayoutMerger {
                     return new PolySweepMerge(initialSize);
                 else
                     return new PolySweepMerge();
+            case ALGO_SCANLINE:
+                return new PolyScanlineMerge();
         }
         return null;
     }
@@ -107,6 +110,39 @@ public abstract class GeometryHandler implements LayoutMerger {
         System.out.println("Error: subtractAll not implemented for GeometryHandler subclass " + this.getClass().getName());
     }
 
+    /**
+     * Method to intersect two layers and produce a third.
+     * @param sourceA the first Layer to intersect.
+     * @param sourceB the second Layer to intersect.
+     * @param dest the destination layer to place the intersection of the first two.
+     */
+    public void intersectLayers(Layer sourceA, Layer sourceB, Layer dest)
+    {
+        System.out.println("Error: intersectLayers not implemented for GeometryHandler subclass " + this.getClass().getName());
+    }
+
+    /**
+     * Method to subtract one layer from another and produce a third.
+     * @param sourceA the first Layer.
+     * @param sourceB the second Layer, which gets subtracted from the first.
+     * @param dest the destination layer to place the sourceA - sourceB.
+     */
+    public void subtractLayers(Layer sourceA, Layer sourceB, Layer dest)
+    {
+        System.out.println("Error: subtractLayers not implemented for GeometryHandler subclass " + this.getClass().getName());
+    }
+
+    /**
+     * Method to inset one layer by a given amount and create a second layer.
+     * @param source the Layer to inset.
+     * @param dest the destination layer to place the inset geometry.
+     * @param amount the distance to inset the layer.
+     */
+    public void insetLayer(Layer source, Layer dest, double amount)
+    {
+        System.out.println("Error: insetLayer not implemented for GeometryHandler subclass " + this.getClass().getName());
+    }
+
 	/**
 	 * Access to keySet to create a collection for example.
 	 */
@@ -0,0 +1,631 @@
+/* -*- tab-width: 4 -*-
+ *
+ * Electric(tm) VLSI Design System
+ *
+ * File: PolyScanlineMerge.java
+ *
+ * Copyright (c) 2012, Static Free Software. All rights reserved.
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sun.electric.database.geometry;
+
+import com.sun.electric.database.geometry.bool.DeltaMerge;
+import com.sun.electric.database.geometry.bool.PointsSorter;
+import com.sun.electric.database.geometry.bool.UnloadPolys;
+import com.sun.electric.technology.Layer;
+import com.sun.electric.util.math.FixpCoord;
+import com.sun.electric.util.math.DBMath;
+import com.sun.electric.util.math.FixpTransform;
+
+import java.awt.Shape;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Area;
+import java.awt.geom.Point2D;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Class to merge Manhattan geometry with the integer scanline engine of
+ * the "bool" package (PointsSorter, DeltaMerge and UnloadPolys).
+ * Each layer is kept as the merged scanline output, in grid units.
+ * Added and subtracted polygons are collected and merged in one pass when the result is needed,
+ * so the cost of a merge is a sort of the polygon corners instead of one Area operation per polygon.
+ * Layers that receive non-Manhattan or off-grid geometry are kept in an Area, as in PolyMerge.
+ */
+public class PolyScanlineMerge extends GeometryHandler
+{
+    private static final long FRACTION_MASK = (1L << FixpCoord.FRACTION_BITS) - 1;
+    /** largest grid coordinate that the scanline engine accepts (with room to grow) */	private static final long MAX_COORD = 0x1fffffff;
+
+    /**
+     * The geometry of one layer.
+     */
+    private static class ScanlineLayer
+    {
+        /** merged geometry as DeltaMerge output (null if empty) */	byte[] merged;
+        /** polygons added since the last merge */					PointsSorter added;
+        /** polygons subtracted since the last merge */				PointsSorter subtracted;
+        /** geometry of a layer that is not Manhattan */				Area area;
+    }
+
+    /**
+     * Method to create a new "merge" object.
+     */
+    public PolyScanlineMerge()
+    {
+    }
+
+    private ScanlineLayer getLayer(Object key, boolean create)
+    {
+        ScanlineLayer sl = (ScanlineLayer)layers.get(key);
+        if (sl == null && create)
+        {
+            sl = new ScanlineLayer();
+            layers.put((Layer)key, sl);
+        }
+        return sl;
+    }
+
+    /**
+     * Method to add a PolyBase to the merged collection.
+     * @param key the layer that this PolyBase sits on.
+     * @param value the PolyBase to merge. If value is only Shape type
+     * then it would take the bounding box.
+     */
+    public void add(Layer key, Object value)
+    {
+        PolyBase poly = toPoly(value);
+        if (poly == null) return;
+        ScanlineLayer sl = getLayer(key, true);
+        if (sl.area == null)
+        {
+            // additions must not pass over pending subtractions
+            if (sl.subtracted != null) flush(sl);
+            if (sl.added == null) sl.added = new PointsSorter();
+            if (putPolygon(sl.added, poly.getPoints(), 1)) return;
+            toArea(sl);
+        }
+        sl.area.add(new Area(poly));
+    }
+
+    /**
+     * Method to subtract a geometrical object from the merged collection.
+     * @param key the key that this Object sits on.
+     * @param element the Object to merge.
+     */
+    public void subtract(Object key, Object element)
+    {
+        PolyBase poly = toPoly(element);
+        ScanlineLayer sl = getLayer(key, false);
+        if (poly == null || sl == null) return;
+        if (sl.area == null)
+        {
+            if (sl.subtracted == null) sl.subtracted = new PointsSorter();
+            if (putPolygon(sl.subtracted, poly.getPoints(), 1)) return;
+            toArea(sl);
+        }
+        sl.area.subtract(new Area(poly));
+    }
+
+    /**
+     * Method to subtract all geometries stored in hash map from corresponding layers
+     * @param map
+     */
+    public void subtractAll(Map<Layer,List<PolyBase>> map)
+    {
+        for (Map.Entry<Layer,List<PolyBase>> e : map.entrySet())
+        {
+            for (PolyBase poly : e.getValue())
+                subtract(e.getKey(), poly);
+        }
+    }
+
+    /**
+     * Method to add another PolyScanlineMerge to this one.
+     * @param subMerge the other merge to add in.
+     * @param trans a transformation on the other merge.
+     */
+    public void addAll(GeometryHandler subMerge, FixpTransform trans)
+    {
+        PolyScanlineMerge other = (PolyScanlineMerge)subMerge;
+        for (Layer layer : other.getKeySet())
+        {
+            ScanlineLayer otherSl = other.getLayer(layer, false);
+            other.flush(otherSl);
+            ScanlineLayer sl = getLayer(layer, true);
+            if (sl.area == null && otherSl.area == null)
+            {
+                // the other layer is merged apart so that nothing is left over if it is not Manhattan here
+                PointsSorter ps = new PointsSorter();
+                if (putTrees(ps, other.getTreeObjects(layer), trans, true))
+                {
+                    if (sl.subtracted != null) flush(sl);
+                    if (sl.added == null) sl.added = new PointsSorter();
+                    putMerged(sl.added, runMerge(ps), 1);
+                    continue;
+                }
+            }
+            Area a = (otherSl.area != null) ? otherSl.area : treesToArea(other.getTreeObjects(layer));
+            if (sl.area == null) toArea(sl);
+            sl.area.add(a.createTransformedArea(trans));
+        }
+    }
+
+    /**
+     * Method to intersect two layers in this merge and produce a third.
+     * @param sourceA the first Layer to intersect.
+     * @param sourceB the second Layer to intersect.
+     * @param dest the destination layer to place the intersection of the first two.
+     */
+    public void intersectLayers(Layer sourceA, Layer sourceB, Layer dest)
+    {
+        combineLayers(sourceA, sourceB, dest, true);
+    }
+
+    /**
+     * Method to subtract one layer from another and produce a third.
+     * @param sourceA the first Layer.
+     * @param sourceB the second Layer, which gets subtracted from the first.
+     * @param dest the destination layer to place the sourceA - sourceB.
+     */
+    public void subtractLayers(Layer sourceA, Layer sourceB, Layer dest)
+    {
+        combineLayers(sourceA, sourceB, dest, false);
+    }
+
+    private void combineLayers(Layer sourceA, Layer sourceB, Layer dest, boolean intersect)
+    {
+        ScanlineLayer slA = getLayer(sourceA, false);
+        ScanlineLayer slB = getLayer(sourceB, false);
+        if (slA != null) flush(slA);
+        if (slB != null) flush(slB);
+        if (isEmpty(slA) || (intersect && isEmpty(slB)))
+        {
+            layers.remove(dest);
+            return;
+        }
+        ScanlineLayer result = new ScanlineLayer();
+        if (isEmpty(slB))
+        {
+            result.merged = slA.merged;
+            result.area = (slA.area != null) ? (Area)slA.area.clone() : null;
+        } else if (slA.area != null || slB.area != null)
+        {
+            Area a = new Area(getArea(slA));
+            if (intersect) a.intersect(getArea(slB)); else
+                a.subtract(getArea(slB));
+            result.area = a;
+        } else
+        {
+            // intersection: covered by both; difference: covered by A (weight 2) but not by B (weight 1)
+            PointsSorter ps = new PointsSorter();
+            putMerged(ps, slA.merged, intersect ? 1 : 2);
+            putMerged(ps, slB.merged, 1);
+            result.merged = runMerge(ps, 2, 2);
+        }
+        if (isEmpty(result)) layers.remove(dest); else
+            layers.put(dest, result);
+    }
+
+    /**
+     * Method to inset one layer by a given amount and create a second layer.
+     * As in PolyMerge, a strip of width "amount" is removed along the inside of every edge.
+     * @param source the Layer to inset.
+     * @param dest the destination layer to place the inset geometry.
+     * @param amount the distance to inset the layer.
+     */
+    public void insetLayer(Layer source, Layer dest, double amount)
+    {
+        ScanlineLayer sl = getLayer(source, false);
+        if (sl != null) flush(sl);
+        if (isEmpty(sl))
+        {
+            layers.remove(dest);
+            return;
+        }
+        long gridAmount = DBMath.lambdaToGrid(amount);
+        ScanlineLayer result = new ScanlineLayer();
+        if (sl.area != null || !DBMath.areEquals(DBMath.gridToLambda(gridAmount), amount))
+        {
+            PolyMerge pm = new PolyMerge();
+            pm.layers.put(source, new Area(getArea(sl)));
+            pm.insetLayer(source, dest, amount);
+            result.area = (Area)pm.layers.get(dest);
+        } else if (gridAmount <= 0)
+        {
+            result.merged = sl.merged;
+        } else
+        {
+            // the inset is the layer minus the strips along its edges
+            PointsSorter strips = new PointsSorter();
+            putInsetStrips(strips, getTrees(sl.merged), (int)gridAmount, true);
+            byte[] stripsMerged = runMerge(strips);
+            PointsSorter ps = new PointsSorter();
+            putMerged(ps, sl.merged, 2);
+            putMerged(ps, stripsMerged, 1);
+            result.merged = runMerge(ps, 2, 2);
+        }
+        if (isEmpty(result)) layers.remove(dest); else
+            layers.put(dest, result);
+    }
+
+    /**
+     * Method to delete all geometry on a given layer.
+     * @param layer the Layer to clear in this merge.
+     */
+    public void deleteLayer(Layer layer)
+    {
+        layers.remove(layer);
+    }
+
+    /**
+     * Method to tell whether there is any valid geometry on a given layer of this merge.
+     * @param layer the layer to test.
+     * @return true if there is no valid geometry on the given layer in this merge.
+     */
+    public boolean isEmpty(Layer layer)
+    {
+        ScanlineLayer sl = getLayer(layer, false);
+        if (sl != null) flush(sl);
+        return isEmpty(sl);
+    }
+
+    /**
+     * Method to merge all pending polygons.
+     * The merged polygons of a layer never overlap, so they are also the non-overlapping polygons.
+     * @param merge true if polygons must be merged otherwise non-overlapping polygons will be generated.
+     */
+    public void postProcess(boolean merge)
+    {
+        for (Object o : layers.values())
+            flush((ScanlineLayer)o);
+    }
+
+    /**
+     * To retrieve the merged polygons of a layer.
+     * Outer loops and holes are returned as separate polygons.
+     * @param layer current layer under analysis
+     * @param modified to avoid retrieving original polygons
+     * @param simple to obtain simple polygons
+     */
+    public Collection<PolyBase> getObjects(Object layer, boolean modified, boolean simple)
+    {
+        ScanlineLayer sl = getLayer(layer, false);
+        if (sl == null) return null;
+        flush(sl);
+        if (sl.area != null)
+            return PolyBase.getPointsInArea(sl.area, (Layer)layer, simple, true);
+        List<PolyBase> list = new ArrayList<PolyBase>();
+        addLoops(list, getTreeObjects(layer), (Layer)layer);
+        return list;
+    }
+
+    /**
+     * To retrieve the roots containing all loops from the internal structure.
+     * @param layer current layer under analysis
+     * @return list of trees with loop hierarchy
+     */
+    public Collection<PolyBase.PolyBaseTree> getTreeObjects(Object layer)
+    {
+        ScanlineLayer sl = getLayer(layer, false);
+        if (sl == null) return null;
+        flush(sl);
+        if (sl.area != null)
+            return PolyBase.getPolyTrees(sl.area, (Layer)layer);
+        return getTrees(sl.merged);
+    }
+
+    /**
+     * Method to build the polygon trees of merged geometry.
+     */
+    private static List<PolyBase.PolyBaseTree> getTrees(byte[] merged)
+    {
+        List<PolyBase.PolyBaseTree> list = new ArrayList<PolyBase.PolyBaseTree>();
+        if (merged == null) return list;
+        try
+        {
+            DataInputStream inpS = new DataInputStream(new ByteArrayInputStream(merged));
+            for (PolyBase.PolyBaseTree t : new UnloadPolys().loop(inpS, false))
+                list.add(t);
+            inpS.close();
+        } catch (IOException e)
+        {
+            throw new RuntimeException(e);
+        }
+        return list;
+    }
+
+    /****************************** MERGING ******************************/
+
+    /**
+     * Method to apply the pending additions and subtractions of a layer.
+     */
+    private void flush(ScanlineLayer sl)
+    {
+        if (sl.added != null)
+        {
+            putMerged(sl.added, sl.merged, 1);
+            sl.merged = runMerge(sl.added);
+            sl.added = null;
+        }
+        if (sl.subtracted != null)
+        {
+            byte[] sub = runMerge(sl.subtracted);
+            sl.subtracted = null;
+            if (sl.merged != null && sub != null)
+            {
+                PointsSorter ps = new PointsSorter();
+                putMerged(ps, sl.merged, 2);
+                putMerged(ps, sub, 1);
+                sl.merged = runMerge(ps, 2, 2);
+            }
+        }
+    }
+
+    /**
+     * Method to merge points and keep those covered at least once.
+     * @return the merged geometry, or null if it is empty.
+     */
+    private static byte[] runMerge(PointsSorter ps)
+    {
+        return runMerge(ps, new DeltaMerge());
+    }
+
+    /**
+     * Method to merge points and keep those covered from minVal to maxVal times.
+     * @return the merged geometry, or null if it is empty.
+     */
+    private static byte[] runMerge(PointsSorter ps, int minVal, int maxVal)
+    {
+        return runMerge(ps, new DeltaMerge(minVal, maxVal));
+    }
+
+    private static byte[] runMerge(PointsSorter ps, DeltaMerge dm)
+    {
+        if (ps.size() == 0) return null;
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bout);
+        int outPoints = dm.loop(ps, out);
+        return outPoints != 0 ? bout.toByteArray() : null;
+    }
+
+    /**
+     * Method to add the points of merged geometry to a PointsSorter.
+     * @param ps the PointsSorter.
+     * @param merged the merged geometry as DeltaMerge output (may be null).
+     * @param weight the number of times the geometry is added.
+     */
+    private static void putMerged(PointsSorter ps, byte[] merged, int weight)
+    {
+        if (merged == null || weight == 0) return;
+        try
+        {
+            DataInputStream inpS = new DataInputStream(new ByteArrayInputStream(merged));
+            while (inpS.readBoolean())
+            {
+                int x = inpS.readInt();
+                int count = inpS.readInt();
+                for (int i = 0; i < count; i++)
+                {
+                    int yp = inpS.readInt();
+                    int y = yp >> 1;
+                    boolean positive = (yp & 1) != 0;
+                    for (int w = 0; w < weight; w++)
+                        ps.put(x, y, positive);
+                }
+            }
+        } catch (IOException e)
+        {
+            throw new AssertionError();
+        }
+    }
+
+    /**
+     * Method to add the strips along the inside of the edges of polygon trees to a PointsSorter.
+     * @param ps the PointsSorter.
+     * @param trees the polygon trees in grid units.
+     * @param d the width of the strips in grid units.
+     * @param outer true if the trees are outer loops, false if they are holes.
+     */
+    private static void putInsetStrips(PointsSorter ps, Iterable<PolyBase.PolyBaseTree> trees, int d, boolean outer)
+    {
+        for (PolyBase.PolyBaseTree t : trees)
+        {
+            PolyBase.Point[] points = t.getPoly().getPoints();
+            int n = points.length;
+            int[] xs = new int[n];
+            int[] ys = new int[n];
+            for (int i = 0; i < n; i++)
+            {
+                xs[i] = (int)(points[i].getFixpX() >> FixpCoord.FRACTION_BITS);
+                ys[i] = (int)(points[i].getFixpY() >> FixpCoord.FRACTION_BITS);
+            }
+            long twiceArea = 0;
+            for (int i = 0; i < n; i++)
+            {
+                int j = (i + 1) % n;
+                twiceArea += (long)xs[i]*ys[j] - (long)xs[j]*ys[i];
+            }
+            // the inside is on the left of the edges of a counterclockwise outer loop
+            boolean insideLeft = (twiceArea > 0) == outer;
+            for (int i = 0; i < n; i++)
+            {
+                int j = (i + 1) % n;
+                if (xs[i] == xs[j] && ys[i] != ys[j])
+                {
+                    // the left of an upward edge is toward lower X
+                    boolean lower = (ys[j] > ys[i]) == insideLeft;
+                    ps.put(lower ? xs[i] - d : xs[i], Math.min(ys[i], ys[j]), lower ? xs[i] : xs[i] + d, Math.max(ys[i], ys[j]));
+                } else if (ys[i] == ys[j] && xs[i] != xs[j])
+                {
+                    // the left of an edge toward higher X is toward higher Y
+                    boolean higher = (xs[j] > xs[i]) == insideLeft;
+                    ps.put(Math.min(xs[i], xs[j]), higher ? ys[i] : ys[i] - d, Math.max(xs[i], xs[j]), higher ? ys[i] + d : ys[i]);
+                }
+            }
+            putInsetStrips(ps, t.getSons(), d, !outer);
+        }
+    }
+
+    /****************************** POLYGON INPUT ******************************/
+
+    private static PolyBase toPoly(Object value)
+    {
+        if (value instanceof PolyBase)
+            return (PolyBase)value;
+        if (value instanceof Shape)
+            return new PolyBase(((Shape)value).getBounds2D());
+        return null;
+    }
+
+    /**
+     * Method to add the corners of a Manhattan polygon to a PointsSorter.
+     * Each vertical edge adds its lower end and removes its upper end (or the opposite,
+     * depending on its direction), which gives a winding of one inside the polygon.
+     * @param ps the PointsSorter.
+     * @param points the points of the polygon.
+     * @param sign +1 to add the polygon, -1 to remove it (for holes).
+     * @return false if the polygon is not Manhattan or not on grid (nothing is added then).
+     */
+    private static boolean putPolygon(PointsSorter ps, Point2D[] points, int sign)
+    {
+        int n = points.length;
+        if (n < 3) return true;
+        int[] xs = new int[n];
+        int[] ys = new int[n];
+        for (int i = 0; i < n; i++)
+        {
+            long fx, fy;
+            if (points[i] instanceof PolyBase.Point)
+            {
+                fx = ((PolyBase.Point)points[i]).getFixpX();
+                fy = ((PolyBase.Point)points[i]).getFixpY();
+            } else
+            {
+                fx = FixpCoord.lambdaToFixp(points[i].getX());
+                fy = FixpCoord.lambdaToFixp(points[i].getY());
+            }
+            if (((fx | fy) & FRACTION_MASK) != 0) return false;
+            long gx = fx >> FixpCoord.FRACTION_BITS;
+            long gy = fy >> FixpCoord.FRACTION_BITS;
+            if (Math.abs(gx) > MAX_COORD || Math.abs(gy) > MAX_COORD) return false;
+            xs[i] = (int)gx;
+            ys[i] = (int)gy;
+        }
+
+        // check the edges and find the orientation
+        long twiceArea = 0;
+        for (int i = 0; i < n; i++)
+        {
+            int j = (i + 1) % n;
+            if (xs[i] != xs[j] && ys[i] != ys[j]) return false;
+            twiceArea += (long)xs[i]*ys[j] - (long)xs[j]*ys[i];
+        }
+        if (twiceArea == 0) return true;
+        if (twiceArea < 0) sign = -sign;
+
+        for (int i = 0; i < n; i++)
+        {
+            int j = (i + 1) % n;
+            if (xs[i] != xs[j] || ys[i] == ys[j]) continue;
+            // a downward edge of a counterclockwise polygon is on its left side
+            int s = (ys[i] > ys[j]) ? sign : -sign;
+            int lowY = Math.min(ys[i], ys[j]);
+            int highY = Math.max(ys[i], ys[j]);
+            ps.put(xs[i], lowY, s > 0);
+            ps.put(xs[i], highY, s < 0);
+        }
+        return true;
+    }
+
+    /**
+     * Method to add polygon trees (outer loops with their holes) to a PointsSorter.
+     * @return false if some polygon is not Manhattan or not on grid after the transformation.
+     */
+    private static boolean putTrees(PointsSorter ps, Iterable<PolyBase.PolyBaseTree> trees, AffineTransform trans, boolean outer)
+    {
+        if (trees == null) return true;
+        for (PolyBase.PolyBaseTree t : trees)
+        {
+            Point2D[] points = t.getPoly().getPoints();
+            Point2D[] transPoints = new Point2D[points.length];
+            for (int i = 0; i < points.length; i++)
+                transPoints[i] = trans.transform(points[i], new Point2D.Double());
+            if (!putPolygon(ps, transPoints, outer ? 1 : -1)) return false;
+            if (!putTrees(ps, t.getSons(), trans, !outer)) return false;
+        }
+        return true;
+    }
+
+    /****************************** AREA FALLBACK ******************************/
+
+    private static boolean isEmpty(ScanlineLayer sl)
+    {
+        if (sl == null) return true;
+        if (sl.area != null) return sl.area.isEmpty();
+        return sl.merged == null;
+    }
+
+    /**
+     * Method to switch a layer to Area representation when it gets non-Manhattan geometry.
+     */
+    private void toArea(ScanlineLayer sl)
+    {
+        flush(sl);
+        sl.area = getArea(sl);
+        sl.merged = null;
+    }
+
+    private Area getArea(ScanlineLayer sl)
+    {
+        if (sl.area != null) return sl.area;
+        return treesToArea(getTrees(sl.merged));
+    }
+
+    private static Area treesToArea(Iterable<PolyBase.PolyBaseTree> trees)
+    {
+        Area area = new Area();
+        if (trees == null) return area;
+        for (PolyBase.PolyBaseTree t : trees)
+        {
+            Area a = new Area(t.getPoly());
+            for (PolyBase.PolyBaseTree hole : t.getSons())
+            {
+                a.subtract(new Area(hole.getPoly()));
+                a.add(treesToArea(hole.getSons()));
+            }
+            area.add(a);
+        }
+        return area;
+    }
+
+    private static void addLoops(List<PolyBase> list, Iterable<PolyBase.PolyBaseTree> trees, Layer layer)
+    {
+        for (PolyBase.PolyBaseTree t : trees)
+        {
+            PolyBase poly = t.getPoly();
+            poly.setLayer(layer);
+            list.add(poly);
+            addLoops(list, t.getSons(), layer);
+        }
+    }
+}
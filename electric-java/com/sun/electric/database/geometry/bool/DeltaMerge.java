@@ -50,15 +50,48 @@ public class DeltaMerge {
     private int outC;
 
     private PointsSorter ps;
+    /** true to output only the points covered from minVal to maxVal times */
+    private final boolean window;
+    private final int minVal;
+    private final int maxVal;
 
     private int x;
 
+    /**
+     * Creates a DeltaMerge which outputs the union of its input.
+     */
     public DeltaMerge() {
+        this(false, 0, 0);
+    }
+
+    /**
+     * Creates a DeltaMerge which outputs the points covered
+     * from minVal to maxVal times by its input.
+     * With weighted inputs this gives intersection and difference too.
+     * @param minVal minimal coverage of output points (at least 1).
+     * @param maxVal maximal coverage of output points.
+     */
+    public DeltaMerge(int minVal, int maxVal) {
+        this(true, minVal, maxVal);
+        assert 1 <= minVal && minVal <= maxVal;
+    }
+
+    private DeltaMerge(boolean window, int minVal, int maxVal) {
+        this.window = window;
+        this.minVal = minVal;
+        this.maxVal = maxVal;
         chain = new Segment();
         chain.next = segLast;
         chain.y = Integer.MIN_VALUE;
     }
 
+    private int inside(int val) {
+        if (!window) {
+            return val == 0 ? 0 : 1;
+        }
+        return val >= minVal && val <= maxVal ? 1 : 0;
+    }
+
     public int loop(PointsSorter ps, DataOutputStream out) {
         try {
         this.ps = ps;
@@ -144,9 +177,9 @@ public class DeltaMerge {
             } else {
                 while (cp.next.y < y) {
                     Segment p = cp.next;
-                    int oldO = p.val == 0 ? 0 : 1;
+                    int oldO = inside(p.val);
                     p.val += inpStep;
-                    int newO = p.val == 0 ? 0 : 1;
+                    int newO = inside(p.val);
                     int newOutStep = newO - oldO;
                     if (newOutStep != outStep) {
                         putPointOut(p.y, newOutStep - outStep);
@@ -167,9 +200,9 @@ public class DeltaMerge {
             }
 			inpStep += df;
             assert p.y == y;
-            int oldO = p.val == 0 ? 0 : 1;
+            int oldO = inside(p.val);
             p.val += inpStep;
-            int newO = p.val == 0 ? 0 : 1;
+            int newO = inside(p.val);
             int newOutStep = newO - oldO;
             if (newOutStep != outStep) {
                 putPointOut(y, newOutStep - outStep);
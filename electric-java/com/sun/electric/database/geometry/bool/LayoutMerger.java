@@ -24,7 +24,10 @@ package com.sun.electric.database.geometry.bool;
 
 import com.sun.electric.database.geometry.PolyBase;
 import com.sun.electric.technology.Layer;
+import java.util.AbstractMap;
 import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
 
 /**
  *
@@ -33,4 +36,36 @@ public interface LayoutMerger {
     public Collection<Layer> getLayers();
     public boolean canMerge(Layer layer);
     public Iterable<PolyBase.PolyBaseTree> merge(Layer layer);
+
+    /**
+     * Merges several layers.
+     * The default implementation merges the layers one by one while the result is iterated.
+     * @param layers layers to merge
+     * @return merged trees of each layer, in the order in which the layers are completed
+     */
+    public default Iterable<Map.Entry<Layer, Iterable<PolyBase.PolyBaseTree>>> mergeLayers(final Collection<Layer> layers) {
+        return new Iterable<Map.Entry<Layer, Iterable<PolyBase.PolyBaseTree>>>() {
+            @Override
+            public Iterator<Map.Entry<Layer, Iterable<PolyBase.PolyBaseTree>>> iterator() {
+                final Iterator<Layer> it = layers.iterator();
+                return new Iterator<Map.Entry<Layer, Iterable<PolyBase.PolyBaseTree>>>() {
+                    @Override
+                    public boolean hasNext() {
+                        return it.hasNext();
+                    }
+
+                    @Override
+                    public Map.Entry<Layer, Iterable<PolyBase.PolyBaseTree>> next() {
+                        Layer layer = it.next();
+                        return new AbstractMap.SimpleImmutableEntry<Layer, Iterable<PolyBase.PolyBaseTree>>(layer, merge(layer));
+                    }
+
+                    @Override
+                    public void remove() {
+                        throw new UnsupportedOperationException();
+                    }
+                };
+            }
+        };
+    }
 }
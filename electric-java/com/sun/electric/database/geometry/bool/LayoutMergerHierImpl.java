@@ -31,21 +31,35 @@ import com.sun.electric.technology.Layer;
 import com.sun.electric.util.ElapseTimer;
 import com.sun.electric.util.math.Orientation;
 import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.util.AbstractMap;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
 
 /**
  *
@@ -54,7 +68,10 @@ public class LayoutMergerHierImpl implements LayoutMerger
 {
     final VectorCache vectorCache;
     private final Cell topCell;
-    private static final int TMP_FILE_THRESHOLD = 1000000;
+    /** size in bytes of the merged stream of a layer that is kept in memory */
+    private static final int TMP_FILE_THRESHOLD = 16 << 20;
+    /** number of flat boxes that mergeLayers may collect at the same time */
+    private static final int MAX_CONCURRENT_BOXES = 4000000;
     private static final int[] NULL_INT_ARRAY =
     {
     };
@@ -254,51 +271,247 @@ public class LayoutMergerHierImpl implements LayoutMerger
         mergeLayer(mergedCoords, topCell.getId(), layer, rotate, out);
     }
 
-    byte[] mergeInMemory(Layer layer) throws IOException
+    /**
+     * Merges a layer, keeping the merged stream in memory unless it is large.
+     */
+    Iterable<PolyBaseTree> mergeWithSpill(Layer layer) throws IOException
     {
-        ByteArrayOutputStream bout = new ByteArrayOutputStream();
-        DataOutputStream out = new DataOutputStream(bout);
-        flattenAndMergeLayer(layer, out);
-        out.close();
-        return bout.toByteArray();
+        SpillOutputStream spill = new SpillOutputStream(TMP_FILE_THRESHOLD);
+        try
+        {
+            DataOutputStream out = new DataOutputStream(spill);
+            flattenAndMergeLayer(layer, out);
+            out.close();
+            DataInputStream inpS = new DataInputStream(spill.getInputStream());
+            UnloadPolys up = new UnloadPolys();
+            Iterable<PolyBaseTree> trees = up.loop(inpS, false);
+            inpS.close();
+            return trees;
+        } finally
+        {
+            spill.dispose();
+        }
     }
 
-    File mergeInFile(Layer layer) throws IOException
+    @Override
+    public Iterable<PolyBaseTree> merge(Layer layer)
     {
-        File file = File.createTempFile("Electric", "DRC");
-        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
-        flattenAndMergeLayer(layer, out);
-        out.close();
-        return file;
+        try
+        {
+            return mergeWithSpill(layer);
+        } catch (IOException e)
+        {
+            throw new RuntimeException(e);
+        }
     }
 
+    /**
+     * Merges several layers in parallel.
+     * Layers are independent, so each one is merged by its own task.
+     * The number of flat boxes collected at the same time is bounded,
+     * and large merged streams are spilled to temporary files.
+     * The result can be iterated only once; its iterator waits for the next completed layer.
+     * @param layers layers to merge
+     * @return merged trees of each layer, in the order in which the layers are completed
+     */
     @Override
-    public Iterable<PolyBaseTree> merge(Layer layer)
+    public Iterable<Map.Entry<Layer, Iterable<PolyBaseTree>>> mergeLayers(Collection<Layer> layers)
     {
-        try
+        final int numLayers = layers.size();
+        int numThreads = Math.max(1, Math.min(numLayers, Runtime.getRuntime().availableProcessors()));
+        ExecutorService pool = Executors.newFixedThreadPool(numThreads);
+        final CompletionService<Map.Entry<Layer, Iterable<PolyBaseTree>>> completion =
+            new ExecutorCompletionService<Map.Entry<Layer, Iterable<PolyBaseTree>>>(pool);
+        final Semaphore boxBudget = new Semaphore(MAX_CONCURRENT_BOXES, true);
+        for (final Layer layer : layers)
+        {
+            int numFlatBoxes = vectorCache.getNumFlatBoxes(topCell.getId(), layer);
+            final int permits = Math.max(1, Math.min(numFlatBoxes, MAX_CONCURRENT_BOXES));
+            completion.submit(new Callable<Map.Entry<Layer, Iterable<PolyBaseTree>>>()
+            {
+                @Override
+                public Map.Entry<Layer, Iterable<PolyBaseTree>> call() throws Exception
+                {
+                    boxBudget.acquire(permits);
+                    try
+                    {
+                        return new AbstractMap.SimpleImmutableEntry<Layer, Iterable<PolyBaseTree>>(layer, mergeWithSpill(layer));
+                    } finally
+                    {
+                        boxBudget.release(permits);
+                    }
+                }
+            });
+        }
+        // submitted tasks still run, the threads terminate after them
+        pool.shutdown();
+
+        final Iterator<Map.Entry<Layer, Iterable<PolyBaseTree>>> it = new Iterator<Map.Entry<Layer, Iterable<PolyBaseTree>>>()
+        {
+            private int numTaken;
+
+            @Override
+            public boolean hasNext()
+            {
+                return numTaken < numLayers;
+            }
+
+            @Override
+            public Map.Entry<Layer, Iterable<PolyBaseTree>> next()
+            {
+                if (!hasNext())
+                {
+                    throw new NoSuchElementException();
+                }
+                numTaken++;
+                try
+                {
+                    return completion.take().get();
+                } catch (InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException(e);
+                } catch (ExecutionException e)
+                {
+                    throw new RuntimeException(e.getCause());
+                }
+            }
+
+            @Override
+            public void remove()
+            {
+                throw new UnsupportedOperationException();
+            }
+        };
+        return new Iterable<Map.Entry<Layer, Iterable<PolyBaseTree>>>()
+        {
+            private boolean iterated;
+
+            @Override
+            public synchronized Iterator<Map.Entry<Layer, Iterable<PolyBaseTree>>> iterator()
+            {
+                if (iterated)
+                {
+                    throw new IllegalStateException("mergeLayers result can be iterated only once");
+                }
+                iterated = true;
+                return it;
+            }
+        };
+    }
+
+    /**
+     * Output stream that keeps the merged stream of a layer in memory
+     * and spills it to a temporary file through a FileChannel when it exceeds a threshold.
+     */
+    static class SpillOutputStream extends OutputStream
+    {
+        private static final int CHANNEL_BUFFER_SIZE = 1 << 16;
+        private final int threshold;
+        private byte[] buf = new byte[4096];
+        private int count;
+        private File file;
+        private FileChannel channel;
+
+        SpillOutputStream(int threshold)
         {
-            boolean inMemory = vectorCache.getNumFlatBoxes(topCell.getId(), layer) <= TMP_FILE_THRESHOLD;
-            Iterable<PolyBaseTree> trees;
-            if (inMemory)
+            this.threshold = threshold;
+        }
+
+        @Override
+        public void write(int b) throws IOException
+        {
+            if (count == buf.length)
             {
-                byte[] ba = mergeInMemory(layer);
-                DataInputStream inpS = new DataInputStream(new ByteArrayInputStream(ba));
-                UnloadPolys up = new UnloadPolys();
-                trees = up.loop(inpS, false);
-                inpS.close();
+                makeRoom(1);
+            }
+            buf[count++] = (byte)b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException
+        {
+            if (count + len > buf.length)
+            {
+                makeRoom(len);
+                if (len > buf.length)
+                {
+                    writeToChannel(ByteBuffer.wrap(b, off, len));
+                    return;
+                }
+            }
+            System.arraycopy(b, off, buf, count, len);
+            count += len;
+        }
+
+        private void makeRoom(int len) throws IOException
+        {
+            if (channel == null && count + len <= threshold)
+            {
+                buf = Arrays.copyOf(buf, Math.min(Math.max(buf.length * 2, count + len), threshold));
+                return;
+            }
+            if (channel == null)
+            {
+                file = File.createTempFile("Electric", "DRC");
+                channel = new RandomAccessFile(file, "rw").getChannel();
+                writeToChannel(ByteBuffer.wrap(buf, 0, count));
+                buf = new byte[CHANNEL_BUFFER_SIZE];
             } else
             {
-                File file = mergeInFile(layer);
-                DataInputStream inpS = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
-                UnloadPolys up = new UnloadPolys();
-                trees = up.loop(inpS, false);
-                inpS.close();
-                file.delete();
+                writeToChannel(ByteBuffer.wrap(buf, 0, count));
             }
-            return trees;
-        } catch (IOException e)
+            count = 0;
+        }
+
+        private void writeToChannel(ByteBuffer bb) throws IOException
         {
-            throw new RuntimeException(e);
+            while (bb.hasRemaining())
+            {
+                channel.write(bb);
+            }
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+            if (channel != null && count > 0)
+            {
+                writeToChannel(ByteBuffer.wrap(buf, 0, count));
+                count = 0;
+            }
+        }
+
+        /**
+         * Returns a stream to read the data written to this stream after it was closed.
+         */
+        InputStream getInputStream() throws IOException
+        {
+            if (channel == null)
+            {
+                return new ByteArrayInputStream(buf, 0, count);
+            }
+            channel.position(0);
+            return new BufferedInputStream(Channels.newInputStream(channel), CHANNEL_BUFFER_SIZE);
+        }
+
+        /**
+         * Releases the memory buffer and deletes the temporary file.
+         */
+        void dispose()
+        {
+            buf = null;
+            if (channel != null)
+            {
+                try
+                {
+                    channel.close();
+                } catch (IOException e)
+                {
+                }
+                file.delete();
+                channel = null;
+            }
         }
     }
 }
@@ -56,6 +56,20 @@ import com.sun.electric.database.geometry.btree.CachingPageStorage.CachedPage;
  *  the root to the leaves; this brings two benefits: the data structure
  *  can be made concurrent with very little lock contention and it can
  *  support copy-on-write shadow versions.<p>
+ *
+ *  A tree is normally used by one thread at a time.  To let other
+ *  threads read it while it is being modified, the modifying thread
+ *  calls {@see #publish()} from time to time; each call returns a
+ *  read-only {@see BTree.Version} of the tree at that moment, which
+ *  any number of threads may query while the modifications go on.
+ *  After the first publish() the tree is in copy-on-write mode: a
+ *  page that belongs to a published version is copied, together with
+ *  the path from the root to it, before it is modified.  Pages created
+ *  since the last publish() are private to the writer and are modified
+ *  in place, so appends between two publish() calls stay cheap.  The
+ *  parent pointer of a published page is left as it was, even when a
+ *  split moves the page to a new parent; the copy made before the page
+ *  is modified gets the right one.<p>
  *  
  *  You must distinguish between insert() and replace() ahead of time;
  *  you can't call insert() on a key that is already in the tree or
@@ -161,6 +175,10 @@ public class BTree
     private       int    size = 0;
     private final byte[] monbuf;  // scratch buffer
 
+    // pages with smaller ids may belong to a published version and must be copied before modification
+    int                   sharedPages = 0;
+    private volatile Version published = null;
+
     /**
      *  Create a BTree.
      *  @param ps the PageStorage to hold the underlying bytes
@@ -320,6 +338,93 @@ public class BTree
         ret = (Integer)walk(min==null?null:keybuf, 0, null, null, Op.SUMMARIZE_RIGHT, ret, max==null?null:keybuf2, 0, sbuf, 0);
         return ret==0 ? null : (S)summary.deserialize(sbuf, 0);
     }
+
+    /**
+     *  Publishes the current contents of the tree as a read-only
+     *  Version and switches the tree to copy-on-write mode.  Must not
+     *  run at the same time as a modification of the tree.
+     */
+    public Version publish() {
+        sharedPages = ps.getNumPages();
+        Version v = new Version(rootpage, size);
+        published = v;
+        return v;
+    }
+
+    /** returns the most recently published Version, or null if publish() was never called; may be called by any thread */
+    public Version getPublishedVersion() { return published; }
+
+    /**
+     *  A read-only version of the tree, created by publish().  Its
+     *  pages are never modified, so it may be queried by any number
+     *  of threads at once, even while the tree itself is modified.
+     */
+    public final class Version {
+        private final int root;
+        private final int size;
+
+        private Version(int root, int size) {
+            this.root = root;
+            this.size = size;
+        }
+
+        /** returns the number of entries in this version */
+        public int  size() { return size; }
+
+        /** returns the value in this version, or null if not found */
+        public V getValFromKey(K key) { return readVal(key, Op.GET_VAL_FROM_KEY, 0); }
+
+        /** returns the value of the largest key less than or equal to the one supplied */
+        public V getValFromKeyFloor(K key) { return readVal(key, Op.GET_VAL_FROM_KEY_FLOOR, 0); }
+
+        /** returns the ordinal of the given key, or -1 if not found */
+        public int getOrdFromKey(K key) { return ((Integer)read(key, Op.GET_ORD_FROM_KEY, 0)).intValue(); }
+
+        /** returns the ordinal of the largest key less than or equal to the one supplied */
+        public int getOrdFromKeyFloor(K key) { return ((Integer)read(key, Op.GET_ORD_FROM_KEY_FLOOR, 0)).intValue(); }
+
+        /** returns the ordinal of the smallest key greater than or equal to the one supplied */
+        public int getOrdFromKeyCeiling(K key) { return ((Integer)read(key, Op.GET_ORD_FROM_KEY_CEIL, 0)).intValue(); }
+
+        /** returns the i^th value in this version */
+        public V getValFromOrd(int ord) { return readVal(null, Op.GET_VAL_FROM_ORD, ord); }
+
+        /** returns the i^th key in this version */
+        public K getKeyFromOrd(int ord) { return readKey(ord); }
+
+        /** compute the summary of all (key,value) pairs between min and max, inclusive; null means "no limit" */
+        public S getSummaryFromKeys(K min, K max) {
+            byte[] minbuf = null, maxbuf = null;
+            if (min!=null) { minbuf = new byte[uk.getSize()]; uk.serialize(min, minbuf, 0); }
+            if (max!=null) { maxbuf = new byte[uk.getSize()]; uk.serialize(max, maxbuf, 0); }
+            byte[] retbuf = new byte[summary.getSize()];
+            byte[] scratch = new byte[summary.getSize()];
+            LeafNodeCursor<K,V,S> lc = new LeafNodeCursor<K,V,S>(BTree.this);
+            InteriorNodeCursor<K,V,S> ic1 = new InteriorNodeCursor<K,V,S>(BTree.this);
+            InteriorNodeCursor<K,V,S> ic2 = new InteriorNodeCursor<K,V,S>(BTree.this);
+            int ret = 0;
+            ret = (Integer)walk(root, lc, ic1, ic2, scratch, minbuf, 0, null, null, Op.SUMMARIZE_LEFT,  ret, maxbuf, 0, retbuf, 0);
+            ret = (Integer)walk(root, lc, ic1, ic2, scratch, minbuf, 0, null, null, Op.SUMMARIZE_RIGHT, ret, maxbuf, 0, retbuf, 0);
+            return ret==0 ? null : (S)summary.deserialize(retbuf, 0);
+        }
+
+        @SuppressWarnings("unchecked")
+        private V readVal(K key, Op op, int ord) { return (V)read(key, op, ord); }
+
+        @SuppressWarnings("unchecked")
+        private K readKey(int ord) { return (K)read(null, Op.GET_KEY_FROM_ORD, ord); }
+
+        // each query uses its own cursors so that queries may run concurrently
+        private Object read(K key, Op op, int ord) {
+            byte[] kbuf = null;
+            if (key!=null) { kbuf = new byte[uk.getSize()]; uk.serialize(key, kbuf, 0); }
+            return walk(root,
+                        new LeafNodeCursor<K,V,S>(BTree.this),
+                        new InteriorNodeCursor<K,V,S>(BTree.this),
+                        new InteriorNodeCursor<K,V,S>(BTree.this),
+                        null, kbuf, 0, null, null, op, ord, null, 0, null, 0);
+        }
+    }
     
     private static enum Op {
         GET_VAL_FROM_KEY,
@@ -388,6 +493,16 @@ public class BTree
                     return false;
             }
         }
+        public boolean isWrite() {
+            switch(this) {
+                case REMOVE:
+                case INSERT:
+                case REPLACE:
+                    return true;
+                default:
+                    return false;
+            }
+        }
     }
     
 
@@ -395,6 +510,12 @@ public class BTree
         return walk(key, key_ofs, oldval, newval, op, ord, null, 0, null, 0);
     }
 
+    private Object walk(byte[] key, int key_ofs, V oldval, V newval, Op op, int ord,
+                        byte[] key2, int key2_ofs, byte[] ret, int ret_ofs) {
+        return walk(rootpage, leafNodeCursor, interiorNodeCursor1, interiorNodeCursor2, monbuf,
+                    key, key_ofs, oldval, newval, op, ord, key2, key2_ofs, ret, ret_ofs);
+    }
+
     /**
      *  B+Tree walking routine.
      *
@@ -408,8 +529,16 @@ public class BTree
      *
      *  On writes/deletes, this returns the previous value.
      *
+     *  Reads of a published Version pass its root and their own
+     *  cursors; writes always start at rootpage.
+     *
      */
-    private Object walk(byte[] key, int key_ofs,
+    private Object walk(int root,
+                        LeafNodeCursor<K,V,S> leafNodeCursor,
+                        InteriorNodeCursor<K,V,S> interiorNodeCursor,
+                        InteriorNodeCursor<K,V,S> parentNodeCursor,
+                        byte[] monbuf,
+                        byte[] key, int key_ofs,
                         V oldval,
                         V newval,
                         Op op,
@@ -417,13 +546,10 @@ public class BTree
                         byte[] key2, int key2_ofs,
                         byte[] ret, int ret_ofs) {
         Object return_val = null;
-        int pageid = rootpage;
+        int pageid = root;
         int idx = -1;
         int global_ord = 0;
 
-        LeafNodeCursor<K,V,S>       leafNodeCursor = this.leafNodeCursor;
-        InteriorNodeCursor<K,V,S>   interiorNodeCursor = this.interiorNodeCursor1;
-        InteriorNodeCursor<K,V,S>   parentNodeCursor = this.interiorNodeCursor2;
         NodeCursor cur = null;
 
         boolean summaryInitialized = ord!=0;
@@ -431,7 +557,7 @@ public class BTree
         boolean cheat = false;
         int comp = 0;
 
-        if (largestKeyPage != -1 && op==Op.INSERT) {
+        if (largestKeyPage >= sharedPages && op==Op.INSERT) {
             leafNodeCursor.setBuf(ps.getPage(largestKeyPage, true));
             comp = uk.compare(key, key_ofs, largestKey, 0);
             if (comp >= 0 && !leafNodeCursor.isFull()) {
@@ -448,7 +574,26 @@ public class BTree
                 cur = LeafNodeCursor.isLeafNode(cp) ? leafNodeCursor : interiorNodeCursor;
                 cur.setBuf(cp);
             }
-            assert cheat || pageid==rootpage || cur.getParent()==parentNodeCursor.getPageId();
+            if (pageid < sharedPages && op.isWrite()) {
+                // the page may belong to a published version: modify a copy of it instead
+                int newpage = ps.createPage();
+                CachedPage ncp = ps.getPage(newpage, false);
+                System.arraycopy(cur.getBuf(), 0, ncp.getBuf(), 0, ps.getPageSize());
+                cur.setBuf(ncp);
+                if (pageid == root) {
+                    rootpage = root = newpage;
+                    cur.setParent(newpage);
+                } else {
+                    cur.setParent(parentNodeCursor.getPageId());
+                    parentNodeCursor.setBucketPageId(idx, newpage);
+                    parentNodeCursor.writeBack();
+                }
+                cur.writeBack();
+                if (largestKeyPage == pageid) largestKeyPage = newpage;
+                pageid = newpage;
+            }
+            // the parent pointers of pages that were not copied may be stale in copy-on-write mode
+            assert cheat || pageid==root || (sharedPages!=0 && !op.isWrite()) || cur.getParent()==parentNodeCursor.getPageId();
 
             if ((op==Op.INSERT || op==Op.REPLACE) && cur.isFull()) {
                 assert cur!=parentNodeCursor;
@@ -456,7 +601,7 @@ public class BTree
 
                 // is the node we're splitting the last child of its parent or the root node?
                 boolean splitting_last_or_root = false;
-                if (pageid == rootpage) {
+                if (pageid == root) {
                     parentNodeCursor.initRoot();
                     parentNodeCursor.setBucketPageId(0, pageid);
                     cur.setParent(parentNodeCursor.getPageId());
@@ -506,7 +651,25 @@ public class BTree
 
                 cur.writeBack();
                 parentNodeCursor.writeBack();
-                pageid = rootpage;
+
+                // the descent has already counted the new value in the ancestors of the parent,
+                // and the restart below counts it again
+                if (op==Op.INSERT) {
+                    int child = parentNodeCursor.getPageId();
+                    int parent = parentNodeCursor.getParent();
+                    while(parent != child) {
+                        interiorNodeCursor.setBuf(ps.getPage(parent, true));
+                        int slot = interiorNodeCursor.getSlotByChildPageId(child);
+                        assert slot!=-1;
+                        if (slot < interiorNodeCursor.getNumBuckets()-1) {
+                            interiorNodeCursor.setNumValsBelowBucket(slot, interiorNodeCursor.getNumValsBelowBucket(slot)-1);
+                            interiorNodeCursor.writeBack();
+                        }
+                        child = parent;
+                        parent = interiorNodeCursor.getParent();
+                    }
+                }
+                pageid = root = rootpage;
                 cheat = false;
                 continue;
             }
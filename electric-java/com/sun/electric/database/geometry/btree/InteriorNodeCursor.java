@@ -202,6 +202,8 @@ class InteriorNodeCursor
         // XXX: this is not terribly efficient
         int ret = super.split(key, key_ofs, splitPoint);
         for(int i=0; i<getNumBuckets(); i++) {
+            // pages of a published version are left alone; their parent is fixed when a write copies them
+            if (getBucketPageId(i) < bt.sharedPages) continue;
             CachedPage cp = ps.getPage(getBucketPageId(i), true);
             bt.ui.serializeInt(getPageId(), cp.getBuf(), 0*SIZEOF_INT);
             cp.setDirty();
@@ -0,0 +1,173 @@
+/* -*- tab-width: 4 -*-
+ *
+ * Electric(tm) VLSI Design System
+ *
+ * File: MappedPageStorage.java
+ *
+ * Copyright (c) 2012, Static Free Software. All rights reserved.
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sun.electric.database.geometry.btree;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.util.concurrent.locks.*;
+
+/**
+ *  PageStorage kept outside of the Java heap, either in direct
+ *  ByteBuffers or in a memory-mapped temporary file.  Pages are
+ *  allocated in large chunks so that the storage can hold far more
+ *  data than the heap.
+ *
+ *  This class is thread-safe.  Page reads and writes do not take a
+ *  global lock; each page is guarded by one of a fixed set of
+ *  read/write locks (lock striping), so readers of different pages,
+ *  or of the same page, never wait for each other.
+ */
+public class MappedPageStorage extends PageStorage {
+
+    /** same page size as FilePageStorage */
+    public static final int DEFAULT_PAGE_SIZE = 4096 * 4;
+
+    // size of each chunk of pages; one mapping or direct buffer per chunk
+    private static final int CHUNK_SIZE = 64 * 1024 * 1024;
+
+    // number of page locks; must be a power of two
+    private static final int NUM_STRIPES = 64;
+
+    /**
+     *  Create a new MappedPageStorage whose pages are kept in direct
+     *  ByteBuffers (limited by -XX:MaxDirectMemorySize).
+     */
+    public static MappedPageStorage createDirect(int pageSize) {
+        return new MappedPageStorage(pageSize, false);
+    }
+
+    /**
+     *  Create a new MappedPageStorage whose pages are kept in a
+     *  memory-mapped temporary file; the operating system decides
+     *  which pages stay in memory.  The file is created with the
+     *  first page.
+     */
+    public static MappedPageStorage createMapped(int pageSize) {
+        return new MappedPageStorage(pageSize, true);
+    }
+
+    //////////////////////////////////////////////////////////////////////////////
+
+    private final int pagesPerChunk;
+    private final ReentrantReadWriteLock[] stripes = new ReentrantReadWriteLock[NUM_STRIPES];
+    private final boolean mapped;
+    private File file;
+    private RandomAccessFile raf;
+
+    // replaced (never modified) when a chunk is added, so readers need no lock
+    private volatile ByteBuffer[] chunks = new ByteBuffer[0];
+    private volatile int numpages;
+
+    private MappedPageStorage(int pageSize, boolean mapped) {
+        super(pageSize);
+        if (pageSize <= 0 || pageSize > CHUNK_SIZE)
+            throw new IllegalArgumentException("bad page size " + pageSize);
+        this.pagesPerChunk = CHUNK_SIZE / pageSize;
+        for(int i=0; i<stripes.length; i++)
+            stripes[i] = new ReentrantReadWriteLock();
+        this.mapped = mapped;
+    }
+
+    public int getNumPages() { return numpages; }
+
+    public synchronized int createPage() {
+        int pageid = numpages;
+        int chunk = pageid / pagesPerChunk;
+        if (chunk >= chunks.length) {
+            ByteBuffer[] newchunks = new ByteBuffer[chunk+1];
+            System.arraycopy(chunks, 0, newchunks, 0, chunks.length);
+            newchunks[chunk] = allocateChunk(chunk);
+            chunks = newchunks;
+        }
+        numpages = pageid + 1;
+        return pageid;
+    }
+
+    private ByteBuffer allocateChunk(int chunk) {
+        int size = pagesPerChunk * getPageSize();
+        if (!mapped) return ByteBuffer.allocateDirect(size);
+        try {
+            if (raf == null) {
+                file = File.createTempFile("pagestorage", ".ebtree");
+                file.deleteOnExit();
+                raf = new RandomAccessFile(file, "rw");
+            }
+            // mapping past the end of the file grows it
+            return raf.getChannel().map(FileChannel.MapMode.READ_WRITE, (long)chunk * size, size);
+        } catch (IOException e) { throw new RuntimeException(e); }
+    }
+
+    private ReadWriteLock getLock(int pageid) {
+        return stripes[pageid & (NUM_STRIPES-1)];
+    }
+
+    /** returns a private view of the chunk positioned at the page */
+    private ByteBuffer getPageBuffer(int pageid) {
+        if (pageid < 0 || pageid >= numpages)
+            throw new IndexOutOfBoundsException("page " + pageid + " does not exist");
+        ByteBuffer bb = chunks[pageid / pagesPerChunk].duplicate();
+        bb.position((pageid % pagesPerChunk) * getPageSize());
+        return bb;
+    }
+
+    public void writePage(int pageid, byte[] buf, int ofs) {
+        ByteBuffer bb = getPageBuffer(pageid);
+        Lock lock = getLock(pageid).writeLock();
+        lock.lock();
+        try {
+            bb.put(buf, ofs, getPageSize());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void readPage(int pageid, byte[] buf, int ofs) {
+        ByteBuffer bb = getPageBuffer(pageid);
+        Lock lock = getLock(pageid).readLock();
+        lock.lock();
+        try {
+            bb.get(buf, ofs, getPageSize());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void fsync(int pageid) {
+        ByteBuffer chunk = chunks[pageid / pagesPerChunk];
+        if (chunk instanceof MappedByteBuffer)
+            ((MappedByteBuffer)chunk).force();
+    }
+
+    public synchronized void close() {
+        // the buffers are released when they are garbage collected
+        chunks = new ByteBuffer[0];
+        numpages = 0;
+        if (raf != null) {
+            try {
+                raf.close();
+            } catch (IOException e) { throw new RuntimeException(e); }
+            raf = null;
+            file.delete();
+        }
+    }
+}
@@ -24,8 +24,9 @@ package com.sun.electric.database.geometry.btree;
 /** A PageStorage that uses plain old memory. */
 public class MemoryPageStorage extends CachingPageStorage {
 
-    private       CachedPageImpl[] pages;
-    private       int              numpages;
+    // volatile so that readers of a published BTree.Version see the pages created before it
+    private volatile CachedPageImpl[] pages;
+    private volatile int              numpages;
 
     public MemoryPageStorage(int pagesize) {
         super(pagesize);
@@ -27,7 +27,9 @@ package com.sun.electric.database.geometry.btree;
  *  first PageStorage is "small but fast" and the second is "large but
  *  slow".
  *
- *  Might not be thread-safe.
+ *  Pages may be read by other threads while pages are created (as
+ *  readers of a published BTree.Version do); the move to the second
+ *  PageStorage happens with all reads and writes held off.
  */
 public class OverflowPageStorage extends PageStorage {
 
@@ -44,7 +46,7 @@ public class OverflowPageStorage extends PageStorage {
         this.highWaterMark = (int)(highWaterMark / getPageSize());
     } 
 
-    public int getNumPages() { return overflowed ? ps2.getNumPages() : ps1.getNumPages(); }
+    public synchronized int getNumPages() { return overflowed ? ps2.getNumPages() : ps1.getNumPages(); }
     public synchronized int createPage() {
         if (overflowed) return ps2.createPage();
         if (ps1.getNumPages() < highWaterMark) return ps1.createPage();
@@ -58,12 +60,12 @@ public class OverflowPageStorage extends PageStorage {
         ps1.close();
         return ps2.createPage();
     }
-    public void fsync(int pageid) { if (overflowed) ps2.fsync(pageid); else ps1.fsync(pageid); }
-    public void writePage(int pageid, byte[] buf, int ofs) {
+    public synchronized void fsync(int pageid) { if (overflowed) ps2.fsync(pageid); else ps1.fsync(pageid); }
+    public synchronized void writePage(int pageid, byte[] buf, int ofs) {
         if (overflowed) ps2.writePage(pageid, buf, ofs);
         else            ps1.writePage(pageid, buf, ofs);
     }
-    public void readPage(int pageid, byte[] buf, int ofs) {
+    public synchronized void readPage(int pageid, byte[] buf, int ofs) {
         if (overflowed) ps2.readPage(pageid, buf, ofs);
         else            ps1.readPage(pageid, buf, ofs);
     }
@@ -29,6 +29,9 @@ import com.sun.electric.util.math.AbstractFixpRectangle;
 import com.sun.electric.util.math.FixpCoord;
 import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
 import java.util.Iterator;
 
 /**
@@ -301,6 +304,90 @@ public class RTNode<T extends RTBounds> extends AbstractFixpRectangle {
         // delete geom from this R-tree node
         return whichRTN.removeRTNode(whichInd, env, root);
     }
+    /**
+     * Method to build an R-Tree of many RTBounds at once with Sort-Tile-Recursive packing.
+     * The objects are cut into vertical slices by X, each slice is cut into runs by Y,
+     * and each run becomes one leaf node. The upper levels are packed the same way from
+     * the nodes below. This is much faster than calling linkGeom for each object,
+     * and the nodes of the packed tree overlap less.
+     * @param geoms the RTBounds to put into the tree.
+     * @return root of the new R-Tree.
+     */
+    public static <T extends RTBounds> RTNode<T> bulkLoad(Collection<? extends T> geoms) {
+        if (geoms.isEmpty()) {
+            return makeTopLevel();
+        }
+        Object[] level = geoms.toArray();
+        boolean leaves = true;
+        for (;;) {
+            RTNode<T>[] nodes = packLevel(level, leaves);
+            if (nodes.length == 1) {
+                return nodes[0];
+            }
+            level = nodes;
+            leaves = false;
+        }
+    }
+
+    /**
+     * Method to pack one level of an R-Tree in bulkLoad.
+     * The children are spread evenly among the nodes, so each node has at least MINRTNODESIZE of them.
+     */
+    @SuppressWarnings("unchecked")
+    private static <T extends RTBounds> RTNode<T>[] packLevel(Object[] children, boolean leaves) {
+        int n = children.length;
+        int numNodes = (n + MAXRTNODESIZE - 1) / MAXRTNODESIZE;
+        int numSlices = (int)Math.ceil(Math.sqrt(numNodes));
+        RTNode<T>[] nodes = new RTNode[numNodes + numSlices];
+        int nodeIndex = 0;
+        Arrays.sort(children, BY_CENTER_X);
+        for (int slice = 0; slice < numSlices; slice++) {
+            int sliceStart = (int)((long)n * slice / numSlices);
+            int sliceEnd = (int)((long)n * (slice + 1) / numSlices);
+            int sliceSize = sliceEnd - sliceStart;
+            Arrays.sort(children, sliceStart, sliceEnd, BY_CENTER_Y);
+            int numRuns = (sliceSize + MAXRTNODESIZE - 1) / MAXRTNODESIZE;
+            for (int run = 0; run < numRuns; run++) {
+                int runStart = sliceStart + sliceSize * run / numRuns;
+                int runEnd = sliceStart + sliceSize * (run + 1) / numRuns;
+                RTNode<T> rtn = new RTNode<T>();
+                rtn.setFlag(leaves);
+                rtn.setTotal(runEnd - runStart);
+                for (int i = runStart; i < runEnd; i++) {
+                    rtn.setChild(i - runStart, children[i]);
+                    if (!leaves) {
+                        ((RTNode<T>)children[i]).setParent(rtn);
+                    }
+                }
+                rtn.figBounds();
+                nodes[nodeIndex++] = rtn;
+            }
+        }
+        return Arrays.copyOf(nodes, nodeIndex);
+    }
+
+    private static AbstractFixpRectangle packBounds(Object child) {
+        return child instanceof RTNode ? (RTNode<?>)child : ((RTBounds)child).getBounds();
+    }
+
+    private static final Comparator<Object> BY_CENTER_X = new Comparator<Object>() {
+        @Override
+        public int compare(Object o1, Object o2) {
+            AbstractFixpRectangle r1 = packBounds(o1);
+            AbstractFixpRectangle r2 = packBounds(o2);
+            return Long.compare(r1.getFixpMinX() + r1.getFixpMaxX(), r2.getFixpMinX() + r2.getFixpMaxX());
+        }
+    };
+
+    private static final Comparator<Object> BY_CENTER_Y = new Comparator<Object>() {
+        @Override
+        public int compare(Object o1, Object o2) {
+            AbstractFixpRectangle r1 = packBounds(o1);
+            AbstractFixpRectangle r2 = packBounds(o2);
+            return Long.compare(r1.getFixpMinY() + r1.getFixpMaxY(), r2.getFixpMinY() + r2.getFixpMaxY());
+        }
+    };
+
     private static int branchCount;
 
     /**
@@ -112,6 +112,7 @@ public class Eval
 				if (xInputs.size() > 0) EvalNOinputs(xInputs);
 
 				long brkFlag = EvalNodes(evList);
+				recycleEvents(evList);
 
 //				if (stopping(STOPREASONSIMULATE))
 //				{
@@ -391,12 +392,130 @@ public class Eval
 
 	/***************************************** SCHED *****************************************/
 
-	/** size of event array, must be power of 2 */		private static final int TSIZE		= 1024;
-	private static final int TMASK		= (TSIZE - 1);
+	/* The scheduler has two levels.  Events less than tSize DELTAs in the future
+	 * are kept in the event wheel, one list per slot, so that scheduling and finding
+	 * the next event are constant-time.  Events further out are kept in "farList",
+	 * sorted by time, and move into the wheel as simulation time reaches them.
+	 * Events are taken from a free list and returned to it when they are done,
+	 * so that a long simulation does not allocate an object per transition.
+	 */
+
+	/** default size of event array, must be power of 2 */	private static final int TSIZE		= 1024;
+	/** size of event array, must be power of 2 */		private int tSize = TSIZE;
+	private int tMask = (TSIZE - 1);
 
 	/** used as head of doubly-linked lists */			private Event [] evArray = new Event[TSIZE];
+	/** head of list of events beyond the wheel */		private Event farList;
+	/** free events, linked through fLink */			private Event freeList;
+
+	private Event getEVArray(long t) { return evArray[(int)(t & tMask)]; }
+
+	/**
+	 * Method to set the number of DELTAs covered by the event wheel.
+	 * Events further in the future are kept in a sorted list.
+	 * Discards all pending events, so it should be called before simulating.
+	 * @param size the size of the wheel, which must be a power of 2.
+	 */
+	public void setWheelSize(int size)
+	{
+		if (size <= 0 || (size & (size - 1)) != 0)
+			throw new IllegalArgumentException("event wheel size must be a power of 2: " + size);
+		tSize = size;
+		tMask = size - 1;
+		evArray = new Event[size];
+		initEvent();
+	}
+
+	/**
+	 * Get an event from the free list, or make a new one.
+	 */
+	private Event newEvent()
+	{
+		Event ev = freeList;
+		if (ev == null) return new Event();
+		freeList = ev.fLink;
+		return ev;
+	}
+
+	/**
+	 * Return a list of events, linked through fLink, to the free list.
+	 */
+	private void recycleEvents(Event evList)
+	{
+		Event next = null;
+		for(Event ev = evList; ev != null; ev = next)
+		{
+			next = ev.fLink;
+			recycleEvent(ev);
+		}
+	}
+
+	private void recycleEvent(Event ev)
+	{
+		ev.eNode = ev.cause = null;
+		ev.bLink = ev.nLink = null;
+		ev.fLink = freeList;
+		freeList = ev;
+	}
+
+	/**
+	 * Put an event in the event wheel, or in the far list if it is too far in the future.
+	 * Event lists are kept sorted by increasing event time, and events with the same time
+	 * are kept in the order that they were scheduled.
+	 */
+	private void scheduleEvent(Event ev)
+	{
+		long eTime = ev.nTime;
+		if (eTime - theSim.curDelta < tSize)
+		{
+			insertInWheel(ev);
+			return;
+		}
+
+		// far events are usually scheduled in time order, so search from the end
+		Event marker = farList;
+		while (marker.bLink != farList && marker.bLink.nTime > eTime)
+			marker = marker.bLink;
+
+		// insert event right before event pointed to by marker
+		ev.fLink = marker;
+		ev.bLink = marker.bLink;
+		marker.bLink.fLink = ev;
+		marker.bLink = ev;
+	}
+
+	private void insertInWheel(Event ev)
+	{
+		long eTime = ev.nTime;
+		Event marker = getEVArray(eTime);
+
+		// Check whether we need to insert-sort in the list
+		if ((marker.bLink != marker) && ((marker.bLink).nTime > eTime))
+		{
+			do { marker = marker.fLink; } while (marker.nTime <= eTime);
+		}
 
-	private Event getEVArray(long t) { return evArray[(int)(t & TMASK)]; }
+		// insert event right before event pointed to by marker
+		ev.fLink = marker;
+		ev.bLink = marker.bLink;
+		marker.bLink.fLink = ev;
+		marker.bLink = ev;
+	}
+
+	/**
+	 * Move the events of the far list that are less than tSize DELTAs after "base" into the wheel.
+	 */
+	private void advanceFarEvents(long base)
+	{
+		while (farList.fLink != farList && farList.fLink.nTime - base < tSize)
+		{
+			Event ev = farList.fLink;
+			farList.fLink = ev.fLink;
+			ev.fLink.bLink = farList;
+
+			insertInWheel(ev);
+		}
+	}
 
 	/**
 	 * find the next event to be processed by scanning event wheel.  Return
@@ -406,12 +525,13 @@ public class Eval
 	private Event getNextEvent(long stopTime)
 	{
 		if (nPending == 0) return null;
+		advanceFarEvents(theSim.curDelta);
 
 //if (DEBUG) System.out.println("Find events up to " + stopTime);
 		Event event = null;
 		boolean eventValid = false;
 		long time = theSim.maxTime;
-		for(long i = theSim.curDelta, limit = i + TSIZE; i < limit; i++)
+		for(long i = theSim.curDelta, limit = i + tSize; i < limit; i++)
 		{
 			event = getEVArray(i);
 			if (event != event.fLink)
@@ -427,6 +547,13 @@ public class Eval
 		}
 		if (!eventValid)
 		{
+			if (farList.fLink != farList && farList.fLink.nTime < time)
+			{
+				// nothing in the wheel: jump ahead to the first far event
+				time = farList.fLink.nTime;
+				if (time >= stopTime) return null;
+				advanceFarEvents(time);
+			}
 			if (time == theSim.maxTime)
 			{
 				System.out.println("*** internal error: no events but npending set");
@@ -492,6 +619,7 @@ public class Eval
 		nPending--;
 
 		freeFromNode(event, event.eNode);
+		recycleEvent(event);
 	}
 
 	/**
@@ -500,7 +628,7 @@ public class Eval
 	 */
 	public void enqueueEvent(Sim.Node n, int newValue, long delta, long rTime)
 	{
-		Event newEV = new Event();
+		Event newEV = newEvent();
 
 		// remember facts about this event
 		long eTime = theSim.curDelta + delta;
@@ -523,19 +651,7 @@ public class Eval
 		 * in event wheel.  Event lists are kept sorted by increasing
 		 * event time.
 		 */
-		Event marker = getEVArray(eTime);
-
-		// Check whether we need to insert-sort in the list
-		if ((marker.bLink != marker) && ((marker.bLink).nTime > eTime))
-		{
-			do { marker = marker.fLink; } while (marker.nTime <= eTime);
-		}
-
-		// insert event right before event pointed to by marker
-		newEV.fLink = marker;
-		newEV.bLink = marker.bLink;
-		marker.bLink.fLink = newEV;
-		marker.bLink = newEV;
+		scheduleEvent(newEV);
 		nPending++;
 //if (DEBUG) System.out.println("Adding event at " + newEV.nTime + " in enqueueEvent (cur="+theSim.curDelta+" delta="+delta);
 		/*
@@ -544,6 +660,7 @@ public class Eval
 		 */
 		if ((n.events != null) && (n.events.nTime > eTime))
 		{
+			Event marker;
 			for(marker = n.events; (marker.nLink != null) &&
 				(marker.nLink.nTime > eTime); marker = marker.nLink);
 			newEV.nLink = marker.nLink;
@@ -564,7 +681,7 @@ public class Eval
 		while(n.events != null)
 			freeEvent(n.events);
 
-		Event newEV = new Event();
+		Event newEV = newEvent();
 
 		// remember facts about this event
 		long eTime = theSim.curDelta;
@@ -593,12 +710,14 @@ public class Eval
 	 */
 	public void initEvent()
 	{
-		for(int i = 0; i < TSIZE; i++)
+		for(int i = 0; i < tSize; i++)
 		{
 			Event event = new Event();
 			evArray[i] = event;
 			event.fLink = event.bLink = event;
 		}
+		farList = new Event();
+		farList.fLink = farList.bLink = farList;
 		nPending = 0;
 		theSim.nEvent = 0;
 	}
@@ -625,17 +744,7 @@ public class Eval
 			nPending++;
 			long eTime = ev.nTime;
 //if (DEBUG) System.out.println("Adding of event at time "+eTime + " in requeueEvents");
-			Event target = getEVArray(eTime);
-
-			if ((target.bLink != target) && ((target.bLink).nTime > eTime))
-			{
-				do { target = target.fLink; } while(target.nTime <= eTime);
-			}
-
-			ev.fLink = target;
-			ev.bLink = target.bLink;
-			target.bLink.fLink = ev;
-			target.bLink = ev;
+			scheduleEvent(ev);
 
 			if (thread)
 			{
@@ -662,7 +771,7 @@ public class Eval
 		if (nPending == 0) return;
 		System.out.println("Warning: there are " + nPending + " pending events:");
 
-//		for(int i=0; i<TSIZE; i++)
+//		for(int i=0; i<tSize; i++)
 //		{
 //			Event hdr = evArray[i];
 //			for(Event evhdr = hdr.fLink; evhdr != hdr; evhdr = evhdr.fLink)
@@ -682,10 +791,10 @@ public class Eval
 		int nEvents = 0;
 		Event tmpList = null;
 
-		// first empty out the time wheel onto the temporary list
-		for(int i=0; i<TSIZE; i++)
+		// first empty out the time wheel and the far list onto the temporary list
+		for(int i=0; i<=tSize; i++)
 		{
-			Event hdr = evArray[i];
+			Event hdr = i < tSize ? evArray[i] : farList;
 			Event next = null;
 			for(Event evhdr = hdr.fLink; evhdr != hdr; evhdr = next)
 			{
@@ -700,6 +809,7 @@ public class Eval
 				if (isInc == 0 && ev.nTime - ev.delay >= bTime)
 				{
 					freeFromNode(ev, ev.eNode);
+					recycleEvent(ev);
 				} else
 				{
 					ev.fLink = tmpList;		// move it to tmp list
@@ -730,18 +840,7 @@ public class Eval
 
 			ev.nTime -= ev.delay;
 			ev.type = Sim.PENDING;
-			long eTime = ev.nTime;
-			Event target = getEVArray(eTime);
-
-			if ((target.bLink != target) && (target.bLink.nTime > eTime))
-			{
-				do { target = target.fLink; } while(target.nTime <= eTime);
-			}
-
-			ev.fLink = target;
-			ev.bLink = target.bLink;
-			target.bLink.fLink = ev;
-			target.bLink = ev;
+			scheduleEvent(ev);
 		}
 
 		nPending = nEvents;
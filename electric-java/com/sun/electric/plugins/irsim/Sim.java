@@ -43,7 +43,9 @@ public class Sim implements SimAPI
 		/** low to high transition time in DELTA's */			short          tpLH;
 		/** high to low transition time in DELTA's */			short          tpHL;
 //		/** signal in the waveform window (if displayed) */		Signal<DigitalSample>  sig;
-		/** combines time, nindex, cap, and event */			private Object c;
+		/** combines time and nindex */						private long   c;
+		/** scratch capacitance */							private float  cCap;
+		/** scratch event */									private Eval.Event cEvent;
 		/** combines cause, punts, and tranT */					private Object t;
 		/** combines thev, next, and tranN */					private Object n;
 
@@ -65,10 +67,10 @@ public class Sim implements SimAPI
 			index = theSim.nodeIndexCounter++;
 		}
 
-		void setTime(long time) { c = new Long(time); }
-		void setNIndex(long nIndex) { c = new Long(nIndex); }
-		void setCap(float cap) { c = new Float(cap); }
-		void setEvent(Eval.Event event) { c = event; }
+		void setTime(long time) { c = time; }
+		void setNIndex(long nIndex) { c = nIndex; }
+		void setCap(float cap) { cCap = cap; }
+		void setEvent(Eval.Event event) { cEvent = event; }
 
 		void setCause(Node cause) { t = cause; }
 		void setPunts(HistEnt punts) { t = punts; }
@@ -77,10 +79,10 @@ public class Sim implements SimAPI
 		public void setNext(SimAPI.Node next) { n = (Node)next; }
 		void setTrans(Trans trans) { n = trans; }
 
-		public long getTime() { return ((Long)c).longValue(); }
-		long getNIndex() { return ((Long)c).longValue(); }
-		float getCap() { return ((Float)c).floatValue(); }
-		Eval.Event getEvent() { return (Eval.Event)c; }
+		public long getTime() { return c; }
+		long getNIndex() { return c; }
+		float getCap() { return cCap; }
+		Eval.Event getEvent() { return cEvent; }
 
 		public Node getCause() { return (Node)t; }
 		HistEnt getPunts() { return (HistEnt)t; }
@@ -40,13 +40,15 @@ import java.io.ObjectOutputStream;
 import java.lang.reflect.Field;
 import java.net.Socket;
 import java.util.ArrayList;
+import java.util.zip.InflaterInputStream;
 import javax.swing.SwingUtilities;
 
 /**
  *
  */
 class ClientJobManager {
-    /** stream for cleint read Snapshots. */    private final IdReader reader;
+    /** stream from server. */                  private final DataInputStream serverInputStream;
+    /** stream for cleint read Snapshots. */    private IdReader reader;
     /** stream for cleint to send Jobs. */      private final DataOutputStream clientOutputStream;
     /** Process that launched this. */          private final Process process;
 
@@ -58,7 +60,8 @@ class ClientJobManager {
         process = null;
         System.out.println("Attempting to connect to port " + serverPort + " ...");
         Socket socket = new Socket(serverMachineName, serverPort);
-        reader = new IdReader(new DataInputStream(new BufferedInputStream(socket.getInputStream())), IdManager.stdIdManager);
+        serverInputStream = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        reader = new IdReader(serverInputStream, IdManager.stdIdManager);
         clientOutputStream = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
     }
 
@@ -66,7 +69,8 @@ class ClientJobManager {
         this.process = process;
         this.skipOneLine = skipOneLine;
         System.out.println("Attempting to connect to server subprocess ...");
-        reader = new IdReader(new DataInputStream(new BufferedInputStream(process.getInputStream())), IdManager.stdIdManager);
+        serverInputStream = new DataInputStream(new BufferedInputStream(process.getInputStream()));
+        reader = new IdReader(serverInputStream, IdManager.stdIdManager);
         clientOutputStream = new DataOutputStream(new BufferedOutputStream(process.getOutputStream()));
     }
 
@@ -121,6 +125,9 @@ class ClientJobManager {
                 System.exit(1);
             }
             int connectionId = reader.readInt();
+            if (reader.readBoolean()) {
+                reader = new IdReader(new DataInputStream(new BufferedInputStream(new InflaterInputStream(serverInputStream))), IdManager.stdIdManager);
+            }
             Job.currentUI.patchConnectionId(connectionId);
             System.out.println("Connected id="+connectionId);
         } catch (IOException e) {
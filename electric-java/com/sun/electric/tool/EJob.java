@@ -64,6 +64,12 @@ public class EJob {
     public Snapshot oldSnapshot;
     public Snapshot newSnapshot;
     EditingPreferences editingPreferences;
+    /** database in which the job runs */
+    EDatabase database;
+    /** true if the job may run on the committed snapshot during a CHANGE job */
+    boolean examineDuringChanges;
+    /** true if the job was started on the result of the job which started it */
+    boolean onMySnapshot;
 
     /** progress */                             /*private*/ String progress = null;
     byte[] serializedJob;
@@ -137,11 +143,15 @@ public class EJob {
     }
 
     public Throwable deserializeToServer()
+    {
+        return deserializeToServer(EDatabase.serverDatabase());
+    }
+
+    Throwable deserializeToServer(EDatabase database)
     {
         try
         {
             final ClassLoader classLoader = getClassLoader();
-            EDatabase database = EDatabase.serverDatabase();
             ObjectInputStream in = new EObjectInputStream(new ByteArrayInputStream(serializedJob), database)
             {
                 @Override
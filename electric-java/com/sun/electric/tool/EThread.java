@@ -69,17 +69,18 @@ class EThread extends Thread {
             ejob = Job.serverJobManager.selectEJob();
             Job.logger.trace("EThread.run selectedJob {}", ejob.jobName);
             isServerThread = ejob.jobType != Job.Type.CLIENT_EXAMINE;
-            database = isServerThread ? EDatabase.serverDatabase() : EDatabase.clientDatabase();
+            // the job manager chose the database, which is at the committed snapshot for examine jobs during changes
+            database = ejob.database;
             ejob.changedFields = new ArrayList<Field>();
 //            Throwable jobException = null;
             Environment.setThreadEnvironment(database.getEnvironment());
             EditingPreferences.lowLevelSetThreadLocalEditingPreferences(ejob.editingPreferences);
-            userInterface = new ServerJobManager.UserInterfaceRedirect(ejob.jobKey);
+            userInterface = new ServerJobManager.UserInterfaceRedirect(ejob.jobKey, database);
             database.lock(!ejob.isExamine());
             ejob.oldSnapshot = database.backup();
             try {
                 if (ejob.jobType != Job.Type.CLIENT_EXAMINE && !ejob.jobKey.startedByServer()) {
-                    Throwable e = ejob.deserializeToServer();
+                    Throwable e = ejob.deserializeToServer(database);
                     if (e != null) {
                         throw e;
                     }
@@ -159,7 +160,9 @@ class EThread extends Thread {
                 Environment.setThreadEnvironment(null);
                 EditingPreferences.lowLevelSetThreadLocalEditingPreferences(null);
             }
-            putInCache(ejob.oldSnapshot, ejob.newSnapshot);
+            if (!isServerThread || database == EDatabase.serverDatabase()) {
+                putInCache(ejob.oldSnapshot, ejob.newSnapshot);
+            }
 
             String finishedEJobName = ejob.jobName;
             Job.serverJobManager.finishEJob(ejob);
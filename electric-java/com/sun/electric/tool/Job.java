@@ -113,7 +113,7 @@ import org.slf4j.LoggerFactory;
 public abstract class Job implements Serializable {
 
 	private static boolean GLOBALDEBUG = false;
-	static final int PROTOCOL_VERSION = 20; // Mar 17
+	static final int PROTOCOL_VERSION = 21; // cell differences
 	public static boolean LOCALDEBUGFLAG;
 	// private static final String CLASS_NAME = Job.class.getName();
 	static final Logger logger = LoggerFactory.getLogger(Job.class);
@@ -342,7 +342,7 @@ public abstract class Job implements Serializable {
 			ejob.client = Job.serverJobManager.serverConnections.get(curJobKey.clientId);
 			ejob.jobKey = ejob.client.newJobId(startedByServer, doItOnServer);
 			timer.start();
-			ejob.serialize(EDatabase.serverDatabase());
+			ejob.serialize(ui.getDatabase());
 			ejob.clientJob = null;
 			Job.serverJobManager.addJob(ejob, onMySnapshot);
 		} else {
@@ -522,6 +522,23 @@ public abstract class Job implements Serializable {
 		return deleteWhenDone;
 	}
 
+	/**
+	 * Method to let this SERVER_EXAMINE Job run while a CHANGE Job is running,
+	 * instead of waiting for it. The Job then runs on a copy of the database at
+	 * the end of the last finished CHANGE Job, so it doesn't see the changes of
+	 * the running one. The doIt method must reach the database through
+	 * getDatabase() or the Cells of the Job, not through
+	 * EDatabase.serverDatabase(). It must be called before startJob.
+	 * Jobs that write their results back, such as DRC with its check dates,
+	 * must not use it: the running CHANGE Job may have edited those Cells.
+	 * 
+	 * @param examineDuringChanges
+	 *            true to let this Job run during changes
+	 */
+	public void setExamineDuringChanges(boolean examineDuringChanges) {
+		ejob.examineDuringChanges = examineDuringChanges;
+	}
+
 	/**
 	 * Check if we are scheduled to abort. If so, print message if non null and
 	 * return true. This is because setAbort and getScheduledToAbort are
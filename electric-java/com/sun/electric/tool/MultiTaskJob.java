@@ -212,7 +212,7 @@ public abstract class MultiTaskJob<TaskKey, TaskResult, Result> extends Job {
 
         private MultiTaskWorkingThread(int id) {
             super("WorkingThread-" + id);
-            userInterface = new ServerJobManager.UserInterfaceRedirect(ownerThread.ejob.jobKey);
+            userInterface = new ServerJobManager.UserInterfaceRedirect(ownerThread.ejob.jobKey, ownerThread.database);
             ejob = ownerThread.ejob;
             isServerThread = ownerThread.isServerThread;
             database = ownerThread.database;
@@ -25,6 +25,7 @@ import com.sun.electric.database.hierarchy.Cell;
 import com.sun.electric.database.hierarchy.EDatabase;
 import com.sun.electric.database.hierarchy.Library;
 import com.sun.electric.Main;
+import com.sun.electric.database.Snapshot;
 import com.sun.electric.database.id.CellId;
 import com.sun.electric.database.id.IdWriter;
 import com.sun.electric.database.id.LibId;
@@ -82,6 +83,12 @@ public class ServerJobManager {
     private int numThreads;
     private final int maxNumThreads;
     private boolean runningChangeJob;
+    /** snapshot at the end of the last finished CHANGE or UNDO job */
+    private Snapshot committedSnapshot;
+    /** copy of the database at a committed snapshot, for examine jobs during changes */
+    private EDatabase examineDatabase;
+    /** number of started jobs which run in examineDatabase */
+    private int numExamineDatabaseJobs;
 //    private boolean guiChanged;
     private boolean signalledEThread;
     private static int maxNumberOfThreads;
@@ -193,13 +200,34 @@ public class ServerJobManager {
     void addJob(EJob ejob, boolean onMySnapshot) {
         lock();
         try {
+            queueJob(ejob, onMySnapshot);
+            invokeEThread();
+        } finally {
+            unlock();
+        }
+    }
+
+    /** Put job in the list of waiting jobs without waking a server thread */
+    void queueJob(EJob ejob, boolean onMySnapshot) {
+        lock();
+        try {
+            ejob.onMySnapshot = onMySnapshot;
             if (onMySnapshot) {
                 waitingJobs.add(0, ejob);
             } else {
                 waitingJobs.add(ejob);
             }
             setEJobState(ejob, EJob.State.WAITING, onMySnapshot ? EJob.WAITING_NOW : "waiting");
-            invokeEThread();
+        } finally {
+            unlock();
+        }
+    }
+
+    /** Tells if the first waiting job can start now */
+    boolean canStartJob() {
+        lock();
+        try {
+            return canDoIt();
         } finally {
             unlock();
         }
@@ -342,7 +370,51 @@ public class ServerJobManager {
             return false;
         }
         EJob ejob = waitingJobs.get(0);
-        return startedJobs.isEmpty() || !runningChangeJob && ejob.isExamine();
+        if (ejob.isExamine()) {
+            return !runningChangeJob || canExamineCommitted(ejob);
+        }
+        // jobs in examineDatabase don't hold the server database
+        return startedJobs.size() == numExamineDatabaseJobs;
+    }
+
+    /**
+     * Tells if an examine job can run now on the committed snapshot,
+     * beside the running change job.
+     * The examine database is brought to the committed snapshot only when no job uses it.
+     */
+    private boolean canExamineCommitted(EJob ejob) {
+        if (!ejob.examineDuringChanges || ejob.jobType != Job.Type.SERVER_EXAMINE) {
+            return false;
+        }
+        // jobs started by a running job expect its database
+        if (ejob.onMySnapshot || ejob.startedByServer()) {
+            return false;
+        }
+        if (committedSnapshot == null) {
+            return false;
+        }
+        return numExamineDatabaseJobs == 0 || examineDatabase.backup() == committedSnapshot;
+    }
+
+    /**
+     * Returns the examine database at the committed snapshot.
+     * It must be called when no job runs in the examine database.
+     */
+    private EDatabase getExamineDatabase() {
+        assert numExamineDatabaseJobs == 0;
+        if (examineDatabase == null) {
+            examineDatabase = new EDatabase(committedSnapshot, "examineDB");
+        } else if (examineDatabase.backup() != committedSnapshot) {
+            examineDatabase.lock(true);
+            try {
+                examineDatabase.lowLevelSetCanUndoing(true);
+                examineDatabase.undo(committedSnapshot);
+                examineDatabase.lowLevelSetCanUndoing(false);
+            } finally {
+                examineDatabase.unlock();
+            }
+        }
+        return examineDatabase;
     }
 
     private void setEJobState(EJob ejob, EJob.State newState, String info) {
@@ -367,8 +439,13 @@ public class ServerJobManager {
                 } else {
                     assert oldState == EJob.State.RUNNING;
                     removed = startedJobs.remove(ejob);
-                    if (startedJobs.isEmpty()) {
+                    if (examineDatabase != null && ejob.database == examineDatabase) {
+                        numExamineDatabaseJobs--;
+                    } else if (!ejob.isExamine()) {
                         runningChangeJob = false;
+                        if (ejob.newSnapshot != null) {
+                            committedSnapshot = ejob.newSnapshot;
+                        }
                     }
                 }
                 assert removed;
@@ -477,12 +554,22 @@ public class ServerJobManager {
                     EJob ejob = waitingJobs.remove(0);
                     startedJobs.add(ejob);
                     if (ejob.isExamine()) {
-                        assert !runningChangeJob;
+                        if (runningChangeJob) {
+                            // run on the committed snapshot, without the changes of the running job
+                            if (numExamineDatabaseJobs == 0) {
+                                getExamineDatabase();
+                            }
+                            numExamineDatabaseJobs++;
+                            ejob.database = examineDatabase;
+                        } else {
+                            ejob.database = ejob.jobType == Job.Type.CLIENT_EXAMINE ? EDatabase.clientDatabase() : EDatabase.serverDatabase();
+                        }
                         invokeEThread();
                     } else {
-                        assert startedJobs.size() == 1;
+                        assert startedJobs.size() == numExamineDatabaseJobs + 1;
                         assert !runningChangeJob;
                         runningChangeJob = true;
+                        ejob.database = EDatabase.serverDatabase();
                     }
                     setEJobState(ejob, EJob.State.RUNNING, "running");
                     return ejob;
@@ -521,9 +608,13 @@ public class ServerJobManager {
         private int progressValue = -1;
 
         UserInterfaceRedirect(Job.Key jobKey) {
+            this(jobKey, jobKey.doItOnServer ? EDatabase.serverDatabase() : EDatabase.clientDatabase());
+        }
+
+        UserInterfaceRedirect(Job.Key jobKey, EDatabase database) {
             this.jobKey = jobKey;
             client = Job.serverJobManager.serverConnections.get(jobKey.clientId);
-            database = jobKey.doItOnServer ? EDatabase.serverDatabase() : EDatabase.clientDatabase();
+            this.database = database;
         }
 
         UserInterfaceRedirect(Job.Key jobKey, AbstractUserInterface client) {
@@ -30,19 +30,30 @@ import com.sun.electric.database.id.IdWriter;
 import com.sun.electric.tool.Client.ServerEvent;
 
 import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.ByteArrayInputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.ObjectInputStream;
 import java.io.OutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
 
 /**
  * Class for maintaining Connection on Server side.
  */
 public class StreamClient extends Client {
-    private final IdWriter writer;
+    /** True to compress the stream after the connection header, set by the electric.compressSnapshots property */
+    private static final boolean COMPRESS_SNAPSHOTS = Boolean.getBoolean("electric.compressSnapshots");
+    private final ByteCounter byteCounter;
+    private IdWriter writer;
+    /** number of Snapshots sent to this client */
+    private int numSnapshotsSent;
+    /** number of bytes of Snapshots sent to this client */
+    private long snapshotBytesSent;
     private Snapshot currentSnapshot = EDatabase.serverDatabase().getInitialSnapshot();
     private final ServerEventDispatcher dispatcher;
     private final ClientReader reader;
@@ -51,7 +62,8 @@ public class StreamClient extends Client {
 
     StreamClient(int connectionId, InputStream inputStream, OutputStream outputStream) {
         super(connectionId);
-        writer = new IdWriter(IdManager.stdIdManager, new DataOutputStream(outputStream));
+        byteCounter = new ByteCounter(outputStream);
+        writer = new IdWriter(IdManager.stdIdManager, new DataOutputStream(byteCounter));
         dispatcher = new ServerEventDispatcher();
         reader = inputStream != null ? new ClientReader(inputStream) : null;
     }
@@ -72,6 +84,13 @@ public class StreamClient extends Client {
                     reader.start();
                 writer.writeInt(Job.PROTOCOL_VERSION);
                 writer.writeInt(connectionId);
+                writer.writeBoolean(COMPRESS_SNAPSHOTS);
+                if (COMPRESS_SNAPSHOTS) {
+                    // nothing was written through the old writer's id tables yet
+                    writer.flush();
+                    OutputStream compressed = new DeflaterOutputStream(byteCounter, new Deflater(Deflater.BEST_SPEED), true);
+                    writer = new IdWriter(IdManager.stdIdManager, new DataOutputStream(new BufferedOutputStream(compressed)));
+                }
                 writeSnapshot(lastEvent);
                 for (;;) {
                     writer.flush();
@@ -105,10 +124,41 @@ public class StreamClient extends Client {
         writer.writeByte((byte)1);
         writer.writeLong(event.getTimeStamp());
         Snapshot newSnapshot = event.getSnapshot();
+        writer.flush();
+        long startBytes = byteCounter.count;
         newSnapshot.writeDiffs(writer, currentSnapshot);
+        writer.flush();
+        long bytes = byteCounter.count - startBytes;
+        numSnapshotsSent++;
+        snapshotBytesSent += bytes;
+        Job.logger.debug("Snapshot {} sent to connection {} in {} bytes ({} bytes in {} snapshots)",
+                newSnapshot.snapshotId, connectionId, bytes, snapshotBytesSent, numSnapshotsSent);
         currentSnapshot = newSnapshot;
     }
 
+    /**
+     * Stream which counts the bytes that go to the connection.
+     */
+    private static class ByteCounter extends FilterOutputStream {
+        private long count;
+
+        private ByteCounter(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+
     private class ClientReader extends Thread {
         private final DataInputStream in;
 
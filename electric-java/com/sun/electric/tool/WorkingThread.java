@@ -45,7 +45,7 @@ public class WorkingThread extends EThread {
         assert job.ejob == ownerThread.ejob;
         assert job.ejob.jobKey.doItOnServer;
         assert job.ejob.jobType == Job.Type.SERVER_EXAMINE;
-        userInterface = new ServerJobManager.UserInterfaceRedirect(ownerThread.ejob.jobKey);
+        userInterface = new ServerJobManager.UserInterfaceRedirect(ownerThread.ejob.jobKey, ownerThread.database);
         ejob = ownerThread.ejob;
         isServerThread = ownerThread.isServerThread;
         database = ownerThread.database;
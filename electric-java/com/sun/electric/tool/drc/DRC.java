@@ -1601,8 +1601,9 @@ public class DRC extends Listener
 		// update variables on the technology
 		tech.setRuleVariables(newRules);
 
-		// flush the cache of rules
+		// flush the cache of rules and the results found with the old ones
 		if (currentTechnology == tech) currentTechnology = null;
+		DRCResultCache.clear();
 	}
 
 	/****************************** INDIVIDUAL DESIGN RULES ******************************/
@@ -1856,6 +1857,7 @@ public class DRC extends Listener
                 "' in '" + tech.getTechName() + "'");
         Set<Cell> cleanSpacingDRCDate = new HashSet<Cell>();
         Set<Cell> cleanAreaDRCDate = new HashSet<Cell>();
+        DRCResultCache.clear();
 
         int bit = f.getType().getBit();
 
@@ -2245,6 +2247,14 @@ public class DRC extends Listener
         @BooleanPref(node=DRC_NODE, key = "MinMultiThread", factory = false)
         public boolean isMultiThreaded;
 
+        /** Whether hierarchical DRC of a whole cell should split the top cell into tiles checked in parallel. The default is "false". */
+        @BooleanPref(node = DRC_NODE, key = "QuickTileParallel", factory = false)
+        public boolean isTileParallel;
+
+        /** Whether hierarchical DRC should reuse the results of cells that didn't change since the last check. The default is "false". */
+        @BooleanPref(node = DRC_NODE, key = "CacheResults", factory = false)
+        public boolean cacheResults;
+
         public Map<Technology,ECoord> resolutions = new HashMap<Technology,ECoord>();
         public Map<Technology,String> overrides = new HashMap<Technology,String>();
 
@@ -2417,6 +2427,7 @@ public class DRC extends Listener
         {
             storedSpacingDRCDate.clear();
             storedAreaDRCDate.clear();
+            DRCResultCache.clear();
             // Always clean the dates as variables.
 //            if (!isDatesStoredInMemory())
             {
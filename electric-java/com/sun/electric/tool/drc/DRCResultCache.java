@@ -0,0 +1,258 @@
+/* -*- tab-width: 4 -*-
+ *
+ * Electric(tm) VLSI Design System
+ *
+ * File: DRCResultCache.java
+ *
+ * Copyright (c) 2012, Static Free Software. All rights reserved.
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sun.electric.tool.drc;
+
+import com.sun.electric.database.CellRevision;
+import com.sun.electric.database.ImmutableArcInst;
+import com.sun.electric.database.ImmutableNodeInst;
+import com.sun.electric.database.hierarchy.Cell;
+import com.sun.electric.database.id.CellId;
+import com.sun.electric.database.topology.ArcInst;
+import com.sun.electric.database.topology.Geometric;
+import com.sun.electric.database.topology.NodeInst;
+import com.sun.electric.technology.Technology;
+import com.sun.electric.technology.XMLRules;
+import com.sun.electric.tool.user.ErrorLogger;
+import com.sun.electric.util.math.ECoord;
+
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Class to remember the results of hierarchical DRC between runs.
+ * The results of a cell are kept per node and arc, together with the CellRevision that was checked,
+ * so the next run can compare revisions and only check again the parts of the cell that changed.
+ * Like the DRC dates, the results of a cell don't depend on how the cell is connected in its parents.
+ * Results are reused only by a check with the same rules and options.
+ * The number of node and arc results is bounded, and the cells checked least recently are forgotten first,
+ * so that a large hierarchy keeps the results of as many cells as fit rather than a fixed number of cells.
+ */
+class DRCResultCache
+{
+    /** the number of node and arc results remembered */	private static final int MAX_OBJECTS = 1 << 20;
+    /** results of the last check of each cell, least recently used first */
+    private static final Map<CellId,CellResult> results = new LinkedHashMap<CellId,CellResult>(16, 0.75f, true);
+    /** the number of node and arc results in all cells */	private static int numObjects;
+
+    /**
+     * The rules and options that the results of a check depend on.
+     */
+    static class Settings
+    {
+        /** the technology of the top cell */				private final Technology tech;
+        /** its design rules (a new object when they change) */	private final XMLRules rules;
+        /** the minimum resolution */						private final ECoord resolution;
+        /** the DRC bits used in the check */				private final int activeBits;
+        /** the kind of error search */						private final DRC.DRCCheckMode errorType;
+        /** true if center cuts of contacts are ignored */		private final boolean ignoreCenterCuts;
+
+        Settings(Technology tech, XMLRules rules, DRC.ReportInfo reportInfo)
+        {
+            this.tech = tech;
+            this.rules = rules;
+            this.resolution = reportInfo.minAllowedResolution;
+            this.activeBits = reportInfo.activeSpacingBits;
+            this.errorType = reportInfo.errorTypeSearch;
+            this.ignoreCenterCuts = reportInfo.ignoreCenterCuts;
+        }
+
+        public boolean equals(Object o)
+        {
+            if (!(o instanceof Settings)) return false;
+            Settings other = (Settings)o;
+            return tech == other.tech && rules == other.rules && activeBits == other.activeBits &&
+                errorType == other.errorType && ignoreCenterCuts == other.ignoreCenterCuts &&
+                (resolution == null ? other.resolution == null : resolution.equals(other.resolution));
+        }
+
+        public int hashCode() { return tech.hashCode() ^ activeBits; }
+    }
+
+    /**
+     * The results of one node or arc: its bounds and the errors found when it was checked.
+     */
+    static class ObjectResult
+    {
+        final Rectangle2D bounds;
+        final List<ErrorLogger.MessageLog> logs;
+
+        ObjectResult(Rectangle2D bounds, List<ErrorLogger.MessageLog> logs)
+        {
+            this.bounds = bounds;
+            this.logs = logs;
+        }
+    }
+
+    /**
+     * The results of one cell.
+     */
+    static class CellResult
+    {
+        /** the revision of the cell that was checked */	final CellRevision revision;
+        /** the rules and options of the check */			final Settings settings;
+        /** results of the nodes by node id */				final Map<Integer,ObjectResult> nodes = new HashMap<Integer,ObjectResult>();
+        /** results of the arcs by arc id */					final Map<Integer,ObjectResult> arcs = new HashMap<Integer,ObjectResult>();
+
+        CellResult(CellRevision revision, Settings settings)
+        {
+            this.revision = revision;
+            this.settings = settings;
+        }
+
+        int size() { return nodes.size() + arcs.size(); }
+
+        void put(Geometric geom, List<ErrorLogger.MessageLog> logs)
+        {
+            Rectangle2D bounds = new Rectangle2D.Double();
+            bounds.setRect(geom.getBounds());
+            ObjectResult r = new ObjectResult(bounds, logs);
+            if (geom instanceof NodeInst)
+                nodes.put(((NodeInst)geom).getD().nodeId, r);
+            else
+                arcs.put(((ArcInst)geom).getD().arcId, r);
+        }
+
+        ObjectResult get(Geometric geom)
+        {
+            return (geom instanceof NodeInst) ? nodes.get(((NodeInst)geom).getD().nodeId) :
+                arcs.get(((ArcInst)geom).getD().arcId);
+        }
+
+        /**
+         * Method to tell whether the exports of the cell changed since this check.
+         * @param current the current revision of the cell.
+         * @return true if the exports may have changed.
+         */
+        boolean exportsChanged(CellRevision current)
+        {
+            return current.exports != revision.exports;
+        }
+
+        /**
+         * Method to find the regions of a cell that changed since this check.
+         * Moved or resized nodes and arcs give their old and new bounds.
+         * @param current the current revision of the cell.
+         * @param regions the list where the changed bounds are added.
+         * @return false if the connectivity of the cell may have changed (nodes or arcs were
+         * added or removed, nodes changed prototype or arcs changed ends) so the whole cell must be checked.
+         */
+        boolean findChangedRegions(Cell cell, CellRevision current, List<Rectangle2D> regions)
+        {
+            if (current == revision) return true;
+            if (exportsChanged(current)) return false;
+            if (current.nodes.size() != revision.nodes.size() || current.arcs.size() != revision.arcs.size())
+                return false;
+            for (ImmutableNodeInst n : current.nodes)
+            {
+                ImmutableNodeInst old = revision.getNodeById(n.nodeId);
+                if (old == n) continue;
+                if (old == null || old.protoId != n.protoId) return false;
+                ObjectResult r = nodes.get(Integer.valueOf(n.nodeId));
+                if (r == null) return false;
+                regions.add(r.bounds);
+                regions.add(cell.getNodeById(n.nodeId).getBounds());
+            }
+            for (ImmutableArcInst a : current.arcs)
+            {
+                ImmutableArcInst old = revision.getArcById(a.arcId);
+                if (old == a) continue;
+                if (old == null || old.headNodeId != a.headNodeId || old.tailNodeId != a.tailNodeId ||
+                    old.headPortId != a.headPortId || old.tailPortId != a.tailPortId)
+                    return false;
+                ObjectResult r = arcs.get(Integer.valueOf(a.arcId));
+                if (r == null) return false;
+                regions.add(r.bounds);
+                regions.add(cell.getArcById(a.arcId).getBounds());
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Method to return the results of the last check of a cell.
+     * @param cellId the cell.
+     * @param settings the rules and options of the current check.
+     * @return the results, or null if the cell was not checked with the same settings.
+     */
+    static synchronized CellResult getResult(CellId cellId, Settings settings)
+    {
+        CellResult r = results.get(cellId);
+        return (r != null && r.settings.equals(settings)) ? r : null;
+    }
+
+    /**
+     * Method to store the results of a check of a cell.
+     * The results of the cells checked least recently are forgotten until the new ones fit.
+     * A cell with more results than the bound is remembered alone.
+     * @param cellId the cell.
+     * @param result the results.
+     */
+    static synchronized void putResult(CellId cellId, CellResult result)
+    {
+        CellResult old = results.remove(cellId);
+        if (old != null) numObjects -= old.size();
+        for (Iterator<CellResult> it = results.values().iterator(); it.hasNext() && numObjects + result.size() > MAX_OBJECTS; )
+        {
+            numObjects -= it.next().size();
+            it.remove();
+        }
+        results.put(cellId, result);
+        numObjects += result.size();
+    }
+
+    /**
+     * Method to forget the results of all checks.
+     * Called when the DRC dates are reset and when the design rules change.
+     */
+    static synchronized void clear()
+    {
+        results.clear();
+        numObjects = 0;
+    }
+
+    /**
+     * Method to collect the logs added to an ErrorLogger since some point.
+     * @param errorLogger the ErrorLogger.
+     * @param prevErrors the number of errors before.
+     * @param prevWarns the number of warnings before.
+     * @return the new errors and warnings.
+     */
+    static List<ErrorLogger.MessageLog> getNewLogs(ErrorLogger errorLogger, int prevErrors, int prevWarns)
+    {
+        int numErrors = errorLogger.getNumErrors();
+        int numWarns = errorLogger.getNumWarnings();
+        if (numErrors == prevErrors && numWarns == prevWarns)
+            return Collections.emptyList();
+        List<ErrorLogger.MessageLog> logs = new ArrayList<ErrorLogger.MessageLog>();
+        for (int i = prevErrors; i < numErrors; i++)
+            logs.add(errorLogger.getLog(i));
+        for (int i = prevWarns; i < numWarns; i++)
+            logs.add(errorLogger.getLog(numErrors + i));
+        return logs;
+    }
+}
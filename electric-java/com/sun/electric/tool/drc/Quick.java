@@ -21,6 +21,8 @@
  */
 package com.sun.electric.tool.drc;
 
+import com.sun.electric.database.CellRevision;
+import com.sun.electric.database.geometry.ERectangle;
 import com.sun.electric.database.geometry.GeometryHandler;
 import com.sun.electric.database.geometry.Poly;
 import com.sun.electric.database.geometry.PolyBase;
@@ -40,6 +42,8 @@ import com.sun.electric.database.topology.ArcInst;
 import com.sun.electric.database.topology.Geometric;
 import com.sun.electric.database.topology.NodeInst;
 import com.sun.electric.database.topology.PortInst;
+import com.sun.electric.database.topology.RTBounds;
+import com.sun.electric.database.topology.RTNode;
 import com.sun.electric.database.variable.VarContext;
 import com.sun.electric.database.variable.Variable;
 import com.sun.electric.technology.*;
@@ -57,6 +61,8 @@ import java.awt.geom.Area;
 import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 /**
  * This is the "quick" DRC which does full hierarchical examination of the circuit.
@@ -125,6 +131,14 @@ public class Quick
 	/** for tracking the time of good DRC. */					private HashSet<Cell> goodAreaDRCDate = new HashSet<Cell>();
 	/** for tracking cells that need to clean good DRC vars */	private HashSet<Cell> cleanAreaDRCDate = new HashSet<Cell>();
 	/** Top cell for DRC */                                     private Cell topCell;
+	/** true if only objects of the top cell in a tile are checked */	private boolean inTile;
+	/** the tile of the top cell (half-open in X and Y) */		private double tileLX, tileHX, tileLY, tileHY;
+	/** false to skip nodes and arcs of the top cell */			private boolean checkTopContents = true;
+	/** false to skip the subcells of the top cell */			private boolean checkSubCells = true;
+	/** false to leave DRC dates to the caller */				private boolean updateDates = true;
+	/** true to reuse results of previous checks */			private boolean useResultCache;
+	/** the rules and options that reused results must match */	private DRCResultCache.Settings resultCacheSettings;
+	/** cells checked again in this run, and whether their exports changed */	private Map<Cell,Boolean> recheckedCells = new HashMap<Cell,Boolean>();
     /** Miscellaneous data for DRC */                            private DRC.ReportInfo reportInfo;
 
 //    /* for figuring out which layers are valid for DRC */
@@ -153,10 +167,164 @@ public class Quick
 	public static void checkDesignRules(ErrorLogger errorLog, Cell cell, Geometric[] geomsToCheck, boolean[] validity,
                                         Rectangle2D bounds, DRC.CheckDRCJob drcJob, DRC.DRCPreferences dp, GeometryHandler.GHMode mode, boolean onlyArea)
 	{
+        if (dp.isTileParallel && geomsToCheck == null && bounds == null && !onlyArea &&
+            checkDesignRulesInTiles(errorLog, cell, drcJob, dp, mode))
+            return;
 		Quick q = new Quick(drcJob, dp, mode);
         q.doCheck(errorLog, cell, geomsToCheck, validity, bounds, onlyArea);
 	}
 
+    /**
+     * Method to do a hierarchical DRC check on the whole cell "cell", splitting the top cell into tiles.
+     * Each tile owns the nodes and arcs of the top cell whose center is inside it, and checks them
+     * against all their neighbors (so the worst interaction distance acts as the halo around the tile).
+     * The subcells and the area rules are checked by one more checker. All checkers run in parallel,
+     * each with its own ErrorLogger, and the errors found twice along tile borders are merged.
+     * Not done when only the first error of each cell is wanted, since every tile would report its own.
+     * @return false if the cell is too small to be split, so it must be checked in the usual way.
+     */
+    private static boolean checkDesignRulesInTiles(ErrorLogger errorLog, Cell cell, DRC.CheckDRCJob drcJob,
+                                                   DRC.DRCPreferences dp, GeometryHandler.GHMode mode)
+    {
+        Technology tech = cell.getTechnology();
+        XMLRules rules = DRC.getRules(tech);
+        if (rules == null || rules.getNumberOfRules() == 0) return false;
+        if (dp.errorType == DRC.DRCCheckMode.ERROR_CHECK_CELL) return false;
+
+        // tiles are much larger than the worst interaction distance
+        int numThreads = Runtime.getRuntime().availableProcessors();
+        Rectangle2D cellBounds = cell.getBounds();
+        double minTileSize = 4 * DRC.getWorstSpacingDistance(tech, -1);
+        int perSide = (int)Math.ceil(Math.sqrt(numThreads));
+        int nx = perSide, ny = perSide;
+        if (minTileSize > 0)
+        {
+            nx = Math.max(1, Math.min(nx, (int)(cellBounds.getWidth() / minTileSize)));
+            ny = Math.max(1, Math.min(ny, (int)(cellBounds.getHeight() / minTileSize)));
+        }
+        if (numThreads <= 1 || nx * ny <= 1) return false;
+
+        List<Quick> checkers = new ArrayList<Quick>();
+        Quick hierarchyChecker = new Quick(drcJob, dp, mode);
+        hierarchyChecker.checkTopContents = false;
+        hierarchyChecker.updateDates = false;
+        checkers.add(hierarchyChecker);
+        double tileWidth = cellBounds.getWidth() / nx;
+        double tileHeight = cellBounds.getHeight() / ny;
+        for (int i = 0; i < nx; i++)
+        {
+            for (int j = 0; j < ny; j++)
+            {
+                Quick q = new Quick(drcJob, dp, mode);
+                q.checkSubCells = false;
+                q.updateDates = false;
+                q.inTile = true;
+                // tiles on the border extend to infinity so that nothing is left out
+                q.tileLX = (i == 0) ? Double.NEGATIVE_INFINITY : cellBounds.getMinX() + i * tileWidth;
+                q.tileHX = (i == nx-1) ? Double.POSITIVE_INFINITY : cellBounds.getMinX() + (i+1) * tileWidth;
+                q.tileLY = (j == 0) ? Double.NEGATIVE_INFINITY : cellBounds.getMinY() + j * tileHeight;
+                q.tileHY = (j == ny-1) ? Double.POSITIVE_INFINITY : cellBounds.getMinY() + (j+1) * tileHeight;
+                checkers.add(q);
+            }
+        }
+        if (Job.getDebug())
+            System.out.println("Checking " + cell + " in " + (nx * ny) + " tiles");
+
+        // netlists are built lazily and not thread safe: build them here first
+        prepareNetlists(cell, new HashSet<Cell>());
+
+        final List<ErrorLogger> loggers = new ArrayList<ErrorLogger>();
+        for (int i = 0; i < checkers.size(); i++)
+            loggers.add(ErrorLogger.newInstance(errorLog.getSystem()));
+        ForkJoinPool pool = new ForkJoinPool(Math.min(numThreads, checkers.size()));
+        try
+        {
+            List<ForkJoinTask<?>> tasks = new ArrayList<ForkJoinTask<?>>();
+            for (int i = 0; i < checkers.size(); i++)
+            {
+                final Quick q = checkers.get(i);
+                final ErrorLogger logger = loggers.get(i);
+                final Cell topCell = cell;
+                tasks.add(pool.submit(new Runnable() {
+                    public void run() { q.doCheck(logger, topCell, null, null, null, false); }
+                }));
+            }
+            for (ForkJoinTask<?> task : tasks)
+                task.join();
+        } finally
+        {
+            pool.shutdown();
+        }
+
+        // merge the errors, dropping those found by two tiles
+        boolean exhaustive = dp.errorType == DRC.DRCCheckMode.ERROR_CHECK_EXHAUSTIVE;
+        Set<String> problemsFound = new HashSet<String>();
+        List<ErrorLogger.MessageLog> uniqueLogs = new ArrayList<ErrorLogger.MessageLog>();
+        for (ErrorLogger logger : loggers)
+        {
+            for (Iterator<ErrorLogger.MessageLog> it = logger.getLogs(); it.hasNext(); )
+            {
+                ErrorLogger.MessageLog ml = it.next();
+                if (problemsFound.add(ml.getProblemKey(exhaustive)))
+                    uniqueLogs.add(ml);
+            }
+        }
+        errorLog.addMessages(uniqueLogs);
+        errorLog.sortLogs();
+
+        // merge the DRC dates: a cell is good only if no checker found errors in it
+        if (drcJob == null || !drcJob.checkAbort())
+        {
+            Set<Cell> goodSpacingSet = new HashSet<Cell>();
+            Set<Cell> cleanSpacingSet = new HashSet<Cell>();
+            Set<Cell> goodAreaSet = new HashSet<Cell>();
+            Set<Cell> cleanAreaSet = new HashSet<Cell>();
+            for (Quick q : checkers)
+            {
+                cleanSpacingSet.addAll(q.cleanSpacingDRCDate);
+                cleanAreaSet.addAll(q.cleanAreaDRCDate);
+            }
+            for (Quick q : checkers)
+            {
+                for (Cell c : q.goodSpacingDRCDate)
+                    if (!cleanSpacingSet.contains(c)) goodSpacingSet.add(c);
+                for (Cell c : q.goodAreaDRCDate)
+                    if (!cleanAreaSet.contains(c)) goodAreaSet.add(c);
+            }
+            DRC.addDRCUpdate(hierarchyChecker.reportInfo.activeSpacingBits, goodSpacingSet, cleanSpacingSet,
+                goodAreaSet, cleanAreaSet, null, dp);
+        }
+        return true;
+    }
+
+    /**
+     * Method to build the netlists of a cell and of all its subcells.
+     */
+    private static void prepareNetlists(Cell cell, Set<Cell> visited)
+    {
+        if (!visited.add(cell)) return;
+        cell.getNetlist();
+        for(Iterator<NodeInst> it = cell.getNodes(); it.hasNext(); )
+        {
+            NodeInst ni = it.next();
+            if (ni.isCellInstance() && !ni.isIconOfParent())
+                prepareNetlists((Cell)ni.getProto(), visited);
+        }
+    }
+
+    /**
+     * Method to tell whether an object is checked by this checker.
+     * When checking a tile, only the objects of the top cell whose center is inside the tile are checked.
+     */
+    private boolean isInTile(Geometric geom)
+    {
+        if (!inTile || geom.getParent() != topCell) return true;
+        Rectangle2D b = geom.getBounds();
+        double cX = b.getCenterX();
+        double cY = b.getCenterY();
+        return cX >= tileLX && cX < tileHX && cY >= tileLY && cY < tileHY;
+    }
+
     // returns the number of errors found
 	private void doCheck(ErrorLogger errorLog, Cell cell, Geometric[] geomsToCheck, boolean[] validity,
                          Rectangle2D bounds, boolean onlyArea)
@@ -171,8 +339,9 @@ public class Quick
         reportInfo = new DRC.ReportInfo(errorLog, tech, dp, (count > 0));
         ErrorLogger errorLogger = errorLog;
 
-        // caching bits
-        System.out.println("Running DRC with " + DRC.explainBits(reportInfo.activeSpacingBits, dp));
+        // caching bits (the tiles of a parallel check leave this to the checker of the subcells)
+        if (!inTile)
+            System.out.println("Running DRC with " + DRC.explainBits(reportInfo.activeSpacingBits, dp));
 
 		// Nothing to check for this particular technology
 		if (rules == null || rules.getNumberOfRules() == 0)
@@ -182,6 +351,10 @@ public class Quick
 		}
 
 	    topCell = cell; /* Especially important for minArea checking */
+        useResultCache = dp.cacheResults && count == 0 && bounds == null && !inTile &&
+            reportInfo.errorTypeSearch != DRC.DRCCheckMode.ERROR_CHECK_CELL;
+        if (useResultCache) resultCacheSettings = new DRCResultCache.Settings(tech, rules, reportInfo);
+        recheckedCells.clear();
 
 		// cache valid layers for this technology
         validLayers = new ValidationLayers(reportInfo.errorLogger, topCell, rules);
@@ -365,7 +538,7 @@ public class Quick
 		// some cells were sucessfully checked: save that information in the database
 	    // some cells don't have valid DRC date anymore and therefore they should be clean
         // This is only going to happen if job was not aborted.
-	    if ((job == null || !job.checkAbort()))
+	    if (updateDates && (job == null || !job.checkAbort()))
 	    {
             DRC.addDRCUpdate(reportInfo.activeSpacingBits, goodSpacingDRCDate, cleanSpacingDRCDate,
                 goodAreaDRCDate, cleanAreaDRCDate, null, dp);
@@ -423,7 +596,10 @@ public class Quick
 		boolean allSubCellsStillOK = true;
         Area area = reportInfo.exclusionMap.get(cell);
 
-		for(Iterator<NodeInst> it = cell.getNodes(); it.hasNext(); )
+		// a tile of the top cell is always checked, its subcells are checked by another checker
+		if (cell == topCell && !checkSubCells)
+			allSubCellsStillOK = false;
+		else for(Iterator<NodeInst> it = cell.getNodes(); it.hasNext(); )
 		{
             if (job != null && job.checkAbort()) return -1;
 
@@ -473,7 +649,7 @@ public class Quick
 		// prepare to check cell
 		CheckProto cp = getCheckProto(cell);
 		cp.cellChecked = true;
-        boolean checkArea = (cell == topCell && !dp.ignoreAreaCheck && reportInfo.errorTypeSearch != DRC.DRCCheckMode.ERROR_CHECK_CELL);
+        boolean checkArea = (cell == topCell && !inTile && !dp.ignoreAreaCheck && reportInfo.errorTypeSearch != DRC.DRCCheckMode.ERROR_CHECK_CELL);
 
         // if the cell hasn't changed since the last good check, stop now
         Date lastSpacingGoodDate = DRC.getLastDRCDateBasedOnBits(cell, true, reportInfo.activeSpacingBits, !reportInfo.inMemory);
@@ -503,6 +679,22 @@ public class Quick
             else
                 cleanAreaDRCDate.add(cell);
         }
+        if (cell == topCell && !checkTopContents) return 0;
+
+        // with results of a previous check, only the regions that changed since then are examined
+        DRCResultCache.CellResult newResult = null;
+        RTNode<ChangedRegion> changedRegions = null;
+        if (useResultCache)
+        {
+            CellRevision revision = cell.backup().cellRevision;
+            DRCResultCache.CellResult prevResult = DRCResultCache.getResult(cell.getId(), resultCacheSettings);
+            newResult = new DRCResultCache.CellResult(revision, resultCacheSettings);
+            changedRegions = findChangedRegions(cell, revision, prevResult);
+            if (changedRegions != null)
+                reuseCachedResults(cell, prevResult, newResult, changedRegions);
+            if (changedRegions == null || changedRegions.getTotal() > 0)
+                recheckedCells.put(cell, Boolean.valueOf(prevResult == null || prevResult.exportsChanged(revision)));
+        }
 
         instanceInteractionMap.clear(); // part4
 
@@ -511,7 +703,10 @@ public class Quick
             if (job != null && job.checkAbort()) return -1;
 
             NodeInst ni = it.next();
+            if (changedRegions != null && !touchesRegion(ni, changedRegions)) continue; // results reused
+            if (newResult != null) newResult.put(ni, Collections.<ErrorLogger.MessageLog>emptyList());
             if (NodeInst.isSpecialNode(ni)) continue;
+            if (!isInTile(ni)) continue;
             
 			if (bounds != null)
 			{
@@ -525,9 +720,13 @@ public class Quick
                 }
             }
             
+            int objErrors = (newResult != null) ? reportInfo.errorLogger.getNumErrors() : 0;
+            int objWarns = (newResult != null) ? reportInfo.errorLogger.getNumWarnings() : 0;
 			boolean ret = (ni.isCellInstance()) ?
 			        checkCellInst(ni, globalIndex) :
 			        checkNodeInst(ni, globalIndex);
+            if (newResult != null)
+                newResult.put(ni, DRCResultCache.getNewLogs(reportInfo.errorLogger, objErrors, objWarns));
 			if (ret)
 			{
 				reportInfo.totalSpacingMsgFound++;
@@ -540,24 +739,37 @@ public class Quick
             if (job != null && job.checkAbort()) return -1;
 
             ArcInst ai = it.next();
+            if (!isInTile(ai)) continue;
+            if (changedRegions != null && !touchesRegion(ai, changedRegions)) continue; // results reused
+            int objErrors = (newResult != null) ? reportInfo.errorLogger.getNumErrors() : 0;
+            int objWarns = (newResult != null) ? reportInfo.errorLogger.getNumWarnings() : 0;
+            if (newResult != null) newResult.put(ai, Collections.<ErrorLogger.MessageLog>emptyList());
 			Technology tech = ai.getProto().getTechnology();
 			if (tech != cellTech)
 			{
 				DRC.createDRCErrorLogger(reportInfo, DRC.DRCErrorType.TECHMIXWARN, " belongs to " + tech.getTechName(),
                     cell, 0, 0, null, null, ai, null, null, null, null);
+                if (newResult != null)
+                    newResult.put(ai, DRCResultCache.getNewLogs(reportInfo.errorLogger, objErrors, objWarns));
 				continue;
 			}
 			if (bounds != null)
 			{
 				if (!ai.getBounds().intersects(bounds)) continue;
 			}
-			if (checkArcInst(cp, ai, globalIndex))
+			boolean ret = checkArcInst(cp, ai, globalIndex);
+            if (newResult != null)
+                newResult.put(ai, DRCResultCache.getNewLogs(reportInfo.errorLogger, objErrors, objWarns));
+			if (ret)
 			{
 				reportInfo.totalSpacingMsgFound++;
 				if (reportInfo.errorTypeSearch == DRC.DRCCheckMode.ERROR_CHECK_CELL) break;
 			}
 		}
 
+		if (newResult != null)
+			DRCResultCache.putResult(cell.getId(), newResult);
+
 		// If message founds, then remove any possible good date
         // !allSubCellsStillOK disconnected on April 18, 2006. totalMsgFound should
         // dictate if this cell is re-marked.
@@ -597,6 +809,83 @@ public class Quick
 		return reportInfo.totalSpacingMsgFound;
 	}
 
+    /**
+     * Method to find the regions of a cell that must be checked again.
+     * They are the nodes and arcs that moved since the previous check and the instances of
+     * subcells that were checked again in this run, grown by the worst interaction distance.
+     * @param cell the cell to check.
+     * @param revision the current revision of the cell.
+     * @param prevResult the results of the previous check of the cell (may be null).
+     * @return an R-Tree of the regions to check, or null if the whole cell must be checked.
+     */
+    private RTNode<ChangedRegion> findChangedRegions(Cell cell, CellRevision revision, DRCResultCache.CellResult prevResult)
+    {
+        if (prevResult == null) return null;
+        List<Rectangle2D> regions = new ArrayList<Rectangle2D>();
+        if (!prevResult.findChangedRegions(cell, revision, regions)) return null;
+        for(Iterator<NodeInst> it = cell.getNodes(); it.hasNext(); )
+        {
+            NodeInst ni = it.next();
+            if (!ni.isCellInstance()) continue;
+            Boolean exportsChanged = recheckedCells.get(ni.getProto());
+            if (exportsChanged == null) continue;
+            // new exports in the subcell may connect things anywhere in this cell
+            if (exportsChanged.booleanValue()) return null;
+            DRCResultCache.ObjectResult r = prevResult.get(ni);
+            if (r != null) regions.add(r.bounds);
+            regions.add(ni.getBounds());
+        }
+        double dist = reportInfo.worstInteractionDistance;
+        List<ChangedRegion> grown = new ArrayList<ChangedRegion>(regions.size());
+        for (Rectangle2D r : regions)
+            grown.add(new ChangedRegion(ERectangle.fromLambda(r.getMinX() - dist, r.getMinY() - dist,
+                r.getWidth() + 2*dist, r.getHeight() + 2*dist)));
+        return RTNode.bulkLoad(grown);
+    }
+
+    /**
+     * Class to define a region of a cell that must be checked again, for the R-Tree of changed regions.
+     */
+    private static class ChangedRegion implements RTBounds
+    {
+        private final ERectangle bounds;
+
+        ChangedRegion(ERectangle bounds) { this.bounds = bounds; }
+
+        public ERectangle getBounds() { return bounds; }
+    }
+
+    /**
+     * Method to report again the errors of the nodes and arcs that are not in the regions to check.
+     */
+    private void reuseCachedResults(Cell cell, DRCResultCache.CellResult prevResult, DRCResultCache.CellResult newResult,
+                                    RTNode<ChangedRegion> changedRegions)
+    {
+        List<ErrorLogger.MessageLog> logs = new ArrayList<ErrorLogger.MessageLog>();
+        List<Geometric> geoms = new ArrayList<Geometric>();
+        for(Iterator<NodeInst> it = cell.getNodes(); it.hasNext(); )
+            geoms.add(it.next());
+        for(Iterator<ArcInst> it = cell.getArcs(); it.hasNext(); )
+            geoms.add(it.next());
+        for (Geometric geom : geoms)
+        {
+            if (touchesRegion(geom, changedRegions)) continue;
+            DRCResultCache.ObjectResult r = prevResult.get(geom);
+            if (r == null) continue;
+            newResult.put(geom, r.logs);
+            if (r.logs.isEmpty()) continue;
+            logs.addAll(r.logs);
+            reportInfo.totalSpacingMsgFound++;
+        }
+        reportInfo.errorLogger.addMessages(logs);
+    }
+
+    private static boolean touchesRegion(Geometric geom, RTNode<ChangedRegion> regions)
+    {
+        // touching counts, and pins have empty bounds
+        return new RTNode.Search<ChangedRegion>(geom.getBounds(), regions, true).hasNext();
+    }
+
     /**
      * Check Poly for CIF Resolution Errors
      * @param poly
@@ -4897,6 +5186,7 @@ public class Quick
             LayoutMergerFactory layoutMergerFactory = LayoutMergerFactory.getInstance();
             LayoutMerger layoutMerger = layoutMergerFactory.newMerger(topCell);
             boolean errorsFound = false;
+            List<Layer> layersToMerge = new ArrayList<Layer>();
             for (Layer layer: layoutMerger.getLayers()) {
                 if (skipLayer(layer))
                     continue;
@@ -4904,16 +5194,22 @@ public class Quick
                     System.out.println(layer + " IS NOT MANHATTAN !!");
                     continue;
                 }
+                // Layer doesn't have min areae
+                if (minAreaLayerMap.get(layer) == null && enclosedAreaLayerMap.get(layer) == null &&
+                    spacingLayerMap.get(layer) == null) continue;
+                layersToMerge.add(layer);
+            }
+
+            // layers are merged in parallel, errors are reported here as each layer completes
+            for (Map.Entry<Layer,Iterable<PolyBase.PolyBaseTree>> e : layoutMerger.mergeLayers(layersToMerge)) {
+                Layer layer = e.getKey();
         		DRCTemplate minAreaRule = minAreaLayerMap.get(layer);
                 DRCTemplate encloseAreaRule = enclosedAreaLayerMap.get(layer);
                 DRCTemplate spacingRule = spacingLayerMap.get(layer);
 
-                // Layer doesn't have min areae
-                if (minAreaRule == null && encloseAreaRule == null && spacingRule == null) continue;
-
                 MutableInteger errorFound = new MutableInteger(0);
 
-                for (PolyBase.PolyBaseTree obj : layoutMerger.merge(layer))
+                for (PolyBase.PolyBaseTree obj : e.getValue())
                 {
                     traversePolyTree(layer, obj, 0, minAreaRule, encloseAreaRule, spacingRule, topCell, errorFound);
                 }
@@ -27,6 +27,7 @@ import com.sun.electric.database.geometry.PolyMerge;
 import com.sun.electric.database.hierarchy.Cell;
 import com.sun.electric.database.hierarchy.Export;
 import com.sun.electric.database.id.ArcProtoId;
+import com.sun.electric.database.id.CellId;
 import com.sun.electric.database.prototype.PortProto;
 import com.sun.electric.database.text.PrefPackage;
 import com.sun.electric.database.topology.ArcInst;
@@ -48,6 +49,7 @@ import com.sun.electric.util.ElapseTimer;
 import com.sun.electric.util.math.DBMath;
 import com.sun.electric.util.math.FixpTransform;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -55,6 +57,12 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.prefs.Preferences;
 
 /**
@@ -78,12 +86,19 @@ public class ERCAntenna
 {
 	public static class AntennaPreferences extends PrefPackage
     {
+        private static final String PREF_NODE = "tool/erc";
         // In TECH_NODE
         private static final String KEY_ANTENNA_RATIO = "DefaultAntennaRatio";
 
         private transient final TechPool techPool;
         public Map<ArcProtoId,Double> antennaRatio = new HashMap<ArcProtoId,Double>();
         public boolean disablePopups = false;
+        /**
+         * The number of threads measuring nets in the antenna check. The default is
+         * "0" (as many as there are processors).
+         */
+        @IntegerPref(node = PREF_NODE, key = "AntennaNumProc", factory = 0)
+        public int numThreads;
 
         public AntennaPreferences(boolean factory, TechPool techPool)
         {
@@ -153,6 +168,58 @@ public class ERCAntenna
 			hierstack = new NodeInst[depth];
 			for(int i=0; i<depth; i++) hierstack[i] = stack[i];
 		}
+
+		/**
+		 * Antenna objects are the same when they have the same object and hierarchical stack.
+		 * An object whose stack is not loaded yet has an empty stack.
+		 */
+		@Override
+		public boolean equals(Object o)
+		{
+			if (!(o instanceof AntennaObject)) return false;
+			AntennaObject that = (AntennaObject)o;
+			if (geom != that.geom || depth != that.depth) return false;
+			int len = hierstack != null ? hierstack.length : 0;
+			int oLen = that.hierstack != null ? that.hierstack.length : 0;
+			if (len != oLen) return false;
+			for(int i=0; i<len; i++)
+			{
+				if (hierstack[i] != that.hierstack[i]) return false;
+			}
+			return true;
+		}
+
+		@Override
+		public int hashCode()
+		{
+			int hash = System.identityHashCode(geom);
+			if (hierstack != null)
+			{
+				for(int i=0; i<hierstack.length; i++)
+					hash = hash * 31 + System.identityHashCode(hierstack[i]);
+			}
+			return hash;
+		}
+	}
+
+	/**
+	 * A path that connects only to gates, found while tracing one layer.
+	 * Its shapes are merged and measured in parallel with other paths.
+	 */
+	private static class AntennaNet
+	{
+		/** the cell where the path was found */			final Cell                 cell;
+		/** accumulated gate area */						final double               gateArea;
+		/** shapes on the layer, in their own cells */		final List<PolyBase[]>     shapes = new ArrayList<PolyBase[]>();
+		/** transformations of the shapes to the cell */	final List<FixpTransform>  transforms = new ArrayList<FixpTransform>();
+		/** perimeter times thickness of the antenna */		double                     perimeterArea;
+		/** merged antenna, only kept for errors */			List<PolyBase>             merged;
+
+		AntennaNet(Cell cell, double gateArea)
+		{
+			this.cell = cell;
+			this.gateArea = gateArea;
+		}
 	}
 
 	/** default maximum ratio of poly to gate area */		public static final double DEFPOLYRATIO  = 200;
@@ -165,11 +232,16 @@ public class ERCAntenna
 	/** found active on the path */							private static final int ERCANTPATHACTIVE = 2;
 	/** search was aborted */								private static final int ERCABORTED       = 3;
 
-	/** head of linked list of antenna objects to spread */	private List<AntennaObject>     firstSpreadAntennaObj;
+	/** no shapes on the layer */							private static final PolyBase [] NOSHAPES = new PolyBase[0];
+
+	/** head of linked list of antenna objects to spread */	private ArrayDeque<AntennaObject> firstSpreadAntennaObj;
 	/** current technology being considered */				private Technology              curTech;
 	/** accumulated gate area */							private double                  totalGateArea;
 	/** the worst ratio found */							private double                  worstRatio;
 	/** A list of AntennaObjects to process. */				private List<AntennaObject>     pathList;
+	/** The AntennaObjects in pathList. */					private Set<AntennaObject>      pathSet;
+	/** Paths to gates found on the current layer. */		private List<AntennaNet>        layerNets;
+	/** Shapes on the current layer, by cell. */			private Map<CellId,Map<Geometric,PolyBase[]>> cellShapes;
 	/** Map from ArcProtos to Layers. */					private Map<ArcProto,Layer>     arcProtoToLayer;
 	/** Map from Layers to ArcProtos. */					private Map<Layer,ArcProto>     layerToArcProto;
 	/** Map for marking ArcInsts and NodeInsts. */			private Set<Geometric>          fsGeom;
@@ -204,6 +276,16 @@ public class ERCAntenna
         return handler.doCheck(job, cell);
     }
 
+    /**
+     * Method to do the Antenna check and return the logger of its errors (for tests).
+     */
+    static ErrorLogger checkERCAntennaErrors(Cell cell, AntennaPreferences prefs)
+    {
+        ERCAntenna handler = new ERCAntenna(prefs);
+        handler.doCheck(null, cell);
+        return handler.errorLogger;
+    }
+
     /**
 	 * Class to do antenna checking in a new thread.
 	 */
@@ -266,15 +348,31 @@ public class ERCAntenna
 		// now check each layer of the cell
 		int lasterrorcount = 0;
 		worstRatio = 0;
+		int numThreads = antennaPrefs.numThreads > 0 ? antennaPrefs.numThreads : Runtime.getRuntime().availableProcessors();
+		int numNets = 0;
+		long measureTime = 0;
 		for(Layer lay : layerToArcProto.keySet())
 		{
 			System.out.println("Checking Antenna rules for " + lay.getName() + "...");
 
 			// clear timestamps on all cells
 			fsCell.clear();
+			layerNets = new ArrayList<AntennaNet>();
+			cellShapes = new HashMap<CellId,Map<Geometric,PolyBase[]>>();
 
-			// do the check for this level
+			// find the paths to gates on this level
 			if (checkThisCell(topCell, lay, job)) break;
+			cellShapes = null;
+
+			// measure them in parallel, then check their ratios in order
+			ElapseTimer measureTimer = ElapseTimer.createInstance().start();
+			measureNets(lay, numThreads);
+			measureTimer.end();
+			measureTime += measureTimer.getTime();
+			numNets += layerNets.size();
+			checkNets(lay);
+			layerNets = null;
+
 			int i = errorLogger.getNumErrors();
 			if (i != lasterrorcount)
 			{
@@ -284,6 +382,11 @@ public class ERCAntenna
 		}
 
 		timer.end();
+		if (numNets > 0)
+		{
+			System.out.println("Measured " + numNets + " nets with " + numThreads + " threads in " +
+				ElapseTimer.createInstanceByValues(0, measureTime) + " (" + numNets * 1000 / Math.max(measureTime, 1) + " nets/second)");
+		}
 		int errorCount = errorLogger.getNumErrors();
 		if (errorCount == 0)
 		{
@@ -333,105 +436,29 @@ public class ERCAntenna
 
 				totalGateArea = 0.0;
 				pathList = new ArrayList<AntennaObject>();
+				pathSet = new HashSet<AntennaObject>();
 				int found = followNode(ni, pi.getPortProto(), lay, DBMath.MATID, job);
 				if (found == ERCABORTED) return true;
 				if (found == ERCANTPATHGATE)
 				{
 					// gather the geometry here
-					PolyMerge vmerge = null;
+					AntennaNet net = new AntennaNet(cell, totalGateArea);
 					for(AntennaObject ao : pathList)
 					{
-						if (ao.geom instanceof NodeInst)
-						{
-							NodeInst oni = (NodeInst)ao.geom;
-							FixpTransform trans = oni.rotateOut();
-							for(int i = ao.depth-1; i >= 0; i--)
-							{
-								FixpTransform tTrans = ao.hierstack[i].translateOut();
-								trans.concatenate(tTrans);
-								FixpTransform rTrans = ao.hierstack[i].rotateOut();
-								trans.concatenate(rTrans);
-							}
-
-							Technology tech = oni.getProto().getTechnology();
-							if (tech != curTech) continue;
-							Poly [] polyList = tech.getShapeOfNode(oni);
-							if (polyList == null) continue;
-							for(int i=0; i<polyList.length; i++)
-							{
-								Poly poly = polyList[i];
-								if (poly.getLayer() != lay) continue;
-								if (vmerge == null)
-									vmerge = new PolyMerge();
-								poly.transform(trans);
-								vmerge.addPolygon(poly.getLayer(), poly);
-							}
-						} else
-						{
-							ArcInst ai = (ArcInst)ao.geom;
-							FixpTransform trans = new FixpTransform();
-							for(int i = ao.depth-1; i >= 0; i--)
-							{
-								FixpTransform tTrans = ao.hierstack[i].translateOut();
-								trans.concatenate(tTrans);
-								FixpTransform rTrans = ao.hierstack[i].rotateOut();
-								trans.concatenate(rTrans);
-							}
-
-							Technology tech = ai.getProto().getTechnology();
-							if (tech != curTech) continue;
-							Poly [] polyList = tech.getShapeOfArc(ai);
-							for(int i=0; i<polyList.length; i++)
-							{
-								Poly poly = polyList[i];
-								if (poly.getLayer() != lay) continue;
-								if (vmerge == null)
-									vmerge = new PolyMerge();
-								poly.transform(trans);
-								vmerge.addPolygon(poly.getLayer(), poly);
-							}
-						}
-					}
-					if (vmerge != null)
-					{
-						// get the area of the antenna
-						double totalRegionPerimeterArea = 0.0;
-						for (Layer oLay : vmerge.getKeySet())
+						PolyBase [] polyList = getShapes(ao.geom, lay);
+						if (polyList.length == 0) continue;
+						FixpTransform trans = ao.geom instanceof NodeInst ? ((NodeInst)ao.geom).rotateOut() : new FixpTransform();
+						for(int i = ao.depth-1; i >= 0; i--)
 						{
-							double thickness = oLay.getThickness();
-							if (thickness == 0)
-							{
-								if (oLay.getFunction().isMetal()) thickness = DEFMETALTHICKNESS; else
-									if (oLay.getFunction().isPoly()) thickness = DEFPOLYTHICKNESS;
-							}
-							List<PolyBase> merges = vmerge.getMergedPoints(oLay, true);
-							for(PolyBase merged : merges)
-							{
-								totalRegionPerimeterArea += merged.getPerimeter() * thickness;
-							}
-						}
-
-						// see if it is an antenna violation
-						double ratio = totalRegionPerimeterArea / totalGateArea;
-						double neededratio = getAntennaRatio(lay);
-						if (ratio > worstRatio) worstRatio = ratio;
-						if (ratio >= neededratio)
-						{
-							// error
-							String errMsg = "layer " + lay.getName() + " has perimeter-area " + totalRegionPerimeterArea +
-								"; gates have area " + totalGateArea + ", ratio is " + ratio + " but limit is " + neededratio;
-							List<PolyBase> polyList = new ArrayList<PolyBase>();
-							for (Layer oLay : vmerge.getKeySet())
-							{
-								List<PolyBase> merges = vmerge.getMergedPoints(oLay, true);
-								for(PolyBase merged : merges)
-								{
-									polyList.add(merged);
-								}
-							}
-							errorLogger.logMessage(errMsg, polyList, cell, 0, true);
+							FixpTransform tTrans = ao.hierstack[i].translateOut();
+							trans.concatenate(tTrans);
+							FixpTransform rTrans = ao.hierstack[i].rotateOut();
+							trans.concatenate(rTrans);
 						}
+						net.shapes.add(polyList);
+						net.transforms.add(trans);
 					}
+					if (!net.shapes.isEmpty()) layerNets.add(net);
 				}
 			}
 		}
@@ -450,6 +477,175 @@ public class ERCAntenna
 		return false;
 	}
 
+	/**
+	 * Method to get the shapes of a node or arc on a layer.
+	 * The shapes are computed once for all instances of the cell that contains the object.
+	 * @param geom the NodeInst or ArcInst.
+	 * @param lay the layer being checked.
+	 * @return the shapes in the coordinates of the object's cell (before node rotation).
+	 */
+	private PolyBase [] getShapes(Geometric geom, Layer lay)
+	{
+		CellId cellId = geom.getParent().getId();
+		Map<Geometric,PolyBase[]> shapes = cellShapes.get(cellId);
+		if (shapes == null)
+		{
+			shapes = new HashMap<Geometric,PolyBase[]>();
+			cellShapes.put(cellId, shapes);
+		}
+		PolyBase [] layerShapes = shapes.get(geom);
+		if (layerShapes != null) return layerShapes;
+
+		Poly [] polyList = null;
+		if (geom instanceof NodeInst)
+		{
+			NodeInst ni = (NodeInst)geom;
+			Technology tech = ni.getProto().getTechnology();
+			if (tech == curTech) polyList = tech.getShapeOfNode(ni);
+		} else
+		{
+			ArcInst ai = (ArcInst)geom;
+			Technology tech = ai.getProto().getTechnology();
+			if (tech == curTech) polyList = tech.getShapeOfArc(ai);
+		}
+		List<PolyBase> onLayer = new ArrayList<PolyBase>();
+		if (polyList != null)
+		{
+			for(int i=0; i<polyList.length; i++)
+			{
+				if (polyList[i].getLayer() == lay) onLayer.add(polyList[i]);
+			}
+		}
+		layerShapes = onLayer.isEmpty() ? NOSHAPES : onLayer.toArray(new PolyBase[onLayer.size()]);
+		shapes.put(geom, layerShapes);
+		return layerShapes;
+	}
+
+	/**
+	 * Method to merge the shapes of every path found on a layer and compute its perimeter-area.
+	 * The paths are independent, so they are measured by several threads.
+	 * @param lay the layer being checked.
+	 * @param numThreads the maximum number of threads to use.
+	 */
+	private void measureNets(final Layer lay, int numThreads)
+	{
+		final double thickness = getThickness(lay);
+		final double neededratio = getAntennaRatio(lay);
+		final List<AntennaNet> nets = layerNets;
+		numThreads = Math.min(numThreads, nets.size());
+		if (numThreads <= 1)
+		{
+			for(AntennaNet net : nets) measureNet(net, lay, thickness, neededratio);
+			return;
+		}
+
+		final AtomicInteger nextNet = new AtomicInteger();
+		List<Callable<Object>> tasks = new ArrayList<Callable<Object>>();
+		for(int t=0; t<numThreads; t++)
+		{
+			tasks.add(new Callable<Object>()
+			{
+				public Object call()
+				{
+					for(int i = nextNet.getAndIncrement(); i < nets.size(); i = nextNet.getAndIncrement())
+						measureNet(nets.get(i), lay, thickness, neededratio);
+					return null;
+				}
+			});
+		}
+		ExecutorService executorService = Executors.newFixedThreadPool(numThreads);
+		try
+		{
+			for(Future<Object> result : executorService.invokeAll(tasks))
+				result.get();
+		} catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		} catch (ExecutionException e)
+		{
+			throw new RuntimeException(e.getCause());
+		} finally
+		{
+			executorService.shutdown();
+		}
+	}
+
+	/**
+	 * Method to merge the shapes of a path and compute its perimeter-area.
+	 * Only uses data of the path, so it can run in any thread.
+	 */
+	private static void measureNet(AntennaNet net, Layer lay, double thickness, double neededratio)
+	{
+		PolyMerge vmerge = new PolyMerge();
+		for(int j=0; j<net.shapes.size(); j++)
+		{
+			PolyBase [] polyList = net.shapes.get(j);
+			FixpTransform trans = net.transforms.get(j);
+			for(int i=0; i<polyList.length; i++)
+			{
+				// the shapes are shared by all instances, so transform a copy
+				PolyBase.Point [] points = polyList[i].getPoints();
+				PolyBase.Point [] newPoints = new PolyBase.Point[points.length];
+				for(int k=0; k<points.length; k++)
+					newPoints[k] = PolyBase.fromFixp(points[k].getFixpX(), points[k].getFixpY());
+				PolyBase poly = new PolyBase(newPoints);
+				poly.setStyle(polyList[i].getStyle());
+				poly.transform(trans);
+				vmerge.addPolygon(lay, poly);
+			}
+		}
+
+		// get the area of the antenna
+		double totalRegionPerimeterArea = 0.0;
+		List<PolyBase> merges = vmerge.getMergedPoints(lay, true);
+		for(PolyBase merged : merges)
+		{
+			totalRegionPerimeterArea += merged.getPerimeter() * thickness;
+		}
+		net.perimeterArea = totalRegionPerimeterArea;
+		if (totalRegionPerimeterArea / net.gateArea >= neededratio) net.merged = merges;
+	}
+
+	/**
+	 * Method to check the antenna ratio of every path found on a layer.
+	 * Errors are reported in the order in which the paths were found.
+	 * @param lay the layer being checked.
+	 */
+	private void checkNets(Layer lay)
+	{
+		double neededratio = getAntennaRatio(lay);
+		for(AntennaNet net : layerNets)
+		{
+			// see if it is an antenna violation
+			double ratio = net.perimeterArea / net.gateArea;
+			if (ratio > worstRatio) worstRatio = ratio;
+			if (ratio >= neededratio)
+			{
+				// error
+				String errMsg = "layer " + lay.getName() + " has perimeter-area " + net.perimeterArea +
+					"; gates have area " + net.gateArea + ", ratio is " + ratio + " but limit is " + neededratio;
+				errorLogger.logMessage(errMsg, net.merged, net.cell, 0, true);
+			}
+		}
+	}
+
+	/**
+	 * Method to return the thickness used for the side-area of a Layer.
+	 * @param lay the layer in question.
+	 * @return the thickness of the Layer, or a default one.
+	 */
+	private static double getThickness(Layer lay)
+	{
+		double thickness = lay.getThickness();
+		if (thickness == 0)
+		{
+			if (lay.getFunction().isMetal()) thickness = DEFMETALTHICKNESS; else
+				if (lay.getFunction().isPoly()) thickness = DEFPOLYTHICKNESS;
+		}
+		return thickness;
+	}
+
 	/**
 	 * Method to follow a node around the cell.
 	 * @param ni the NodeInst to follow.
@@ -465,7 +661,7 @@ public class ERCAntenna
 	{
 		// presume that nothing was found
 		int ret = ERCANTPATHNULL;
-		firstSpreadAntennaObj = new ArrayList<AntennaObject>();
+		firstSpreadAntennaObj = new ArrayDeque<AntennaObject>();
 		NodeInst [] antstack = new NodeInst[200];
 		int depth = 0;
 
@@ -532,9 +728,8 @@ public class ERCAntenna
 			}
 
 			// look for an unspread antenna object and keep walking
-			if (firstSpreadAntennaObj.size() == 0) break;
-			AntennaObject ao = firstSpreadAntennaObj.get(0);
-			firstSpreadAntennaObj.remove(0);
+			if (firstSpreadAntennaObj.isEmpty()) break;
+			AntennaObject ao = firstSpreadAntennaObj.poll();
 
 			ArcInst ai = (ArcInst)ao.geom;
 			ni = ai.getPortInst(ao.otherend).getNodeInst();
@@ -629,24 +824,7 @@ public class ERCAntenna
 	 */
 	private boolean haveAntennaObject(AntennaObject ao)
 	{
-		for(AntennaObject oAo : pathList)
-		{
-			if (oAo.geom == ao.geom && oAo.depth == ao.depth)
-			{
-				boolean found = true;
-				int len = 0;
-				if (ao.hierstack != null) len = ao.hierstack.length;
-				int oLen = 0;
-				if (oAo.hierstack != null) oLen = oAo.hierstack.length;
-				if (len != oLen) continue;
-				for(int i=0; i<len; i++)
-				{
-					if (oAo.hierstack[i] != ao.hierstack[i]) { found = false;   break; }
-				}
-				if (found) return true;
-			}
-		}
-		return false;
+		return pathSet.contains(ao);
 	}
 
 	/**
@@ -656,6 +834,7 @@ public class ERCAntenna
 	private void addAntennaObject(AntennaObject ao)
 	{
 		pathList.add(ao);
+		pathSet.add(ao);
 	}
 
 	/**
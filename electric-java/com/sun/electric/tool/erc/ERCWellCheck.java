@@ -48,6 +48,7 @@ import com.sun.electric.technology.Technology;
 import com.sun.electric.technology.Technology.NodeLayer;
 import com.sun.electric.tool.Job;
 import com.sun.electric.tool.JobException;
+import com.sun.electric.tool.erc.wellcheck.ConcurrentUnionFind;
 import com.sun.electric.tool.erc.wellcheck.ConnectionCheck;
 import com.sun.electric.tool.erc.wellcheck.DRCCheck;
 import com.sun.electric.tool.erc.wellcheck.DistanceCheck;
@@ -55,7 +56,6 @@ import com.sun.electric.tool.erc.wellcheck.NetValues;
 import com.sun.electric.tool.erc.wellcheck.OnRailCheck;
 import com.sun.electric.tool.erc.wellcheck.ShortCircuitCheck;
 import com.sun.electric.tool.erc.wellcheck.Utils;
-import com.sun.electric.tool.erc.wellcheck.Utils.WorkDistributionStrategy;
 import com.sun.electric.tool.erc.wellcheck.WellCheckAnalysisStrategy;
 import com.sun.electric.tool.erc.wellcheck.WellCon;
 import com.sun.electric.tool.user.ErrorLogger;
@@ -63,16 +63,6 @@ import com.sun.electric.tool.user.Highlighter;
 import com.sun.electric.tool.user.dialogs.EModelessDialog;
 import com.sun.electric.tool.user.ui.EditWindow;
 import com.sun.electric.tool.user.ui.TopLevel;
-import com.sun.electric.tool.util.concurrent.Parallel;
-import com.sun.electric.tool.util.concurrent.exceptions.PoolExistsException;
-import com.sun.electric.tool.util.concurrent.patterns.PForTask;
-import com.sun.electric.tool.util.concurrent.patterns.PJob;
-import com.sun.electric.tool.util.concurrent.patterns.PTask;
-import com.sun.electric.tool.util.concurrent.runtime.Scheduler.UnknownSchedulerException;
-import com.sun.electric.tool.util.concurrent.runtime.taskParallel.IThreadPool;
-import com.sun.electric.tool.util.concurrent.runtime.taskParallel.ThreadPool;
-import com.sun.electric.tool.util.concurrent.runtime.taskParallel.ThreadPoolJdkForkJoin;
-import com.sun.electric.tool.util.concurrent.utils.BlockedRange1D;
 import com.sun.electric.util.CollectionFactory;
 import com.sun.electric.util.ElapseTimer;
 import com.sun.electric.util.TextUtils;
@@ -84,7 +74,6 @@ import java.awt.Color;
 import java.awt.GridBagConstraints;
 import java.awt.GridBagLayout;
 import java.awt.Insets;
-import java.awt.Point;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.WindowAdapter;
@@ -102,12 +91,8 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.swing.JButton;
@@ -121,14 +106,10 @@ import javax.swing.event.DocumentListener;
  * This is the Electrical Rule Checker tool.
  */
 public class ERCWellCheck {
-    private static final boolean SCALA_FORKJOIN = true;
-    private static final boolean SIMPLE_SPREAD = true;
 
     private Cell cell;
     private Set<Object> possiblePrimitives;
     private List<WellCon> wellCons = new ArrayList<WellCon>();
-    private Iterator<WellCon>[] wellConIterator;
-    private List<WellCon>[] wellConLists;
     private RTNode<WellBound> pWellRoot, nWellRoot;
     private int pWellCount, nWellCount;
     private Layer pWellLayer, nWellLayer;
@@ -145,7 +126,6 @@ public class ERCWellCheck {
     private Set<Integer> networkExportAvailable;
     private boolean hasPCon;
     private boolean hasNCon;
-    private IThreadPool threadPool;
 
     public static class WellCheckPreferences extends PrefPackage {
         private static final String PREF_NODE = "tool/erc";
@@ -382,30 +362,6 @@ public class ERCWellCheck {
         return errorCount;
     }
 
-    private WellCon getNextWellCon(int threadIndex) {
-        synchronized (wellConLists[threadIndex]) {
-            while (wellConIterator[threadIndex].hasNext()) {
-                WellCon wc = wellConIterator[threadIndex].next();
-                if (wc.getWellNum() == null)
-                    return wc;
-            }
-        }
-
-        // not found in this list: try the others
-        int numLists = wellConIterator.length;
-        for (int i = 1; i < numLists; i++) {
-            int otherList = (threadIndex + i) % numLists;
-            synchronized (wellConLists[otherList]) {
-                while (wellConIterator[otherList].hasNext()) {
-                    WellCon wc = wellConIterator[otherList].next();
-                    if (wc.getWellNum() == null)
-                        return wc;
-                }
-            }
-        }
-        return null;
-    }
-
     private void checkSpreadResults() {
         int cons = 0;
         int badCons = 0;
@@ -445,62 +401,6 @@ public class ERCWellCheck {
         System.out.println(pairs + " pairs " + badPairs + " badPairs");
     }
 
-    private void spreadSeeds(int threadIndex) {
-        assert !SIMPLE_SPREAD;
-        for (;;) {
-            WellCon wc = getNextWellCon(threadIndex);
-
-            if (wc == null)
-                break;
-
-            // see if this contact is a marked well
-            Rectangle2D searchArea = new Rectangle2D.Double(wc.getBound().getCenterX(), wc.getBound().getCenterY(), 0, 0);
-            RTNode<WellBound> topSearch = nWellRoot;
-            if (Utils.canBeSubstrateTap(wc.getFun()))
-                topSearch = pWellRoot;
-            boolean geomFound = false;
-            for (Iterator<WellBound> sea = new RTNode.Search<WellBound>(searchArea, topSearch, true); sea.hasNext();) {
-                WellBound wb = sea.next();
-                geomFound = true;
-                wc.setWellNum(wb.netID);
-                if (wc.getWellNum() != null)
-                    break;
-            }
-
-            if (wc.getWellNum() != null)
-                continue;
-
-            // mark it and spread the value
-            wc.setWellNum(new NetValues());
-
-            // if nothing to spread, give an error
-            if (!geomFound) {
-                String errorMsg = "N-Well contact is floating";
-                if (Utils.canBeSubstrateTap(wc.getFun()))
-                    errorMsg = "P-Well contact is floating";
-                errorLogger.logError(errorMsg, EPoint.fromLambda(wc.getBound().getCenterX(), wc.getBound().getCenterY()), cell, 0);
-                continue;
-            }
-
-            // spread out through the well area
-            Utils.spreadWellSeed(wc.getBound().getCenterX(), wc.getBound().getCenterY(), wc.getWellNum(), topSearch,
-                    threadIndex);
-        }
-    }
-
-    public class SpreadInThread extends PTask {
-        private int threadIndex;
-
-        public SpreadInThread(PJob job, int index) {
-            super(job);
-            threadIndex = index;
-        }
-
-        public void execute() {
-            spreadSeeds(threadIndex);
-        }
-    }
-
     private int doNewWay() {
 
         int numberOfThreads = 1;
@@ -536,160 +436,52 @@ public class ERCWellCheck {
         	numberOfThreads = Runtime.getRuntime().availableProcessors();
         assert numberOfThreads > 0;
 
-        BitSet connectedNetValues = null;
-        if (SIMPLE_SPREAD)
-        {
-            timer.start();
-            // analyze the contacts
-            NetValues.reset();
-            int numTasks = numberOfThreads;
-            List<PartialSpread> partialSpreads = new ArrayList<PartialSpread>();
-            for (int taskIndex = 0; taskIndex < numTasks; taskIndex++) {
-                partialSpreads.add(new PartialSpread(numTasks, taskIndex));
-            }
-            PartialSpreadResult[] results = new PartialSpreadResult[numTasks];
-            try {
-                ExecutorService executorService = Executors.newFixedThreadPool(numberOfThreads);
-                List<Future<PartialSpreadResult>> futureResults = executorService.invokeAll(partialSpreads);
-                assert futureResults.size() == numTasks;
-                executorService.shutdown();
-                boolean ok = executorService.awaitTermination(100, TimeUnit.DAYS);
-                assert ok;
-                for (int taskIndex = 0; taskIndex < numTasks; taskIndex++) {
-                    Future<PartialSpreadResult> futureResult = futureResults.get(taskIndex);
-                    assert futureResult.isDone();
-                    results[taskIndex] = futureResult.get();
-                }
-            } catch (InterruptedException e) {
-                e.printStackTrace();
-            } catch (ExecutionException e) {
-                e.printStackTrace();
-            }
-            timer.end();
-            String msg = "   Geometry analysis ";
-            if (numberOfThreads > 1)
-                msg += "used " + numberOfThreads + " threads and ";
-            msg += "took ";
-            System.out.println(msg + timer);
-
-            timer.start();
-
-            int[] pMap = initMap(pWellCount);
-            for (PartialSpreadResult r: results) {
-                for (Point pair: r.pWellPairs) connectMap(pMap, pair.x, pair.y);
-                r.pWellPairs.clear();
-            }
-            closureMap(pMap);
-            Map<Integer,NetValues> pNetValues = new HashMap<Integer,NetValues>();
-            for (Iterator<WellBound> it = new RTNode.Search<WellBound>(pWellRoot); it.hasNext(); ) {
-                WellBound wb = it.next();
-                int ind = pMap[wb.getID()];
-                NetValues nv = pNetValues.get(ind);
-                if (nv == null) {
-                    nv = new NetValues();
-                    pNetValues.put(ind, nv);
-                }
-                wb.setNetID(nv);
-            }
-            pMap = null;
-            pNetValues = null;
-
-            int[] nMap = initMap(nWellCount);
-            for (PartialSpreadResult r: results) {
-                for (Point pair: r.nWellPairs) connectMap(nMap, pair.x, pair.y);
-                r.nWellPairs.clear();
-            }
-            closureMap(nMap);
-            Map<Integer,NetValues> nNetValues = new HashMap<Integer,NetValues>();
-            for (Iterator<WellBound> it = new RTNode.Search<WellBound>(nWellRoot); it.hasNext(); ) {
-                WellBound wb = it.next();
-                int ind = nMap[wb.getID()];
-                NetValues nv = nNetValues.get(ind);
-                if (nv == null) {
-                    nv = new NetValues();
-                    nNetValues.put(ind, nv);
-                }
-                wb.setNetID(nv);
-            }
-            nMap = null;
-            nNetValues = null;
-
-            connectedNetValues = new BitSet();
-            for (PartialSpreadResult r: results) {
-                for (Map.Entry<WellCon,WellBound> e: r.conBound.entrySet()) {
-                    WellCon wc = e.getKey();
-                    assert wc.getWellNum() == null;
-                    WellBound wb = e.getValue();
-                    NetValues nv = wb.getNetID();
-                    assert nv != null;
-                    connectedNetValues.set(nv.getIndex());
-                    wc.setWellNum(nv);
-                }
-                r.conBound.clear();
-            }
-            results = null;
-
-            timer.end();
-            System.out.println("NetValues propagation took " + timer);
-
-            assert NetValues.numberOfMerges == 0;
-        } else
-        {
-            IThreadPool.NUM_THREADS = Integer.valueOf(numberOfThreads);
-            try {
-                threadPool = SCALA_FORKJOIN ? ThreadPoolJdkForkJoin.initialize(numberOfThreads) : ThreadPool.initialize();
-            } catch (PoolExistsException e) {
-            } catch (UnknownSchedulerException e) {
-            }
-
-            timer.start();
-
-            try {
-
-                // make arrays of well contacts clustered for each processor
-                assignWellContacts(numberOfThreads);
-
-                if (Job.getDebug()) {
-                    timer.end();
-
-                    System.out.println("   Assign well contacts took: " + timer);
-
-                    timer.start();
-                }
-
-                // analyze the contacts
-                NetValues.reset();
-                if (numberOfThreads <= 1)
-                    spreadSeeds(0);
-                else {
-                    PJob spreadJob = new PJob(threadPool);
-                    for (int i = 0; i < numberOfThreads; i++)
-                        spreadJob.add(new SpreadInThread(spreadJob, i));
-                    spreadJob.execute();
-                }
-
-                timer.end();
-                String msg = "   Geometry analysis ";
-                if (numberOfThreads > 1)
-                    msg += "used " + numberOfThreads + " threads and ";
-                msg += "took ";
-                System.out.println(msg + timer);
-
-                try {
-                    threadPool.shutdown();
-                    threadPool.join();
-                } catch (InterruptedException e) {
-                    e.printStackTrace();
-                }
+        // find the well of every contact and merge touching wells, in parallel
+        timer.start();
+        NetValues.reset();
+        WellBound[] conBounds = new WellBound[wellCons.size()];
+        ConcurrentUnionFind pWells = new ConcurrentUnionFind(pWellCount);
+        ConcurrentUnionFind nWells = new ConcurrentUnionFind(nWellCount);
+        ForkJoinPool pool = new ForkJoinPool(numberOfThreads);
+        try {
+            pool.invoke(new SpreadTask(conBounds, pWells, nWells));
+        } finally {
+            pool.shutdown();
+        }
+        timer.end();
+        String msg = "   Geometry analysis ";
+        if (numberOfThreads > 1)
+            msg += "used " + numberOfThreads + " threads and ";
+        msg += "took ";
+        System.out.println(msg + timer);
 
-                if (Job.getDebug()) {
-                    System.out.println("   Amount of merges: " + NetValues.numberOfMerges);
-                    checkSpreadResults();
-                }
-            } catch (Throwable t) {
-                t.printStackTrace();
-            }
+        // number the wells and report floating contacts in a fixed order
+        timer.start();
+        for (int i = 0; i < conBounds.length; i++) {
+            if (conBounds[i] != null)
+                continue;
+            WellCon wc = wellCons.get(i);
+            String errorMsg = "N-Well contact is floating";
+            if (Utils.canBeSubstrateTap(wc.getFun()))
+                errorMsg = "P-Well contact is floating";
+            errorLogger.logError(errorMsg, EPoint.fromLambda(wc.getBound().getCenterX(), wc.getBound().getCenterY()), cell, 0);
+            wc.setWellNum(new NetValues());
+        }
+        setWellNetValues(pWellRoot, pWells);
+        setWellNetValues(nWellRoot, nWells);
+        BitSet connectedNetValues = new BitSet();
+        for (int i = 0; i < conBounds.length; i++) {
+            if (conBounds[i] == null)
+                continue;
+            NetValues nv = conBounds[i].getNetID();
+            connectedNetValues.set(nv.getIndex());
+            wellCons.get(i).setWellNum(nv);
         }
+        conBounds = null;
+        timer.end();
+        System.out.println("NetValues propagation took " + timer);
+
+        assert NetValues.numberOfMerges == 0;
 
         if (Job.getDebug()) {
             checkSpreadResults();
@@ -722,120 +514,116 @@ public class ERCWellCheck {
         return errorCount;
     }
 
-    private static class PartialSpreadResult {
-        private final Map<WellCon,WellBound> conBound = new HashMap<WellCon, WellBound>();
-        private final List<Point> pWellPairs = new ArrayList<Point>();
-        private final List<Point> nWellPairs = new ArrayList<Point>();
+    /**
+     * Fork-join task that finds the well under every contact and merges the wells that touch.
+     */
+    private class SpreadTask extends RecursiveAction {
+        static final long serialVersionUID = 0;
+        private final WellBound[] conBounds;
+        private final ConcurrentUnionFind pWells;
+        private final ConcurrentUnionFind nWells;
+
+        private SpreadTask(WellBound[] conBounds, ConcurrentUnionFind pWells, ConcurrentUnionFind nWells) {
+            this.conBounds = conBounds;
+            this.pWells = pWells;
+            this.nWells = nWells;
+        }
+
+        @Override
+        protected void compute() {
+            invokeAll(new ContactTask(conBounds, 0, conBounds.length),
+                    new WellPairsTask(pWellRoot, pWellRoot, pWells),
+                    new WellPairsTask(nWellRoot, nWellRoot, nWells));
+        }
     }
-    
-    private class PartialSpread implements Callable<PartialSpreadResult> {
-        private final int numTasks;
-        private final int taskIndex;
-        
-        private PartialSpread(int numTasks, int taskIndex) {
-            this.numTasks = numTasks;
-            this.taskIndex = taskIndex;
+
+    /**
+     * Fork-join task that finds the well under each contact of a range.
+     * Large ranges are split in halves.
+     */
+    private class ContactTask extends RecursiveAction {
+        static final long serialVersionUID = 0;
+        private static final int CONTACTS_PER_TASK = 256;
+        private final WellBound[] conBounds;
+        private final int from;
+        private final int to;
+
+        private ContactTask(WellBound[] conBounds, int from, int to) {
+            this.conBounds = conBounds;
+            this.from = from;
+            this.to = to;
         }
 
         @Override
-        public PartialSpreadResult call() {
-            PartialSpreadResult result = new PartialSpreadResult();
-            int ind = 0;
-            wellLoop:
-            for (WellCon wc: wellCons) {
-                if (ind++ % numTasks != taskIndex) continue;
+        protected void compute() {
+            if (to - from > CONTACTS_PER_TASK) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new ContactTask(conBounds, from, mid), new ContactTask(conBounds, mid, to));
+                return;
+            }
+            for (int i = from; i < to; i++) {
+                WellCon wc = wellCons.get(i);
                 assert wc.getWellNum() == null;
                 RTNode<WellBound> topSearch = Utils.canBeSubstrateTap(wc.getFun()) ? pWellRoot: nWellRoot;
                 Rectangle2D searchArea = new Rectangle2D.Double(wc.getBound().getCenterX(), wc.getBound().getCenterY(), 0, 0);
-                for (Iterator<WellBound> it = new RTNode.Search<WellBound>(searchArea, topSearch, true); it.hasNext(); ) {
-                    WellBound wb = it.next();
-                    result.conBound.put(wc, wb);
-                    continue wellLoop;
-                }
-                String errorMsg = "N-Well contact is floating";
-                if (Utils.canBeSubstrateTap(wc.getFun()))
-                    errorMsg = "P-Well contact is floating";
-                errorLogger.logError(errorMsg, EPoint.fromLambda(wc.getBound().getCenterX(), wc.getBound().getCenterY()), cell, 0);
-                wc.setWellNum(new NetValues());
+                Iterator<WellBound> it = new RTNode.Search<WellBound>(searchArea, topSearch, true);
+                if (it.hasNext())
+                    conBounds[i] = it.next();
             }
-            assert ind == wellCons.size();
-            ind = wellBoundPairs(0, pWellRoot, pWellRoot, result.pWellPairs);
-            assert ind == pWellCount;
-            ind = wellBoundPairs(0, nWellRoot, nWellRoot, result.nWellPairs);
-            assert ind == nWellCount;
-            return result;
         }
+    }
 
-        private int wellBoundPairs(int ind, RTNode<WellBound> topSearch, RTNode<WellBound> current, List<Point> pairs) {
-            for (int j = 0; j < current.getTotal(); j++) {
-                if (current.getFlag()) {
+    /**
+     * Fork-join task that merges the wells of an R-Tree node with all wells they touch.
+     * The children of a node are tiles of its area, so work is split by area and
+     * idle threads steal the tiles of busy ones.
+     */
+    private static class WellPairsTask extends RecursiveAction {
+        static final long serialVersionUID = 0;
+        private final RTNode<WellBound> topSearch;
+        private final RTNode<WellBound> current;
+        private final ConcurrentUnionFind wells;
+
+        private WellPairsTask(RTNode<WellBound> topSearch, RTNode<WellBound> current, ConcurrentUnionFind wells) {
+            this.topSearch = topSearch;
+            this.current = current;
+            this.wells = wells;
+        }
+
+        @Override
+        protected void compute() {
+            if (current.getFlag()) {
+                for (int j = 0; j < current.getTotal(); j++) {
                     WellBound wb = current.getChildLeaf(j);
-                    if (ind++ % numTasks != taskIndex) continue;
                     for (Iterator<WellBound> it = new RTNode.Search<WellBound>(wb.bound, topSearch, true); it.hasNext(); ) {
                         WellBound wb2 = it.next();
-                        if (wb.getID() < wb2.getID()) {
-                            pairs.add(new Point(wb.getID(), wb2.getID()));
-                        }
+                        if (wb.getID() < wb2.getID())
+                            wells.union(wb.getID(), wb2.getID());
                     }
-                } else {
-                    RTNode<WellBound> child = current.getChildTree(j);
-                    ind = wellBoundPairs(ind, topSearch, child, pairs);
                 }
+            } else {
+                List<WellPairsTask> tiles = new ArrayList<WellPairsTask>();
+                for (int j = 0; j < current.getTotal(); j++)
+                    tiles.add(new WellPairsTask(topSearch, current.getChildTree(j), wells));
+                invokeAll(tiles);
             }
-            return ind;
         }
     }
-    
-    /**
-     * Initialize equivalence map.
-     * @param size number of elements in equivalence map
-     * @return integer array representing equivalence map consisting of disjoint elements.
-     */
-    static int[] initMap(int size) {
-        int[] map = new int[size];
-        for (int i = 0; i < map.length; i++) {
-            map[i] = i;
-        }
-        return map;
-    }
-
-    /**
-     * Merge classes of equivalence map to which elements a1 and a2 belong.
-     * Returns true if the classes were different
-     */
-    static boolean connectMap(int[] map, int a1, int a2) {
-        int m1, m2, m;
-
-        for (m1 = a1; map[m1] != m1; m1 = map[m1]);
-        for (m2 = a2; map[m2] != m2; m2 = map[m2]);
-        boolean changed = m1 != m2;
-        m = m1 < m2 ? m1 : m2;
-
-        for (;;) {
-            int k = map[a1];
-            map[a1] = m;
-            if (a1 == k) {
-                break;
-            }
-            a1 = k;
-        }
-        for (;;) {
-            int k = map[a2];
-            map[a2] = m;
-            if (a2 == k) {
-                break;
-            }
-            a2 = k;
-        }
-        return changed;
-    }
 
     /**
-     * Obtain canonical representation of equivalence map.
+     * Method to give one NetValues to each class of touching wells.
+     * The classes are numbered in the order of the R-Tree.
+     * @param root the R-Tree of the wells.
+     * @param wells the classes of the wells.
      */
-    static void closureMap(int[] map) {
-        for (int i = 0; i < map.length; i++) {
-            map[i] = map[map[i]];
+    private static void setWellNetValues(RTNode<WellBound> root, ConcurrentUnionFind wells) {
+        NetValues[] classNetValues = new NetValues[wells.size()];
+        for (Iterator<WellBound> it = new RTNode.Search<WellBound>(root); it.hasNext(); ) {
+            WellBound wb = it.next();
+            int ind = wells.find(wb.getID());
+            if (classNetValues[ind] == null)
+                classNetValues[ind] = new NetValues();
+            wb.setNetID(classNetValues[ind]);
         }
     }
 
@@ -898,130 +686,6 @@ public class ERCWellCheck {
         }
     }
 
-    @SuppressWarnings("unchecked")
-    private void assignWellContacts(int numberOfThreads) {
-        wellConIterator = new Iterator[numberOfThreads];
-        wellConLists = new List[numberOfThreads];
-
-        // load the lists
-        if (numberOfThreads == 1) {
-            wellConLists[0] = wellCons;
-        } else {
-            for (int i = 0; i < numberOfThreads; i++) {
-                wellConLists[i] = new ArrayList<WellCon>();
-            }
-            if (Utils.WORKDISTRIBUTION == WorkDistributionStrategy.cluster) {
-                // the new way: cluster the well contacts together
-                Rectangle2D cellBounds = cell.getBounds();
-                Point2D ctr = new Point2D.Double(cellBounds.getCenterX(), cellBounds.getCenterY());
-                Point2D[] farPoints = new Point2D[numberOfThreads];
-
-                for (int i = 0; i < numberOfThreads; i++) {
-                    double farthest = 0;
-                    farPoints[i] = new Point2D.Double(0, 0);
-                    for (WellCon wc : wellCons) {
-                        double dist = 0;
-                        if (i == 0)
-                            dist += wc.getCenter().distance(ctr);
-                        else {
-                            for (int j = 0; j < i; j++)
-                                dist += wc.getCenter().distance(farPoints[j]);
-                        }
-                        if (dist > farthest) {
-                            farthest = dist;
-                            farPoints[i].setLocation(wc.getCenter());
-                        }
-                    }
-                }
-
-                // find the center of the cell
-                for (WellCon wc : wellCons) {
-                    double minDist = Double.MAX_VALUE;
-                    int threadNum = 0;
-                    for (int j = 0; j < numberOfThreads; j++) {
-                        double dist = wc.getCenter().distance(farPoints[j]);
-                        if (dist < minDist) {
-                            minDist = dist;
-                            threadNum = j;
-                        }
-                    }
-                    wellConLists[threadNum].add(wc);
-                }
-            } else if (Utils.WORKDISTRIBUTION == WorkDistributionStrategy.random) {
-
-                for (int i = 0; i < wellCons.size(); i++)
-                    wellConLists[i % numberOfThreads].add(wellCons.get(i));
-
-            } else if (Utils.WORKDISTRIBUTION == WorkDistributionStrategy.bucket) {
-
-                GridDim dim = calculateGridDim(numberOfThreads);
-
-                double sizeCellX = cell.getDefWidth() / dim.xDim;
-                double sizeCellY = cell.getDefHeight() / dim.yDim;
-                int stepWidth = (wellCons.size() < numberOfThreads) ? wellCons.size() : wellCons.size() / numberOfThreads;
-
-                Parallel.For(new BlockedRange1D(0, wellCons.size(), stepWidth),
-                        new WorkDistributionTask(sizeCellX, sizeCellY, dim), threadPool);
-            }
-        }
-
-        // create iterators over the lists
-        for (int i = 0; i < numberOfThreads; i++)
-            wellConIterator[i] = wellConLists[i].iterator();
-    }
-
-    public class WorkDistributionTask extends PForTask<BlockedRange1D> {
-
-        private double sizeX;
-        private double sizeY;
-        private GridDim dim;
-
-        public WorkDistributionTask(double sizeX, double sizeY, GridDim dim) {
-            this.sizeX = sizeX;
-            this.sizeY = sizeY;
-            this.dim = dim;
-        }
-
-        @Override
-        public void execute() {
-            for (int i = range.start(); i < range.end(); i++) {
-                WellCon con = wellCons.get(i);
-                GridDim tmpDim = calculateBucket(con, sizeX, sizeY);
-                int threadId = tmpDim.xDim + tmpDim.yDim * dim.xDim;
-                CollectionFactory.threadSafeListAdd(con, wellConLists[threadId]);
-            }
-        }
-
-    }
-
-    private GridDim calculateBucket(WellCon con, double sizeX, double sizeY) {
-        GridDim result = new GridDim();
-
-        result.xDim = (int) ((con.getBound().getCenterX() - cell.getBounds().getMinX()) / sizeX);
-        result.yDim = (int) ((con.getBound().getCenterY() - cell.getBounds().getMinY()) / sizeY);
-
-        return result;
-    }
-
-    private GridDim calculateGridDim(int numberOfThreads) {
-        GridDim result = new GridDim();
-
-        for (int i = (int) Math.sqrt(numberOfThreads); i >= 1; i--) {
-            if ((i * (numberOfThreads / i)) == numberOfThreads) {
-                result.xDim = i;
-                result.yDim = numberOfThreads / i;
-                return result;
-            }
-        }
-
-        return null;
-    }
-
-    private static class GridDim {
-        private int xDim;
-        private int yDim;
-    }
-
     // provide this information in the R-Tree structure
     private int getTreeSize(RTNode<WellBound> rtree) {
         int total = 0;
@@ -0,0 +1,86 @@
+/* -*- tab-width: 4 -*-
+ *
+ * Electric(tm) VLSI Design System
+ *
+ * File: ConcurrentUnionFind.java
+ *
+ * Copyright (c) 2010, Static Free Software. All rights reserved.
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sun.electric.tool.erc.wellcheck;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Lock-free union-find of the integers 0..size-1, which many threads can union at the same time.
+ * The root of a class is always its smallest element, so the classes and their roots
+ * don't depend on the order of the unions or on the number of threads.
+ */
+public class ConcurrentUnionFind {
+
+	private final AtomicIntegerArray parent;
+
+	public ConcurrentUnionFind(int size) {
+		parent = new AtomicIntegerArray(size);
+		for (int i = 0; i < size; i++)
+			parent.set(i, i);
+	}
+
+	public int size() {
+		return parent.length();
+	}
+
+	/**
+	 * Method to find the root of the class of an element.
+	 * The parent of an element is never larger than the element, so path halving is safe.
+	 * @param a the element.
+	 * @return the smallest element of the class once all unions are done.
+	 */
+	public int find(int a) {
+		for (;;) {
+			int p = parent.get(a);
+			if (p == a)
+				return a;
+			int gp = parent.get(p);
+			if (gp != p)
+				parent.compareAndSet(a, p, gp);
+			a = gp;
+		}
+	}
+
+	/**
+	 * Method to merge the classes of two elements.
+	 * @param a the first element.
+	 * @param b the second element.
+	 * @return true if the classes were different.
+	 */
+	public boolean union(int a, int b) {
+		for (;;) {
+			a = find(a);
+			b = find(b);
+			if (a == b)
+				return false;
+			if (a < b) {
+				int t = a;
+				a = b;
+				b = t;
+			}
+
+			// link the larger root below the smaller one, unless another thread linked it first
+			if (parent.compareAndSet(a, a, b))
+				return true;
+		}
+	}
+}
@@ -40,26 +40,9 @@ import java.util.Iterator;
  */
 public class Utils {
 
-	public enum WorkDistributionStrategy {
-		/**
-		 * assign the well contacts to the worker which is most closed by
-		 */
-		cluster,
-		/**
-		 * assign the well contacts randomly
-		 */
-		random,
-		/**
-		 * Use a grid over the cell to find the right worker
-		 */
-		bucket;
-	}
-
 	public static final boolean GATHERSTATISTICS = false;
 	public static final boolean INCREMENTALGROWTH = false;
 
-	// Change this static variable to change the work distribution
-	public static final WorkDistributionStrategy WORKDISTRIBUTION = WorkDistributionStrategy.bucket;
 	public static List<WellBoundRecord> wellBoundSearchOrder;
 	public static int numObjSearches;
 
@@ -26,6 +26,8 @@ import com.sun.electric.database.variable.UserInterface;
 import com.sun.electric.tool.Job;
 
 import java.io.DataInputStream;
+import java.io.EOFException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -49,12 +51,14 @@ public class GDSReader
 	private final static double twoToNeg56 = 1.0 / makePower (2, 56);
 
 	private DataInputStream dataInputStream;
+	private ByteBuffer      byteBuffer;
 	private DatatypeSymbol  valuetype;
 	private long            fileLength;
 	private String          filePath;
 	private short           dataWord;
 	private byte            recordType, dataType;
 	private long            byteCount;
+	private long            nextProgressUpdate;
 	private int             recordCount;
 	private int             tokenFlags;
 	private int             tokenValue16;
@@ -157,6 +161,23 @@ public class GDSReader
 		recordCount = 0;
 	}
 
+	/**
+	 * Creates a new instance of GDSReader that reads from a (typically memory-mapped) buffer.
+	 * Reading starts at the current position of the buffer.
+	 * @param filePath the path of the GDS file (for error messages).
+	 * @param byteBuffer the buffer with the GDS data.
+	 * @param fileOffset the offset in the file of the buffer's current position (for error messages).
+	 * @param fileLength the length of the file, used for progress reporting (0 to disable progress).
+	 */
+	public GDSReader(String filePath, ByteBuffer byteBuffer, long fileOffset, long fileLength)
+	{
+		this.filePath = filePath;
+		this.byteBuffer = byteBuffer;
+		this.fileLength = fileLength;
+		byteCount = fileOffset;
+		recordCount = 0;
+	}
+
 	/**
 	 * Method to read the header of the next GDS object.
 	 * Depending on the nature of the object, there may need to be additional calls to this to get the "parameters" of the GDS object.
@@ -280,6 +301,11 @@ public class GDSReader
 	private DatatypeSymbol readRecord()
 		throws Exception
 	{
+		if (byteBuffer != null && fileLength != 0 && byteCount >= nextProgressUpdate)
+		{
+			updateProgressDialog(0);
+			nextProgressUpdate = byteCount + fileLength / 100;
+		}
 		dataWord = (short)getWord();
 		recordCount = dataWord - 2;
 		recordType = (byte)(getByte() & 0xFF);
@@ -430,6 +456,14 @@ public class GDSReader
 	public byte getByte()
 		throws Exception
 	{
+		if (byteBuffer != null)
+		{
+			// mapped input: progress is reported once per record in "readRecord()"
+			if (!byteBuffer.hasRemaining()) throw new EOFException();
+			byteCount++;
+			recordCount--;
+			return byteBuffer.get();
+		}
 		byte b = dataInputStream.readByte();
 		updateProgressDialog(1);
 		recordCount--;
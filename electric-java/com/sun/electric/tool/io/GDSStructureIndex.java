@@ -0,0 +1,363 @@
+/* -*- tab-width: 4 -*-
+ *
+ * Electric(tm) VLSI Design System
+ *
+ * File: GDSStructureIndex.java
+ * Input/output tool: GDS structure index
+ *
+ * Copyright (c) 2012, Static Free Software. All rights reserved.
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sun.electric.tool.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * This class does a fast first pass over a GDS file.
+ * It only looks at record headers, and remembers where each structure (BGNSTR/ENDSTR) lies in the file
+ * and which other structures it references, so that structures can be decoded independently afterwards.
+ * The file is memory-mapped in windows so that files larger than 2 GB can be indexed.
+ */
+public class GDSStructureIndex
+{
+	/** size of the mapped window used while scanning */	private static final long WINDOW_SIZE = 1L << 28;
+
+	// record types that are examined during the scan
+	private static final int REC_ENDLIB  = 4;
+	private static final int REC_BGNSTR  = 5;
+	private static final int REC_STRNAME = 6;
+	private static final int REC_ENDSTR  = 7;
+	private static final int REC_BOUNDARY = 8;
+	private static final int REC_PATH    = 9;
+	private static final int REC_TEXT    = 12;
+	private static final int REC_LAYER   = 13;
+	private static final int REC_DATATYPE = 14;
+	private static final int REC_ENDEL   = 17;
+	private static final int REC_SNAME   = 18;
+	private static final int REC_NODE    = 21;
+	private static final int REC_TEXTTYPE = 22;
+	private static final int REC_NODETYPE = 42;
+	private static final int REC_BOX     = 45;
+	private static final int REC_BOXTYPE = 46;
+
+	/**
+	 * Class to describe one structure in the GDS file.
+	 */
+	public static class Structure
+	{
+		private final int index;
+		private final long start;
+		private long end;
+		private String name;
+		private final Set<String> references = new LinkedHashSet<String>();
+
+		private Structure(int index, long start)
+		{
+			this.index = index;
+			this.start = start;
+		}
+
+		/**
+		 * Method to return the position of this Structure in the file (0 for the first structure).
+		 * @return the position of this Structure in the file.
+		 */
+		public int getIndex() { return index; }
+
+		/**
+		 * Method to return the file offset of the BGNSTR record of this Structure.
+		 * @return the file offset of the BGNSTR record.
+		 */
+		public long getStart() { return start; }
+
+		/**
+		 * Method to return the file offset just past the ENDSTR record of this Structure.
+		 * @return the file offset just past the ENDSTR record.
+		 */
+		public long getEnd() { return end; }
+
+		/**
+		 * Method to return the GDS name of this Structure.
+		 * @return the GDS name of this Structure.
+		 */
+		public String getName() { return name; }
+
+		/**
+		 * Method to return the names of structures referenced (by SREF or AREF) in this Structure.
+		 * @return the names of referenced structures, in the order they first appear.
+		 */
+		public Set<String> getReferences() { return Collections.unmodifiableSet(references); }
+
+		@Override
+		public String toString() { return name; }
+	}
+
+	/**
+	 * Class to describe how a GDS layer number and type is used by an element.
+	 */
+	public static class LayerUse
+	{
+		private final int layerNum;
+		private final int layerType;
+		private final boolean textCase;
+
+		private LayerUse(int layerNum, int layerType, boolean textCase)
+		{
+			this.layerNum = layerNum;
+			this.layerType = layerType;
+			this.textCase = textCase;
+		}
+
+		/**
+		 * Method to return the GDS layer number.
+		 * @return the GDS layer number.
+		 */
+		public int getLayerNum() { return layerNum; }
+
+		/**
+		 * Method to return the GDS data, text, box or node type.
+		 * @return the GDS type.
+		 */
+		public int getLayerType() { return layerType; }
+
+		/**
+		 * Method to tell whether the element is read as a possible text (boundaries and texts).
+		 * @return true if the element is read as a possible text.
+		 */
+		public boolean isTextCase() { return textCase; }
+
+		@Override
+		public boolean equals(Object o)
+		{
+			if (!(o instanceof LayerUse)) return false;
+			LayerUse that = (LayerUse)o;
+			return layerNum == that.layerNum && layerType == that.layerType && textCase == that.textCase;
+		}
+
+		@Override
+		public int hashCode() { return (layerNum + (layerType << 16)) * 2 + (textCase ? 1 : 0); }
+	}
+
+	private final String filePath;
+	private final List<Structure> structures = new ArrayList<Structure>();
+	private final Map<String,Structure> structuresByName = new HashMap<String,Structure>();
+	private final Set<String> undefinedReferences = new LinkedHashSet<String>();
+	private final Set<LayerUse> layerUses = new LinkedHashSet<LayerUse>();
+
+	private GDSStructureIndex(String filePath)
+	{
+		this.filePath = filePath;
+	}
+
+	/**
+	 * Method to index the structures in a GDS file.
+	 * @param filePath the path of the GDS file (for error messages).
+	 * @param channel an open channel to the GDS file.
+	 * @return the index of the structures in the file.
+	 * @throws IOException on I/O errors.
+	 * @throws GDSReader.GDSException if the record structure of the file is inconsistent.
+	 */
+	public static GDSStructureIndex scan(String filePath, FileChannel channel)
+		throws IOException, GDSReader.GDSException
+	{
+		GDSStructureIndex index = new GDSStructureIndex(filePath);
+		index.doScan(channel);
+		return index;
+	}
+
+	private void doScan(FileChannel channel)
+		throws IOException, GDSReader.GDSException
+	{
+		long size = channel.size();
+		long windowStart = 0;
+		MappedByteBuffer window = null;
+		Structure cur = null;
+		int element = 0, layerNum = -1;
+		long pos = 0;
+		while (pos + 4 <= size)
+		{
+			if (window == null || pos + 4 > windowStart + window.limit())
+			{
+				windowStart = pos;
+				window = channel.map(FileChannel.MapMode.READ_ONLY, pos, Math.min(WINDOW_SIZE, size - pos));
+			}
+			int off = (int)(pos - windowStart);
+			int len = window.getShort(off) & 0xFFFF;
+			int recType = window.get(off + 2) & 0xFF;
+
+			// zero padding may follow the end of the library
+			if (len == 0) break;
+			if (len < 4 || pos + len > size) handleError("Invalid record length " + len, pos);
+			if (pos + len > windowStart + window.limit())
+			{
+				windowStart = pos;
+				window = channel.map(FileChannel.MapMode.READ_ONLY, pos, Math.min(WINDOW_SIZE, size - pos));
+				off = 0;
+			}
+			switch (recType)
+			{
+				case REC_BGNSTR:
+					if (cur != null) handleError("Begin structure inside structure " + cur.name, pos);
+					cur = new Structure(structures.size(), pos);
+					break;
+				case REC_STRNAME:
+					if (cur == null) handleError("Structure name outside of a structure", pos);
+					cur.name = readString(window, off + 4, len - 4);
+					break;
+				case REC_SNAME:
+					if (cur == null) handleError("Structure reference outside of a structure", pos);
+					cur.references.add(readString(window, off + 4, len - 4));
+					break;
+				case REC_ENDSTR:
+					if (cur == null || cur.name == null) handleError("End structure without structure name", pos);
+					cur.end = pos + len;
+					structures.add(cur);
+					structuresByName.put(cur.name, cur);
+					cur = null;
+					break;
+				case REC_BOUNDARY:
+				case REC_PATH:
+				case REC_TEXT:
+				case REC_NODE:
+				case REC_BOX:
+					element = recType;
+					break;
+				case REC_ENDEL:
+					element = 0;
+					break;
+				case REC_LAYER:
+					if (element == 0 || len < 6) break;
+					layerNum = window.getShort(off + 4) & 0xFFFF;
+					// the reader takes the layer number as the type of a node
+					if (element == REC_NODE) layerUses.add(new LayerUse(layerNum, layerNum, false));
+					break;
+				case REC_DATATYPE:
+				case REC_TEXTTYPE:
+				case REC_NODETYPE:
+				case REC_BOXTYPE:
+					if (element == 0 || element == REC_NODE || layerNum < 0 || len < 6) break;
+					layerUses.add(new LayerUse(layerNum, window.getShort(off + 4) & 0xFFFF,
+						element == REC_BOUNDARY || element == REC_TEXT));
+					break;
+			}
+			if (recType != REC_LAYER) layerNum = -1;
+			pos += len;
+			if (recType == REC_ENDLIB) break;
+		}
+		if (cur != null) handleError("Structure " + cur.name + " has no end", pos);
+
+		for(Structure s : structures)
+		{
+			for(String ref : s.references)
+				if (!structuresByName.containsKey(ref)) undefinedReferences.add(ref);
+		}
+	}
+
+	private void handleError(String msg, long pos)
+		throws GDSReader.GDSException
+	{
+		throw new GDSReader.GDSException("Error: " + msg + " at byte " + pos + " in '" + filePath + "'");
+	}
+
+	private static String readString(ByteBuffer buf, int off, int len)
+	{
+		StringBuilder sb = new StringBuilder(len);
+		for(int i=0; i<len; i++)
+		{
+			char letter = (char)buf.get(off + i);
+			if (letter != 0) sb.append(letter);
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Method to return all structures in the order they appear in the file.
+	 * @return all structures in file order.
+	 */
+	public List<Structure> getStructures() { return Collections.unmodifiableList(structures); }
+
+	/**
+	 * Method to find a structure by its GDS name.
+	 * If the name is defined more than once, the last definition is returned.
+	 * @param name the GDS name of the structure.
+	 * @return the Structure (null if not defined in the file).
+	 */
+	public Structure findStructure(String name) { return structuresByName.get(name); }
+
+	/**
+	 * Method to return the names of structures that are referenced but not defined in the file.
+	 * @return the names of undefined structures, in the order they are first referenced.
+	 */
+	public Set<String> getUndefinedReferences() { return Collections.unmodifiableSet(undefinedReferences); }
+
+	/**
+	 * Method to return the layers used by the elements of the file.
+	 * @return the layer uses, in the order they first appear in the file.
+	 */
+	public Set<LayerUse> getLayerUses() { return Collections.unmodifiableSet(layerUses); }
+
+	/**
+	 * Method to return all structures ordered so that every structure comes after the structures it references.
+	 * Cycles in the hierarchy (which are illegal in GDS) are broken arbitrarily.
+	 * @return all structures in bottom-up order.
+	 */
+	public List<Structure> getBottomUpOrder()
+	{
+		List<Structure> order = new ArrayList<Structure>(structures.size());
+		Set<Structure> visited = new HashSet<Structure>();
+		for(Structure s : structures)
+			addBottomUp(s, visited, order);
+		return order;
+	}
+
+	private void addBottomUp(Structure top, Set<Structure> visited, List<Structure> order)
+	{
+		if (!visited.add(top)) return;
+
+		// iterative depth-first traversal to survive deep hierarchies
+		List<Structure> stack = new ArrayList<Structure>();
+		List<Iterator<String>> iterators = new ArrayList<Iterator<String>>();
+		stack.add(top);
+		iterators.add(top.references.iterator());
+		while (!stack.isEmpty())
+		{
+			int last = stack.size() - 1;
+			Iterator<String> it = iterators.get(last);
+			if (it.hasNext())
+			{
+				Structure sub = structuresByName.get(it.next());
+				if (sub != null && visited.add(sub))
+				{
+					stack.add(sub);
+					iterators.add(sub.references.iterator());
+				}
+				continue;
+			}
+			order.add(stack.remove(last));
+			iterators.remove(last);
+		}
+	}
+}
@@ -441,6 +441,24 @@ public class IOTool extends Tool
 	 */
 	public static int getFactoryBackupRedundancy() { return cacheBackupRedundancy.getIntFactoryValue(); }
 
+	private static Pref cacheJELIBInParallel = Pref.makeBooleanPref("JELIBInParallel", IOTool.tool.prefs, false);
+	/**
+	 * Method to tell whether reading a JELIB library parses it and all referenced libraries in parallel.
+	 * The default is "false".
+	 * @return true if JELIB libraries are parsed in parallel.
+	 */
+	public static boolean isJELIBInParallel() { return cacheJELIBInParallel.getBoolean(); }
+	/**
+	 * Method to set whether reading a JELIB library parses it and all referenced libraries in parallel.
+	 * @param c true if JELIB libraries are parsed in parallel.
+	 */
+	public static void setJELIBInParallel(boolean c) { cacheJELIBInParallel.setBoolean(c); }
+	/**
+	 * Method to tell whether reading a JELIB library parses it and all referenced libraries in parallel, by default.
+	 * @return true if JELIB libraries are parsed in parallel, by default.
+	 */
+	public static boolean isFactoryJELIBInParallel() { return cacheJELIBInParallel.getBooleanFactoryValue(); }
+
 	/****************************** GENERAL OUTPUT PREFERENCES ******************************/
 
 	/**
@@ -820,6 +838,26 @@ public class IOTool extends Tool
 	 */
 	public static boolean isFactoryDEFPlaceAndConnectAllPins() { return cacheDEFPlaceAndConnectAllPins.getBooleanFactoryValue(); }
 
+	private static Pref cacheDEFIndexedImport = Pref.makeBooleanPref("DEFIndexedImport", IOTool.tool.prefs, false);
+	/**
+	 * Method to tell whether DEF Input uses the indexed mode for large designs.
+	 * This mode reads the file through a memory map, creates components in batches,
+	 * and connects wires to the ports of existing nodes through an R-Tree.
+	 * The default is "false" (normal import).
+	 * @return true if DEF Input uses the indexed mode for large designs.
+	 */
+	public static boolean isDEFIndexedImport() { return cacheDEFIndexedImport.getBoolean(); }
+	/**
+	 * Method to set whether DEF Input uses the indexed mode for large designs.
+	 * @param on true if DEF Input uses the indexed mode for large designs.
+	 */
+	public static void setDEFIndexedImport(boolean on) { cacheDEFIndexedImport.setBoolean(on); }
+	/**
+	 * Method to tell whether DEF Input uses the indexed mode for large designs, by default.
+	 * @return true if DEF Input uses the indexed mode for large designs, by default.
+	 */
+	public static boolean isFactoryDEFIndexedImport() { return cacheDEFIndexedImport.getBooleanFactoryValue(); }
+
 	public static final int DEFLEFUNKNOWNLAYERIGNORE    = 0;
 	public static final int DEFLEFUNKNOWNLAYERUSEDRC    = 1;
 	private static Pref cacheDEFInUnknownLayerHandling = Pref.makeIntPref("DEFInUnknownLayerHandling", IOTool.tool.prefs, DEFLEFUNKNOWNLAYERIGNORE);
@@ -1086,6 +1124,25 @@ public class IOTool extends Tool
 	 */
 	public static boolean isFactoryGDSWritesEntireLibrary() { return cacheGDSWritesEntireLibrary.getBooleanFactoryValue(); }
 
+	private static Pref cacheGDSOutStreaming = Pref.makeBooleanPref("GDSOutStreaming", IOTool.tool.prefs, false);
+	/**
+	 * Method to tell whether GDS Export streams its output.
+	 * When streaming, only one cell's geometry is held at a time and records go through a reused NIO buffer.
+	 * The default is "false".
+	 * @return true if GDS Export streams its output.
+	 */
+	public static boolean isGDSOutStreaming() { return cacheGDSOutStreaming.getBoolean(); }
+	/**
+	 * Method to set whether GDS Export streams its output.
+	 * @param on true if GDS Export streams its output.
+	 */
+	public static void setGDSOutStreaming(boolean on) { cacheGDSOutStreaming.setBoolean(on); }
+	/**
+	 * Method to tell whether GDS Export streams its output, by default.
+	 * @return true if GDS Export streams its output, by default.
+	 */
+	public static boolean isFactoryGDSOutStreaming() { return cacheGDSOutStreaming.getBooleanFactoryValue(); }
+
 	private static Pref cacheGDSFlatDesign = Pref.makeBooleanPref("GDSFlatDesign", IOTool.tool.prefs, false);
 	/**
 	 * Method to tell whether GDS Export flats the design before generating the GDS file.
@@ -1377,6 +1434,24 @@ public class IOTool extends Tool
 	 */
 	public static boolean isFactoryGDSDumpReadable() { return cacheGDSDumpReadable.getBooleanFactoryValue(); }
 
+	private static Pref cacheGDSInParallel = Pref.makeBooleanPref("GDSInParallel", IOTool.tool.prefs, false);
+	/**
+	 * Method to tell whether GDS input memory-maps the file and decodes structures in parallel.
+	 * The default is "false".
+	 * @return true if GDS input decodes structures in parallel.
+	 */
+	public static boolean isGDSInParallel() { return cacheGDSInParallel.getBoolean(); }
+	/**
+	 * Method to set whether GDS input memory-maps the file and decodes structures in parallel.
+	 * @param c true if GDS input decodes structures in parallel.
+	 */
+	public static void setGDSInParallel(boolean c) { cacheGDSInParallel.setBoolean(c); }
+	/**
+	 * Method to tell whether GDS input memory-maps the file and decodes structures in parallel, by default.
+	 * @return true if GDS input decodes structures in parallel, by default.
+	 */
+	public static boolean isFactoryGDSInParallel() { return cacheGDSInParallel.getBooleanFactoryValue(); }
+
     /****************************** POSTSCRIPT OUTPUT PREFERENCES ******************************/
 
 	private static Pref cachePrintEncapsulated = Pref.makeBooleanPref("PostScriptEncapsulated", IOTool.tool.prefs, false);
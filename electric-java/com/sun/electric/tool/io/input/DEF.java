@@ -24,6 +24,7 @@
 package com.sun.electric.tool.io.input;
 
 import com.sun.electric.database.EditingPreferences;
+import com.sun.electric.database.ImmutableNodeInst;
 import com.sun.electric.database.ImmutableArcInst;
 import com.sun.electric.database.geometry.EPoint;
 import com.sun.electric.database.geometry.ERectangle;
@@ -39,9 +40,9 @@ import com.sun.electric.database.prototype.NodeProto;
 import com.sun.electric.database.prototype.PortCharacteristic;
 import com.sun.electric.database.prototype.PortProto;
 import com.sun.electric.database.text.CellName;
+import com.sun.electric.database.text.Name;
 import com.sun.electric.database.text.TextUtils;
 import com.sun.electric.database.topology.ArcInst;
-import com.sun.electric.database.topology.Geometric;
 import com.sun.electric.database.topology.NodeInst;
 import com.sun.electric.database.topology.PortInst;
 import com.sun.electric.database.topology.RTBounds;
@@ -57,6 +58,8 @@ import com.sun.electric.technology.Technology;
 import com.sun.electric.technology.technologies.Generic;
 import com.sun.electric.tool.Job;
 import com.sun.electric.tool.io.IOTool;
+import com.sun.electric.tool.user.CircuitChangeJobs;
+import com.sun.electric.util.ElapseTimer;
 import com.sun.electric.util.math.DBMath;
 import com.sun.electric.util.math.FixpRectangle;
 import com.sun.electric.util.math.FixpTransform;
@@ -64,13 +67,21 @@ import com.sun.electric.util.math.Orientation;
 
 import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
+import java.io.File;
 import java.io.IOException;
 import java.net.URL;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.BitSet;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -133,6 +144,18 @@ public class DEF extends LEFDEF
 
 	private DEFPreferences localPrefs;
 
+	// indexed import of large designs
+	private static final int COMPONENTBATCH = 100000;
+	private static final int PROGRESSBYTES = 1 << 20;
+	private MappedKeywordReader mappedReader;
+	private RTNode<NodeInst> placedNodes;
+	private List<ImmutableNodeInst> pendingNodes;
+	private List<String> pendingNames;
+	private Set<String> pendingNameSet;
+	private Map<String,Long> phaseTimes = new LinkedHashMap<String,Long>();
+	private String phaseName;
+	private long phaseStart;
+
 	public static class DEFPreferences extends InputPreferences
 	{
 		public boolean physicalPlacement;
@@ -147,6 +170,7 @@ public class DEF extends LEFDEF
 		public int unknownLayerHandling;
 		public boolean connectByGDSName;
 		public boolean connectAndPlaceAllPins;
+		public boolean indexedImport;
 
 		public DEFPreferences(boolean factory)
 		{
@@ -164,6 +188,7 @@ public class DEF extends LEFDEF
 				unknownLayerHandling = IOTool.getFactoryDEFInUnknownLayerHandling();
 				connectByGDSName = IOTool.isFactoryDEFConnectByGDSNames();
 				connectAndPlaceAllPins = IOTool.isFactoryDEFPlaceAndConnectAllPins();
+				indexedImport = IOTool.isFactoryDEFIndexedImport();
 			} else
 			{
 				physicalPlacement = IOTool.isDEFPhysicalPlacement();
@@ -177,6 +202,7 @@ public class DEF extends LEFDEF
 				unknownLayerHandling = IOTool.getDEFInUnknownLayerHandling();
 				connectByGDSName = IOTool.isDEFConnectByGDSNames();
 				connectAndPlaceAllPins = IOTool.isDEFPlaceAndConnectAllPins();
+				indexedImport = IOTool.isDEFIndexedImport();
 			}
 		}
 
@@ -186,6 +212,7 @@ public class DEF extends LEFDEF
 			DEF in = new DEF(ep, this);
 			in.job = job;
 			if (in.openTextInput(fileURL)) return null;
+			if (indexedImport) in.openMappedInput(fileURL);
 			lib = in.importALibrary(lib, tech, currentCells);
 			in.closeInput();
 			return lib;
@@ -225,6 +252,13 @@ public class DEF extends LEFDEF
 		{
 			System.out.println("ERROR reading DEF libraries");
 		}
+		endPhase();
+		if (localPrefs.indexedImport)
+		{
+			System.out.println("DEF import phases:");
+			for(Map.Entry<String,Long> e : phaseTimes.entrySet())
+				System.out.println("   " + e.getKey() + " took " + ElapseTimer.createInstanceByValues(0, e.getValue().longValue()));
+		}
 		return lib;
 	}
 
@@ -235,6 +269,178 @@ public class DEF extends LEFDEF
 		return line;
 	}
 
+	/**
+	 * Method to read keywords through a memory map of the file instead of the line reader.
+	 * Nothing changes if the URL is not a plain file.
+	 * @param fileURL the DEF file.
+	 */
+	private void openMappedInput(URL fileURL)
+	{
+		File file = TextUtils.getFile(fileURL);
+		if (file == null || !file.isFile() || file.getName().endsWith(".gz")) return;
+		try
+		{
+			mappedReader = new MappedKeywordReader(file);
+			if (fileLength == 0) fileLength = file.length();
+		} catch (IOException e)
+		{
+			System.out.println("Cannot map " + file + ", reading it line by line");
+		}
+	}
+
+	@Override
+	public void closeInput()
+	{
+		if (mappedReader != null)
+		{
+			try
+			{
+				mappedReader.close();
+			} catch (IOException e) {}
+			mappedReader = null;
+		}
+		super.closeInput();
+	}
+
+	@Override
+	protected String getAKeyword()
+		throws IOException
+	{
+		if (mappedReader == null) return super.getAKeyword();
+		String key = mappedReader.getKeyword();
+		long pos = mappedReader.getPosition();
+		if (pos - byteCount >= PROGRESSBYTES) updateProgressDialog((int)(pos - byteCount));
+		return key;
+	}
+
+	@Override
+	protected int getLineNumber()
+	{
+		if (mappedReader == null) return super.getLineNumber();
+		return mappedReader.getLineNumber();
+	}
+
+	/**
+	 * Class to split a memory-mapped DEF file into keywords.
+	 * It works on the bytes of the file, without making a String of each line.
+	 * Keywords are separated by blanks and line ends, and "#" starts a comment, as in preprocessLine().
+	 * Large files are mapped one window at a time.
+	 */
+	private static class MappedKeywordReader
+	{
+		private static final long WINDOW = 1L << 28;
+		private static final int NOCHAR = -2;
+
+		private final FileChannel channel;
+		private final long size;
+		private MappedByteBuffer buf;
+		private long bufStart;
+		private int lineNumber = 1;
+		private int pushback = NOCHAR;
+		private byte[] token = new byte[64];
+
+		private MappedKeywordReader(File file)
+			throws IOException
+		{
+			channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+			size = channel.size();
+			map(0);
+		}
+
+		private void map(long start)
+			throws IOException
+		{
+			bufStart = start;
+			buf = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(WINDOW, size - start));
+		}
+
+		private int read()
+			throws IOException
+		{
+			if (!buf.hasRemaining())
+			{
+				long next = bufStart + buf.limit();
+				if (next >= size) return -1;
+				map(next);
+			}
+			return buf.get() & 0xFF;
+		}
+
+		long getPosition() { return bufStart + buf.position(); }
+
+		int getLineNumber() { return lineNumber; }
+
+		/**
+		 * Method to return the next keyword in the file.
+		 * @return the next keyword (null at the end of the file).
+		 */
+		String getKeyword()
+			throws IOException
+		{
+			int c = pushback;
+			pushback = NOCHAR;
+			if (c == NOCHAR) c = read();
+
+			// skip blanks, line ends, and comments
+			for(;;)
+			{
+				if (c < 0) return null;
+				if (c == ' ' || c == '\t')
+				{
+					c = read();
+				} else if (c == '\n' || c == '\r')
+				{
+					lineNumber++;
+					int next = read();
+					if (c == '\r' && next == '\n') next = read();
+					c = next;
+				} else if (c == '#')
+				{
+					do c = read(); while (c >= 0 && c != '\n' && c != '\r');
+				} else break;
+			}
+
+			// collect the keyword
+			int len = 0;
+			boolean ascii = true;
+			while (c >= 0 && c != ' ' && c != '\t' && c != '\n' && c != '\r' && c != '#')
+			{
+				if (len == token.length) token = Arrays.copyOf(token, len * 2);
+				token[len++] = (byte)c;
+				if (c >= 0x80) ascii = false;
+				c = read();
+			}
+
+			// the character after the keyword is handled by the next call, so line ends are counted there
+			pushback = c;
+			return new String(token, 0, len, ascii ? StandardCharsets.ISO_8859_1 : Charset.defaultCharset());
+		}
+
+		void close()
+			throws IOException
+		{
+			buf = null;
+			channel.close();
+		}
+	}
+
+	/**
+	 * Method to add the time since a start time to the time of a phase of the import.
+	 * The phases are printed at the end of an indexed import.
+	 */
+	private void addPhaseTime(String name, long startTime)
+	{
+		Long time = phaseTimes.get(name);
+		long elapsed = System.currentTimeMillis() - startTime;
+		phaseTimes.put(name, Long.valueOf(time == null ? elapsed : time.longValue() + elapsed));
+	}
+
+	private void endPhase()
+	{
+		if (phaseName != null) addPhaseTime(phaseName, phaseStart);
+		phaseName = null;
+	}
+
 	/**
 	 * Method to read the DEF file.
 	 * @return true on error.
@@ -343,6 +549,7 @@ public class DEF extends LEFDEF
 			{
 				if (!localPrefs.ignoreViasBlock)
 				{
+					reportSection("VIAS");
 					if (readVias(lib, cell)) return true;
 				}
 				else
@@ -433,6 +640,10 @@ public class DEF extends LEFDEF
 
 	private void reportSection(String name)
 	{
+		endPhase();
+		phaseName = name;
+		phaseStart = System.currentTimeMillis();
+		if (!phaseTimes.containsKey(name)) phaseTimes.put(name, Long.valueOf(0));
 		if (Job.getDebug())
 		{
 			long pct = byteCount * 100L / fileLength;
@@ -932,31 +1143,56 @@ public class DEF extends LEFDEF
 		throws IOException
 	{
 		if (ignoreToSemicolon("COMPONENTS", cell)) return true;
-		for(;;)
+		if (localPrefs.indexedImport)
+		{
+			// index the nodes that are already in the cell, so that new nodes need not update the cell's R-Tree
+			List<NodeInst> nodes = new ArrayList<NodeInst>();
+			for(Iterator<NodeInst> it = cell.getNodes(); it.hasNext(); )
+				nodes.add(it.next());
+			placedNodes = RTNode.bulkLoad(nodes);
+			pendingNodes = new ArrayList<ImmutableNodeInst>();
+			pendingNames = new ArrayList<String>();
+			pendingNameSet = new HashSet<String>();
+		}
+		try
 		{
-			if (job != null && job.checkAbort())
+			for(;;)
 			{
-				System.out.println("DEF import aborted!");
-				return true;
-		    }
+				if (job != null && job.checkAbort())
+				{
+					System.out.println("DEF import aborted!");
+					return true;
+				}
 
-            // get the next keyword
-			String key = mustGetKeyword("COMPONENTs", cell);
-			if (key == null) return true;
-			if (key.equals("-"))
-			{
-				if (readComponent(cell, lib)) return true;
-				continue;
-			}
+				// get the next keyword
+				String key = mustGetKeyword("COMPONENTs", cell);
+				if (key == null) return true;
+				if (key.equals("-"))
+				{
+					if (readComponent(cell, lib)) return true;
+					continue;
+				}
 
-			if (key.equalsIgnoreCase("END"))
+				if (key.equalsIgnoreCase("END"))
+				{
+					key = getAKeyword();
+					break;
+				}
+
+				// ignore the keyword
+				if (ignoreToSemicolon(key, cell)) return true;
+			}
+		} finally
+		{
+			// the components read so far are created even when the section stops early
+			if (localPrefs.indexedImport)
 			{
-				key = getAKeyword();
-				break;
+				createPendingComponents(cell);
+				placedNodes = null;
+				pendingNodes = null;
+				pendingNames = null;
+				pendingNameSet = null;
 			}
-
-			// ignore the keyword
-			if (ignoreToSemicolon(key, cell)) return true;
 		}
 		return false;
 	}
@@ -1057,6 +1293,15 @@ public class DEF extends LEFDEF
 		}
 
 		EPoint loc = EPoint.fromLambda(nx, ny);
+		if (acceptNode(loc, sX, sY) && localPrefs.indexedImport)
+		{
+			if (!hasLocation)
+			{
+				reportWarning("Instance " + compName + " of model " + modelName +
+					" has no location in cell " + cell.describe(false) + ". Placing it at (0,0)", cell);
+			}
+			return addComponent(np, loc, sX, sY, cell, or, compName);
+		}
 		if (acceptNode(loc, sX, sY))
 		{
 			NodeInst ni = makeNodeMoreInfo(np, loc, sX, sY, cell, or, compName);
@@ -1081,7 +1326,7 @@ public class DEF extends LEFDEF
 	{
 		if (special) specialNetsHT = new HashMap<String,PortInst>();
 			else normalNetsHT = new HashMap<String,PortInst>();
-		initNets();
+		initNets(cell);
 
 		// get the number of nets
 		int numNets = 0;
@@ -2435,7 +2680,7 @@ public class DEF extends LEFDEF
 		throws IOException
 	{
 		String key = getAKeyword();
-		if (key == null) reportError("EOF parsing " + where  + " at line " + lineReader.getLineNumber(), cell);
+		if (key == null) reportError("EOF parsing " + where  + " at line " + getLineNumber(), cell);
 		return key;
 	}
 
@@ -2562,12 +2807,27 @@ public class DEF extends LEFDEF
 			return ni;
 
 		Rectangle2D searchBounds = new Rectangle2D.Double(loc.getX(), loc.getY(), 0, 0);
-		for(Iterator<Geometric> it = cell.searchIterator(searchBounds); it.hasNext(); )
+		ni = renamePlacedNode(cell.searchIterator(searchBounds), np, loc, name);
+		if (ni != null) return ni;
+
+		// creating one
+		return createNode(np, loc, sX, sY, cell, or, name);
+	}
+
+	/**
+	 * Method to find a node of a given type whose lower-left corner is at a given location,
+	 * and to give it a new name.
+	 * @param it the nodes near the location.
+	 * @return the renamed node (null if there is none).
+	 */
+	private NodeInst renamePlacedNode(Iterator<? extends RTBounds> it, NodeProto np, EPoint loc, String name)
+	{
+		while (it.hasNext())
 		{
-			Geometric geom = it.next();
+			RTBounds geom = it.next();
 			if (geom instanceof NodeInst)
 			{
-				ni = (NodeInst)geom;
+				NodeInst ni = (NodeInst)geom;
 				if (ni.getProto() == np)
 				{
 					ERectangle bound = ni.getBounds();
@@ -2589,9 +2849,12 @@ public class DEF extends LEFDEF
 				}
 			}
 		}
+		return null;
+	}
 
-		// creating one
-		ni = NodeInst.makeInstance(np, ep, loc, sX, sY, cell, or, name);
+	private NodeInst createNode(NodeProto np, EPoint loc, double sX, double sY, Cell cell, Orientation or, String name)
+	{
+		NodeInst ni = NodeInst.makeInstance(np, ep, loc, sX, sY, cell, or, name);
 		if (ni == null)
 		{
 			reportError("Unable to create node named '" + name + "'", cell);
@@ -2611,6 +2874,78 @@ public class DEF extends LEFDEF
 		return ni;
 	}
 
+	/**
+	 * Method to add a component in an indexed import.
+	 * It matches existing nodes as makeNodeMoreInfo() does, but only those that were in the cell
+	 * before the COMPONENTS section, found in an R-Tree built once for the section.
+	 * New instances are queued and added to the cell in batches.
+	 * @return true on error.
+	 */
+	private boolean addComponent(Cell np, EPoint loc, double sX, double sY, Cell cell, Orientation or, String name)
+	{
+		// the first component of a name makes the node
+		if (pendingNameSet.contains(name)) return false;
+		NodeInst ni = cell.findNode(name);
+		if (ni == null)
+		{
+			Rectangle2D searchBounds = new Rectangle2D.Double(loc.getX(), loc.getY(), 0, 0);
+			ni = renamePlacedNode(new RTNode.Search<NodeInst>(searchBounds, placedNodes, true), np, loc, name);
+		}
+		if (ni == null)
+		{
+			Name nameKey = Name.findName(name);
+			if (!nameKey.isValid() || nameKey.hasEmptySubnames() || nameKey.isBus() || nameKey.isTempname())
+			{
+				// names that the cell would change are created one at a time
+				ni = createNode(np, loc, sX, sY, cell, or, name);
+				if (ni == null) return true;
+			} else
+			{
+				// place the lower-left corner of the cell at the location
+				Rectangle2D cellBounds = np.getBounds();
+				Rectangle2D rotated = new Rectangle2D.Double();
+				or.rectangleBounds(cellBounds, new Point2D.Double(0, 0), rotated);
+				EPoint anchor = EPoint.snap(new Point2D.Double(loc.getX() + cellBounds.getMinX() - rotated.getMinX(),
+					loc.getY() + cellBounds.getMinY() - rotated.getMinY()));
+				int nodeId;
+				do
+				{
+					nodeId = cell.getId().newNodeId();
+				} while (cell.getNodeById(nodeId) != null);
+				pendingNodes.add(ImmutableNodeInst.newInstance(nodeId, np.getId(), nameKey, ep.getNodeTextDescriptor(),
+					or, anchor, EPoint.ORIGIN, 0, 0, ep.getInstanceTextDescriptor()));
+				pendingNames.add(name);
+				pendingNameSet.add(name);
+				if (pendingNodes.size() >= COMPONENTBATCH) createPendingComponents(cell);
+				return false;
+			}
+		}
+		instanceMap.put(name.toLowerCase(), ni);
+		return false;
+	}
+
+	/**
+	 * Method to add the queued components of an indexed import to the cell.
+	 */
+	private void createPendingComponents(Cell cell)
+	{
+		if (pendingNodes.isEmpty()) return;
+		long startTime = System.currentTimeMillis();
+		cell.addNodes(pendingNodes);
+		for(int i = 0; i < pendingNodes.size(); i++)
+		{
+			// do what NodeInst.makeInstance() does for cell instances
+			NodeInst ni = cell.getNodeById(pendingNodes.get(i).nodeId);
+			if (((Cell)ni.getProto()).isWantExpanded()) ni.setExpanded(true);
+			CircuitChangeJobs.inheritAttributes(ni, ep);
+			instanceMap.put(pendingNames.get(i).toLowerCase(), ni);
+		}
+		pendingNodes.clear();
+		pendingNames.clear();
+		pendingNameSet.clear();
+		addPhaseTime("   creating instances", startTime);
+	}
+
 	private NodeInst makeNode(NodeProto np, EPoint loc, double sX, double sY, Cell cell)
 	{
 		NodeInst ni = NodeInst.makeInstance(np, ep, loc, sX, sY, cell);
@@ -2935,19 +3270,28 @@ public class DEF extends LEFDEF
 		return null;
 	}
 
-	private static final boolean NEWPORTSTORAGE = false;
-
 	private Map<Double,List<NodeInst>> portHT = null;
 	private RTNode<PortInstBound> portRoot;
 
-	private void initNets()
+	private void initNets(Cell cell)
 	{
-		if (NEWPORTSTORAGE)
+		portHT = new HashMap<Double,List<NodeInst>>();
+		portRoot = null;
+		if (localPrefs.indexedImport)
 		{
-			portRoot = RTNode.makeTopLevel();
-		} else
-		{
-			portHT = new HashMap<Double,List<NodeInst>>();
+			// index the ports of the nodes that are already in the cell, in one pass
+			long startTime = System.currentTimeMillis();
+			List<PortInstBound> ports = new ArrayList<PortInstBound>();
+			for(Iterator<NodeInst> it = cell.getNodes(); it.hasNext(); )
+			{
+				for(Iterator<PortInst> pIt = it.next().getPortInsts(); pIt.hasNext(); )
+				{
+					PortInst pi = pIt.next();
+					ports.add(new PortInstBound(pi, pi.getBounds()));
+				}
+			}
+			portRoot = RTNode.bulkLoad(ports);
+			addPhaseTime("   indexing ports", startTime);
 		}
 	}
 
@@ -2973,46 +3317,39 @@ public class DEF extends LEFDEF
 	 */
 	private PortInst findConnection(double x, double y, ArcProto ap, Cell cell, NodeInst noti)
 	{
-		if (NEWPORTSTORAGE)
+		// look at the pins made in this section
+		Point2D pt = new Point2D.Double(x, y);
+		Double key = new Double(x+y);
+		List<NodeInst> pl = portHT.get(key);
+		if (pl != null)
 		{
-			// the new way, uses R-Trees
-			Rectangle2D search = new Rectangle2D.Double(x, y, 0, 0);
-			for (Iterator<PortInstBound> sea = new RTNode.Search<PortInstBound>(search, portRoot, true); sea.hasNext();)
+			for (NodeInst ni : pl)
 			{
-				PortInstBound inArea = sea.next();
-				NodeInst ni = inArea.pi.getNodeInst();
 				if (ni == noti) continue;
 				for(Iterator<PortInst> it = ni.getPortInsts(); it.hasNext(); )
 				{
 					PortInst pi = it.next();
 					if (!pi.getPortProto().connectsTo(ap)) continue;
 					Poly poly = pi.getPoly();
-					return pi;
+					if (poly.isInside(pt)) return pi;
 				}
 			}
-			return null;
-		} else
+		}
+
+		// in an indexed import, also look at the ports of the nodes that were there before
+		if (portRoot != null)
 		{
-			// the old way (faster, doesn't find ports on existing nodes)
-			Double key = new Double(x+y);
-			List<NodeInst> pl = portHT.get(key);
-			if (pl != null)
+			Rectangle2D search = new Rectangle2D.Double(x, y, 0, 0);
+			for (Iterator<PortInstBound> sea = new RTNode.Search<PortInstBound>(search, portRoot, true); sea.hasNext();)
 			{
-				Point2D pt = new Point2D.Double(x, y);
-				for (NodeInst ni : pl)
-				{
-					if (ni == noti) continue;
-					for(Iterator<PortInst> it = ni.getPortInsts(); it.hasNext(); )
-					{
-						PortInst pi = it.next();
-						if (!pi.getPortProto().connectsTo(ap)) continue;
-						Poly poly = pi.getPoly();
-						if (poly.isInside(pt)) return pi;
-					}
-				}
+				PortInst pi = sea.next().pi;
+				if (pi.getNodeInst() == noti) continue;
+				if (!pi.getPortProto().connectsTo(ap)) continue;
+				Poly poly = pi.getPoly();
+				if (poly.isInside(pt)) return pi;
 			}
-			return null;
 		}
+		return null;
 	}
 
 	/**
@@ -3038,18 +3375,11 @@ public class DEF extends LEFDEF
 		if (ni == null) return null;
 		pi = ni.getOnlyPortInst();
 
-		if (NEWPORTSTORAGE)
-		{
-			// store this pin in the data structure (new way)
-			portRoot = RTNode.linkGeom(null, portRoot, new PortInstBound(pi, pi.getBounds()));
-		} else
-		{
-			// store this pin in the data structure (old way)
-			Double key = new Double(x+y);
-			List<NodeInst> pl = portHT.get(key);
-			if (pl == null) portHT.put(key, pl = new ArrayList<NodeInst>());
-			pl.add(ni);
-		}
+		// store this pin in the data structure
+		Double key = new Double(x+y);
+		List<NodeInst> pl = portHT.get(key);
+		if (pl == null) portHT.put(key, pl = new ArrayList<NodeInst>());
+		pl.add(ni);
 
 		return pi;
 	}
@@ -3082,7 +3412,7 @@ public class DEF extends LEFDEF
 	private void ensureArcFunctions(ArcProto.Function exp, ArcProto.Function got)
 	{
 		if (exp == got) return;
-		System.out.println("WARNING: Arc function " + got + " found at line " + lineReader.getLineNumber() +
+		System.out.println("WARNING: Arc function " + got + " found at line " + getLineNumber() +
 			" but expected function " + exp);
 	}
 }
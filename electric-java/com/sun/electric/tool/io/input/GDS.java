@@ -25,6 +25,7 @@
 package com.sun.electric.tool.io.input;
 
 import com.sun.electric.database.EditingPreferences;
+import com.sun.electric.database.Environment;
 import com.sun.electric.database.ImmutableExport;
 import com.sun.electric.database.ImmutableNodeInst;
 import com.sun.electric.database.geometry.EPoint;
@@ -51,6 +52,7 @@ import com.sun.electric.database.topology.NodeInst;
 import com.sun.electric.database.variable.ElectricObject;
 import com.sun.electric.database.variable.MutableTextDescriptor;
 import com.sun.electric.database.variable.TextDescriptor;
+import com.sun.electric.database.variable.UserInterface;
 import com.sun.electric.database.variable.Variable;
 import com.sun.electric.technology.ArcProto;
 import com.sun.electric.technology.Layer;
@@ -64,6 +66,7 @@ import com.sun.electric.tool.Job;
 import com.sun.electric.tool.io.FileType;
 import com.sun.electric.tool.io.GDSReader;
 import com.sun.electric.tool.io.GDSReader.GSymbol;
+import com.sun.electric.tool.io.GDSStructureIndex;
 import com.sun.electric.tool.io.IOTool;
 import com.sun.electric.tool.ncc.basic.NccCellAnnotations;
 import com.sun.electric.tool.user.dialogs.OpenFile;
@@ -78,12 +81,16 @@ import java.awt.Point;
 import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
 import java.io.BufferedWriter;
+import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.PrintWriter;
+import java.io.RandomAccessFile;
 import java.net.URL;
 import java.net.URLConnection;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
 import java.util.BitSet;
 import java.util.Collection;
@@ -96,6 +103,12 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 /**
  * This class reads files in GDS files.
@@ -158,14 +171,15 @@ public class GDS extends Input<Object>
 	private double           theScale;
 	private Map<Integer,List<Layer>> layerNames; // can be a list of layers for example Diff layers 
 	private Map<Integer,UnknownLayerMessage> layerErrorMessages;
+	private Set<Integer>     invisibleLayers;
 	private static Map<Integer,UnknownLayerMessage> layerWarningMessages;
 	private static Map<UnknownLayerMessage,Set<Cell>> cellLayerErrors;
 	private Set<Integer>     pinLayers;
 	private PolyMerge        merge;
 	private static boolean   arraySimplificationUseful;
 	private Set<Cell>        missingCells;
-	private MakeInstance     lastExportInstance = null;
 	private PrintWriter      printWriter;
+	private File             parallelFile;
 
 	private static GSymbol [] optionSet = {GDSReader.GDS_ATTRTABLE, GDSReader.GDS_REFLIBS, GDSReader.GDS_FONTS, GDSReader.GDS_GENERATIONS};
 	private static GSymbol [] shapeSet = {GDSReader.GDS_AREF, GDSReader.GDS_SREF, GDSReader.GDS_BOUNDARY, GDSReader.GDS_PATH,
@@ -181,6 +195,8 @@ public class GDS extends Input<Object>
 	private static GSymbol [] maskSet = {GDSReader.GDS_DATATYPSYM, GDSReader.GDS_TEXTTYPE, GDSReader.GDS_BOXTYPE, GDSReader.GDS_NODETYPE};
 	private static GSymbol [] unsupportedSet = {GDSReader.GDS_ELFLAGS, GDSReader.GDS_PLEX};
 
+	/** structures smaller than this are read into the heap rather than mapped */	private static final int MIN_MAPPED_STRUCTURE = 1 << 20;
+
 	private GDSPreferences localPrefs;
 
 	public static class GDSPreferences extends InputPreferences
@@ -196,6 +212,7 @@ public class GDS extends Input<Object>
 		public boolean cadenceCompatibility;
 		public boolean dumpReadable;
 		public boolean skeletonize;
+		public boolean parallelRead;
         boolean onlyVisibleLayers;
         boolean[] visibility;
         boolean[][] techVisibility;
@@ -218,6 +235,7 @@ public class GDS extends Input<Object>
 				unknownLayerHandling = IOTool.getFactoryGDSInUnknownLayerHandling();
 				cadenceCompatibility = IOTool.isFactoryGDSCadenceCompatibility();
 				dumpReadable = IOTool.isFactoryGDSDumpReadable();
+				parallelRead = IOTool.isFactoryGDSInParallel();
 				onlyVisibleLayers = IOTool.isFactoryGDSOnlyInvisibleLayers();
 			} else
             {
@@ -231,6 +249,7 @@ public class GDS extends Input<Object>
                 unknownLayerHandling = IOTool.getGDSInUnknownLayerHandling();
                 cadenceCompatibility = IOTool.isGDSCadenceCompatibility();
 				dumpReadable = IOTool.isGDSDumpReadable();
+                parallelRead = IOTool.isGDSInParallel();
                 onlyVisibleLayers = IOTool.isGDSOnlyInvisibleLayers();
             }
 			if (onlyVisibleLayers)
@@ -257,6 +276,13 @@ public class GDS extends Input<Object>
 			// create a low-level GDS reader
 			in.gdsRead = new GDSReader(in.filePath, in.dataInputStream, in.fileLength);
 
+			// structures can be decoded in parallel only from an uncompressed local file
+			if (parallelRead && !dumpReadable && !skeletonize && !fileURL.toString().endsWith(".gz"))
+			{
+				File file = TextUtils.getFile(fileURL);
+				if (file != null && file.isFile()) in.parallelFile = file;
+			}
+
             // Libraries before loading
             Set<Library> oldLibs = new HashSet<Library>();
             for (Iterator<Library> it = Library.getLibraries(); it.hasNext(); )
@@ -417,6 +443,7 @@ public class GDS extends Input<Object>
 
 		// get the array of GDS names
 		layerErrorMessages = new HashMap<Integer,UnknownLayerMessage>();
+		invisibleLayers = new HashSet<Integer>();
 		layerWarningMessages = new HashMap<Integer,UnknownLayerMessage>();
 		cellLayerErrors = new HashMap<UnknownLayerMessage,Set<Cell>>();
 		pinLayers = new HashSet<Integer>();
@@ -488,6 +515,7 @@ public class GDS extends Input<Object>
         private Map<String, MutableInteger> maxSuffixes = new HashMap<String, MutableInteger>();
         private Set<String> userNames = new HashSet<String>();
         private MutableInteger count = new MutableInteger(0);
+        private MakeInstance lastExportInstance = null;
 
     	private boolean skeletonDefined;
     	private double skeletonLX, skeletonHX, skeletonLY, skeletonHY;
@@ -1642,6 +1670,11 @@ public class GDS extends Input<Object>
 		while (gdsRead.getTokenType() != GDSReader.GDS_UNITS)
 			gdsRead.getToken();
 		readUnits();
+		if (parallelFile != null)
+		{
+			readStructuresInParallel();
+			return;
+		}
 		gdsRead.getToken();
 
 		while (gdsRead.getTokenType() != GDSReader.GDS_ENDLIB)
@@ -1751,7 +1784,12 @@ public class GDS extends Input<Object>
 
 	private void showResultsOfCell()
 	{
-		System.out.print("**** Cell "+theCell.cell.describe(false)+" has");
+		showResults("Cell "+theCell.cell.describe(false));
+	}
+
+	private void showResults(String what)
+	{
+		System.out.print("**** "+what+" has");
 		if (countBox > 0) System.out.print(" "+countBox+" boxes");
 		if (countText > 0) System.out.print(" "+countText+" texts");
 		if (countNode > 0) System.out.print(" "+countNode+" nodes");
@@ -1763,11 +1801,195 @@ public class GDS extends Input<Object>
 		System.out.println();
 	}
 
+	/**
+	 * Method to read the structures of the file with a memory-mapped, parallel decoder.
+	 * A first pass indexes the structures, then all cells are created and all layers resolved serially,
+	 * then the structures are decoded on a thread pool, by one GDS reader per thread.
+	 * The instances are built afterwards, serially and bottom-up, by "buildInstances()".
+	 */
+	private void readStructuresInParallel()
+		throws Exception
+	{
+		RandomAccessFile raf = new RandomAccessFile(parallelFile, "r");
+		ExecutorService pool = null;
+		try
+		{
+			final FileChannel channel = raf.getChannel();
+			setProgressNote("Indexing " + parallelFile.getName());
+			GDSStructureIndex index = GDSStructureIndex.scan(filePath, channel);
+
+			// create every cell before decoding so that the decoders never change the database
+			List<GDSStructureIndex.Structure> structures = index.getStructures();
+			final CellBuilder [] builders = new CellBuilder[structures.size()];
+			for(GDSStructureIndex.Structure s : structures)
+				builders[s.getIndex()] = makeCellBuilder(s.getName());
+			for(String name : index.getUndefinedReferences())
+				getPrototype(name);
+
+			// resolve the layers here, in file order as the serial reader does, so that the layers
+			// chosen for unknown GDS layers don't depend on the order in which the decoders run
+			// and the decoders only read the layer tables
+			PrimitiveNode savedLayerNodeProto = layerNodeProto;
+			for(GDSStructureIndex.LayerUse use : index.getLayerUses())
+				setLayer(use.getLayerNum(), use.getLayerType(), use.isTextCase());
+			layerNodeProto = savedLayerNodeProto;
+
+			setProgressNote("Reading " + structures.size() + " structures");
+			setProgressValue(0);
+			int numThreads = Runtime.getRuntime().availableProcessors();
+			// the decoders reach the technologies through the environment of their thread
+			final UserInterface ui = Job.getUserInterface();
+			final Environment env = Environment.getThreadEnvironment();
+			pool = Executors.newFixedThreadPool(numThreads, new ThreadFactory() {
+				public Thread newThread(final Runnable r)
+				{
+					Thread t = new Thread(new Runnable() {
+						public void run()
+						{
+							if (ui != null) Job.setUserInterface(ui);
+							Environment.setThreadEnvironment(env);
+							EditingPreferences.lowLevelSetThreadLocalEditingPreferences(ep);
+							r.run();
+						}
+					}, "GDS");
+					t.setDaemon(true);
+					return t;
+				}
+			});
+			final GDS master = this;
+			final ThreadLocal<GDS> decoders = new ThreadLocal<GDS>() {
+				protected GDS initialValue()
+				{
+					GDS decoder = new GDS(ep, localPrefs);
+					decoder.shareTables(master);
+					return decoder;
+				}
+			};
+			List<Future<int[]>> results = new ArrayList<Future<int[]>>();
+			for(final GDSStructureIndex.Structure s : index.getBottomUpOrder())
+			{
+				results.add(pool.submit(new Callable<int[]>() {
+					public int[] call() throws Exception
+					{
+						return decoders.get().decodeStructure(readRegion(channel, s.getStart(), s.getEnd()), s.getStart(),
+							builders[s.getIndex()]);
+					}
+				}));
+			}
+
+			// sum the elements counted in each structure
+			countBox = countText = countNode = countPath = countShape = countSRef = countARef = countATotal = 0;
+			for(int i=0; i<results.size(); i++)
+			{
+				int [] counts;
+				try
+				{
+					counts = results.get(i).get();
+				} catch (ExecutionException e)
+				{
+					Throwable cause = e.getCause();
+					if (cause instanceof Exception) throw (Exception)cause;
+					throw e;
+				}
+				countBox += counts[0];
+				countText += counts[1];
+				countNode += counts[2];
+				countPath += counts[3];
+				countShape += counts[4];
+				countSRef += counts[5];
+				countARef += counts[6];
+				countATotal += counts[7];
+				setProgressValue((i+1) * 100 / results.size());
+			}
+			if (TALLYCONTENTS) showResults("Library "+theLibrary.getName());
+		} finally
+		{
+			if (pool != null) pool.shutdownNow();
+			raf.close();
+		}
+	}
+
+	/**
+	 * Method to get the bytes of one region of the file.
+	 * Large regions are memory-mapped; small ones are read into the heap to avoid exhausting mappings.
+	 */
+	private static ByteBuffer readRegion(FileChannel channel, long start, long end)
+		throws IOException
+	{
+		long size = end - start;
+		if (size >= MIN_MAPPED_STRUCTURE)
+			return channel.map(FileChannel.MapMode.READ_ONLY, start, size);
+		ByteBuffer buf = ByteBuffer.allocate((int)size);
+		while (buf.hasRemaining())
+		{
+			if (channel.read(buf, start + buf.position()) < 0) break;
+		}
+		buf.flip();
+		return buf;
+	}
+
+	/**
+	 * Method to make this reader use the tables of another reader.
+	 * Used by the parallel decoders, which share everything except the per-structure state.
+	 * The decoders only read the shared tables: every layer of the file was resolved before decoding.
+	 * @param master the reader that owns the tables.
+	 */
+	private void shareTables(GDS master)
+	{
+		filePath = master.filePath;
+		theLibrary = master.theLibrary;
+		currentCells = master.currentCells;
+		curTech = master.curTech;
+		theScale = master.theScale;
+		layerNames = master.layerNames;
+		layerErrorMessages = master.layerErrorMessages;
+		invisibleLayers = master.invisibleLayers;
+		pinLayers = master.pinLayers;
+		missingCells = master.missingCells;
+		allBuilders = master.allBuilders;
+		layerNodeProto = master.layerNodeProto;
+		theVertices = new Point2D[MAXPOINTS];
+		for(int i=0; i<MAXPOINTS; i++) theVertices[i] = new Point2D.Double();
+	}
+
+	/**
+	 * Method to decode one structure into an existing CellBuilder.
+	 * @param buffer the bytes of the structure, from BGNSTR to ENDSTR.
+	 * @param fileOffset the offset of the structure in the file.
+	 * @param cb the CellBuilder to fill.
+	 * @return the numbers of boxes, texts, nodes, paths, shapes, instances, arrays and array elements read.
+	 */
+	private int [] decodeStructure(ByteBuffer buffer, long fileOffset, CellBuilder cb)
+		throws Exception
+	{
+		try
+		{
+			gdsRead = new GDSReader(filePath, buffer, fileOffset, 0);
+			gdsRead.getToken();
+			readStructureName();
+			theCell = cb;
+			gdsRead.getToken();
+			readStructureContents();
+		} finally
+		{
+			// don't keep the bytes of the structure until this thread decodes the next one
+			gdsRead = null;
+			theCell = null;
+		}
+		return new int[] {countBox, countText, countNode, countPath, countShape, countSRef, countARef, countATotal};
+	}
+
 	private void readStructure()
 		throws Exception
 	{
 		beginStructure();
 		gdsRead.getToken();
+		readStructureContents();
+	}
+
+	private void readStructureContents()
+		throws Exception
+	{
 		if (localPrefs.mergeBoxes)
 		{
 			// initialize merge if merging this cell
@@ -1821,6 +2043,12 @@ public class GDS extends Input<Object>
 
 	private void beginStructure()
 		throws Exception
+	{
+		theCell = makeCellBuilder(readStructureName());
+	}
+
+	private String readStructureName()
+		throws Exception
 	{
 		if (gdsRead.getTokenType() != GDSReader.GDS_BGNSTR) gdsRead.handleError("Begin structure statement is missing");
 
@@ -1832,13 +2060,19 @@ public class GDS extends Input<Object>
 		gdsRead.getToken();
 		if (gdsRead.getTokenType() != GDSReader.GDS_IDENT) gdsRead.handleError("Structure name is missing");
 
-		// look for this nodeproto
 		String name = gdsRead.getStringValue();
 		if (localPrefs.dumpReadable)
 		{
 			printWriter.println();
 			printWriter.println("- Cell: " + name);
 		}
+		return name;
+	}
+
+	private CellBuilder makeCellBuilder(String name)
+		throws Exception
+	{
+		// look for this nodeproto
 		if (localPrefs.skeletonize) name += "{lay.sk}"; else
 			name += "{lay}";
 		Cell cell = findCell(name);
@@ -1855,7 +2089,7 @@ public class GDS extends Input<Object>
 		{
 			missingCells.remove(cell);
 		}
-        theCell = new CellBuilder(cell, curTech, localPrefs);
+        return new CellBuilder(cell, curTech, localPrefs);
 	}
 
 	private Cell findCell(String name)
@@ -2625,11 +2859,17 @@ public class GDS extends Input<Object>
 		// checking if layer is not visible when filtering option is on
 		// In visibility, all types of layerNum should be invisible to get this working!
 		String condition = "unknown";
-		if (localPrefs.onlyVisibleLayers && list != null && !localPrefs.visibility[list.get(0).getIndex()])
+		if (localPrefs.onlyVisibleLayers && (invisibleLayers.contains(layerInt) ||
+			list != null && !localPrefs.visibility[list.get(0).getIndex()]))
 		{
 			unknownLayerHandling = IOTool.GDSUNKNOWNLAYERIGNORE; // force ignore
 			condition = "invisible";
-			list = null;
+			// the first time, replace the layer by an ignored one
+			if (!invisibleLayers.contains(layerInt))
+			{
+				invisibleLayers.add(layerInt);
+				list = null;
+			}
 		}
 
 		boolean chosenText = localPrefs.includeText && localPrefs.defaultTextLayer != 0 && 
@@ -2793,20 +3033,20 @@ public class GDS extends Input<Object>
 		// where "pinName" Name of the pin (can be a number)
 		// where "terminalName" Name of the export
 		// where "direction" one of: input, output, inputOutput, switch, jumper, unused, unknown
-		if (lastExportInstance != null)
+		if (theCell.lastExportInstance != null)
 		{
 			String[] parts = property.split(" ");
 			if (parts.length >= 4)
 			{
 				String portName = parts[2];
 				String direction = parts[3];
-				if (portName.equals(lastExportInstance.exportOrTextName))
+				if (portName.equals(theCell.lastExportInstance.exportOrTextName))
 				{
-					if (direction.equals("input")) lastExportInstance.pc = PortCharacteristic.IN; else
-						if (direction.equals("output")) lastExportInstance.pc = PortCharacteristic.OUT; else
-							if (direction.equals("inputOutput")) lastExportInstance.pc = PortCharacteristic.BIDIR;
+					if (direction.equals("input")) theCell.lastExportInstance.pc = PortCharacteristic.IN; else
+						if (direction.equals("output")) theCell.lastExportInstance.pc = PortCharacteristic.OUT; else
+							if (direction.equals("inputOutput")) theCell.lastExportInstance.pc = PortCharacteristic.BIDIR;
 				}
-				lastExportInstance = null;
+				theCell.lastExportInstance = null;
 			}
 		}
 
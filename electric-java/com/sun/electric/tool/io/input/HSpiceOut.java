@@ -25,6 +25,7 @@ package com.sun.electric.tool.io.input;
 
 import com.sun.electric.database.hierarchy.Cell;
 import com.sun.electric.tool.simulation.ComplexSample;
+import com.sun.electric.tool.simulation.LazySignal;
 import com.sun.electric.tool.simulation.MutableSignal;
 import com.sun.electric.tool.simulation.ScalarSample;
 import com.sun.electric.tool.simulation.Signal;
@@ -36,7 +37,9 @@ import com.sun.electric.util.TextUtils;
 import java.io.File;
 import java.io.IOException;
 import java.net.URL;
+import java.nio.ByteOrder;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
@@ -788,7 +791,63 @@ public class HSpiceOut extends Input<Stimuli>
 	        sweepNames = new String[sweepTotal];
 		}
 
-		// setup the simulation information
+		// the data of a local binary file is mapped, and only its time column is read now
+		MappedData data = null;
+		if (isTRACDCBinary && binaryTRACDCPosition >= binaryTRACDCSize)
+			data = MappedData.open(fileURL, byteCount, isTRACDCBinarySwapped);
+		if (data != null)
+		{
+			readMappedData(sd, sc, data, numSignals, numnoi, cndcnt, sweepcnt, isComplex, constantPrefix,
+				fileNum, sweepsThisFile, numFiles);
+		} else
+		{
+			readStreamedData(sd, sc, numSignals, numnoi, cndcnt, sweepcnt, isComplex, constantPrefix,
+				fileNum, sweepsThisFile, numFiles);
+		}
+		if (sweepcnt > 0 || (numFiles > 1 && fileNum == numFiles-1))
+		{
+			for(int k=0; k<numSignals; k++)
+			{
+				String[] nameAndContext = getNameAndContext(k, constantPrefix);
+				String name = nameAndContext[0];
+				String context = nameAndContext[1];
+
+				int total = 0;
+		        for(int i=0; i<allSignals[k].length; i++)
+		        	if (allSignals[k][i] != null) total++;
+		        Signal<?>[] signalCopy = new Signal[total];
+		        int j = 0;
+		        for(int i=0; i<allSignals[k].length; i++)
+		        {
+		        	if (allSignals[k][i] == null) continue;
+		        	signalCopy[j] = allSignals[k][i];
+		        	j++;
+		        }
+		        
+				if (isComplex)
+				{
+					SweptSample.createSignal(sc, sd, name, context, false, (Signal<ComplexSample>[])signalCopy);
+				} else
+				{
+					SweptSample.createSignal(sc, sd, name, context, false, (Signal<ScalarSample>[])signalCopy);
+				}
+			}
+			sc.setSweepNames(sweepNames);
+		}
+		closeInput();
+
+		stopProgressDialog();
+		if (fileNum == numFiles-1)
+			System.out.println("Done reading " + analysisTitle + " analysis");
+	}
+
+	/**
+	 * Method to read the data of a tr, sw, or ac file from the input stream.
+	 */
+	private void readStreamedData(Stimuli sd, SignalCollection sc, int numSignals, int numnoi, int cndcnt, int sweepcnt,
+		boolean isComplex, String constantPrefix, int fileNum, int sweepsThisFile, int numFiles)
+		throws IOException
+	{
 		int sweepCounter = sweepcnt;
         int sweepIndex = 0;
 		for(;;)
@@ -813,16 +872,9 @@ public class HSpiceOut extends Input<Stimuli>
 			} else if (numFiles > 1) sweepNames[fileNum] = (fileNum+1) + "";
 			for(int k=0; k<numSignals; k++)
 			{
-				String name = signalNames[k];
-				if (constantPrefix != null && name.startsWith(constantPrefix))
-					name = name.substring(constantPrefix.length());
-				String context = null;
-				int lastDotPos = name.lastIndexOf('.');
-				if (lastDotPos >= 0)
-				{
-					context = name.substring(0, lastDotPos);
-					name = name.substring(lastDotPos+1);
-				}
+				String[] nameAndContext = getNameAndContext(k, constantPrefix);
+				String name = nameAndContext[0];
+				String context = nameAndContext[1];
 				if (sweepcnt > 0) name += "[" + sweepName + "]";
 				SignalCollection scToUse = sc;
 				if (sweepcnt > 0) scToUse = null;
@@ -867,48 +919,248 @@ public class HSpiceOut extends Input<Stimuli>
 			sweepIndex++;
 			eofReached = false;
 		}
-		if (sweepcnt > 0 || (numFiles > 1 && fileNum == numFiles-1))
+	}
+
+	/**
+	 * Method to index the data of a memory-mapped binary tr, sw, or ac file.
+	 * Only the time column of each sweep is read; the signals read their own
+	 * columns from the mapping when they are first shown.
+	 */
+	private void readMappedData(Stimuli sd, SignalCollection sc, final MappedData data, int numSignals, int numnoi,
+		int cndcnt, int sweepcnt, final boolean isComplex, String constantPrefix, int fileNum, int sweepsThisFile, int numFiles)
+	{
+		final long rowSize = 4 * (1 + numSignals * (isComplex ? 2 : 1));
+		long total = data.length();
+		long pos = 0;
+		int sweepCounter = sweepcnt;
+		int sweepIndex = 0;
+		for(;;)
 		{
-			for(int k=0; k<numSignals; k++)
+			// get sweep info
+			String sweepName = "";
+			if (sweepcnt > 0)
 			{
-				String name = signalNames[k];
-				if (constantPrefix != null && name.startsWith(constantPrefix))
-					name = name.substring(constantPrefix.length());
-				String context = null;
-				int lastDotPos = name.lastIndexOf('.');
-				if (lastDotPos >= 0)
+				int numSweepValues = Math.max(1, cndcnt-1);
+				if (pos + 4*numSweepValues > total) { System.out.println("EOF before sweep data");   break; }
+				sweepName = TextUtils.formatDouble(data.getFloat(pos));
+				pos += 4;
+				for(int i=1; i<numSweepValues; i++)
 				{
-					context = name.substring(0, lastDotPos);
-					name = name.substring(lastDotPos+1);
+					sweepName += "," + TextUtils.formatDouble(data.getFloat(pos));
+					pos += 4;
 				}
+				sweepNames[fileNum*sweepsThisFile + sweepIndex] = (sweepsThisFile > 1 ? "TR"+fileNum+"-" : "") + sweepName;
+			} else if (numFiles > 1) sweepNames[fileNum] = (fileNum+1) + "";
 
-				int total = 0;
-		        for(int i=0; i<allSignals[k].length; i++)
-		        	if (allSignals[k][i] != null) total++;
-		        Signal<?>[] signalCopy = new Signal[total];
-		        int j = 0;
-		        for(int i=0; i<allSignals[k].length; i++)
-		        {
-		        	if (allSignals[k][i] == null) continue;
-		        	signalCopy[j] = allSignals[k][i];
-		        	j++;
-		        }
-		        
-				if (isComplex)
+			// read the time column up to the end-of-sweep marker
+			long rowStart = pos;
+			double[] times = new double[1024];
+			int numRows = 0;
+			double minTime = Double.MAX_VALUE, maxTime = -Double.MAX_VALUE;
+			while (pos + 4 <= total)
+			{
+				float time = data.getFloat(pos);
+				if (isEndOfSweep(time)) { pos += 4;   break; }
+				if (pos + rowSize > total)
 				{
-					SweptSample.createSignal(sc, sd, name, context, false, (Signal<ComplexSample>[])signalCopy);
-				} else
+					System.out.println("EOF in the middle of the data");
+					pos = total;
+					break;
+				}
+				if (numRows == times.length)
 				{
-					SweptSample.createSignal(sc, sd, name, context, false, (Signal<ScalarSample>[])signalCopy);
+					double[] newTimes = new double[numRows*2];
+					System.arraycopy(times, 0, newTimes, 0, numRows);
+					times = newTimes;
 				}
+				times[numRows++] = time;
+				minTime = Math.min(minTime, time);
+				maxTime = Math.max(maxTime, time);
+				pos += rowSize;
 			}
-			sc.setSweepNames(sweepNames);
+			final double[] sweepTimes = new double[numRows];
+			System.arraycopy(times, 0, sweepTimes, 0, numRows);
+
+			for(int k=0; k<numSignals; k++)
+			{
+				String[] nameAndContext = getNameAndContext(k, constantPrefix);
+				String name = nameAndContext[0];
+				String context = nameAndContext[1];
+				if (sweepcnt > 0) name += "[" + sweepName + "]";
+				SignalCollection scToUse = sc;
+				if (sweepcnt > 0) scToUse = null;
+
+				// the rows hold the "special items" after the nodes
+				int column = ((k - numnoi) % numSignals + numSignals) % numSignals;
+				final long columnStart = rowStart + 4 + 4 * column * (isComplex ? 2 : 1);
+				LazySignal.Loader loader = new LazySignal.Loader()
+				{
+					public double[][] read() { return data.readColumns(sweepTimes, columnStart, rowSize, isComplex ? 2 : 1); }
+				};
+				allSignals[k][fileNum*sweepsThisFile + sweepIndex] = isComplex
+					? ComplexSample.createComplexSignal(scToUse, sd, name, context, minTime, maxTime, loader)
+					: ScalarSample.createSignal(scToUse, sd, name, context, minTime, maxTime, loader);
+			}
+			sweepCounter--;
+			if (sweepCounter <= 0) break;
+			sweepIndex++;
 		}
-		closeInput();
+	}
 
-		stopProgressDialog();
-		if (fileNum == numFiles-1)
-			System.out.println("Done reading " + analysisTitle + " analysis");
+	/**
+	 * Method to split the name of a signal into its name and context.
+	 * @param k the index of the signal.
+	 * @param constantPrefix a prefix to remove from the name (may be null).
+	 * @return the name and the context (which may be null).
+	 */
+	private String[] getNameAndContext(int k, String constantPrefix)
+	{
+		String name = signalNames[k];
+		if (constantPrefix != null && name.startsWith(constantPrefix))
+			name = name.substring(constantPrefix.length());
+		String context = null;
+		int lastDotPos = name.lastIndexOf('.');
+		if (lastDotPos >= 0)
+		{
+			context = name.substring(0, lastDotPos);
+			name = name.substring(lastDotPos+1);
+		}
+		return new String[] {name, context};
+	}
+
+	/**
+	 * Method to tell whether a binary number is the end-of-sweep marker (in hex, 71 49 F2 CA).
+	 */
+	private static boolean isEndOfSweep(float f)
+	{
+		return f > 1.00000000E30 && f < 1.00000002E30;
+	}
+
+	/**
+	 * The data part of a memory-mapped binary tr, sw, or ac file.  The file stores
+	 * the numbers in blocks, each with a header and a trailer; this class maps
+	 * positions in the concatenated contents of the blocks to positions in the file.
+	 * It is immutable, so the signals may read their columns on any thread.
+	 */
+	private static class MappedData
+	{
+		private final MappedInputFile file;
+		private final boolean swapped;
+		/** file position of the contents of each block */		private final long[] blockFilePos;
+		/** data position of each block, and the total */		private final long[] blockDataPos;
+
+		private MappedData(MappedInputFile file, boolean swapped, long[] blockFilePos, long[] blockDataPos)
+		{
+			this.file = file;
+			this.swapped = swapped;
+			this.blockFilePos = blockFilePos;
+			this.blockDataPos = blockDataPos;
+		}
+
+		/**
+		 * Method to map a binary file and find the blocks of its data.
+		 * @param fileURL the file.
+		 * @param start the file position of the first data block.
+		 * @param swapped true if the numbers in the file are little-endian.
+		 * @return the data, or null if the file cannot be mapped.
+		 */
+		static MappedData open(URL fileURL, long start, boolean swapped)
+		{
+			MappedInputFile file = MappedInputFile.open(fileURL, swapped ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN);
+			if (file == null) return null;
+			long[] filePos = new long[1024];
+			long[] dataPos = new long[1025];
+			int numBlocks = 0;
+			long pos = start;
+			long dataLength = 0;
+			while (pos + 16 <= file.length())
+			{
+				// header: first word, number of 8-byte blocks, dummy word, number of bytes
+				int bytes = file.getInt(pos + 12);
+				if (bytes < 0 || pos + 20 + bytes > file.length()) break;
+				int trailer = file.getInt(pos + 16 + bytes);
+				if (trailer != bytes)
+				{
+					System.out.println("Block trailer claims block had " + trailer + " bytes but block really had " + bytes);
+					break;
+				}
+				if (numBlocks == filePos.length)
+				{
+					long[] newFilePos = new long[numBlocks*2];
+					System.arraycopy(filePos, 0, newFilePos, 0, numBlocks);
+					filePos = newFilePos;
+					long[] newDataPos = new long[numBlocks*2+1];
+					System.arraycopy(dataPos, 0, newDataPos, 0, numBlocks+1);
+					dataPos = newDataPos;
+				}
+				filePos[numBlocks] = pos + 16;
+				dataPos[numBlocks] = dataLength;
+				numBlocks++;
+				dataLength += bytes;
+				pos += 20 + bytes;
+			}
+			dataPos[numBlocks] = dataLength;
+			long[] blockFilePos = new long[numBlocks];
+			System.arraycopy(filePos, 0, blockFilePos, 0, numBlocks);
+			long[] blockDataPos = new long[numBlocks+1];
+			System.arraycopy(dataPos, 0, blockDataPos, 0, numBlocks+1);
+			return new MappedData(file, swapped, blockFilePos, blockDataPos);
+		}
+
+		/** Returns the number of data bytes in all blocks. */
+		long length() { return blockDataPos[blockDataPos.length-1]; }
+
+		private int findBlock(long pos)
+		{
+			int b = Arrays.binarySearch(blockDataPos, pos);
+			if (b < 0) b = -b - 2;
+			// skip empty blocks
+			while (blockDataPos[b+1] <= pos) b++;
+			return b;
+		}
+
+		/** Returns the float at the given data position. */
+		float getFloat(long pos)
+		{
+			int b = findBlock(pos);
+			if (pos + 4 <= blockDataPos[b+1])
+				return file.getFloat(blockFilePos[b] + pos - blockDataPos[b]);
+
+			// the number continues in the next block
+			int fi = 0;
+			for(int i=0; i<4; i++)
+			{
+				long p = pos + i;
+				while (blockDataPos[b+1] <= p) b++;
+				int uval = file.getByte(blockFilePos[b] + p - blockDataPos[b]);
+				if (swapped) fi |= uval << (8*i); else
+					fi = (fi << 8) | uval;
+			}
+			return Float.intBitsToFloat(fi);
+		}
+
+		/**
+		 * Method to read the columns of a signal.
+		 * @param times the time of each row.
+		 * @param start the data position of the signal in the first row.
+		 * @param rowSize the size of a row in bytes.
+		 * @param numParts the number of floats per sample (2 for complex samples).
+		 * @return the times followed by one column per part.
+		 */
+		double[][] readColumns(double[] times, long start, long rowSize, int numParts)
+		{
+			double[][] columns = new double[1+numParts][];
+			columns[0] = times;
+			for(int p=0; p<numParts; p++)
+			{
+				double[] values = new double[times.length];
+				long pos = start + 4*p;
+				for(int r=0; r<times.length; r++, pos += rowSize)
+					values[r] = getFloat(pos);
+				columns[1+p] = values;
+			}
+			return columns;
+		}
 	}
 
     /**
@@ -1106,7 +1358,7 @@ public class HSpiceOut extends Input<Stimuli>
 		float f = Float.intBitsToFloat(fi);
 
 		// the termination value (in hex) is 71 49 F2 CA
-		if (testEOFValue && f > 1.00000000E30 && f < 1.00000002E30)
+		if (testEOFValue && isEndOfSweep(f))
 		{
 			eofReached = true;
 			return 0;
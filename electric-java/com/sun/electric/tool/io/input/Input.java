@@ -591,6 +591,15 @@ public class Input<ResultType>
 		}
 	}
 
+	/**
+	 * Method to return the number of the line being parsed by getAKeyword().
+	 * @return the current line number.
+	 */
+	protected int getLineNumber()
+	{
+		return lineReader.getLineNumber();
+	}
+
 	/**
 	 * Helper method for keyword processing which decides whether a character is its own keyword.
 	 * @param chr the character in question.
@@ -74,7 +74,12 @@ public class JELIB extends LibraryFiles
 	{
         super(ep);
         fileType = type;
-        parser = JelibParser.parse(libId, fileURL, fileType, false, Input.errorLogger);
+        JelibParser preparsed = takePreparsedLibrary(fileURL);
+        if (preparsed != null && preparsed.getLibId() == libId) {
+            parser = preparsed;
+            Input.errorLogger.addMessages(preparsed.getErrorLogger());
+        } else
+            parser = JelibParser.parse(libId, fileURL, fileType, false, Input.errorLogger);
     }
 
     public static Map<Setting,Object> readProjectSettings(URL fileURL, FileType fileType, TechPool techPool, ErrorLogger errorLogger) {
@@ -0,0 +1,341 @@
+/* -*- tab-width: 4 -*-
+ *
+ * Electric(tm) VLSI Design System
+ *
+ * File: JelibLineReader.java
+ * Input/output tool: line reader and tokenizer for JELIB files
+ *
+ * Copyright (c) 2012, Static Free Software. All rights reserved.
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sun.electric.tool.io.input;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * This class reads lines of a JELIB file into a reusable character buffer
+ * and splits them into "|"-separated fields without creating a String per line or per field.
+ * Strings are only made when a field is requested, and equal fields share one String
+ * through a small string pool, so repeated prototype names, port names and text descriptors
+ * are not allocated again for every node and arc.
+ * It replaces LineNumberReader and counts lines the same way.
+ */
+class JelibLineReader {
+
+    /** largest number of Strings kept in the pool */                 private static final int MAX_POOL_SIZE = 1 << 20;
+    /** powers of ten that are exact in double precision */           private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
+
+    private final Reader reader;
+    private final char[] buf = new char[1 << 16];
+    private int bufPos;
+    private int bufLimit;
+    private boolean skipLF;
+    private int lineNumber;
+
+    /** characters of the current line */                             private char[] line = new char[256];
+    /** number of characters in the current line */                   private int lineLength;
+    /** start offsets of the fields of the current line */            private int[] fieldStart = new int[32];
+    /** end offsets of the fields of the current line */              private int[] fieldEnd = new int[32];
+    /** number of fields in the current line */                       private int numFields;
+
+    /** string pool, open addressing */                               private String[] pool = new String[1 << 12];
+    /** number of Strings in the pool */                              private int poolSize;
+
+    JelibLineReader(Reader reader) {
+        this.reader = reader;
+    }
+
+    /**
+     * Method to advance to the next line of the file.
+     * Line terminators are "\n", "\r" or "\r\n", as in LineNumberReader.
+     * @return false at the end of the file.
+     * @throws IOException on read errors.
+     */
+    boolean nextLine() throws IOException {
+        int len = 0;
+        boolean any = false;
+        numFields = 0;
+        for (;;) {
+            if (bufPos >= bufLimit) {
+                int n = reader.read(buf, 0, buf.length);
+                if (n <= 0) {
+                    bufPos = bufLimit = 0;
+                    if (!any) return false;
+                    break;
+                }
+                bufPos = 0;
+                bufLimit = n;
+            }
+            if (skipLF) {
+                skipLF = false;
+                if (buf[bufPos] == '\n') {
+                    bufPos++;
+                    continue;
+                }
+            }
+            any = true;
+
+            // copy up to the end of line or the end of the buffer
+            int end = bufPos;
+            while (end < bufLimit && buf[end] != '\n' && buf[end] != '\r')
+                end++;
+            int n = end - bufPos;
+            if (len + n > line.length)
+                line = Arrays.copyOf(line, Math.max(line.length*2, len + n));
+            System.arraycopy(buf, bufPos, line, len, n);
+            len += n;
+            bufPos = end;
+            if (end < bufLimit) {
+                skipLF = buf[bufPos++] == '\r';
+                break;
+            }
+        }
+        lineLength = len;
+        lineNumber++;
+        return true;
+    }
+
+    /**
+     * Method to read the next line of the file as a String.
+     * @return the next line, or null at the end of the file.
+     * @throws IOException on read errors.
+     */
+    String readLine() throws IOException {
+        return nextLine() ? getLine() : null;
+    }
+
+    /**
+     * Method to return the number of lines read so far.
+     * @return the current line number.
+     */
+    int getLineNumber() { return lineNumber; }
+
+    /**
+     * Method to return the current line as a String (for messages).
+     * @return the current line.
+     */
+    String getLine() { return new String(line, 0, lineLength); }
+
+    /**
+     * Method to return the length of the current line.
+     * @return the length of the current line.
+     */
+    int getLineLength() { return lineLength; }
+
+    /**
+     * Method to return a character of the current line.
+     * @param i the index in the line.
+     * @return the character at that index.
+     */
+    char charAt(int i) { return line[i]; }
+
+    void close() throws IOException {
+        reader.close();
+    }
+
+    /**
+     * Method to split the current line into "|"-separated fields, starting after the key character.
+     * Quoted text and escaped characters are handled the same way as JelibParser.parseLine().
+     * @param escapeChar the escape character of the file.
+     * @return the number of fields.
+     */
+    int splitFields(char escapeChar) {
+        int len = lineLength;
+        int pos = 1;
+        int startPos = 1;
+        boolean inQuote = false;
+        numFields = 0;
+        while (pos < len) {
+            char chr = line[pos++];
+            if (chr == escapeChar) {
+                pos++;
+                continue;
+            }
+            if (chr == '"') inQuote = !inQuote;
+            if (chr == '|' && !inQuote) {
+                addField(startPos, pos - 1);
+                startPos = pos;
+            }
+        }
+        if (pos > len) pos = len;
+        addField(Math.min(startPos, pos), pos);
+        return numFields;
+    }
+
+    private void addField(int start, int end) {
+        if (numFields == fieldStart.length) {
+            fieldStart = Arrays.copyOf(fieldStart, numFields*2);
+            fieldEnd = Arrays.copyOf(fieldEnd, numFields*2);
+        }
+        fieldStart[numFields] = start;
+        fieldEnd[numFields] = end;
+        numFields++;
+    }
+
+    /**
+     * Method to return the number of fields found by the last splitFields().
+     * @return the number of fields.
+     */
+    int getNumFields() { return numFields; }
+
+    /**
+     * Method to return a field of the current line.
+     * Equal fields return the same String object.
+     * @param i the field index.
+     * @return the field as a String.
+     */
+    String getField(int i) {
+        return intern(fieldStart[i], fieldEnd[i]);
+    }
+
+    /**
+     * Method to return a field of the current line without surrounding quotes,
+     * when this can be done without unescaping.
+     * @param i the field index.
+     * @param quoted true if the file quotes names (revision 1 and later).
+     * @param escapeChar the escape character of the file.
+     * @return the unquoted field, or null if it needs the full unquoting algorithm.
+     */
+    String getUnQuotedField(int i, boolean quoted, char escapeChar) {
+        int start = fieldStart[i];
+        int end = fieldEnd[i];
+        if (quoted) {
+            if (end - start < 2 || line[start] != '"') return intern(start, end);
+            if (line[end - 1] != '"') return null;
+            start++;
+            end--;
+            for (int k = start; k < end; k++)
+                if (line[k] == escapeChar || line[k] == '"') return null;
+        } else {
+            for (int k = start; k < end; k++)
+                if (line[k] == escapeChar) return null;
+        }
+        return intern(start, end);
+    }
+
+    /**
+     * Method to return the remaining fields of the current line as Strings.
+     * @param from the index of the first field.
+     * @return the fields from "from" to the end of the line.
+     */
+    List<String> getFields(int from) {
+        if (from >= numFields) return Collections.emptyList();
+        List<String> fields = new ArrayList<String>(numFields - from);
+        for (int i = from; i < numFields; i++)
+            fields.add(getField(i));
+        return fields;
+    }
+
+    /**
+     * Method to parse a field of the current line as a double.
+     * Plain decimal numbers are converted directly from the line buffer
+     * with the same result as Double.parseDouble().
+     * @param i the field index.
+     * @return the value of the field (0 if the field is empty).
+     * @throws NumberFormatException if the field is not a number.
+     */
+    double getDouble(int i) {
+        int start = fieldStart[i];
+        int end = fieldEnd[i];
+        if (start == end) return 0;
+        int pos = start;
+        boolean negative = false;
+        if (line[pos] == '-') {
+            negative = true;
+            pos++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int fraction = -1;
+        for (; pos < end; pos++) {
+            char c = line[pos];
+            if (c >= '0' && c <= '9') {
+                mantissa = mantissa*10 + (c - '0');
+                if (fraction >= 0) fraction++;
+                if (mantissa != 0 && ++digits > 15) break;
+            } else if (c == '.' && fraction < 0) {
+                fraction = 0;
+            } else {
+                break;
+            }
+        }
+        boolean noDigits = (end - start) == (negative ? 1 : 0) + (fraction >= 0 ? 1 : 0);
+        if (pos < end || noDigits || fraction >= POWERS_OF_TEN.length)
+            return Double.parseDouble(new String(line, start, end - start));
+
+        // exact mantissa and exact power of ten: one division is correctly rounded
+        double v = fraction > 0 ? mantissa / POWERS_OF_TEN[fraction] : mantissa;
+        return negative ? -v : v;
+    }
+
+    /**
+     * Method to return a String with the given characters of the current line from the pool.
+     */
+    private String intern(int start, int end) {
+        int h = 0;
+        for (int k = start; k < end; k++)
+            h = 31*h + line[k];
+        int mask = pool.length - 1;
+        int slot = (h ^ (h >>> 16)) & mask;
+        int len = end - start;
+        for (;;) {
+            String s = pool[slot];
+            if (s == null) break;
+            if (s.hashCode() == h && s.length() == len && regionMatches(s, start)) return s;
+            slot = (slot + 1) & mask;
+        }
+        String s = new String(line, start, len);
+        if (poolSize >= MAX_POOL_SIZE) {
+            // too many distinct strings: start over rather than holding them all
+            Arrays.fill(pool, null);
+            poolSize = 0;
+        } else if ((poolSize + 1)*2 > pool.length) {
+            rehash();
+        }
+        pool[findFreeSlot(h)] = s;
+        poolSize++;
+        return s;
+    }
+
+    private boolean regionMatches(String s, int start) {
+        for (int k = 0, len = s.length(); k < len; k++)
+            if (s.charAt(k) != line[start + k]) return false;
+        return true;
+    }
+
+    private int findFreeSlot(int h) {
+        int mask = pool.length - 1;
+        int slot = (h ^ (h >>> 16)) & mask;
+        while (pool[slot] != null)
+            slot = (slot + 1) & mask;
+        return slot;
+    }
+
+    private void rehash() {
+        String[] oldPool = pool;
+        pool = new String[oldPool.length*2];
+        for (String s : oldPool) {
+            if (s != null)
+                pool[findFreeSlot(s.hashCode())] = s;
+        }
+    }
+}
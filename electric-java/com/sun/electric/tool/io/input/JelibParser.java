@@ -64,7 +64,6 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.io.LineNumberReader;
 import java.net.URL;
 import java.net.URLConnection;
 import java.util.ArrayList;
@@ -239,8 +238,8 @@ public class JelibParser
     private final IdManager idManager;
     private final LibId libId;
     private final String filePath;
-    private LineNumberReader lineReader;
-    private final LineNumberReader delibHeaderReader;
+    private JelibLineReader lineReader;
+    private final JelibLineReader delibHeaderReader;
     private int revision = revisions.length;
     private final ErrorLogger errorLogger;
     private final MutableTextDescriptor mtd = new MutableTextDescriptor();
@@ -301,7 +300,7 @@ public class JelibParser
             throw new IllegalArgumentException("fileType");
         }
         InputStreamReader is = new InputStreamReader(inputStream, "UTF-8");
-        this.lineReader = new LineNumberReader(is);
+        this.lineReader = new JelibLineReader(is);
         delibHeaderReader = fileType == FileType.DELIB ? lineReader : null;
         try {
             readFromFile(onlyProjectSettings);
@@ -347,6 +346,11 @@ public class JelibParser
         return new JelibParser(libId, fileURL, fileType, onlyProjectSettings, errorLogger);
     }
 
+    LibId getLibId() { return libId; }
+
+    /** Returns the ErrorLogger that received the errors of this file. */
+    ErrorLogger getErrorLogger() { return errorLogger; }
+
     private void readFromFile(boolean onlyProjectSettings) throws IOException {
         boolean ignoreCvsMergedContent = false;
 		for(;;)
@@ -632,7 +636,7 @@ public class JelibParser
                         		e.printStackTrace();
                             if (e instanceof IOException) throw (IOException)e;
                             // some other exception, probably invalid cell file
-                            Input.errorLogger.logError("Exception reading file "+file, -1);
+                            errorLogger.logError("Exception reading file "+file, -1);
                         }
                     }
                 }
@@ -648,11 +652,11 @@ public class JelibParser
 
     private void readDelibFile(File cellFD) throws IOException {
 
-        LineNumberReader cellReader;
+        JelibLineReader cellReader;
         try {
             FileInputStream fin = new FileInputStream(cellFD);
             InputStreamReader is = new InputStreamReader(fin);
-            cellReader = new LineNumberReader(is);
+            cellReader = new JelibLineReader(is);
         } catch (IOException e) {
             System.out.println("Error opening file "+cellFD+": "+e.getMessage());
             return;
@@ -734,25 +738,24 @@ public class JelibParser
         cc.vars = readVariables(pieces, numPieces);
 
         // gather the contents of the cell
-        for(;;)
+        // (these lines are tokenized in place, without making a String per line)
+        while (lineReader.nextLine())
         {
-            String nextLine = lineReader.readLine();
-            if (nextLine == null) break;
-            if (nextLine.length() == 0) continue;
-            char nextFirst = nextLine.charAt(0);
+            if (lineReader.getLineLength() == 0) continue;
+            char nextFirst = lineReader.charAt(0);
             if (nextFirst == 'X') break;
             switch (nextFirst) {
                 case '#':
                     break;
                 case 'N':
                 case 'I':
-                    parseNode(nextLine, cc);
+                    parseNode(cc);
                     break;
                 case 'E':
-                    parseExport(nextLine, cc);
+                    parseExport(cc);
                     break;
                 case 'A':
-                    parseArc(nextLine, cc);
+                    parseArc(cc);
                     break;
                 default:
             }
@@ -787,22 +790,22 @@ public class JelibParser
         return;
     }
 
-    private void parseNode(String cellString, CellContents cc) {
+    private void parseNode(CellContents cc) {
         NodeContents n = new NodeContents();
         n.line = lineReader.getLineNumber();
 
         // parse the node line
-        List<String> pieces = parseLine(cellString);
-        char firstChar = cellString.charAt(0);
+        int numFields = lineReader.splitFields(escapeChar);
+        char firstChar = lineReader.charAt(0);
         int numPieces = revision < 1 ? 10 : firstChar == 'N' ? 9 : 8;
-        if (pieces.size() < numPieces)
+        if (numFields < numPieces)
         {
-            logError("Node instance needs " + numPieces + " fields: " + cellString, cc.cellId);
+            logError("Node instance needs " + numPieces + " fields: " + lineReader.getLine(), cc.cellId);
             return;
         }
-        String protoName = unQuote(pieces.get(0));
+        String protoName = unQuoteField(0);
         // figure out the name for this node.  Handle the form: "Sig"12
-        String diskNodeName = revision >= 1 ? pieces.get(1) : unQuote(pieces.get(1));
+        String diskNodeName = revision >= 1 ? lineReader.getField(1) : unQuoteField(1);
         String nodeName = diskNodeName;
         if (nodeName.charAt(0) == '"')
         {
@@ -822,9 +825,9 @@ public class JelibParser
             }
         }
         n.nodeName = nodeName;
-        String nameTextDescriptorInfo = pieces.get(2);
-        double x = readDouble(pieces.get(3));
-        double y = readDouble(pieces.get(4));
+        String nameTextDescriptorInfo = lineReader.getField(2);
+        double x = lineReader.getDouble(3);
+        double y = lineReader.getDouble(4);
 
         LibId libId = cc.cellId.libId;
         String prefixName = libId.libName;
@@ -855,27 +858,27 @@ public class JelibParser
         String textDescriptorInfo = "";
         if (firstChar == 'N' || revision < 1)
         {
-            double wid = readDouble(pieces.get(5));
+            double wid = lineReader.getDouble(5);
             if (revision < 1 && (wid < 0 || wid == 0 && 1/wid < 0)) {
                 flipX = true;
                 wid = -wid;
             }
-            double hei = readDouble(pieces.get(6));
+            double hei = lineReader.getDouble(6);
             if (revision < 1 && (hei < 0 || hei == 0 && 1/hei < 0)) {
                 flipY = true;
                 hei = -hei;
             }
             if (n.protoId instanceof PrimitiveNodeId)
                 n.size = EPoint.fromLambda(wid, hei);
-            orientString = pieces.get(7);
-            stateInfo = pieces.get(8);
+            orientString = lineReader.getField(7);
+            stateInfo = lineReader.getField(8);
             if (revision < 1)
-                textDescriptorInfo = pieces.get(9);
+                textDescriptorInfo = lineReader.getField(9);
         } else
         {
-            orientString = pieces.get(5);
-            stateInfo = pieces.get(6);
-            textDescriptorInfo = pieces.get(7);
+            orientString = lineReader.getField(5);
+            stateInfo = lineReader.getField(6);
+            textDescriptorInfo = lineReader.getField(7);
         }
         int angle = 0;
         for (int i = 0; i < orientString.length(); i++)
@@ -928,34 +931,34 @@ public class JelibParser
         n.anchor = EPoint.fromLambda(x, y);
 
         // add variables in fields 10 and up
-        n.vars = readVariables(pieces, numPieces);
+        n.vars = readVariables(lineReader.getFields(numPieces), 0);
         // insert into map of disk names
         cc.addNode(diskNodeName, n);
     }
 
-    private void parseExport(String cellString, CellContents cc) {
+    private void parseExport(CellContents cc) {
         ExportContents e = new ExportContents();
         e.line = lineReader.getLineNumber();
 
         // parse the export line
-        List<String> pieces = parseLine(cellString);
-        if (revision >= 2 && pieces.size() == 1) {
+        int numFields = lineReader.splitFields(escapeChar);
+        if (revision >= 2 && numFields == 1) {
             // Unused ExportId
-            String exportName = unQuote(pieces.get(0));
+            String exportName = unQuoteField(0);
             cc.cellId.newPortId(exportName);
             return;
         }
         int numPieces = revision >= 2 ? 6 : revision == 1 ? 5 : 7;
-        if (pieces.size() < numPieces)
+        if (numFields < numPieces)
         {
-            logError("Export needs " + numPieces + " fields, has " + pieces.size() + ": " + cellString, cc.cellId);
+            logError("Export needs " + numPieces + " fields, has " + numFields + ": " + lineReader.getLine(), cc.cellId);
             return;
         }
         int fieldIndex = 0;
-        String exportName = unQuote(pieces.get(fieldIndex++));
+        String exportName = unQuoteField(fieldIndex++);
         String exportUserName = null;
         if (revision >= 2) {
-            String s = pieces.get(fieldIndex++);
+            String s = lineReader.getField(fieldIndex++);
             if (s.length() != 0)
                 exportUserName = unQuote(s);
         }
@@ -964,26 +967,26 @@ public class JelibParser
         e.exportId = cc.cellId.newPortId(exportName);
         e.exportUserName = exportUserName;
         // get text descriptor in field 1
-        String textDescriptorInfo = pieces.get(fieldIndex++);
-        String nodeName = revision >= 1 ? pieces.get(fieldIndex++) : unQuote(pieces.get(fieldIndex++));
+        String textDescriptorInfo = lineReader.getField(fieldIndex++);
+        String nodeName = revision >= 1 ? lineReader.getField(fieldIndex++) : unQuoteField(fieldIndex++);
         e.originalNode = cc.findNode(nodeName);
-        String portName = unQuote(pieces.get(fieldIndex++));
+        String portName = unQuoteField(fieldIndex++);
         if (e.originalNode == null)
         {
-        	logError("Can't find nodename " + nodeName + " in cell '" + cellString + "'", cc.cellId);
+        	logError("Can't find nodename " + nodeName + " in cell '" + lineReader.getLine() + "'", cc.cellId);
             return;
         }
         e.originalPort = e.originalNode.newPortId(nodeName, portName);
         Point2D pos = null;
         if (revision < 1)
         {
-            double x = readDouble(pieces.get(fieldIndex++));
-            double y = readDouble(pieces.get(fieldIndex++));
+            double x = lineReader.getDouble(fieldIndex++);
+            double y = lineReader.getDouble(fieldIndex++);
             pos = new Point2D.Double(x, y);
         }
         e.pos = pos;
         // parse state information in field 6
-        String userBits = pieces.get(fieldIndex++);
+        String userBits = lineReader.getField(fieldIndex++);
         assert fieldIndex == numPieces;
 
         TextDescriptorAndCode nameTdC =  loadTextDescriptor(textDescriptorInfo, false);
@@ -1005,30 +1008,30 @@ public class JelibParser
         e.ch = ch != null ? ch : PortCharacteristic.UNKNOWN;
 
         // add variables in tail fields
-        e.vars = readVariables(pieces, numPieces);
+        e.vars = readVariables(lineReader.getFields(numPieces), 0);
         cc.addExport(e);
     }
 
-    private void parseArc(String cellString, CellContents cc) {
+    private void parseArc(CellContents cc) {
         ArcContents a = new ArcContents();
         a.line = lineReader.getLineNumber();
 
         // parse the arc line
-        List<String> pieces = parseLine(cellString);
-        if (pieces.size() < 13)
+        int numFields = lineReader.splitFields(escapeChar);
+        if (numFields < 13)
         {
-            logError("Arc instance needs 13 fields: " + cellString, cc.cellId);
+            logError("Arc instance needs 13 fields: " + lineReader.getLine(), cc.cellId);
             return;
         }
         TechId techId = cc.techId;
-        String protoName = unQuote(pieces.get(0));
+        String protoName = unQuoteField(0);
         int indexOfColon = protoName.indexOf(':');
         if (indexOfColon >= 0) {
             techId = idManager.newTechId(protoName.substring(0, indexOfColon));
             protoName = protoName.substring(indexOfColon + 1);
         }
         a.arcProtoId = techId.newArcProtoId(protoName);
-        String diskArcName = revision >= 1 ? pieces.get(1) : unQuote(pieces.get(1));
+        String diskArcName = revision >= 1 ? lineReader.getField(1) : unQuoteField(1);
         String arcName = diskArcName;
         if (arcName.charAt(0) == '"')
         {
@@ -1048,12 +1051,12 @@ public class JelibParser
             }
         }
         a.arcName = arcName;
-        a.diskWidth = readDouble(pieces.get(3));
+        a.diskWidth = lineReader.getDouble(3);
 
-        String headNodeName = revision >= 1 ? pieces.get(5) : unQuote(pieces.get(5));
-        String headPortName = unQuote(pieces.get(6));
-        double headX = readDouble(pieces.get(7));
-        double headY = readDouble(pieces.get(8));
+        String headNodeName = revision >= 1 ? lineReader.getField(5) : unQuoteField(5);
+        String headPortName = unQuoteField(6);
+        double headX = lineReader.getDouble(7);
+        double headY = lineReader.getDouble(8);
         a.headNode = cc.findNode(headNodeName);
         if (a.headNode == null)
         {
@@ -1063,10 +1066,10 @@ public class JelibParser
         a.headPort = a.headNode.newPortId(headNodeName, headPortName);
         a.headPoint = EPoint.fromLambda(headX, headY);
 
-        String tailNodeName = revision >= 1 ? pieces.get(9) : unQuote(pieces.get(9));
-        String tailPortName = unQuote(pieces.get(10));
-        double tailX = readDouble(pieces.get(11));
-        double tailY = readDouble(pieces.get(12));
+        String tailNodeName = revision >= 1 ? lineReader.getField(9) : unQuoteField(9);
+        String tailPortName = unQuoteField(10);
+        double tailX = lineReader.getDouble(11);
+        double tailY = lineReader.getDouble(12);
         a.tailNode = cc.findNode(tailNodeName);
         if (a.tailNode == null)
         {
@@ -1077,7 +1080,7 @@ public class JelibParser
         a.tailPoint = EPoint.fromLambda(tailX, tailY);
 
         // parse state information in field 4
-        String stateInfo = pieces.get(4);
+        String stateInfo = lineReader.getField(4);
         boolean extended = true, directional = false, reverseEnds = false,
             skipHead = false, skipTail = false,
             tailNotExtended = false, headNotExtended = false,
@@ -1142,12 +1145,12 @@ public class JelibParser
         a.flags = flags;
 
         // get the ard name text descriptor
-        String nameTextDescriptorInfo = pieces.get(2);
+        String nameTextDescriptorInfo = lineReader.getField(2);
         TextDescriptorAndCode nameTdC = loadTextDescriptor(nameTextDescriptorInfo, false);
         a.nameTextDescriptor = nameTdC.td;
 
         // add variables in fields 13 and up
-        a.vars = readVariables(pieces, 13);
+        a.vars = readVariables(lineReader.getFields(13), 0);
         cc.addArc(a);
     }
 
@@ -1185,6 +1188,17 @@ public class JelibParser
 		return stringPieces;
 	}
 
+	/**
+	 * Method to return a field of the current line of the line reader, unquoted.
+	 * @param i the field index.
+	 * @return the unquoted field.
+	 */
+	private String unQuoteField(int i)
+	{
+		String s = lineReader.getUnQuotedField(i, revision >= 1, escapeChar);
+		return s != null ? s : unQuote(lineReader.getField(i));
+	}
+
 	private String unQuote(String line)
 	{
 		int len = line.length();
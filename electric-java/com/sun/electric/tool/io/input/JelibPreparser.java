@@ -0,0 +1,162 @@
+/* -*- tab-width: 4 -*-
+ *
+ * Electric(tm) VLSI Design System
+ *
+ * File: JelibPreparser.java
+ * Input/output tool: parallel parsing of JELIB libraries and their references
+ *
+ * Copyright (c) 2012, Static Free Software. All rights reserved.
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sun.electric.tool.io.input;
+
+import com.sun.electric.database.hierarchy.Library;
+import com.sun.electric.database.id.IdManager;
+import com.sun.electric.database.id.LibId;
+import com.sun.electric.tool.io.FileType;
+import com.sun.electric.tool.user.ErrorLogger;
+import com.sun.electric.tool.user.dialogs.OpenFile;
+import com.sun.electric.util.TextUtils;
+
+import java.net.URL;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * This class parses a JELIB/DELIB library and all the libraries it references, concurrently.
+ * References are resolved as soon as a file is parsed, so referenced libraries are parsed
+ * while the rest of the graph is still being read.
+ * The parsed files are handed to the JELIB reader, which then only has to instantiate them.
+ * Libraries that cannot be located or parsed here are left to the normal serial reader.
+ */
+class JelibPreparser {
+
+    private final IdManager idManager;
+    private final String mainLibDirectory;
+    /** parsed libraries keyed by the URL string of their file */  private final Map<String,JelibParser> parsers = new HashMap<String,JelibParser>();
+    /** names of libraries that were submitted for parsing */       private final Set<String> submittedLibNames = new HashSet<String>();
+    /** URLs of files that were submitted for parsing */            private final Set<String> submittedURLs = new HashSet<String>();
+
+    private class ParseTask implements Callable<ParseTask> {
+        private final LibId libId;
+        private final URL fileURL;
+        private final FileType fileType;
+        /** errors of this file, kept apart until the reader uses the parsed file */
+        private final ErrorLogger errorLogger;
+        private JelibParser parser;
+
+        private ParseTask(LibId libId, URL fileURL, FileType fileType) {
+            this.libId = libId;
+            this.fileURL = fileURL;
+            this.fileType = fileType;
+            errorLogger = ErrorLogger.newInstance("Parse " + libId.libName);
+        }
+
+        @Override
+        public ParseTask call() throws Exception {
+            parser = JelibParser.parse(libId, fileURL, fileType, false, errorLogger);
+            return this;
+        }
+    }
+
+    private JelibPreparser(IdManager idManager, String mainLibDirectory) {
+        this.idManager = idManager;
+        this.mainLibDirectory = mainLibDirectory;
+    }
+
+    /**
+     * Method to parse a library and all libraries that it references, directly or indirectly.
+     * @param libId the LibId of the top-level library.
+     * @param fileURL the URL of the top-level library file.
+     * @param fileType the type of the top-level library file (JELIB or DELIB).
+     * @param mainLibDirectory the directory used to search referenced libraries.
+     * @return a map from the URL string of each parsed file to its parser.
+     * Each parser logs into its own ErrorLogger, see JelibParser.getErrorLogger().
+     */
+    static Map<String,JelibParser> parseAll(LibId libId, URL fileURL, FileType fileType, String mainLibDirectory) {
+        JelibPreparser preparser = new JelibPreparser(libId.idManager, mainLibDirectory);
+        preparser.doParse(preparser.newTask(libId, fileURL, fileType));
+        return preparser.parsers;
+    }
+
+    private ParseTask newTask(LibId libId, URL fileURL, FileType fileType) {
+        return new ParseTask(libId, fileURL, fileType);
+    }
+
+    private void doParse(ParseTask topTask) {
+        int numThreads = Math.max(1, Runtime.getRuntime().availableProcessors());
+        ExecutorService pool = Executors.newFixedThreadPool(numThreads);
+        CompletionService<ParseTask> completion = new ExecutorCompletionService<ParseTask>(pool);
+        int pending = 0;
+        try {
+            submittedLibNames.add(topTask.libId.libName);
+            submittedURLs.add(topTask.fileURL.toString());
+            completion.submit(topTask);
+            pending++;
+            while (pending > 0) {
+                Future<ParseTask> future = completion.take();
+                pending--;
+                ParseTask task;
+                try {
+                    task = future.get();
+                } catch (ExecutionException e) {
+                    // this library will be parsed again (and the error reported) by the serial reader
+                    continue;
+                }
+                parsers.put(task.fileURL.toString(), task.parser);
+                for (String libFileName : task.parser.externalLibIds.values()) {
+                    ParseTask subTask = resolveExternalLibrary(libFileName, task.fileType);
+                    if (subTask == null) continue;
+                    completion.submit(subTask);
+                    pending++;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Method to find the file of a referenced library the same way that
+     * LibraryFiles.readExternalLibraryFromFilename() does, without asking the user.
+     * @return a task to parse the library, or null if it should not be parsed here.
+     */
+    private ParseTask resolveExternalLibrary(String theFileName, FileType defaultType) {
+        String fileExt = TextUtils.getExtension(theFileName);
+        boolean found = (defaultType != null && FileType.matchExtension(fileExt));
+        String legalLibName = found ? TextUtils.getFileNameWithoutExtension(theFileName) : theFileName;
+        if (submittedLibNames.contains(legalLibName) || Library.findLibrary(legalLibName) != null) return null;
+        submittedLibNames.add(legalLibName);
+
+        URL externalURL = LibraryFiles.searchExternalLibraryFromFilename(mainLibDirectory, theFileName, defaultType);
+        if (externalURL == null || !submittedURLs.add(externalURL.toString())) return null;
+        FileType importType = OpenFile.getOpenFileType(externalURL.getFile(), defaultType);
+        if (importType != FileType.JELIB && importType != FileType.DELIB) return null;
+        String libName = LibId.legalLibraryName(legalLibName);
+        if (libName == null) return null;
+        return newTask(idManager.newLibId(libName), externalURL, importType);
+    }
+}
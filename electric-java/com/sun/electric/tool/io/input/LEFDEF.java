@@ -606,21 +606,21 @@ public class LEFDEF extends Input<Object>
 	// Extra functions
 	protected void reportError(String command, Cell cell)
 	{
-		String msg = "Error on line " + lineReader.getLineNumber() + ": " + command;
+		String msg = "Error on line " + getLineNumber() + ": " + command;
 		System.out.println(msg);
         errorLogger.logError(msg, cell, 0);
 	}
 
 	protected void reportWarning(String command, Cell cell)
 	{
-		String msg = "Warning on line " + lineReader.getLineNumber() + ": " + command;
+		String msg = "Warning on line " + getLineNumber() + ": " + command;
 		System.out.println(msg);
         errorLogger.logWarning(msg, cell, 0);
 	}
 
 	protected void reportWarning(String command, Geometric geom, Cell cell)
 	{
-		String msg = "Warning on line " + lineReader.getLineNumber() + ": " + command;
+		String msg = "Warning on line " + getLineNumber() + ": " + command;
 		System.out.println(msg);
         errorLogger.logWarning(msg, geom, cell, null, 0);
 	}
@@ -110,6 +110,7 @@ public abstract class LibraryFiles extends Input
     /** buffer for reading Variables. */                                    ArrayList<Variable> variablesBuf = new ArrayList<Variable>();
 
 	/** the path to the library being read. */                              protected static String mainLibDirectory = null;
+	/** JELIB files parsed in advance, keyed by URL (null if none). */      private static Map<String,JelibParser> preparsedLibraries = null;
 	/** collection of libraries and their input objects. */					private static List<LibraryFiles> libsBeingRead;
     /** collection of undefined Nodes/Arcs/Technologies */                  static Map<TechId, Set<Object>> undefinedTechsAndPrimitives;
     /** collection of elib cell bound */                                    static HashMap<CellId,ERectangle> elibCellBounds;
@@ -211,6 +212,25 @@ public abstract class LibraryFiles extends Input
 	 */
 	public static Library readLibrary(EditingPreferences ep, URL fileURL, String libName, FileType type, boolean quick,
         Map<Setting,Object> projectSettings)
+	{
+		return readLibrary(ep, fileURL, libName, type, quick, projectSettings, false);
+	}
+
+	/**
+	 * Method to read a Library from disk.
+	 * This method is for reading full Electric libraries in ELIB, JELIB, and Readable Dump format.
+     * This method doesn't read project preferences contained in library file.
+	 * @param fileURL the URL to the disk file.
+	 * @param libName the name to give the library (null to derive it from the file path)
+	 * @param type the type of library file (ELIB, JELIB, etc.)
+	 * @param quick true to read the library without verbosity (used when reading a library internally).
+	 * @param projectSettings an output map which is filled by project preferences of top library
+	 * @param parallel true to parse a JELIB/DELIB library and all libraries it references in parallel
+	 * before they are instantiated.
+	 * @return the read Library, or null if an error occurred.
+	 */
+	public static Library readLibrary(EditingPreferences ep, URL fileURL, String libName, FileType type, boolean quick,
+        Map<Setting,Object> projectSettings, boolean parallel)
 	{
 		if (fileURL == null) return null;
 		long startTime = System.currentTimeMillis();
@@ -252,6 +272,8 @@ public abstract class LibraryFiles extends Input
 			{
 				// get the library name
 				if (libName == null) libName = TextUtils.getFileNameWithoutExtension(fileURL);
+				if (parallel && (type == FileType.JELIB || type == FileType.DELIB))
+					preparseLibraries(fileURL, libName, type);
 				lib = readALibrary(ep, fileURL, null, libName, type, projectSettings);
 			}
 			if (LibraryFiles.VERBOSE)
@@ -261,6 +283,7 @@ public abstract class LibraryFiles extends Input
 			if (LibraryFiles.VERBOSE)
 				System.out.println("Done instantiating data for all libraries");
 		} finally {
+			preparsedLibraries = null;
 			if (!quick) stopProgressDialog();
 			Cell.setAllowCircularLibraryDependences(false);
 		}
@@ -347,6 +370,39 @@ public abstract class LibraryFiles extends Input
 		return settingsByXml(in.projectSettings);
 	}
 
+	/**
+	 * Method to parse a JELIB/DELIB library and all the libraries it references, in parallel.
+	 * The parsed files are picked up by the JELIB reader when each library is instantiated,
+	 * so the libraries are still created in the usual order inside the current Job.
+	 * Any library that fails to parse here is simply read again by the serial path.
+	 */
+	private static void preparseLibraries(URL fileURL, String libName, FileType type)
+	{
+		long startTime = System.currentTimeMillis();
+		String libDirectory = TextUtils.getFilePath(fileURL);
+		if (type == FileType.DELIB)
+			libDirectory = libDirectory.replaceAll(libName+"."+type.getFirstExtension(), "");
+		LibId libId = EDatabase.serverDatabase().getIdManager().newLibId(libName);
+		setProgressNote("Parsing libraries...");
+		preparsedLibraries = JelibPreparser.parseAll(libId, fileURL, type, libDirectory);
+		long endTime = System.currentTimeMillis();
+		if (preparsedLibraries.size() > 1)
+			System.out.println("Parsed " + preparsedLibraries.size() + " libraries in parallel, took " +
+				ElapseTimer.createInstanceByValues(startTime, endTime));
+	}
+
+	/**
+	 * Method to return the parsed contents of a library file that was parsed in advance.
+	 * Each parsed file is returned only once.
+	 * @param fileURL the URL of the library file.
+	 * @return the parsed file, or null if it was not parsed in advance.
+	 */
+	static JelibParser takePreparsedLibrary(URL fileURL)
+	{
+		if (preparsedLibraries == null) return null;
+		return preparsedLibraries.remove(fileURL.toString());
+	}
+
     private static Map<String,Object> settingsByXml(Map<Setting,Object> settings) {
         Map<String,Object> settingsByXml = new HashMap<String,Object>();
         // settings is null if there were previous errors in the execution
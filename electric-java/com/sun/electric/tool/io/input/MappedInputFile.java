@@ -0,0 +1,130 @@
+/* -*- tab-width: 4 -*-
+ *
+ * Electric(tm) VLSI Design System
+ *
+ * File: MappedInputFile.java
+ * Input/output tool: memory-mapped access to large binary files
+ *
+ * Copyright (c) 2012, Static Free Software. All rights reserved.
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sun.electric.tool.io.input;
+
+import com.sun.electric.util.TextUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ * Read-only memory mapping of a whole file, which may be larger than 2GB.
+ * The file is mapped in chunks, and each chunk overlaps the next by a few
+ * bytes so that a number never straddles two mappings.  Reads use absolute
+ * positions and change no state, so any number of threads may share one
+ * MappedInputFile.  The mapping is released when it is garbage collected.
+ */
+class MappedInputFile
+{
+	private static final long CHUNK_SIZE = 1L << 30;
+	private static final int OVERLAP = 16;
+
+	private final ByteBuffer[] chunks;
+	private final long length;
+
+	private MappedInputFile(File file, ByteOrder order)
+		throws IOException
+	{
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try
+		{
+			FileChannel channel = raf.getChannel();
+			length = channel.size();
+			int numChunks = (int)((length + CHUNK_SIZE - 1) / CHUNK_SIZE);
+			chunks = new ByteBuffer[numChunks];
+			for(int i=0; i<numChunks; i++)
+			{
+				long start = i * CHUNK_SIZE;
+				long size = Math.min(length - start, CHUNK_SIZE + OVERLAP);
+				chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, size).order(order);
+			}
+		} finally
+		{
+			// the mappings stay valid after the file is closed
+			raf.close();
+		}
+	}
+
+	/**
+	 * Method to map a file.
+	 * @param fileURL the file to map.
+	 * @param order the byte order of the numbers in the file.
+	 * @return the mapped file, or null if the URL is not a plain local file.
+	 */
+	static MappedInputFile open(URL fileURL, ByteOrder order)
+	{
+		if (!fileURL.getProtocol().equals("file") || fileURL.toString().endsWith(".gz")) return null;
+		File file = TextUtils.getFile(fileURL);
+		if (file == null || !file.isFile()) return null;
+		try
+		{
+			return new MappedInputFile(file, order);
+		} catch (IOException e)
+		{
+			// not mappable (for example, out of address space): the caller streams the file instead
+			return null;
+		}
+	}
+
+	/** Returns the length of the file in bytes. */
+	long length() { return length; }
+
+	private ByteBuffer chunk(long pos) { return chunks[(int)(pos / CHUNK_SIZE)]; }
+
+	/** Returns the unsigned byte at the given position. */
+	int getByte(long pos) { return chunk(pos).get((int)(pos % CHUNK_SIZE)) & 0xFF; }
+
+	/** Returns the 4-byte integer at the given position. */
+	int getInt(long pos) { return chunk(pos).getInt((int)(pos % CHUNK_SIZE)); }
+
+	/** Returns the 4-byte float at the given position. */
+	float getFloat(long pos) { return chunk(pos).getFloat((int)(pos % CHUNK_SIZE)); }
+
+	/** Returns the 8-byte double at the given position. */
+	double getDouble(long pos) { return chunk(pos).getDouble((int)(pos % CHUNK_SIZE)); }
+
+	/**
+	 * Method to find a line that starts with the given text.
+	 * @param text the start of the line (ASCII).
+	 * @param from the position to start searching.
+	 * @return the position of the line, or -1 if there is none.
+	 */
+	long findLine(String text, long from)
+	{
+		int first = text.charAt(0);
+		for(long pos = from; pos + text.length() <= length; pos++)
+		{
+			if (getByte(pos) != first) continue;
+			if (pos > 0 && getByte(pos-1) != '\n' && getByte(pos-1) != '\r') continue;
+			int i = 1;
+			while (i < text.length() && getByte(pos+i) == text.charAt(i)) i++;
+			if (i == text.length()) return pos;
+		}
+		return -1;
+	}
+}
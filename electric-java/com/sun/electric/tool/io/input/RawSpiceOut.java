@@ -24,6 +24,7 @@
 package com.sun.electric.tool.io.input;
 
 import com.sun.electric.database.hierarchy.Cell;
+import com.sun.electric.tool.simulation.LazySignal;
 import com.sun.electric.tool.simulation.MutableSignal;
 import com.sun.electric.tool.simulation.ScalarSample;
 import com.sun.electric.tool.simulation.Signal;
@@ -52,6 +53,8 @@ public class RawSpiceOut extends Input<Stimuli>
 	private static final boolean DEBUG = false;
 
 	private boolean complexValues;
+	/** the file, mapped (null if it cannot be mapped) */		private MappedInputFile mappedFile;
+	/** where to look for the next binary section */			private long mappedSearchPos;
 
 	/**
 	 * Method to read an LTSpice output file.
@@ -69,7 +72,10 @@ public class RawSpiceOut extends Input<Stimuli>
 		startProgressDialog("LTSpice output", fileURL.getFile());
 
 		// read the actual signal data from the .raw file
+		mappedFile = MappedInputFile.open(fileURL, ByteOrder.nativeOrder());
+		mappedSearchPos = 0;
 		sd = readRawSpice3File(cell, sd);
+		mappedFile = null;
 
 		// stop progress dialog, close the file
 		stopProgressDialog();
@@ -314,6 +320,26 @@ public class RawSpiceOut extends Input<Stimuli>
                         return null;
                     }
 
+                    // the data of a mapped file is read when the signals are shown
+                    int valueSize = complexValues ? 16 : 8;
+                    long rowSize = (long)(1 + signalCount) * valueSize;
+                    long dataPos = findMappedBinaryData(rowCount * rowSize);
+                    if (dataPos >= 0)
+                    {
+                        double minTime = Double.MAX_VALUE, maxTime = -Double.MAX_VALUE;
+                        for(int j=0; j<rowCount; j++)
+                        {
+                            time[j] = mappedFile.getDouble(dataPos + j*rowSize);
+                            minTime = Math.min(minTime, time[j]);
+                            maxTime = Math.max(maxTime, time[j]);
+                        }
+                        for (int i = 0; i < signalCount; i++)
+                            ScalarSample.createSignal(sc, sd, signalNames[i], null, minTime, maxTime,
+                                getMappedLoader(time, dataPos + (1+i)*valueSize, rowSize, false));
+                        skipBinaryData(rowCount * rowSize);
+                        continue;
+                    }
+
                     // read the data
                     double[][] values = new double[signalCount][rowCount];
                     for(int j=0; j<rowCount; j++)
@@ -397,6 +423,45 @@ if (OLD) continue;
                             System.out.println("VARIABLE "+i+" IS "+signalNames[i]);
                     }
 
+                    // the data of a mapped file is read when the signals are shown
+                    int timeSize = firstFieldIsTime ? (complexValues ? 16 : 8) : 0;
+                    int valueSize = (realValues ? 4 : 8) * (complexValues ? 2 : 1);
+                    long rowSize = timeSize + (long)signalCount * valueSize;
+                    long dataPos = findMappedBinaryData(rowCount * rowSize);
+                    if (dataPos >= 0)
+                    {
+                        time = new double[rowCount];
+                        for(int j=0; j<rowCount; j++)
+                            time[j] = firstFieldIsTime ? Math.abs(mappedFile.getDouble(dataPos + j*rowSize)) : j;
+                        List<Integer> sweepLengths = getSweepLengths(time);
+                        int sweepCount = sweepLengths.size();
+                        double[][] sweepTimes = new double[sweepCount][];
+                        long[] sweepPos = new long[sweepCount];
+                        int offset = 0;
+                        for(int s=0; s<sweepCount; s++)
+                        {
+                            int sweepLength = sweepLengths.get(s).intValue();
+                            sweepTimes[s] = new double[sweepLength];
+                            System.arraycopy(time, offset, sweepTimes[s], 0, sweepLength);
+                            sweepPos[s] = dataPos + offset*rowSize + timeSize;
+                            offset += sweepLength;
+                        }
+                        Signal<?> [][] signals = new Signal<?>[signalCount][sweepCount];
+                        for(int i=0; i<signalCount; i++)
+                        {
+                            String[] nameAndContext = getNameAndContext(signalNames[i]);
+                            for(int s=0; s<sweepCount; s++)
+                            {
+                                double[] sweepTime = sweepTimes[s];
+                                signals[i][s] = ScalarSample.createSignal(sc, sd, nameAndContext[0], nameAndContext[1],
+                                    sweepTime[0], sweepTime[sweepTime.length-1],
+                                    getMappedLoader(sweepTime, sweepPos[s] + i*valueSize, rowSize, realValues));
+                            }
+                        }
+                        createSweptSignals(sc, sd, signalNames, signals, sweepCount);
+                        return sd;
+                    }
+
                     // read all of the data in the RAW file
                     double[][] values = new double[signalCount][rowCount];
                     time = new double[rowCount];
@@ -417,33 +482,15 @@ if (OLD) continue;
                     }
 
                     // figure out where the sweep breaks occur
-                    List<Integer> sweepLengths = new ArrayList<Integer>();
-                    int sweepStart = 0;
-                    int sweepCount = 0;
-                    for(int j=1; j<=rowCount; j++)
-                    {
-                        if (j == rowCount || time[j] < time[j-1])
-                        {
-                            int sl = j - sweepStart;
-                            sweepLengths.add(new Integer(sl));
-                            sweepStart = j;
-                            sweepCount++;
-                        }
-                    }
+                    List<Integer> sweepLengths = getSweepLengths(time);
+                    int sweepCount = sweepLengths.size();
                     if (DEBUG) System.out.println("FOUND " + sweepCount + " SWEEPS");
                     Signal<?> [][] signals = new Signal<?>[signalCount][sweepCount];
                 	for(int i=0; i<signalCount; i++)
                     {
-                        String name = signalNames[i];
-                        int lastDotPos = name.lastIndexOf('.');
-                        String context = null;
-                        if (lastDotPos >= 0)
-                        {
-                            context = name.substring(0, lastDotPos);
-                            name = name.substring(lastDotPos + 1);
-                        }
+                        String[] nameAndContext = getNameAndContext(signalNames[i]);
                         for(int s=0; s<sweepCount; s++)
-            				signals[i][s] = ScalarSample.createSignal(sc, sd, name, context);
+            				signals[i][s] = ScalarSample.createSignal(sc, sd, nameAndContext[0], nameAndContext[1]);
                     }
 
                     // place data into the Sample object
@@ -462,21 +509,7 @@ if (OLD) continue;
                         offset += sweepLength;
                     }
 
-                    String[] sweepNames = new String[sweepCount];
-                    for(int s=0; s<sweepCount; s++) sweepNames[s] = "" + (s+1);
-                    for(int i=0; i<signalCount; i++)
-                    {
-                        String name = signalNames[i];
-                        int lastDotPos = name.lastIndexOf('.');
-                        String context = null;
-                        if (lastDotPos >= 0)
-                        {
-                            context = name.substring(0, lastDotPos);
-                            name = name.substring(lastDotPos + 1);
-                        }
-                    	SweptSample.createSignal(sc, sd, name, context, false, (Signal<ScalarSample>[])signals[i]);
-                    }
-                    sc.setSweepNames(sweepNames);
+                    createSweptSignals(sc, sd, signalNames, signals, sweepCount);
                     return sd;
                 }
             }
@@ -484,6 +517,118 @@ if (OLD) continue;
         return sd;
 	}
 
+	/**
+	 * Method to find where the sweeps of an LTSpice file start: the time goes back at each new sweep.
+	 * @return the number of rows in each sweep.
+	 */
+	private static List<Integer> getSweepLengths(double[] time)
+	{
+		List<Integer> sweepLengths = new ArrayList<Integer>();
+		int sweepStart = 0;
+		for(int j=1; j<=time.length; j++)
+		{
+			if (j == time.length || time[j] < time[j-1])
+			{
+				sweepLengths.add(new Integer(j - sweepStart));
+				sweepStart = j;
+			}
+		}
+		return sweepLengths;
+	}
+
+	/**
+	 * Method to split a signal name into its name and context.
+	 * @return the name and the context (which may be null).
+	 */
+	private static String[] getNameAndContext(String name)
+	{
+		int lastDotPos = name.lastIndexOf('.');
+		String context = null;
+		if (lastDotPos >= 0)
+		{
+			context = name.substring(0, lastDotPos);
+			name = name.substring(lastDotPos + 1);
+		}
+		return new String[] {name, context};
+	}
+
+	private static void createSweptSignals(SignalCollection sc, Stimuli sd, String[] signalNames, Signal<?>[][] signals, int sweepCount)
+	{
+		String[] sweepNames = new String[sweepCount];
+		for(int s=0; s<sweepCount; s++) sweepNames[s] = "" + (s+1);
+		for(int i=0; i<signals.length; i++)
+		{
+			String[] nameAndContext = getNameAndContext(signalNames[i]);
+			SweptSample.createSignal(sc, sd, nameAndContext[0], nameAndContext[1], false, (Signal<ScalarSample>[])signals[i]);
+		}
+		sc.setSweepNames(sweepNames);
+	}
+
+	/**
+	 * Method to find the data of the next binary section of the mapped file.
+	 * The input stream must be just after the "Binary:" line of that section.
+	 * @param dataSize the size of the data.
+	 * @return the file position of the data, or -1 if the file is not mapped.
+	 */
+	private long findMappedBinaryData(long dataSize)
+	{
+		if (mappedFile == null) return -1;
+		long pos = mappedFile.findLine("Binary:", mappedSearchPos);
+		if (pos < 0) return -1;
+		while (pos < mappedFile.length() && mappedFile.getByte(pos) != '\n' && mappedFile.getByte(pos) != '\r') pos++;
+
+		// the line ends like in getLineFromBinary()
+		if (pos >= mappedFile.length()) return -1;
+		int c = mappedFile.getByte(pos++);
+		if (pos < mappedFile.length())
+		{
+			int next = mappedFile.getByte(pos);
+			if ((c == '\n' && next == '\r') || (c == '\r' && next == '\n')) pos++;
+		}
+		if (pos + dataSize > mappedFile.length()) return -1;
+		mappedSearchPos = pos + dataSize;
+		return pos;
+	}
+
+	/**
+	 * Method to skip the data of a binary section in the input stream.
+	 */
+	private void skipBinaryData(long dataSize)
+		throws IOException
+	{
+		long left = dataSize;
+		while (left > 0)
+		{
+			long skipped = dataInputStream.skip(left);
+			if (skipped <= 0) break;
+			left -= skipped;
+		}
+		updateProgressDialog((int)Math.min(Integer.MAX_VALUE, dataSize - left));
+	}
+
+	/**
+	 * Method to create a loader for one column of the mapped file.
+	 * @param time the time of each row.
+	 * @param start the file position of the column in the first row.
+	 * @param rowSize the size of a row in bytes.
+	 * @param isFloat true if the values are floats, false if doubles.
+	 */
+	private LazySignal.Loader getMappedLoader(final double[] time, final long start, final long rowSize, final boolean isFloat)
+	{
+		final MappedInputFile file = mappedFile;
+		return new LazySignal.Loader()
+		{
+			public double[][] read()
+			{
+				double[] values = new double[time.length];
+				long pos = start;
+				for(int j=0; j<time.length; j++, pos += rowSize)
+					values[j] = isFloat ? file.getFloat(pos) : file.getDouble(pos);
+				return new double[][] {time, values};
+			}
+		};
+	}
+
 	private double getNextDouble()
 		throws IOException
 	{
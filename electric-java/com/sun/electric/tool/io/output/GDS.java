@@ -56,8 +56,9 @@ import com.sun.electric.tool.user.ui.LayerVisibility;
 import com.sun.electric.util.TextUtils;
 import com.sun.electric.util.math.DBMath;
 import com.sun.electric.util.math.FixpTransform;
+import com.sun.electric.util.memory.Memory;
+import com.sun.electric.util.memory.MemoryUsage;
 
-import java.awt.Point;
 import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
 import java.io.BufferedInputStream;
@@ -69,6 +70,7 @@ import java.io.InputStream;
 import java.math.BigDecimal;
 import java.net.URL;
 import java.net.URLConnection;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Collection;
@@ -98,6 +100,7 @@ public class GDS extends Geometry
 	private static final int GDSVERSION        =      3;
 	private static final int BYTEMASK          =   0xFF;
 	private static final int DSIZE             =    512;		/* data block */
+	private static final int STREAMBLOCKS      =   2048;		/* data blocks per streamed buffer */
 	private static final int EXPORTPRESENTATION=      0;		/* centered (was 8 for bottom-left) */
 
 	// GDSII bit assignments in STRANS record
@@ -157,6 +160,11 @@ public class GDS extends Geometry
 	/** layer number map */						private Map<Layer,GDSLayers> layerNumbers;
 	/** separator string for lib + cell concatenated cell names */  public static final String concatStr = ".";
 	/** Name remapping if NCC annotation */		private Map<String,Set<String>> nameRemapping;
+	/** output buffer when streaming */			private ByteBuffer outputBuffer;
+	/** bytes written through the channel */	private long bytesFlushed;
+	/** reusable polygon coordinates */			private int [] reducedX = new int[8], reducedY = new int[8];
+	/** peak heap use while streaming */		private long peakMemory;
+	/** most polygons held for one cell */		private int peakCellPolys;
 	private GDSPreferences localPrefs;
 
 	public static class GDSPreferences extends OutputPreferences
@@ -170,6 +178,7 @@ public class GDS extends Geometry
 		public boolean writeExportCharacteristics = IOTool.isGDSOutWriteExportCharacteristicsSetting();
 		int outDefaultTextLayer = IOTool.getGDSDefaultTextLayer();
 		boolean outMergesBoxes = IOTool.isGDSOutMergesBoxes();
+		boolean outStreaming = IOTool.isGDSOutStreaming();
 		public int cellNameLenMax = IOTool.getGDSCellNameLenMax();
 		public boolean outUpperCase = IOTool.isGDSOutUpperCase();
         
@@ -217,7 +226,14 @@ public class GDS extends Geometry
 			}
 			
 			GDS out = new GDS(this);
-			if (out.openBinaryOutputStream(filePath)) return null;
+			if (outStreaming)
+			{
+				if (out.openBinaryOutputChannel(filePath)) return null;
+				out.outputBuffer = ByteBuffer.allocateDirect(STREAMBLOCKS * DSIZE);
+			} else
+			{
+				if (out.openBinaryOutputStream(filePath)) return null;
+			}
 			out.writtenCells = new HashSet<Cell>();
 			out.writtenCellNames = new HashSet<String>();
 			if (flatDesign)
@@ -250,8 +266,17 @@ public class GDS extends Geometry
 			}
 			out.outputHeader(HDR_ENDLIB, 0);
 			out.doneWritingOutput();
-			if (out.closeBinaryOutputStream()) return null;
-			System.out.println(filePath + " written");
+			if (outStreaming)
+			{
+				if (out.closeBinaryOutputChannel()) return null;
+				System.out.println(filePath + " written (streamed " + Memory.formatMemorySize(out.bytesFlushed) +
+					", peak heap in use " + Memory.formatMemorySize(out.peakMemory) +
+					", largest cell held " + out.peakCellPolys + " polygons)");
+			} else
+			{
+				if (out.closeBinaryOutputStream()) return null;
+				System.out.println(filePath + " written");
+			}
 
 			// warn if library name was changed
 			String topCellName = cell.getName();
@@ -274,6 +299,8 @@ public class GDS extends Geometry
 		outputBeginLibrary(topCell);
 	}
 
+	protected boolean streamCellGeom() { return localPrefs.outStreaming; }
+
 	protected void done()
 	{
 		if (inaccurate > 0)
@@ -478,6 +505,13 @@ public class GDS extends Geometry
             writeSpecialText(ai, ai.getTrueCenterX(), ai.getTrueCenterY(), GDS_TEXT_KEY, OLD_GDS_TEXT_KEY, GDSLayerType.TEXT);
         }
         outputHeader(HDR_ENDSTR, 0);
+
+        if (localPrefs.outStreaming)
+        {
+        	// this cell's geometry is still held: sample the memory in use
+        	peakCellPolys = Math.max(peakCellPolys, cellGeom.getNumPolys());
+        	peakMemory = Math.max(peakMemory, MemoryUsage.getInstance().getUsedMemory());
+        }
 	}
 
 	private void writeSpecialText(Geometric geom, double x, double y, Key key, Key keyOld, GDSLayerType type)
@@ -1264,6 +1298,14 @@ public class GDS extends Geometry
 	 */
 	private void doneWritingOutput()
 	{
+		if (outputBuffer != null)
+		{
+			// pack with zeroes to a multiple of 4 blocks (2048 bytes)
+			while ((bytesFlushed + outputBuffer.position()) % (4*DSIZE) != 0)
+				outputByte((byte)0);
+			flushOutputBuffer();
+			return;
+		}
 		try
 		{
 			// Write out the current buffer
@@ -1438,15 +1480,26 @@ public class GDS extends Geometry
 		outputDouble(scale);
 	}
 
-	private List<Point> reducePolygon(PolyBase poly)
+	/**
+	 * Method to scale the points of a polygon and remove redundant ones.
+	 * The result is left in "reducedX" and "reducedY", which are reused for every polygon.
+	 * @return the number of points left.
+	 */
+	private int reducePolygon(PolyBase poly)
 	{
-		List<Point> pts = new ArrayList<Point>();
 		Point2D [] points = poly.getPoints();
+		if (reducedX.length < points.length)
+		{
+			reducedX = new int[points.length];
+			reducedY = new int[points.length];
+		}
 		int lastX = scaleDBUnit(points[0].getX());
 		int lastY = scaleDBUnit(points[0].getY());
 		int firstX = lastX;
 		int firstY = lastY;
-		pts.add(new Point(lastX, lastY));
+		reducedX[0] = lastX;
+		reducedY[0] = lastY;
+		int count = 1;
 		for(int i=1; i<points.length; i++)
 		{
 			int x = scaleDBUnit(points[i].getX());
@@ -1454,15 +1507,29 @@ public class GDS extends Geometry
 			if (x == lastX && y == lastY) continue;
 			lastX = x;
 			lastY = y;
-			pts.add(new Point(lastX, lastY));
+			reducedX[count] = lastX;
+			reducedY[count] = lastY;
+			count++;
 		}
-		if (pts.size() > 2)
+		if (count > 2)
 		{
-			Point endPoint = pts.get(pts.size()-1);
-			if (firstX == endPoint.x && firstY == endPoint.y)
-				pts.remove(pts.size()-1);
+			if (firstX == reducedX[count-1] && firstY == reducedY[count-1])
+				count--;
 		}
-		return pts;
+		return count;
+	}
+
+	/**
+	 * Method to tell whether the reduced polygon is a quadrilateral with distinct corners (the common case of a box),
+	 * which cannot contain a hole.
+	 */
+	private boolean isSimpleQuad(int count)
+	{
+		if (count != 4) return false;
+		for(int i=0; i<4; i++)
+			for(int j=i+1; j<4; j++)
+				if (reducedX[i] == reducedX[j] && reducedY[i] == reducedY[j]) return false;
+		return true;
 	}
 
 	/**
@@ -1471,23 +1538,24 @@ public class GDS extends Geometry
 	private void outputBoundary(PolyBase poly, int layerNumber, int layerType)
 	{
 		// remove redundant points
-		List<Point> reducedPoints = reducePolygon(poly);
-		int count = reducedPoints.size();
+		int count = reducePolygon(poly);
 		if (count <= 2) return;
 		int start = 0;
 //System.out.println("TESTING "+count+" POINTS");
 		// find out whether this polygon has a hole in it
-		Map<String,List<Integer>> polyMap = new HashMap<String,List<Integer>>();
-		for(int i=0; i<count; i++)
+		Map<Long,List<Integer>> polyMap = new HashMap<Long,List<Integer>>();
+		if (!isSimpleQuad(count))
 		{
-			Point pt = reducedPoints.get(i);
-			String polyKey = pt.x + "x" + pt.y;
-			List<Integer> coordIndices = polyMap.get(polyKey);
-			if (coordIndices == null) polyMap.put(polyKey, coordIndices = new ArrayList<Integer>());
-			coordIndices.add(Integer.valueOf(i));
+			for(int i=0; i<count; i++)
+			{
+				Long polyKey = Long.valueOf(((long)reducedX[i] << 32) | (reducedY[i] & 0xFFFFFFFFL));
+				List<Integer> coordIndices = polyMap.get(polyKey);
+				if (coordIndices == null) polyMap.put(polyKey, coordIndices = new ArrayList<Integer>());
+				coordIndices.add(Integer.valueOf(i));
+			}
 		}
 		List<Integer> firstPair = null, secondPair = null;
-		for(String polyKey : polyMap.keySet())
+		for(Long polyKey : polyMap.keySet())
 		{
 			List<Integer> pairs = polyMap.get(polyKey);
 //System.out.println("COORDINATE "+polyKey+" FOUND "+pairs.size()+" TIMES");
@@ -1528,8 +1596,8 @@ public class GDS extends Geometry
 			{
 				for( ; sofar<count; sofar++)
 				{
-					if (reducedPoints.get(sofar).x == reducedPoints.get(start).x &&
-						reducedPoints.get(sofar).y == reducedPoints.get(start).y) break;
+					if (reducedX[sofar] == reducedX[start] &&
+						reducedY[sofar] == reducedY[start]) break;
 				}
 			}
 			outputHeader(HDR_BOUNDARY, 0);
@@ -1541,8 +1609,8 @@ public class GDS extends Geometry
 			{
 				int j = i;
 				if (i == sofar) j = start;
-				outputInt(reducedPoints.get(j).x);
-				outputInt(reducedPoints.get(j).y);
+				outputInt(reducedX[j]);
+				outputInt(reducedY[j]);
 			}
 			outputHeader(HDR_ENDEL, 0);
 			if (sofar >= count) break;
@@ -1559,8 +1627,7 @@ public class GDS extends Geometry
 	private void outputPath(PolyBase poly, int layerNumber, int layerType)
 	{
 		// remove redundant points
-		List<Point> reducedPoints = reducePolygon(poly);
-		int numPoints = reducedPoints.size();
+		int numPoints = reducePolygon(poly);
 		if (numPoints <= 2) return;
 
 		outputHeader(HDR_PATH, 0);
@@ -1571,8 +1638,8 @@ public class GDS extends Geometry
 		outputShort(HDR_XY);
 		for (int i = 0; i < numPoints; i ++)
 		{
-			outputInt(reducedPoints.get(i).x);
-			outputInt(reducedPoints.get(i).y);
+			outputInt(reducedX[i]);
+			outputInt(reducedY[i]);
 		}
 		outputHeader(HDR_ENDEL, 0);
 	}
@@ -1582,6 +1649,12 @@ public class GDS extends Geometry
 	 */
 	private void outputByte(byte val)
 	{
+		if (outputBuffer != null)
+		{
+			outputBuffer.put(val);
+			if (!outputBuffer.hasRemaining()) flushOutputBuffer();
+			return;
+		}
 		dataBufferGDS[bufferPosition++] = val;
 		if (bufferPosition >= DSIZE)
 		{
@@ -1597,6 +1670,23 @@ public class GDS extends Geometry
 		}
 	}
 
+	/**
+	 * Method to write the streaming buffer to the output channel and reuse it.
+	 */
+	private void flushOutputBuffer()
+	{
+		outputBuffer.flip();
+		try
+		{
+			while (outputBuffer.hasRemaining())
+				bytesFlushed += outputChannel.write(outputBuffer);
+		} catch (IOException e)
+		{
+			reportError("End of file reached while writing GDS");
+		}
+		outputBuffer.clear();
+	}
+
 	private int scaleDBUnit(double dbunit)
 	{
 		// scale according to technology
@@ -1626,6 +1716,12 @@ public class GDS extends Geometry
 	 */
 	private void outputShort(short val)
 	{
+		if (outputBuffer != null && outputBuffer.remaining() >= 2)
+		{
+			outputBuffer.putShort(val);
+			if (!outputBuffer.hasRemaining()) flushOutputBuffer();
+			return;
+		}
 		outputByte((byte)((val>>8)&BYTEMASK));
 		outputByte((byte)(val&BYTEMASK));
 	}
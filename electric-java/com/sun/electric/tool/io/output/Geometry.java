@@ -129,6 +129,13 @@ public abstract class Geometry extends Output
     /** Overridable method to determine whether or not to include the original Geometric with a Poly */
     protected boolean includeGeometric() { return false; }
 
+    /**
+     * Overridable method to determine whether cell geometry is streamed.
+     * When streaming, the primitive geometry of a cell is gathered only when the cell is written,
+     * and released right afterwards, so that only one cell's geometry is held at a time.
+     */
+    protected boolean streamCellGeom() { return false; }
+
     /**
      * Class to store polygon geometry of a cell
      */
@@ -292,6 +299,22 @@ public abstract class Geometry extends Output
     			polyMap.put(layer, polys);
     		}
         }
+
+        /** count the polygons in this cell */
+        public int getNumPolys()
+        {
+            int numPolys = 0;
+            for (List<Object> polyList : polyMap.values())
+                numPolys += polyList.size();
+            return numPolys;
+        }
+
+        /** drop the geometry of this cell once it has been written */
+        public void releaseGeometry()
+        {
+            polyMap = new HashMap<Layer,List<Object>>();
+            nodables = new ArrayList<Nodable>();
+        }
     }
 
     //------------------HierarchyEnumerator.Visitor Implementation----------------------
@@ -326,6 +349,18 @@ public abstract class Geometry extends Output
 
         public void exitCell(HierarchyEnumerator.CellInfo info)
         {
+            boolean stream = outGeom.streamCellGeom();
+            if (stream)
+            {
+                // add primitive nodes only now, so that no other cell's geometry is held meanwhile
+                for (Iterator<NodeInst> it = info.getCell().getNodes(); it.hasNext();)
+                {
+                    NodeInst ni = it.next();
+                    if (ni.isCellInstance() || Generic.isCellCenter(ni)) continue;
+                    addNodeInst(ni, ni.rotateOut());
+                }
+            }
+
             // add arcs to cellGeom
     		for (Iterator<ArcInst> it = info.getCell().getArcs(); it.hasNext();)
 			{
@@ -339,6 +374,8 @@ public abstract class Geometry extends Output
 
             // write cell
             outGeom.writeCellGeom(cellGeom);
+            if (stream)
+                cellGeom.releaseGeometry();
 
             curHierDepth--;
             cellGeom = outGeomStack[curHierDepth];
@@ -351,6 +388,8 @@ public abstract class Geometry extends Output
     			NodeInst ni = (NodeInst)no;
     			// don't copy Cell-Centers
     			if (Generic.isCellCenter(ni)) return false;
+    			// streamed geometry is gathered in exitCell
+    			if (outGeom.streamCellGeom()) return false;
                 FixpTransform trans = ni.rotateOut();
                 addNodeInst(ni, trans);
                 return false;
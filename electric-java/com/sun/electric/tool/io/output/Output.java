@@ -63,6 +63,7 @@ import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.net.URL;
+import java.nio.channels.FileChannel;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Comparator;
@@ -249,6 +250,7 @@ public class Output
 	/** for writing text files */						protected PrintWriter printWriter;
 	/** for writing text arrays */						protected StringWriter stringWriter;
 	/** for writing binary files */						protected DataOutputStream dataOutputStream;
+	/** for writing binary files through NIO */			protected FileChannel outputChannel;
 	/** True to write with less information displayed */protected boolean quiet;
 	/** for storing generated errors */					protected ErrorLogger errorLogger;
 
@@ -653,6 +655,44 @@ public class Output
         return false;
     }
 
+    /**
+     * Open output for writing binary to a file through a FileChannel.
+     * The caller is responsible for buffering.
+     * @param filePath the name of the file.
+     * @return true on error.
+     */
+    protected boolean openBinaryOutputChannel(String filePath)
+    {
+		this.filePath = filePath;
+		try
+		{
+			outputChannel = new FileOutputStream(filePath).getChannel();
+		} catch (FileNotFoundException e)
+		{
+			System.out.println("Could not write file " + filePath);
+			System.out.println("Reason: " + e.getMessage());
+			return true;
+		}
+        return false;
+    }
+
+    /**
+     * Close output for writing binary to a file through a FileChannel.
+     * @return true on error.
+     */
+    protected boolean closeBinaryOutputChannel()
+    {
+		try
+		{
+			outputChannel.close();
+		} catch (IOException e)
+		{
+			System.out.println("Error closing " + filePath);
+			return true;
+		}
+        return false;
+    }
+
     /**
      * Close output for writing binary to a file.
      * @return true on error.
@@ -551,13 +551,9 @@ public class Spice extends Topology
 
 		// create electrical nets (SpiceNet) for every Network in the cell
 		Netlist netList = cni.getNetList();
-		Map<Network,SpiceNet> spiceNetMap = new HashMap<Network,SpiceNet>();
-        for(Iterator<Network> it = netList.getNetworks(); it.hasNext(); )
-        {
-            Network net = it.next();
-            SpiceNet spNet = new SpiceNet();
-            spiceNetMap.put(net, spNet);
-        }
+		@SuppressWarnings("unchecked")
+		Map<Network,SpiceNet> spiceNetMap = (Map<Network,SpiceNet>)getPreparedCell(cell, netList);
+		if (spiceNetMap == null) spiceNetMap = makeSpiceNets(cell, netList);
 
         // for non-simple parasitics, create a SpiceSegmentedNets object to deal with them
         SimulationTool.SpiceParasitics spLevel = localPrefs.parasiticsLevel;
@@ -584,63 +580,12 @@ public class Spice extends Topology
 		for(Iterator<NodeInst> aIt = cell.getNodes(); aIt.hasNext(); )
 		{
 			NodeInst ni = aIt.next();
-			addNodeInformation(netList, spiceNetMap, ni);
 			PrimitiveNode.Function fun = ni.getFunction();
 //			if (fun.isBipolar() || fun == PrimitiveNode.Function.TRANS) bipolarTrans++; else
 			if (fun.isNTypeTransistor()) nmosTrans++; else
 			if (fun.isPTypeTransistor()) pmosTrans++;
 		}
 
-		// accumulate geometry of all arcs
-		for(Iterator<ArcInst> aIt = cell.getArcs(); aIt.hasNext(); )
-		{
-			ArcInst ai = aIt.next();
-
-			// don't count non-electrical arcs
-			if (ai.getProto().getFunction() == ArcProto.Function.NONELEC) continue;
-
-			// ignore busses
-//			if (ai->network->buswidth > 1) continue;
-			Network net = netList.getNetwork(ai, 0);
-			SpiceNet spNet = spiceNetMap.get(net);
-			if (spNet == null) continue;
-
-			addArcInformation(spNet.merge, ai);
-		}
-
-		// get merged polygons so far
-		for(Iterator<Network> it = netList.getNetworks(); it.hasNext(); )
-		{
-			Network net = it.next();
-			SpiceNet spNet = spiceNetMap.get(net);
-
-            for (Layer layer : spNet.merge.getKeySet())
-			{
-				List<PolyBase> polyList = spNet.merge.getMergedPoints(layer, true);
-				if (polyList == null) continue;
-                if (polyList.size() > 1)
-                    Collections.sort(polyList, GeometryHandler.shapeSort);
-				for(PolyBase poly : polyList)
-				{
-					// compute perimeter and area
-					double perim = poly.getPerimeter();
-					double area = poly.getArea();
-
-					// accumulate this information
-                    double scale = layoutTechnology.getScale(); // scale to convert units to nanometers
-                    if (layer.isDiffusionLayer()) {
-                        spNet.diffArea += area * maskScale * maskScale;
-                        spNet.diffPerim += perim * maskScale;
-                    } else {
-                        area = area * scale * scale / 1000000; // area in square microns
-                        perim = perim * scale / 1000;           // perimeter in microns
-//                      spNet.nonDiffCapacitance += layer.getCapacitance() * area * maskScale * maskScale;
-//                      spNet.nonDiffCapacitance += layer.getEdgeCapacitance() * perim * maskScale;
-                    }
-				}
-			}
-		}
-
 		// make sure the ground net is number zero
 		Network groundNet = cni.getGroundNet();
 		Network powerNet = cni.getPowerNet();
@@ -2855,6 +2800,99 @@ public class Spice extends Topology
 
 	/******************** SIMPLE PARASITIC CALCULATIONS (AREA/PERIM) ********************/
 
+	/**
+	 * Method to make the SpiceNet information (diffusion area and perimeter, and
+	 * transistor count) of every network in a cell.
+	 * Depends only on the cell, so it may run on another thread while other cells are written.
+	 * @param cell the cell to analyze.
+	 * @param netList the netlist of the cell.
+	 * @return a map from each network in the cell to its SpiceNet.
+	 */
+	private Map<Network,SpiceNet> makeSpiceNets(Cell cell, Netlist netList)
+	{
+		Map<Network,SpiceNet> spiceNetMap = new HashMap<Network,SpiceNet>();
+        for(Iterator<Network> it = netList.getNetworks(); it.hasNext(); )
+        {
+            Network net = it.next();
+            SpiceNet spNet = new SpiceNet();
+            spiceNetMap.put(net, spNet);
+        }
+
+		// accumulate geometry of all nodes
+		for(Iterator<NodeInst> aIt = cell.getNodes(); aIt.hasNext(); )
+			addNodeInformation(netList, spiceNetMap, aIt.next());
+
+		// accumulate geometry of all arcs
+		for(Iterator<ArcInst> aIt = cell.getArcs(); aIt.hasNext(); )
+		{
+			ArcInst ai = aIt.next();
+
+			// don't count non-electrical arcs
+			if (ai.getProto().getFunction() == ArcProto.Function.NONELEC) continue;
+
+			// ignore busses
+//			if (ai->network->buswidth > 1) continue;
+			Network net = netList.getNetwork(ai, 0);
+			SpiceNet spNet = spiceNetMap.get(net);
+			if (spNet == null) continue;
+
+			addArcInformation(spNet.merge, ai);
+		}
+
+		// get merged polygons so far
+		for(Iterator<Network> it = netList.getNetworks(); it.hasNext(); )
+		{
+			Network net = it.next();
+			SpiceNet spNet = spiceNetMap.get(net);
+
+            for (Layer layer : spNet.merge.getKeySet())
+			{
+				List<PolyBase> polyList = spNet.merge.getMergedPoints(layer, true);
+				if (polyList == null) continue;
+                if (polyList.size() > 1)
+                    Collections.sort(polyList, GeometryHandler.shapeSort);
+				for(PolyBase poly : polyList)
+				{
+					// compute perimeter and area
+					double perim = poly.getPerimeter();
+					double area = poly.getArea();
+
+					// accumulate this information
+                    double scale = layoutTechnology.getScale(); // scale to convert units to nanometers
+                    if (layer.isDiffusionLayer()) {
+                        spNet.diffArea += area * maskScale * maskScale;
+                        spNet.diffPerim += perim * maskScale;
+                    } else {
+                        area = area * scale * scale / 1000000; // area in square microns
+                        perim = perim * scale / 1000;           // perimeter in microns
+//                      spNet.nonDiffCapacitance += layer.getCapacitance() * area * maskScale * maskScale;
+//                      spNet.nonDiffCapacitance += layer.getEdgeCapacitance() * perim * maskScale;
+                    }
+				}
+			}
+		}
+
+		// the merged geometry is no longer needed
+		for(SpiceNet spNet : spiceNetMap.values())
+			spNet.merge = null;
+		return spiceNetMap;
+	}
+
+	/**
+	 * Method to tell how many threads should extract the geometry of cells while they are written.
+	 */
+	protected int getNumPrepareThreads() { return Runtime.getRuntime().availableProcessors(); }
+
+	/**
+	 * Method to extract the geometry of a cell on another thread.
+	 * The SpiceNets of every cell are made here, whatever the parasitics level.
+	 * The segmented nets of non-simple parasitics are still made when the cell is written.
+	 */
+	protected Object prepareCell(Cell cell, Netlist netList)
+	{
+		return makeSpiceNets(cell, netList);
+	}
+
 	/**
 	 * Method to recursively determine the area of diffusion and capacitance
 	 * associated with a NodeInst.  If the node is mult_layer, then
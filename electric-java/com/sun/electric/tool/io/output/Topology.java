@@ -23,6 +23,8 @@
  */
 package com.sun.electric.tool.io.output;
 
+import com.sun.electric.database.EditingPreferences;
+import com.sun.electric.database.Environment;
 import com.sun.electric.database.hierarchy.Cell;
 import com.sun.electric.database.hierarchy.Export;
 import com.sun.electric.database.hierarchy.HierarchyEnumerator;
@@ -41,7 +43,9 @@ import com.sun.electric.database.topology.PortInst;
 import com.sun.electric.database.variable.VarContext;
 import com.sun.electric.database.variable.Variable;
 import com.sun.electric.technology.PrimitiveNode;
+import com.sun.electric.database.variable.UserInterface;
 import com.sun.electric.technology.PrimitivePort;
+import com.sun.electric.tool.Job;
 import com.sun.electric.tool.generator.sclibrary.SCLibraryGen;
 import com.sun.electric.util.TextUtils;
 
@@ -49,9 +53,17 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 /**
  * This is the Simulation Interface tool.
@@ -65,6 +77,7 @@ public abstract class Topology extends Output
 	/** Map of all CellTopologies */				private Map<String,CellNetInfo> cellTopos;
 	/** Map of all Cell names */					private Map<Cell,String> cellNameMap;
 													private HierarchyEnumerator.CellInfo lastInfo;
+	/** results of prepareCell(), by netlist */		private Map<Netlist,Future<Object>> preparedCells;
 
 	/** Creates a new instance of Topology */
 	public Topology() {}
@@ -97,11 +110,116 @@ public abstract class Topology extends Output
 
 		// write out cells
 		start();
-		HierarchyEnumerator.enumerateCell(cell, context, visitor, getShortResistors());
+		ExecutorService pool = startPreparingCells(cell);
+		try
+		{
+			HierarchyEnumerator.enumerateCell(cell, context, visitor, getShortResistors());
+		} finally
+		{
+			if (pool != null) pool.shutdownNow();
+			preparedCells = null;
+		}
 		done();
 		return false;
 	}
 
+	/**
+	 * Method to start preparing every cell below the top cell on other threads.
+	 * The cells are submitted bottom-up, which is the order in which they are written,
+	 * so that the writer rarely waits for one.
+	 * Only this preparation runs in parallel: the text of each cell is still written by
+	 * the hierarchy traversal, one cell at a time, because it depends on the state of the writer.
+	 * @return the threads doing the work, or null if cells are not prepared in parallel.
+	 */
+	private ExecutorService startPreparingCells(Cell cell)
+	{
+		preparedCells = new HashMap<Netlist,Future<Object>>();
+		int numThreads = getNumPrepareThreads();
+		if (numThreads <= 1) return null;
+
+		// netlists are built lazily and not thread safe: build them here first
+		List<Netlist> order = new ArrayList<Netlist>();
+		gatherNetlists(cell.getNetlist(getShortResistors()), new HashSet<Netlist>(), order);
+
+		// the threads read settings and the database through the environment of this one
+		final UserInterface ui = Job.getUserInterface();
+		final Environment env = Environment.getThreadEnvironment();
+		final EditingPreferences ep = EditingPreferences.getInstance();
+		ExecutorService pool = Executors.newFixedThreadPool(numThreads, new ThreadFactory()
+		{
+			public Thread newThread(final Runnable r)
+			{
+				Thread t = new Thread(new Runnable()
+				{
+					public void run()
+					{
+						if (ui != null) Job.setUserInterface(ui);
+						Environment.setThreadEnvironment(env);
+						EditingPreferences.lowLevelSetThreadLocalEditingPreferences(ep);
+						r.run();
+					}
+				}, "Netlister");
+				t.setDaemon(true);
+				return t;
+			}
+		});
+		for(final Netlist netList : order)
+		{
+			preparedCells.put(netList, pool.submit(new Callable<Object>()
+			{
+				public Object call() { return prepareCell(netList.getCell(), netList); }
+			}));
+		}
+		return pool;
+	}
+
+	/**
+	 * Method to list the netlists of a cell and all of the cells below it, bottom-up.
+	 * Follows the same instances that the hierarchy enumerator descends into.
+	 * Cells that the writer later skips are included, because skipCellAndSubcells() may write output.
+	 */
+	private void gatherNetlists(Netlist netList, Set<Netlist> seen, List<Netlist> order)
+	{
+		if (!seen.add(netList)) return;
+		for(Iterator<Nodable> it = netList.getNodables(); it.hasNext(); )
+		{
+			Nodable no = it.next();
+			if (!no.isCellInstance()) continue;
+			if (((Cell)no.getProto()).isIcon() && !visitIcons()) continue;
+			gatherNetlists(netList.getNetlist(no), seen, order);
+		}
+		order.add(netList);
+	}
+
+	/**
+	 * Method to return the result of prepareCell() for a cell, waiting for it if necessary.
+	 * @param cell the cell being written.
+	 * @param netList the netlist of the cell being written.
+	 * @return the result of prepareCell(), or null if the cell was not prepared.
+	 */
+	protected Object getPreparedCell(Cell cell, Netlist netList)
+	{
+		if (preparedCells == null || netList.getCell() != cell) return null;
+		Future<Object> result = preparedCells.get(netList);
+		if (result == null) return null;
+		for(;;)
+		{
+			try
+			{
+				return result.get();
+			} catch (InterruptedException e)
+			{
+				// keep waiting: the result is needed to write the cell
+			} catch (ExecutionException e)
+			{
+				Throwable cause = e.getCause();
+				if (cause instanceof RuntimeException) throw (RuntimeException)cause;
+				if (cause instanceof Error) throw (Error)cause;
+				throw new RuntimeException(cause);
+			}
+		}
+	}
+
 	/** Abstract method called before hierarchy traversal */
 	protected abstract void start();
 
@@ -218,6 +336,22 @@ public abstract class Topology extends Output
 	/** Used to switch from schematic enumeration to layout enumeration */
 	protected boolean enumerateLayoutView(Cell cell) { return false; }
 
+	/**
+	 * Method to tell how many threads should call prepareCell() while the hierarchy is traversed.
+	 * @return the number of threads, or 1 to prepare no cells.
+	 */
+	protected int getNumPrepareThreads() { return 1; }
+
+	/**
+	 * Method to do the part of writing a cell that depends only on the cell itself,
+	 * such as extracting its geometry.  The result is available from getPreparedCell()
+	 * when the cell is written.  Runs on other threads, so it must not change the state of the writer.
+	 * @param cell the cell to prepare.
+	 * @param netList the netlist of the cell.
+	 * @return the result to use when the cell is written.
+	 */
+	protected Object prepareCell(Cell cell, Netlist netList) { return null; }
+
 	//------------------ override for HierarchyEnumerator.Visitor ----------------------
 
 	public class MyCellInfo extends HierarchyEnumerator.CellInfo
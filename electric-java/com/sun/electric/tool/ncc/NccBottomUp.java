@@ -21,20 +21,37 @@
 */
 package com.sun.electric.tool.ncc;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 
+import com.sun.electric.database.EditingPreferences;
+import com.sun.electric.database.Environment;
 import com.sun.electric.database.hierarchy.Cell;
+import com.sun.electric.database.hierarchy.Nodable;
+import com.sun.electric.database.network.Netlist;
+import com.sun.electric.database.variable.UserInterface;
 import com.sun.electric.database.variable.VarContext;
 import com.sun.electric.technology.Technology;
+import com.sun.electric.tool.Job;
 import com.sun.electric.tool.ncc.basic.CellContext;
 import com.sun.electric.tool.ncc.basic.CompareList;
 import com.sun.electric.tool.ncc.basic.CompareLists;
 import com.sun.electric.tool.ncc.basic.NccCellAnnotations;
 import com.sun.electric.tool.ncc.basic.NccUtils;
+import com.sun.electric.tool.ncc.netlist.NccNetlist;
 import com.sun.electric.tool.ncc.netlist.PrimitiveNameToFunction;
 import com.sun.electric.tool.ncc.processing.HierarchyInfo;
 import com.sun.electric.tool.ncc.result.NccResult;
@@ -105,6 +122,26 @@ public class NccBottomUp {
 
         return result;
     }
+	/** at least one should be layout cell to initialize transistor and 
+	 * resistor types. If there is no layout cell then use the layout tech
+	 * assigned to schematics (user's pref value) */
+	private Technology getLayoutTechnology(CompareList compareList,
+			                               NccOptions options) {
+		Cell layout = null;
+		for (CellContext cc : compareList) { 
+		    if (cc.cell.isLayout())
+		    {
+		    	if (layout != null && layout.getTechnology() != cc.cell.getTechnology())
+		    		System.out.println("Error: found two different layout technologies associated to layout cells. Using the last one found."); 
+		    	layout = cc.cell;
+		    }
+		}
+		return (layout != null) ? layout.getTechnology() : options.defaultLayoutTech;
+	}
+	private String getGroupName(CompareList compareList) {
+		Cell cell = compareList.iterator().next().cell;
+		return cell.getLibrary().getName()+":"+cell.getName();
+	}
 	/** @return true if error building black box */
 	private boolean compareCellsInCompareList(NccResults results,
 			                                  CompareList compareList, 
@@ -117,32 +154,12 @@ public class NccBottomUp {
 		List<CellContext> cellCntxts = new ArrayList<CellContext>();
 		// build Set of Cells because we need to exclude them from subcircuit 
 		// detection
-		Cell layout = null;
-		
 		Set<Cell> compareListCells = new HashSet<Cell>();
 		for (CellContext cc : compareList) { 
 		    cellCntxts.add(cc);
 		    compareListCells.add(cc.cell);
-		    if (cc.cell.isLayout())
-		    {
-		    	if (layout != null && layout.getTechnology() != cc.cell.getTechnology())
-		    		System.out.println("Error: found two different layout technologies associated to layout cells. Using the last one found."); 
-		    	layout = cc.cell;
-		    }
 		}
 
-		// at least one should be layout cell to initialize transistor and resistor types
-		// If layout is null -> use layout tech assigned to schematics (user's pref value)
-		Technology layTech = (layout != null) ? layout.getTechnology() : options.defaultLayoutTech;
-		
-		if (layTech != null) // tech could still be null due to regression.
-			PrimitiveNameToFunction.prepareToFunctionData(layTech);
-		
-		Cell cell = cellCntxts.iterator().next().cell;
-		String grpNm = cell.getLibrary().getName()+":"+cell.getName();
-
-		hierInfo.beginNextCompareList(grpNm);
-
 		// notSubcircuit means check it but don't use it as a subcircuit
 		if (hasNotSubcircuitAnnotation(cellCntxts))  
 			hierInfo.purgeCurrentCompareList();
@@ -195,27 +212,45 @@ public class NccBottomUp {
 		}
 		return false;
 	}
-	
-	private NccResults processCompareLists(List<CompareList> compareLists,
-			                               PassedNcc passed,
-	                                       NccOptions options, 
-										   Aborter aborter) {
-		NccResults results = new NccResults();
-		HierarchyInfo hierInfo = new HierarchyInfo();
-		for (Iterator<CompareList> it=compareLists.iterator(); it.hasNext();) {
-			CompareList compareList = it.next();
 
-			boolean blackBoxAnn = hasBlackBoxAnnotation(compareList);
+	/** The comparison of the Cells in one CompareList. It may run at the
+	 * same time as other CompareListTasks once the tasks of all the 
+	 * CompareLists that its Cells instantiate are done. */
+	private class CompareListTask implements Callable<CompareListTask> {
+		private final CompareList compareList;
+		private final int compareListID;
+		private final boolean blackBoxAnn;
+		private final HierarchyInfo hierInfo;
+		private final PassedNcc passed;
+		private final NccOptions options;
+		private final Aborter aborter;
+		/** the results of this CompareList alone */
+		private final NccResults results = new NccResults();
+		/** tasks that must wait for this one */
+		private final List<CompareListTask> dependents = new ArrayList<CompareListTask>();
+		/** number of tasks this one must wait for */
+		private int numWaitingFor;
+		private boolean blackBoxErr;
+		private boolean done;
 
-			// FLAT_TOP_CELL means do all black boxes and root cell
-			if (options.operation==NccOptions.FLAT_TOP_CELL && !blackBoxAnn &&
-			    it.hasNext()) continue;
+		CompareListTask(CompareList compareList, int compareListID, 
+				        boolean blackBoxAnn, HierarchyInfo hierInfo,
+				        PassedNcc passed, NccOptions options, Aborter aborter) {
+			this.compareList = compareList;
+			this.compareListID = compareListID;
+			this.blackBoxAnn = blackBoxAnn;
+			this.hierInfo = hierInfo;
+			this.passed = passed;
+			this.options = options;
+			this.aborter = aborter;
+		}
 
-			// release storage from previous Cell pair comparisons
-			if (options.operation==NccOptions.FLAT_EACH_CELL) 
-				results.abandonPriorResults();
-			
-			boolean blackBoxErr;
+		public CompareListTask call() {
+			// don't start comparing after NCC has decided to halt
+			if (halted || aborter.userWantsToAbort()) return this;
+
+			HierarchyInfo listInfo = 
+				hierInfo.beginCompareList(getGroupName(compareList), compareListID);
 			if (!compareList.isSafeToCheckSizes() &&
 			    options.operation!=NccOptions.FLAT_TOP_CELL &&
 			    !blackBoxAnn) {
@@ -232,34 +267,208 @@ public class NccBottomUp {
 				tmpOptions.checkSizes = false;
 
 				blackBoxErr = 
-					compareCellsInCompareList(results, compareList, hierInfo, 
+					compareCellsInCompareList(results, compareList, listInfo, 
 						                      blackBoxAnn, passed, tmpOptions, 
 						                      aborter); 
 
-				hierInfo.purgeCurrentCompareList();
+				listInfo.purgeCurrentCompareList();
 			} else {
 				blackBoxErr = 
-					compareCellsInCompareList(results, compareList, hierInfo, 
+					compareCellsInCompareList(results, compareList, listInfo, 
 						                      blackBoxAnn, passed, options, 
 						                      aborter); 
 			}
-			
-			if (blackBoxErr) {
-				prln(
-					"Halting multiple cell NCC because of failure to build " +
-					"a black box"
-				);
-				return results;
+			return this;
+		}
+	}
+
+	/** set when NCC stops before comparing all the CompareLists */
+	private volatile boolean halted;
+
+	/** Make each task wait for the tasks of the CompareLists that its Cells
+	 * instantiate. Only earlier CompareLists count because those are the 
+	 * only ones whose SubcircuitInfo a one-at-a-time comparison would have.
+	 * Subtle: this also builds the Netlists of all the Cells, which must
+	 * happen before the tasks use them from several threads. */
+	private void addDependencies(List<CompareList> compareLists,
+			                     CompareListTask[] taskOfList) {
+		Map<Cell,Integer> cellToList = new HashMap<Cell,Integer>();
+		for (int i=0; i<compareLists.size(); i++) {
+			for (CellContext cc : compareLists.get(i))
+				cellToList.put(cc.cell, Integer.valueOf(i));
+		}
+		Map<Cell,BitSet> listsBelow = new HashMap<Cell,BitSet>();
+		for (int i=0; i<compareLists.size(); i++) {
+			CompareListTask task = taskOfList[i];
+			if (task==null) continue;
+			BitSet below = new BitSet();
+			for (CellContext cc : compareLists.get(i))
+				below.or(getListsBelow(cc.cell, cellToList, listsBelow));
+			for (int j=below.nextSetBit(0); j>=0 && j<i; j=below.nextSetBit(j+1)) {
+				if (taskOfList[j]==null) continue;
+				taskOfList[j].dependents.add(task);
+				task.numWaitingFor++;
+			}
+		}
+	}
+	/** @return the indices of the CompareLists of all Cells instantiated 
+	 * below cell. Like the HierarchyEnumerator, descend from icons into 
+	 * their schematics. */
+	private BitSet getListsBelow(Cell cell, Map<Cell,Integer> cellToList,
+			                     Map<Cell,BitSet> listsBelow) {
+		BitSet below = listsBelow.get(cell);
+		if (below!=null) return below;
+		below = new BitSet();
+		Netlist netlist = cell.getNetlist(NccNetlist.SHORT_RESISTORS);
+		for (Iterator<Nodable> it=netlist.getNodables(); it.hasNext();) {
+			Nodable no = it.next();
+			if (!no.isCellInstance()) continue;
+			Cell child = (Cell) no.getProto();
+			if (child.isIcon()) child = child.contentsView();
+			if (child==null || child==cell) continue;
+			Integer list = cellToList.get(child);
+			if (list!=null) below.set(list.intValue());
+			below.or(getListsBelow(child, cellToList, listsBelow));
+		}
+		listsBelow.put(cell, below);
+		return below;
+	}
+
+	/** Add the results of a CompareList. The results are added in the order
+	 * of the CompareLists no matter which comparison finished first.
+	 * @return true if NCC should halt */
+	private boolean addResults(NccResults results, CompareListTask task,
+			                   NccOptions options, Aborter aborter) {
+		// release storage from previous Cell pair comparisons
+		if (options.operation==NccOptions.FLAT_EACH_CELL) 
+			results.abandonPriorResults();
+		for (NccResult r : task.results)  results.add(r);
+
+		if (task.blackBoxErr) {
+			prln(
+				"Halting multiple cell NCC because of failure to build " +
+				"a black box"
+			);
+			return true;
+		}
+
+		if (aborter.userWantsToAbort()) {
+			return true;
+		} else if ((!results.exportMatch() || ! results.topologyMatch()) 
+				   && options.haltAfterFirstMismatch) {
+			// Don't stop for size mismatches
+			prln("Halting NCC after finding first mismatch");
+			return true;
+		}
+		return false;
+	}
+
+	private static CompareListTask takeFinished(CompletionService<CompareListTask> finished) {
+		for (;;) {
+			try {
+				return finished.take().get();
+			} catch (InterruptedException e) {
+				// NCC is aborted through the Aborter, so keep waiting
+			} catch (ExecutionException e) {
+				Throwable cause = e.getCause();
+				if (cause instanceof RuntimeException) throw (RuntimeException)cause;
+				if (cause instanceof Error) throw (Error)cause;
+				throw new RuntimeException(cause);
+			}
+		}
+	}
+
+	/** Run each task as soon as the tasks it waits for are done. */
+	private void compareInParallel(List<CompareListTask> tasks, 
+			                       NccResults results, NccOptions options,
+			                       Aborter aborter) {
+		// the comparisons read the database through the environment of this thread
+		final UserInterface ui = Job.getUserInterface();
+		final Environment env = Environment.getThreadEnvironment();
+		final EditingPreferences ep = EditingPreferences.getInstance();
+		ExecutorService pool = Executors.newFixedThreadPool(options.numThreads, new ThreadFactory() {
+			public Thread newThread(final Runnable r) {
+				Thread t = new Thread(new Runnable() {
+					public void run() {
+						if (ui != null) Job.setUserInterface(ui);
+						Environment.setThreadEnvironment(env);
+						EditingPreferences.lowLevelSetThreadLocalEditingPreferences(ep);
+						r.run();
+					}
+				}, "NCC");
+				t.setDaemon(true);
+				return t;
+			}
+		});
+		CompletionService<CompareListTask> finished = 
+			new ExecutorCompletionService<CompareListTask>(pool);
+		try {
+			int running = 0;
+			for (CompareListTask task : tasks) {
+				if (task.numWaitingFor==0) {finished.submit(task);  running++;}
+			}
+			for (CompareListTask next : tasks) {
+				while (!next.done) {
+					CompareListTask task = takeFinished(finished);
+					running--;
+					task.done = true;
+					for (CompareListTask dependent : task.dependents) {
+						if (--dependent.numWaitingFor==0) {
+							finished.submit(dependent);  
+							running++;
+						}
+					}
+				}
+				if (addResults(results, next, options, aborter)) break;
 			}
 
-			if (aborter.userWantsToAbort()) {
-				return results;
-			} else if ((!results.exportMatch() || ! results.topologyMatch()) 
-					   && options.haltAfterFirstMismatch) {
-				// Don't stop for size mismatches
-				prln("Halting NCC after finding first mismatch");
-				return results;
+			// let comparisons that already started finish before returning
+			halted = true;
+			for (; running>0; running--)  takeFinished(finished);
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	private NccResults processCompareLists(List<CompareList> compareLists,
+			                               PassedNcc passed,
+	                                       NccOptions options, 
+										   Aborter aborter) {
+		NccResults results = new NccResults();
+		HierarchyInfo hierInfo = new HierarchyInfo();
+		List<CompareListTask> tasks = new ArrayList<CompareListTask>();
+		CompareListTask[] taskOfList = new CompareListTask[compareLists.size()];
+		int compareListID = 0;
+		for (int i=0; i<compareLists.size(); i++) {
+			CompareList compareList = compareLists.get(i);
+
+			boolean blackBoxAnn = hasBlackBoxAnnotation(compareList);
+
+			// FLAT_TOP_CELL means do all black boxes and root cell
+			if (options.operation==NccOptions.FLAT_TOP_CELL && !blackBoxAnn &&
+			    i<compareLists.size()-1) continue;
+
+			// prepare the primitive names of every CompareList before any 
+			// comparison starts because they are shared by all comparisons
+			Technology layTech = getLayoutTechnology(compareList, options);
+			if (layTech != null) // tech could still be null due to regression.
+				PrimitiveNameToFunction.prepareToFunctionData(layTech);
+
+			CompareListTask task = 
+				new CompareListTask(compareList, ++compareListID, blackBoxAnn, 
+				                    hierInfo, passed, options, aborter);
+			tasks.add(task);
+			taskOfList[i] = task;
+		}
+
+		if (options.numThreads<=1 || tasks.size()<=1) {
+			for (CompareListTask task : tasks) {
+				task.call();
+				if (addResults(results, task, options, aborter))  break;
 			}
+		} else {
+			addDependencies(compareLists, taskOfList);
+			compareInParallel(tasks, results, options, aborter);
 		}
 		return results;
 	}
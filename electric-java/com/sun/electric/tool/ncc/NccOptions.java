@@ -88,6 +88,11 @@ public class NccOptions implements Serializable {
 	/** Check the body connections of MOS transistors. */
 	public boolean checkBody = false;
 	
+	/** How many Cell pairs may be compared at the same time. A hierarchical 
+	 * comparison compares a pair as soon as the pairs of all the Cells 
+	 * it instantiates are done. */
+	public int numThreads = 1;
+	
 	/** Construct an NccOptions with the default options */
 	public NccOptions() {}
 	
@@ -107,6 +112,7 @@ public class NccOptions implements Serializable {
 		maxEquivRecMembersToPrint = o.maxEquivRecMembersToPrint;
 		oneNamePerPort = o.oneNamePerPort;
 		checkBody = o.checkBody;
+		numThreads = o.numThreads;
 		
 		defaultLayoutTech = o.defaultLayoutTech;
 	}
@@ -132,6 +138,7 @@ public class NccOptions implements Serializable {
 		options.maxMismatchedEquivRecsToPrint = NccPreferences.getMaxMismatchedClasses();
 		options.maxMatchedEquivRecsToPrint = NccPreferences.getMaxMatchedClasses();
 		options.maxEquivRecMembersToPrint = NccPreferences.getMaxClassMembers();
+		options.numThreads = Runtime.getRuntime().availableProcessors();
 		
 		options.defaultLayoutTech = User.getSchematicTechnology();
 		
@@ -176,7 +176,7 @@ public class Mos extends Part {
 		private static void ensureListEntry(ArrayList<int[]> coeffArrays, int numPins) {
 				while (coeffArrays.size()-1<numPins)  coeffArrays.add(null);
 		}
-		public static int[] getCoeffArray(int nbGateDiff, boolean withBody) {
+		public static synchronized int[] getCoeffArray(int nbGateDiff, boolean withBody) {
 			ArrayList<int[]> coeffArrays = withBody ? coeffArraysBody : coeffArraysNoBody;
 			ensureListEntry(coeffArrays, nbGateDiff);
 			int[] coeffArray = coeffArrays.get(nbGateDiff);
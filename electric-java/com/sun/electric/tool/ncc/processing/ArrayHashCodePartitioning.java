@@ -0,0 +1,502 @@
+/* -*- tab-width: 4 -*-
+ *
+ * Electric(tm) VLSI Design System
+ *
+ * File: ArrayHashCodePartitioning.java
+ *
+ * Copyright (c) 2003, Static Free Software. All rights reserved.
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package com.sun.electric.tool.ncc.processing;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.sun.electric.tool.Job;
+import com.sun.electric.tool.ncc.NccGlobals;
+import com.sun.electric.tool.ncc.netlist.NetObject;
+import com.sun.electric.tool.ncc.netlist.Part;
+import com.sun.electric.tool.ncc.netlist.Wire;
+import com.sun.electric.tool.ncc.trees.Circuit;
+import com.sun.electric.tool.ncc.trees.EquivRecord;
+import com.sun.electric.tool.ncc.trees.LeafEquivRecords;
+
+/** ArrayHashCodePartitioning performs the Gemini II hash code partitioning
+ * of HashCodePartitioning on a different representation of the netlists.
+ * Instead of a Part or Wire object for each NetObject and a tree of
+ * EquivRecords, the Parts and Wires of all the netlists are numbered and
+ * everything is kept in arrays: the pins of each Part and of each Wire in
+ * compressed rows, the equivalence class of each Part and Wire, and the
+ * code of each class.
+ * <p>
+ * Each round rehashes every Part of every active class and then every
+ * Wire of every active class. The rehashing is divided among threads. The
+ * classes are then split by the new hash codes in index order, so the
+ * result doesn't depend on the number of threads.
+ * <p>
+ * As with EquivRecords, a class is matched when it holds exactly one
+ * object from each netlist, and it is mismatched when the netlists have
+ * different numbers of objects in it. Mismatched classes have code 0 and
+ * are never split. Partitioning stops when a round splits nothing. Export
+ * names, sizes and random matching are not used to break the classes that
+ * remain active. */
+public class ArrayHashCodePartitioning {
+	private static final byte ACTIVE = 0;
+	private static final byte MATCHED = 1;
+	private static final byte MISMATCHED = 2;
+
+	/** a growable array of ints */
+	private static class IntArray {
+		private int[] a = new int[16];
+		private int size;
+		void add(int i) {
+			if (size==a.length) a = Arrays.copyOf(a, size*2);
+			a[size++] = i;
+		}
+		int size() {return size;}
+		int[] toArray() {return Arrays.copyOf(a, size);}
+	}
+
+	/** The Parts, or the Wires, of all the netlists. Pin k of object i
+	 * connects to object pinOther[k] of the other kind with the coefficient
+	 * pinCoeff[k], where pinStart[i] <= k < pinStart[i+1]. */
+	private static class NetObjs {
+		private final int numNetlists;
+		private final int[] netlist;
+		private final int[] pinStart;
+		private final int[] pinOther;
+		private final int[] pinCoeff;
+		/** equivalence class of each object */
+		private final int[] cls;
+		/** latest hash code of each object */
+		private final long[] hash;
+
+		private int numClasses;
+		private long[] code;
+		/** number of objects of each netlist in each class */
+		private int[] count;
+		private byte[] state;
+		/** for the classes split off in the current round: the class they
+		 * were split from, and their hash code */
+		private int[] parent;
+		private long[] childHash;
+		/** hash code of the objects that stay in a class in the current
+		 * round, and the round in which it was set */
+		private long[] keptHash;
+		private int[] keptRound;
+
+		NetObjs(int numNetlists, int[] netlist, int[] keys, int[] pinStart,
+				int[] pinOther, int[] pinCoeff, long salt) {
+			this.numNetlists = numNetlists;
+			this.netlist = netlist;
+			this.pinStart = pinStart;
+			this.pinOther = pinOther;
+			this.pinCoeff = pinCoeff;
+			int num = netlist.length;
+			cls = new int[num];
+			hash = new long[num];
+			ensureCapacity(16);
+
+			// the initial classes are the keys, in increasing order
+			int[] sortedKeys = keys.clone();
+			Arrays.sort(sortedKeys);
+			Map<Integer,Integer> keyToClass = new HashMap<Integer,Integer>();
+			for (int key : sortedKeys) {
+				if (keyToClass.containsKey(key)) continue;
+				int c = newClass();
+				keyToClass.put(key, c);
+				code[c] = mix(salt + key);
+			}
+			for (int i=0; i<num; i++) {
+				int c = keyToClass.get(keys[i]).intValue();
+				cls[i] = c;
+				count[c*numNetlists + netlist[i]]++;
+			}
+			for (int c=0; c<numClasses; c++) updateState(c);
+		}
+
+		int size() {return cls.length;}
+
+		private void ensureCapacity(int n) {
+			int cap = code==null ? 0 : code.length;
+			if (n<=cap) return;
+			int newCap = Math.max(n, cap*2);
+			code = code==null ? new long[newCap] : Arrays.copyOf(code, newCap);
+			count = count==null ? new int[newCap*numNetlists] : Arrays.copyOf(count, newCap*numNetlists);
+			state = state==null ? new byte[newCap] : Arrays.copyOf(state, newCap);
+			parent = parent==null ? new int[newCap] : Arrays.copyOf(parent, newCap);
+			childHash = childHash==null ? new long[newCap] : Arrays.copyOf(childHash, newCap);
+			keptHash = keptHash==null ? new long[newCap] : Arrays.copyOf(keptHash, newCap);
+			keptRound = keptRound==null ? new int[newCap] : Arrays.copyOf(keptRound, newCap);
+		}
+		private int newClass() {
+			ensureCapacity(numClasses+1);
+			return numClasses++;
+		}
+		private void updateState(int c) {
+			int first = count[c*numNetlists];
+			boolean allOne = first==1;
+			for (int n=1; n<numNetlists; n++) {
+				int cnt = count[c*numNetlists + n];
+				if (cnt!=first) {state[c] = MISMATCHED;  return;}
+			}
+			state[c] = allOne ? MATCHED : ACTIVE;
+		}
+		/** Like EquivRecord.getCode(), mismatched classes have code 0 */
+		long getCode(int c) {return state[c]==MISMATCHED ? 0 : code[c];}
+
+		/** Set the hash code of objects from to to-1 that are in active
+		 * classes. Each pin contributes its coefficient times the code of the
+		 * class of the object it connects to. */
+		void rehash(NetObjs others, int from, int to) {
+			for (int i=from; i<to; i++) {
+				if (state[cls[i]]!=ACTIVE) continue;
+				long sum = 0;
+				for (int k=pinStart[i]; k<pinStart[i+1]; k++) {
+					sum += pinCoeff[k] * others.getCode(others.cls[pinOther[k]]);
+				}
+				hash[i] = sum;
+			}
+		}
+
+		/** Split the active classes by the hash codes. In each class, the
+		 * objects with the hash code of its lowest numbered object stay, and
+		 * the others move to a new class for each hash code.
+		 * @return the number of new classes */
+		int split(int round) {
+			int oldNumClasses = numClasses;
+			ClassTable children = new ClassTable();
+			for (int i=0; i<cls.length; i++) {
+				int c = cls[i];
+				if (state[c]!=ACTIVE) continue;
+				long h = hash[i];
+				if (keptRound[c]!=round) {
+					keptRound[c] = round;
+					keptHash[c] = h;
+					continue;
+				}
+				if (h==keptHash[c]) continue;
+				int child = children.get(c, h);
+				if (child<0) {
+					child = newClass();
+					parent[child] = c;
+					childHash[child] = h;
+					children.put(c, h, child);
+				}
+				cls[i] = child;
+				count[c*numNetlists + netlist[i]]--;
+				count[child*numNetlists + netlist[i]]++;
+			}
+			if (numClasses==oldNumClasses) return 0;
+
+			// Each part of a split class gets a new code. Derive it from the
+			// old code and the hash code so that it is the same no matter
+			// where the objects are numbered.
+			for (int child=oldNumClasses; child<numClasses; child++) {
+				code[child] = mix(code[parent[child]] ^ mix(childHash[child]));
+			}
+			for (int child=oldNumClasses; child<numClasses; child++) {
+				int c = parent[child];
+				if (keptRound[c]==round) {
+					code[c] = mix(code[c] ^ mix(keptHash[c]));
+					updateState(c);
+					// only change the kept code once
+					keptRound[c] = round-1;
+				}
+				updateState(child);
+			}
+			return numClasses - oldNumClasses;
+		}
+	}
+
+	/** Map from a class and a hash code to the class that was split off
+	 * for that hash code */
+	private static class ClassTable {
+		private int[] keyClass = new int[64];
+		private long[] keyHash = new long[64];
+		private int[] value = new int[64];
+		private int size;
+		ClassTable() {Arrays.fill(keyClass, -1);}
+		private int slot(int c, long h) {
+			int mask = keyClass.length-1;
+			int s = (int) mix(h + c) & mask;
+			while (keyClass[s]>=0 && (keyClass[s]!=c || keyHash[s]!=h))  s = (s+1) & mask;
+			return s;
+		}
+		int get(int c, long h) {
+			int s = slot(c, h);
+			return keyClass[s]<0 ? -1 : value[s];
+		}
+		void put(int c, long h, int v) {
+			if ((size+1)*2>keyClass.length) {
+				int[] oldClass = keyClass;
+				long[] oldHash = keyHash;
+				int[] oldValue = value;
+				keyClass = new int[oldClass.length*2];
+				keyHash = new long[oldClass.length*2];
+				value = new int[oldClass.length*2];
+				Arrays.fill(keyClass, -1);
+				for (int s=0; s<oldClass.length; s++) {
+					if (oldClass[s]<0) continue;
+					int t = slot(oldClass[s], oldHash[s]);
+					keyClass[t] = oldClass[s];
+					keyHash[t] = oldHash[s];
+					value[t] = oldValue[s];
+				}
+			}
+			int s = slot(c, h);
+			keyClass[s] = c;
+			keyHash[s] = h;
+			value[s] = v;
+			size++;
+		}
+	}
+
+	/** Numbers the Parts and Wires of the netlists being compared and
+	 * collects their pins. */
+	public static class Builder {
+		private final int numNetlists;
+		private final IntArray partNetlist = new IntArray();
+		private final IntArray partKey = new IntArray();
+		private final IntArray partPinStart = new IntArray();
+		private final IntArray pinWire = new IntArray();
+		private final IntArray pinCoeff = new IntArray();
+		private final IntArray wireNetlist = new IntArray();
+		private final IntArray wireKey = new IntArray();
+
+		/** @param numNetlists the number of netlists being compared */
+		public Builder(int numNetlists) {
+			this.numNetlists = numNetlists;
+			partPinStart.add(0);
+		}
+		/** Add a Wire.
+		 * @param netlist the netlist of the Wire
+		 * @param key Wires with the same key start in the same class
+		 * @return the number of the Wire */
+		public int addWire(int netlist, int key) {
+			Job.error(netlist<0 || netlist>=numNetlists, "bad netlist");
+			wireNetlist.add(netlist);
+			wireKey.add(key);
+			return wireNetlist.size()-1;
+		}
+		/** Add a Part.
+		 * @param netlist the netlist of the Part
+		 * @param key Parts with the same key start in the same class
+		 * @param wires the Wire on each pin of the Part
+		 * @param coeffs the hash code coefficient of each pin of the Part
+		 * @return the number of the Part */
+		public int addPart(int netlist, int key, int[] wires, int[] coeffs) {
+			Job.error(netlist<0 || netlist>=numNetlists, "bad netlist");
+			Job.error(wires.length!=coeffs.length, "need one coefficient per pin");
+			partNetlist.add(netlist);
+			partKey.add(key);
+			for (int i=0; i<wires.length; i++) {
+				Job.error(wires[i]<0 || wires[i]>=wireNetlist.size(), "bad wire");
+				pinWire.add(wires[i]);
+				pinCoeff.add(coeffs[i]);
+			}
+			partPinStart.add(pinWire.size());
+			return partNetlist.size()-1;
+		}
+		public ArrayHashCodePartitioning build(int numThreads) {
+			int[] partPins = partPinStart.toArray();
+			int[] wires = pinWire.toArray();
+			int[] coeffs = pinCoeff.toArray();
+			int numWires = wireNetlist.size();
+
+			// the pins of each Wire are the pins of the Parts, transposed
+			int[] wirePinStart = new int[numWires+1];
+			for (int w : wires)  wirePinStart[w+1]++;
+			for (int w=0; w<numWires; w++)  wirePinStart[w+1] += wirePinStart[w];
+			int[] wirePinPart = new int[wires.length];
+			int[] wirePinCoeff = new int[wires.length];
+			int[] fill = Arrays.copyOf(wirePinStart, numWires);
+			for (int p=0; p<partPins.length-1; p++) {
+				for (int k=partPins[p]; k<partPins[p+1]; k++) {
+					int at = fill[wires[k]]++;
+					wirePinPart[at] = p;
+					wirePinCoeff[at] = coeffs[k];
+				}
+			}
+			NetObjs parts = new NetObjs(numNetlists, partNetlist.toArray(),
+					                    partKey.toArray(), partPins, wires,
+					                    coeffs, PART_SALT);
+			NetObjs wireObjs = new NetObjs(numNetlists, wireNetlist.toArray(),
+					                       wireKey.toArray(), wirePinStart,
+					                       wirePinPart, wirePinCoeff, WIRE_SALT);
+			return new ArrayHashCodePartitioning(parts, wireObjs, numThreads);
+		}
+	}
+
+	private static final long PART_SALT = 0x5deece66dL;
+	private static final long WIRE_SALT = 0x2545f4914f6cdd1dL;
+
+	/** a 64 bit mixing function (the finalizer of SplitMix64) */
+	private static long mix(long z) {
+		z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+		z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+		return z ^ (z >>> 31);
+	}
+
+	private final NetObjs parts;
+	private final NetObjs wires;
+	private final int numThreads;
+	private int numRounds;
+
+	private ArrayHashCodePartitioning(NetObjs parts, NetObjs wires, int numThreads) {
+		this.parts = parts;
+		this.wires = wires;
+		this.numThreads = Math.max(1, numThreads);
+	}
+
+	private void rehash(final NetObjs objs, final NetObjs others, ExecutorService pool) {
+		int num = objs.size();
+		if (pool==null) {
+			objs.rehash(others, 0, num);
+			return;
+		}
+		int numChunks = numThreads*4;
+		List<Future<Object>> chunks = new ArrayList<Future<Object>>();
+		for (int i=0; i<numChunks; i++) {
+			final int from = (int) ((long)num*i/numChunks);
+			final int to = (int) ((long)num*(i+1)/numChunks);
+			chunks.add(pool.submit(new Callable<Object>() {
+				public Object call() {
+					objs.rehash(others, from, to);
+					return null;
+				}
+			}));
+		}
+		for (Future<Object> chunk : chunks) {
+			try {
+				chunk.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new RuntimeException(e);
+			} catch (ExecutionException e) {
+				Throwable cause = e.getCause();
+				if (cause instanceof RuntimeException) throw (RuntimeException)cause;
+				if (cause instanceof Error) throw (Error)cause;
+				throw new RuntimeException(cause);
+			}
+		}
+	}
+
+	// ------------------------ public methods --------------------------------
+	/** Build the arrays from the leaf EquivRecords of globals. Each leaf
+	 * EquivRecord becomes a class.
+	 * @param globals the netlists being compared, after local partitioning
+	 * @param numThreads the number of threads that rehash
+	 * @return the partitioning, which hasn't been run yet */
+	public static ArrayHashCodePartitioning fromGlobals(NccGlobals globals,
+			                                            int numThreads) {
+		Builder b = new Builder(globals.getNumNetlistsBeingCompared());
+		Map<Wire,Integer> wireNums = new HashMap<Wire,Integer>();
+		int key = 0;
+		if (globals.getWires()!=null) {
+			for (Iterator<EquivRecord> it=leafRecords(globals.getWireLeafEquivRecs()); it.hasNext(); key++) {
+				int netlist = 0;
+				for (Iterator<Circuit> ci=it.next().getCircuits(); ci.hasNext(); netlist++) {
+					for (Iterator<NetObject> ni=ci.next().getNetObjs(); ni.hasNext();) {
+						Wire w = (Wire) ni.next();
+						wireNums.put(w, b.addWire(netlist, key));
+					}
+				}
+			}
+		}
+		if (globals.getParts()!=null) {
+			for (Iterator<EquivRecord> it=leafRecords(globals.getPartLeafEquivRecs()); it.hasNext(); key++) {
+				int netlist = 0;
+				for (Iterator<Circuit> ci=it.next().getCircuits(); ci.hasNext(); netlist++) {
+					for (Iterator<NetObject> ni=ci.next().getNetObjs(); ni.hasNext();) {
+						Part p = (Part) ni.next();
+						int[] pins = new int[p.numPins()];
+						int i = 0;
+						for (Iterator<?> wi=p.getConnected(); wi.hasNext(); i++) {
+							Integer w = wireNums.get(wi.next());
+							Job.error(w==null, "Part connects to a Wire that isn't in a leaf record");
+							pins[i] = w.intValue();
+						}
+						b.addPart(netlist, key, pins, p.getPinCoeffs());
+					}
+				}
+			}
+		}
+		return b.build(numThreads);
+	}
+	private static Iterator<EquivRecord> leafRecords(LeafEquivRecords leaves) {
+		List<EquivRecord> records = new ArrayList<EquivRecord>();
+		for (Iterator<EquivRecord> it=leaves.getMatched(); it.hasNext();)  records.add(it.next());
+		for (Iterator<EquivRecord> it=leaves.getNotMatched(); it.hasNext();)  records.add(it.next());
+		return records.iterator();
+	}
+
+	/** Rehash and split the classes until a round splits nothing.
+	 * @return the number of rounds */
+	public int partition() {
+		ExecutorService pool = numThreads>1 ? Executors.newFixedThreadPool(numThreads) : null;
+		try {
+			while (true) {
+				numRounds++;
+				rehash(parts, wires, pool);
+				int numSplit = parts.split(numRounds);
+				rehash(wires, parts, pool);
+				numSplit += wires.split(numRounds);
+				if (numSplit==0) break;
+			}
+		} finally {
+			if (pool!=null) pool.shutdown();
+		}
+		return numRounds;
+	}
+
+	public int numParts() {return parts.size();}
+	public int numWires() {return wires.size();}
+	public int numPartClasses() {return parts.numClasses;}
+	public int numWireClasses() {return wires.numClasses;}
+	/** @return the equivalence class of a Part */
+	public int getPartClass(int part) {return parts.cls[part];}
+	/** @return the equivalence class of a Wire */
+	public int getWireClass(int wire) {return wires.cls[wire];}
+
+	private static int numInState(NetObjs objs, byte state) {
+		int num = 0;
+		for (int c=0; c<objs.numClasses; c++)  if (objs.state[c]==state) num++;
+		return num;
+	}
+	public int numMatchedPartClasses() {return numInState(parts, MATCHED);}
+	public int numMatchedWireClasses() {return numInState(wires, MATCHED);}
+	public int numMismatchedPartClasses() {return numInState(parts, MISMATCHED);}
+	public int numMismatchedWireClasses() {return numInState(wires, MISMATCHED);}
+	/** @return true if some class has different numbers of objects from
+	 * different netlists */
+	public boolean hasMismatch() {
+		return numMismatchedPartClasses()!=0 || numMismatchedWireClasses()!=0;
+	}
+	/** @return true if every Part and Wire is matched */
+	public boolean allMatched() {
+		return numInState(parts, MATCHED)==parts.numClasses &&
+		       numInState(wires, MATCHED)==wires.numClasses;
+	}
+}
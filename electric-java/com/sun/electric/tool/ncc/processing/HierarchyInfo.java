@@ -21,6 +21,7 @@
  */
 package com.sun.electric.tool.ncc.processing;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -40,7 +41,12 @@ import com.sun.electric.tool.Job;
  * Cells that are lower in the design hierarchy, NCC saves information
  * that allows it abstract those cells when it compare Cells 
  * higher in the design hierarchy. The information necessary to abstract
- * lower level cells is stored in HierarchyInfo.  */
+ * lower level cells is stored in HierarchyInfo.
+ * <p>
+ * CompareLists that don't instantiate one another may be compared at the 
+ * same time. Each of them gets its own HierarchyInfo from 
+ * beginCompareList(). Those HierarchyInfos share the information for all 
+ * Cells. */
 public class HierarchyInfo {
 	/** name of the current CompareList (usually CellGroup name) */ 
 	private String subcktName;
@@ -53,10 +59,17 @@ public class HierarchyInfo {
 	private boolean purgeCurrentCompareList;
 	/** information for all Cells in all the compareLists we've encountered 
 	 * so far */
-	private Map<Cell,SubcircuitInfo> cellToSubcktInfo = new HashMap<Cell,SubcircuitInfo>();
+	private final Map<Cell,SubcircuitInfo> cellToSubcktInfo;
 	private Set<Cell> cellsInSharedCellGroups;
 
+	private HierarchyInfo(Map<Cell,SubcircuitInfo> cellToSubcktInfo) {
+		this.cellToSubcktInfo = cellToSubcktInfo;
+	}
+
 	// ----------------------------- public methods ---------------------------
+	public HierarchyInfo() {
+		this(Collections.synchronizedMap(new HashMap<Cell,SubcircuitInfo>()));
+	}
 	/** You must call this before you begin comparing Cells in a new 
 	 * compareList. Then for each Cell in the compareList you must call 
 	 * addSubcircuitInfo(). However, if a comparison reveals an Export name 
@@ -69,6 +82,22 @@ public class HierarchyInfo {
 		cellsInCompareList.clear();
 		cellsInSharedCellGroups = null;
 	}
+	/** Use this instead of beginNextCompareList() when compareLists are 
+	 * compared at the same time. The returned HierarchyInfo shares the 
+	 * information for all Cells with this one, but it has its own current 
+	 * compareList. Because a Cell is treated as a subcircuit primitive as 
+	 * soon as its compareList adds its SubcircuitInfo, don't begin a 
+	 * compareList until the compareLists of all the Cells it instantiates
+	 * are finished. 
+	 * @param subcktName name of the compareList (usually CellGroup name)
+	 * @param compareListID unique int assigned to the compareList
+	 * @return the HierarchyInfo to use while comparing the compareList */
+	public HierarchyInfo beginCompareList(String subcktName, int compareListID) {
+		HierarchyInfo info = new HierarchyInfo(cellToSubcktInfo);
+		info.subcktName = subcktName;
+		info.compareListID = compareListID;
+		return info;
+	}
 	/** Restrict subcircuit detection. We only want to detect a subcircuit if
 	 * its corresponding CellGroup is instantiated by both Cells begin compared.
 	 * When we perform a hierarchical comparison we need to rescan the 
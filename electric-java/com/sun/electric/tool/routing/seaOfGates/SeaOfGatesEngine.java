@@ -582,8 +582,7 @@ public abstract class SeaOfGatesEngine
 		}
 
 		// do the routing
-		if (numberOfThreads > 1) doRoutingParallel(numberOfThreads, allRoutes); else
-			doRouting(allRoutes);
+		routeAll(numberOfThreads, allRoutes);
 		if (!RoutingDebug.isActive())
 		{
 			handler.flush(true);
@@ -594,8 +593,7 @@ public abstract class SeaOfGatesEngine
 				info("------------------ Adding taps to spine routes...");
 
 				// do the routing again
-				if (numberOfThreads > 1) doRoutingParallel(numberOfThreads, tapRoutes); else
-					doRouting(tapRoutes);
+				routeAll(numberOfThreads, tapRoutes);
 				handler.flush(true);
 			}
 
@@ -634,8 +632,7 @@ public abstract class SeaOfGatesEngine
 					}
 				}
 
-				if (numberOfThreads > 1) doRoutingParallel(numberOfThreads, redoRoutes); else
-					doRouting(redoRoutes);
+				routeAll(numberOfThreads, redoRoutes);
 				handler.flush(true);
 			}
 
@@ -928,6 +925,17 @@ public abstract class SeaOfGatesEngine
 		handler.flush(false);
 	}
 
+	/**
+	 * Method to route a list of routes, in parallel if more than one thread is available.
+	 * @param numberOfThreads number of threads to use.
+	 * @param allRoutes the routes that need to be done.
+	 */
+	protected void routeAll(int numberOfThreads, List<NeededRoute> allRoutes)
+	{
+		if (numberOfThreads > 1) doRoutingParallel(numberOfThreads, allRoutes); else
+			doRouting(allRoutes);
+	}
+
 	/**
 	 * Stub for parallel routing.
 	 * @param numberOfThreads number of threads to create.
@@ -935,6 +943,25 @@ public abstract class SeaOfGatesEngine
 	 */
 	protected abstract void doRoutingParallel(int numberOfThreads, List<NeededRoute> allRoutes);
 
+	/**
+	 * Method to request that both directions of a route are searched in one thread.
+	 * Routing both directions in parallel makes the result depend on which one finishes first.
+	 */
+	protected void disableParallelDirections() { parallelDij = false; }
+
+	/**
+	 * Method to determine how far the geometry of a route may affect other routes beyond its bounds.
+	 * Routes whose bounds, expanded by this distance, do not touch can be searched independently.
+	 * @return the widest default arc plus the largest metal spacing.
+	 */
+	protected double getRouteInteractionDistance()
+	{
+		double dist = 0;
+		for(int i=0; i<numMetalLayers; i++)
+			dist = Math.max(dist, maxDefArcWidth[i] + Math.max(metalSurroundX[i], metalSurroundY[i]));
+		return dist;
+	}
+
 	/**
 	 * Method to do the routing in a single thread.
 	 * @param allRoutes the routes that need to be done.
@@ -957,29 +984,7 @@ public abstract class SeaOfGatesEngine
 			setProgressNote(progMsg);
 			if (!messagesQuiet && !Job.getDebug()) trace(progMsg);
 
-			if (nr.alreadyRouted)
-			{
-				// show the existing route
-				List<PolyBase> polysInConnection = new ArrayList<PolyBase>();
-				Point[] points = new Point[2];
-				points[0] = PolyBase.fromLambda(nr.aEndpoints.getCenterX(), nr.aEndpoints.getCenterY());
-				points[1] = PolyBase.fromLambda(nr.bEndpoints.getCenterX(), nr.bEndpoints.getCenterY());
-				polysInConnection.add(new PolyBase(points));
-				for(int i=0; i<numMetalLayers; i++)
-				{
-					RTNode<SOGBound> root = rTrees.metalTrees[i].getRoot();
-					if (root != null) addNetsToList(root, nr.netID, polysInConnection);
-				}
-
-				if (prefs.runOnConnectedRoutes)
-				{
-					warn("Network " + nr.getName() + " is already routed in the circuit, running router on it anyway", cell, null, polysInConnection);
-				} else
-				{
-					warn("Not routing network " + nr.getName() + " because it is already routed in the circuit", cell, null, polysInConnection);
-					continue;
-				}
-			}
+			if (skipAlreadyRouted(nr)) continue;
 
 			// route the segment
 			Runnable[] runnables = findPath(nr);
@@ -997,6 +1002,36 @@ public abstract class SeaOfGatesEngine
 		}
 	}
 
+	/**
+	 * Method to warn about a route which already exists in the circuit.
+	 * @param nr the route.
+	 * @return true if the route should not be done.
+	 */
+	boolean skipAlreadyRouted(NeededRoute nr)
+	{
+		if (!nr.alreadyRouted) return false;
+
+		// show the existing route
+		List<PolyBase> polysInConnection = new ArrayList<PolyBase>();
+		Point[] points = new Point[2];
+		points[0] = PolyBase.fromLambda(nr.aEndpoints.getCenterX(), nr.aEndpoints.getCenterY());
+		points[1] = PolyBase.fromLambda(nr.bEndpoints.getCenterX(), nr.bEndpoints.getCenterY());
+		polysInConnection.add(new PolyBase(points));
+		for(int i=0; i<numMetalLayers; i++)
+		{
+			RTNode<SOGBound> root = rTrees.metalTrees[i].getRoot();
+			if (root != null) addNetsToList(root, nr.netID, polysInConnection);
+		}
+
+		if (prefs.runOnConnectedRoutes)
+		{
+			warn("Network " + nr.getName() + " is already routed in the circuit, running router on it anyway", cell, null, polysInConnection);
+			return false;
+		}
+		warn("Not routing network " + nr.getName() + " because it is already routed in the circuit", cell, null, polysInConnection);
+		return true;
+	}
+
 	private void addNetsToList(RTNode<SOGBound> node, MutableInteger net, List<PolyBase> polysInConnection)
 	{
 		for(int i=0; i<node.getTotal(); i++)
@@ -1886,6 +1921,8 @@ public abstract class SeaOfGatesEngine
 		private double[][] overrideMetalSpacings;
 		private Wavefront winningWF, dirAtoB, dirBtoA;
 		private MessageLog loggedMessage;
+		/** true to hold the result of the search until commitRoute() */	private boolean deferCompletion;
+		/** the result of the search while it is held */					private SearchVertex deferredResult;
 
 		public NeededRoute(String routeName, PortInst aPi, PortInst bPi, ArcProto aArc, ArcProto bArc,
 			List<PortInst> spineTaps, double minWidth)
@@ -4558,8 +4595,34 @@ public abstract class SeaOfGatesEngine
 			}
 		}
 
+		/**
+		 * Method to hold the result of the next search of this route, instead of adding it to the circuit.
+		 * The search may then run on any thread, and commitRoute() adds the result later.
+		 */
+		void deferCompletion()
+		{
+			deferCompletion = true;
+			deferredResult = null;
+		}
+
+		/**
+		 * Method to add the result held since deferCompletion() to the circuit.
+		 */
+		void commitRoute()
+		{
+			deferCompletion = false;
+			SearchVertex result = deferredResult;
+			deferredResult = null;
+			if (result != null) completeRoute(result);
+		}
+
 		public void completeRoute(SearchVertex result)
 		{
+			if (deferCompletion)
+			{
+				deferredResult = result;
+				return;
+			}
 			if (result.wf != null)
 			{
 				result.wf.vertices = new ArrayList<SearchVertex>();
@@ -4955,8 +5018,7 @@ public abstract class SeaOfGatesEngine
 		/** Global routing lowest bucket for each step. */				int [] orderedBase;
 		/** Network ID bits for ends of route. */						final int fromBit;
 		/** Direction to move through global routing buckets */			final int globalRoutingDelta;
-		@SuppressWarnings({ "unchecked" } )
-		/** Search vertices found while running the wavefront. */		final Map<Integer, Map<Integer,SearchVertex>>[] searchVertexPlanes = new Map[numMetalLayers];
+		/** Search vertices found while running the wavefront. */		final SearchVertexPlane[] searchVertexPlanes = new SearchVertexPlane[numMetalLayers];
 		@SuppressWarnings({ "unchecked" } )
 		/** true when searching finished successfully or failed */		private boolean finished;
 		/** array for optimized vertices (allocated once) */			private List<SearchVertex> optimizedList = new ArrayList<SearchVertex>();
@@ -5110,12 +5172,9 @@ public abstract class SeaOfGatesEngine
 		 */
 		public SearchVertex getVertex(double x, double y, int z)
 		{
-			Map<Integer, Map<Integer,SearchVertex>> plane = searchVertexPlanes[z];
+			SearchVertexPlane plane = searchVertexPlanes[z];
 			if (plane == null) return null;
-			Map<Integer,SearchVertex> row = plane.get(new Integer((int)Math.round(y * DBMath.GRID)));
-			if (row == null) return null;
-			SearchVertex found = row.get(new Integer((int)Math.round(x * DBMath.GRID)));
-			return found;
+			return plane.get((int)Math.round(x * DBMath.GRID), (int)Math.round(y * DBMath.GRID));
 		}
 
 		/**
@@ -5126,17 +5185,13 @@ public abstract class SeaOfGatesEngine
 		 */
 		public void setVertex(double x, double y, int z, SearchVertex sv)
 		{
-			Map<Integer, Map<Integer,SearchVertex>> plane = searchVertexPlanes[z];
+			SearchVertexPlane plane = searchVertexPlanes[z];
 			if (plane == null)
-				searchVertexPlanes[z] = plane = new TreeMap<Integer, Map<Integer,SearchVertex>>();
-			Integer iY = new Integer((int)Math.round(y * DBMath.GRID));
-			Map<Integer,SearchVertex> row = plane.get(iY);
-			if (row == null)
-				plane.put(iY, row = new TreeMap<Integer,SearchVertex>());
-			row.put(new Integer((int)Math.round(x * DBMath.GRID)), sv);
+				searchVertexPlanes[z] = plane = new SearchVertexPlane();
+			plane.put((int)Math.round(x * DBMath.GRID), (int)Math.round(y * DBMath.GRID), sv);
 		}
 
-		public Map<Integer, Map<Integer,SearchVertex>>[] getSearchVertexPlanes() { return searchVertexPlanes; }
+		public SearchVertexPlane[] getSearchVertexPlanes() { return searchVertexPlanes; }
 
 		private String[] debugString;
 
@@ -8066,59 +8121,210 @@ public abstract class SeaOfGatesEngine
 
 	public static class OrderedSearchVertex
 	{
-		TreeMap<Integer,List<SearchVertex>> listBetter;
+		/** the vertices in a binary heap, ordered by cost and then by the order they were added */
+		private SearchVertex[] heap;
+		/** the cost and addition order of each vertex in the heap */
+		private long[] order;
+		private int size;
+		private int numAdded;
 
 		OrderedSearchVertex()
 		{
-			listBetter = new TreeMap<Integer,List<SearchVertex>>();
+			heap = new SearchVertex[64];
+			order = new long[64];
 		}
 
 		public Set<SearchVertex> getSet()
 		{
 			Set<SearchVertex> totalList = new TreeSet<SearchVertex>();
-			for(Integer key : listBetter.keySet())
-			{
-				List<SearchVertex> curList = listBetter.get(key);
-				for(SearchVertex sv : curList) totalList.add(sv);
-			}
+			for(int i=0; i<size; i++) totalList.add(heap[i]);
 			return totalList;
 		}
 
 		public void add(SearchVertex sv)
 		{
-			Integer key = Integer.valueOf(sv.cost);
-			List<SearchVertex> curList = listBetter.get(key);
-			if (curList == null) listBetter.put(key, curList = new ArrayList<SearchVertex>());
-			curList.add(sv);
+			if (size == heap.length)
+			{
+				heap = Arrays.copyOf(heap, size*2);
+				order = Arrays.copyOf(order, size*2);
+			}
+			// vertices of equal cost come out in the order they were added
+			long o = ((long)sv.cost << 32) | (numAdded++ & 0xFFFFFFFFL);
+			siftUp(size++, sv, o);
 		}
 
 		public void remove(SearchVertex sv)
 		{
-			Integer key = Integer.valueOf(sv.cost);
-			List<SearchVertex> curList = listBetter.get(key);
-			if (curList != null)
+			int pos = sv.activePos;
+			if (pos < 0 || pos >= size || heap[pos] != sv)
 			{
-				curList.remove(sv);
-				if (curList.size() == 0) listBetter.remove(key);
-			} else
 				System.out.println("++++++++++ COULD NOT REMOVE SEARCH VERTEX");
+				return;
+			}
+			sv.activePos = -1;
+			size--;
+			if (pos == size)
+			{
+				heap[size] = null;
+				return;
+			}
+			SearchVertex moved = heap[size];
+			long o = order[size];
+			heap[size] = null;
+			if (pos > 0 && o < order[(pos-1) >> 1]) siftUp(pos, moved, o); else
+				siftDown(pos, moved, o);
 		}
 
 		public boolean inList(SearchVertex sv)
 		{
-			Integer key = Integer.valueOf(sv.cost);
-			List<SearchVertex> curList = listBetter.get(key);
-			if (curList == null) return false;
-			return curList.contains(sv);
+			int pos = sv.activePos;
+			return pos >= 0 && pos < size && heap[pos] == sv;
 		}
 
 		public SearchVertex getFirst()
 		{
-			if (listBetter.size() == 0) return null;
-			Integer key = listBetter.firstKey();
-			List<SearchVertex> curList = listBetter.get(key);
-			if (curList.size() == 0) System.out.println("+++++++++++++ HMMM, FIRST KEY HAS NOTHING ("+key+")");
-			return curList.get(0);
+			if (size == 0) return null;
+			return heap[0];
+		}
+
+		private void siftUp(int pos, SearchVertex sv, long o)
+		{
+			while (pos > 0)
+			{
+				int parent = (pos-1) >> 1;
+				if (order[parent] <= o) break;
+				place(pos, heap[parent], order[parent]);
+				pos = parent;
+			}
+			place(pos, sv, o);
+		}
+
+		private void siftDown(int pos, SearchVertex sv, long o)
+		{
+			for(;;)
+			{
+				int child = pos*2 + 1;
+				if (child >= size) break;
+				if (child+1 < size && order[child+1] < order[child]) child++;
+				if (o <= order[child]) break;
+				place(pos, heap[child], order[child]);
+				pos = child;
+			}
+			place(pos, sv, o);
+		}
+
+		private void place(int pos, SearchVertex sv, long o)
+		{
+			heap[pos] = sv;
+			order[pos] = o;
+			sv.activePos = pos;
+		}
+	}
+
+	/**
+	 * Class to hold the search vertices of one metal layer of a Wavefront, indexed by their grid coordinates.
+	 * This is an open-addressed hash table whose keys pack the X and Y coordinates into a long,
+	 * so that looking up a point allocates nothing.
+	 */
+	public static class SearchVertexPlane
+	{
+		private long[] keys;
+		private SearchVertex[] vertices;
+		private int size;
+
+		SearchVertexPlane()
+		{
+			keys = new long[64];
+			vertices = new SearchVertex[64];
+		}
+
+		/**
+		 * Method to make a key from grid coordinates.
+		 * Keys sort by Y and then by X.
+		 */
+		public static long makeKey(int x, int y) { return ((long)y << 32) | ((x ^ Integer.MIN_VALUE) & 0xFFFFFFFFL); }
+
+		/** Returns the X grid coordinate of a key. */
+		public static int getKeyX(long key) { return (int)key ^ Integer.MIN_VALUE; }
+
+		/** Returns the Y grid coordinate of a key. */
+		public static int getKeyY(long key) { return (int)(key >> 32); }
+
+		/** Returns the number of search vertices in this plane. */
+		public int size() { return size; }
+
+		/**
+		 * Method to find the search vertex at a grid coordinate.
+		 * @return the SearchVertex, or null if there is none.
+		 */
+		public SearchVertex get(int x, int y) { return get(makeKey(x, y)); }
+
+		/**
+		 * Method to find the search vertex with a given key.
+		 * @return the SearchVertex, or null if there is none.
+		 */
+		public SearchVertex get(long key)
+		{
+			int mask = keys.length - 1;
+			for(int i = hash(key) & mask; vertices[i] != null; i = (i+1) & mask)
+				if (keys[i] == key) return vertices[i];
+			return null;
+		}
+
+		/**
+		 * Method to set the search vertex at a grid coordinate, replacing any that is there.
+		 */
+		public void put(int x, int y, SearchVertex sv)
+		{
+			if ((size+1)*2 > keys.length) grow();
+			long key = makeKey(x, y);
+			int mask = keys.length - 1;
+			int i = hash(key) & mask;
+			while (vertices[i] != null)
+			{
+				if (keys[i] == key) { vertices[i] = sv;   return; }
+				i = (i+1) & mask;
+			}
+			keys[i] = key;
+			vertices[i] = sv;
+			size++;
+		}
+
+		/**
+		 * Method to return the keys of all search vertices in this plane.
+		 * They are sorted by Y and then by X, so that searches which visit them are deterministic.
+		 */
+		public long[] getSortedKeys()
+		{
+			long[] sorted = new long[size];
+			int j = 0;
+			for(int i=0; i<keys.length; i++)
+				if (vertices[i] != null) sorted[j++] = keys[i];
+			Arrays.sort(sorted);
+			return sorted;
+		}
+
+		private void grow()
+		{
+			long[] oldKeys = keys;
+			SearchVertex[] oldVertices = vertices;
+			keys = new long[oldKeys.length*2];
+			vertices = new SearchVertex[oldKeys.length*2];
+			int mask = keys.length - 1;
+			for(int j=0; j<oldKeys.length; j++)
+			{
+				if (oldVertices[j] == null) continue;
+				int i = hash(oldKeys[j]) & mask;
+				while (vertices[i] != null) i = (i+1) & mask;
+				keys[i] = oldKeys[j];
+				vertices[i] = oldVertices[j];
+			}
+		}
+
+		private static int hash(long key)
+		{
+			long h = key * 0x9E3779B97F4A7C15L;
+			return (int)(h ^ (h >>> 32));
 		}
 	}
 
@@ -8171,6 +8377,7 @@ public abstract class SeaOfGatesEngine
 		/** the previous vertex in the search. */		private SearchVertex last;
 		/** the routing state. */						private Wavefront wf;
 		/** added geometry for minimum area. */			private SearchVertexAddon addOn;
+		/** position in the active list (-1 if none). */	private int activePos = -1;
 
 		/**
 		 * Method to create a new SearchVertex.
@@ -10030,161 +10237,156 @@ public abstract class SeaOfGatesEngine
 		double bestDistance = Double.MAX_VALUE;
 		for(int z=0; z<a.searchVertexPlanes.length; z++)
 		{
-			Map<Integer, Map<Integer,SearchVertex>> plane = a.searchVertexPlanes[z];
+			SearchVertexPlane plane = a.searchVertexPlanes[z];
 			if (plane == null) continue;
-			for(Integer y : plane.keySet())
-			{
-				Map<Integer,SearchVertex> row = plane.get(y);
-				if (row == null) continue;
-				double yCoord = y.intValue() / DBMath.GRID;
-				for(Integer x : row.keySet())
-				{
-					SearchVertex foundInA = row.get(x);
-					double xCoord = x.intValue() / DBMath.GRID;
-					SearchVertex foundInB = b.getVertex(xCoord, yCoord, z);
-					if (foundInB == null) continue;
-
-					// found a common point in the two wavefronts, check lengths against previous common point
-					double total = 0;
-					for(SearchVertex sv = foundInA; sv != null; sv = sv.last)
-					{
-						SearchVertex prev = sv.last;
-						if (prev == null) break;
-						double dX = sv.getX() - prev.getX();
-						double dY = sv.getY() - prev.getY();
-						total += Math.sqrt(dX*dX + dY*dY);
-						if (sv.getZ() != prev.getZ()) total++;
-					}
-					for(SearchVertex sv = foundInB; sv != null; sv = sv.last)
-					{
-						SearchVertex prev = sv.last;
-						if (prev == null) break;
-						double dX = sv.getX() - prev.getX();
-						double dY = sv.getY() - prev.getY();
-						total += Math.sqrt(dX*dX + dY*dY);
-						if (sv.getZ() != prev.getZ()) total++;
-					}
-					boolean better = DBMath.isLessThan(total, bestDistance);
-					if (!better) continue;
-
-					// see if the two halves have via contact issues
-					boolean fail = false;
-					for(SearchVertex sv = foundInB; sv != null; sv = sv.last)
-					{
-						if (sv.getSize() == null) continue;
-						SearchVertex lastSv = sv.last;
-						if (lastSv == null) continue;
-						int lowMetal = Math.min(sv.getZ(), lastSv.getZ());
-						int highMetal = Math.max(sv.getZ(), lastSv.getZ());
-						for(Poly conPoly : sv.getCutPolys())
-						{
-							String error = a.validCut(foundInA, lowMetal, highMetal, conPoly.getBounds2D(), conPoly.getLayer());
-							if (error != null) { fail = true;  break; }
-						}
-						if (fail) break;
-					}
-					if (fail) continue;
-					for(SearchVertex sv = foundInA; sv != null; sv = sv.last)
-					{
-						if (sv.getSize() == null) continue;
-						SearchVertex lastSv = sv.last;
-						if (lastSv == null) continue;
-						int lowMetal = Math.min(sv.getZ(), lastSv.getZ());
-						int highMetal = Math.max(sv.getZ(), lastSv.getZ());
-						for(Poly conPoly : sv.getCutPolys())
-						{
-							String error = b.validCut(foundInB, lowMetal, highMetal, conPoly.getBounds2D(), conPoly.getLayer());
-							if (error != null) { fail = true;  break; }
-						}
-						if (fail) break;
-					}
-					if (fail) continue;
-
-					// see if minimum area rules stop this connection
-					SearchVertex svCurrent = null;
-					List<SearchVertex> halfPath = new ArrayList<SearchVertex>();
-					SearchVertex svBuild = foundInB;
-					while (svBuild != null)
-					{
-						SearchVertex svAdd = new SearchVertex(svBuild);
-						if (svCurrent == null && halfPath.size() > 0 && halfPath.get(halfPath.size()-1).getZ() != svAdd.getZ())
-							svCurrent = halfPath.get(halfPath.size()-1);
-						halfPath.add(svAdd);
-						svBuild = svBuild.last;
-					}
-					List<SearchVertex> path = new ArrayList<SearchVertex>();
-					Point2D lastSize = null;
-					Poly[] lastCuts = null;
-					int lastCutNumber = 0;
-					for(int i=0; i<halfPath.size(); i++)
-					{
-						SearchVertex thisOne = halfPath.get(i);
-						Point2D thisSize = thisOne.size;
-						Poly[] thisCuts = thisOne.getCutPolys();
-						int thisCutNumber = thisOne.zv & 0xFF;
-
-						thisOne.size = lastSize;
-						thisOne.cutPolys = lastCuts;
-						thisOne.zv = (thisOne.zv & 0xFFFFFF00) | (lastCutNumber & 0xFF);
-
-						lastSize = thisSize;
-						lastCuts = thisCuts;
-						lastCutNumber = thisCutNumber;
-					}
-					for(int i=halfPath.size()-1; i>=0; i--)
-						path.add(halfPath.get(i));
-					svBuild = foundInA;
-					while (svBuild != null)
-					{
-						path.add(new SearchVertex(svBuild));
-						svBuild = svBuild.last;
-					}
-					for(int i=0; i<path.size()-1; i++)
-					{
-						SearchVertex sv1 = path.get(i);
-						SearchVertex sv2 = path.get(i+1);
-						sv1.last = sv2;
-					}
-					path.get(path.size()-1).last = null;
-
-					boolean finalDest = false;
-					if (svCurrent == null) { svCurrent = path.get(0); finalDest = true; }
-					StringBuffer message = new StringBuffer();
-					MutableBoolean err = new MutableBoolean(false);
-					SearchVertexAddon sva = a.determineMinimumArea(svCurrent, svCurrent.getX(), svCurrent.getY(), svCurrent.getC(), svCurrent.getZ(),
-						svCurrent.getC(), svCurrent.getZ(), null, 0, 0, err, message, finalDest);
-					if (sva != null)
+			for(long key : plane.getSortedKeys())
+			{
+				SearchVertex foundInA = plane.get(key);
+				double xCoord = SearchVertexPlane.getKeyX(key) / DBMath.GRID;
+				double yCoord = SearchVertexPlane.getKeyY(key) / DBMath.GRID;
+				SearchVertex foundInB = b.getVertex(xCoord, yCoord, z);
+				if (foundInB == null) continue;
+
+				// found a common point in the two wavefronts, check lengths against previous common point
+				double total = 0;
+				for(SearchVertex sv = foundInA; sv != null; sv = sv.last)
+				{
+					SearchVertex prev = sv.last;
+					if (prev == null) break;
+					double dX = sv.getX() - prev.getX();
+					double dY = sv.getY() - prev.getY();
+					total += Math.sqrt(dX*dX + dY*dY);
+					if (sv.getZ() != prev.getZ()) total++;
+				}
+				for(SearchVertex sv = foundInB; sv != null; sv = sv.last)
+				{
+					SearchVertex prev = sv.last;
+					if (prev == null) break;
+					double dX = sv.getX() - prev.getX();
+					double dY = sv.getY() - prev.getY();
+					total += Math.sqrt(dX*dX + dY*dY);
+					if (sv.getZ() != prev.getZ()) total++;
+				}
+				boolean better = DBMath.isLessThan(total, bestDistance);
+				if (!better) continue;
+
+				// see if the two halves have via contact issues
+				boolean fail = false;
+				for(SearchVertex sv = foundInB; sv != null; sv = sv.last)
+				{
+					if (sv.getSize() == null) continue;
+					SearchVertex lastSv = sv.last;
+					if (lastSv == null) continue;
+					int lowMetal = Math.min(sv.getZ(), lastSv.getZ());
+					int highMetal = Math.max(sv.getZ(), lastSv.getZ());
+					for(Poly conPoly : sv.getCutPolys())
+					{
+						String error = a.validCut(foundInA, lowMetal, highMetal, conPoly.getBounds2D(), conPoly.getLayer());
+						if (error != null) { fail = true;  break; }
+					}
+					if (fail) break;
+				}
+				if (fail) continue;
+				for(SearchVertex sv = foundInA; sv != null; sv = sv.last)
+				{
+					if (sv.getSize() == null) continue;
+					SearchVertex lastSv = sv.last;
+					if (lastSv == null) continue;
+					int lowMetal = Math.min(sv.getZ(), lastSv.getZ());
+					int highMetal = Math.max(sv.getZ(), lastSv.getZ());
+					for(Poly conPoly : sv.getCutPolys())
+					{
+						String error = b.validCut(foundInB, lowMetal, highMetal, conPoly.getBounds2D(), conPoly.getLayer());
+						if (error != null) { fail = true;  break; }
+					}
+					if (fail) break;
+				}
+				if (fail) continue;
+
+				// see if minimum area rules stop this connection
+				SearchVertex svCurrent = null;
+				List<SearchVertex> halfPath = new ArrayList<SearchVertex>();
+				SearchVertex svBuild = foundInB;
+				while (svBuild != null)
+				{
+					SearchVertex svAdd = new SearchVertex(svBuild);
+					if (svCurrent == null && halfPath.size() > 0 && halfPath.get(halfPath.size()-1).getZ() != svAdd.getZ())
+						svCurrent = halfPath.get(halfPath.size()-1);
+					halfPath.add(svAdd);
+					svBuild = svBuild.last;
+				}
+				List<SearchVertex> path = new ArrayList<SearchVertex>();
+				Point2D lastSize = null;
+				Poly[] lastCuts = null;
+				int lastCutNumber = 0;
+				for(int i=0; i<halfPath.size(); i++)
+				{
+					SearchVertex thisOne = halfPath.get(i);
+					Point2D thisSize = thisOne.size;
+					Poly[] thisCuts = thisOne.getCutPolys();
+					int thisCutNumber = thisOne.zv & 0xFF;
+
+					thisOne.size = lastSize;
+					thisOne.cutPolys = lastCuts;
+					thisOne.zv = (thisOne.zv & 0xFFFFFF00) | (lastCutNumber & 0xFF);
+
+					lastSize = thisSize;
+					lastCuts = thisCuts;
+					lastCutNumber = thisCutNumber;
+				}
+				for(int i=halfPath.size()-1; i>=0; i--)
+					path.add(halfPath.get(i));
+				svBuild = foundInA;
+				while (svBuild != null)
+				{
+					path.add(new SearchVertex(svBuild));
+					svBuild = svBuild.last;
+				}
+				for(int i=0; i<path.size()-1; i++)
+				{
+					SearchVertex sv1 = path.get(i);
+					SearchVertex sv2 = path.get(i+1);
+					sv1.last = sv2;
+				}
+				path.get(path.size()-1).last = null;
+
+				boolean finalDest = false;
+				if (svCurrent == null) { svCurrent = path.get(0); finalDest = true; }
+				StringBuffer message = new StringBuffer();
+				MutableBoolean err = new MutableBoolean(false);
+				SearchVertexAddon sva = a.determineMinimumArea(svCurrent, svCurrent.getX(), svCurrent.getY(), svCurrent.getC(), svCurrent.getZ(),
+					svCurrent.getC(), svCurrent.getZ(), null, 0, 0, err, message, finalDest);
+				if (sva != null)
+				{
+					SearchVertex svGoodInsertion = null, svAnyInsertion = null;
+					for(SearchVertex sv = svCurrent; sv != null; sv = sv.last)
 					{
-						SearchVertex svGoodInsertion = null, svAnyInsertion = null;
-						for(SearchVertex sv = svCurrent; sv != null; sv = sv.last)
+						if (sv.addOn == null)
 						{
-							if (sv.addOn == null)
+							if (svAnyInsertion == null) svAnyInsertion = sv;
+							if (sv.getZ() != svCurrent.getZ())
 							{
-								if (svAnyInsertion == null) svAnyInsertion = sv;
-								if (sv.getZ() != svCurrent.getZ())
-								{
-									svGoodInsertion = sv;
-									break;
-								}
+								svGoodInsertion = sv;
+								break;
 							}
 						}
-						if (svGoodInsertion != null) svGoodInsertion.addOn = sva; else
-							if (svAnyInsertion != null) svAnyInsertion.addOn = sva; else
-						{
-							System.out.println("!!!!!!!!!!! ERROR: Failed to insert minimum area geometry " +
-								TextUtils.formatDistance(sva.addedGeometry[0].getMinX()) + "<=X<=" + TextUtils.formatDistance(sva.addedGeometry[0].getMaxX()) +
-								" AND " + TextUtils.formatDistance(sva.addedGeometry[0].getMinY()) + "<=Y<=" + TextUtils.formatDistance(sva.addedGeometry[0].getMaxY()) +
-								"," + sva.pureLayerNode.describe(false));
-							continue;
-						}
 					}
-					if (err.booleanValue()) continue;
-
-					// intersection is valid, save it
-					bestDistance = total;
-					bestPath = path;
-					bestSV = foundInA;
+					if (svGoodInsertion != null) svGoodInsertion.addOn = sva; else
+						if (svAnyInsertion != null) svAnyInsertion.addOn = sva; else
+					{
+						System.out.println("!!!!!!!!!!! ERROR: Failed to insert minimum area geometry " +
+							TextUtils.formatDistance(sva.addedGeometry[0].getMinX()) + "<=X<=" + TextUtils.formatDistance(sva.addedGeometry[0].getMaxX()) +
+							" AND " + TextUtils.formatDistance(sva.addedGeometry[0].getMinY()) + "<=Y<=" + TextUtils.formatDistance(sva.addedGeometry[0].getMaxY()) +
+							"," + sva.pureLayerNode.describe(false));
+						continue;
+					}
 				}
+				if (err.booleanValue()) continue;
+
+				// intersection is valid, save it
+				bestDistance = total;
+				bestPath = path;
+				bestSV = foundInA;
 			}
 		}
 		if (bestPath != null)
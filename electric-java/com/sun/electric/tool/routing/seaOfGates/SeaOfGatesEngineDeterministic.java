@@ -0,0 +1,222 @@
+/* -*- tab-width: 4 -*-
+ *
+ * Electric(tm) VLSI Design System
+ *
+ * File: SeaOfGatesEngineDeterministic.java
+ * Routing tool: Sea of Gates routing with results that do not depend on the number of threads
+ *
+ * Copyright (c) 2012, Static Free Software. All rights reserved.
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sun.electric.tool.routing.seaOfGates;
+
+import com.sun.electric.database.variable.UserInterface;
+import com.sun.electric.tool.Job;
+
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Sea-of-Gates router which gives the same result for any number of threads.
+ *
+ * Before routing, the routes are colored so that no two routes of the same color have
+ * bounds (expanded by the distance at which geometry interacts) that touch.  Each color is
+ * a "wave" of independent routes.  The waves run one after another; the routes of a wave
+ * are searched in parallel, and then their results are added to the circuit one at a
+ * time, in the order of the route list.  Since a search sees only the routes of earlier
+ * waves, and those were added in a fixed order, the result does not depend on which
+ * thread finishes first.  Both directions of a route are searched in the same thread.
+ */
+class SeaOfGatesEngineDeterministic extends SeaOfGatesEngine
+{
+	@Override
+	protected void routeAll(int numberOfThreads, List<NeededRoute> allRoutes)
+	{
+		// a single thread goes through the same waves, so that it gives the same result
+		doRoutingParallel(numberOfThreads, allRoutes);
+	}
+
+	@Override
+	protected void doRoutingParallel(int numberOfThreads, List<NeededRoute> allRoutes)
+	{
+		disableParallelDirections();
+		List<Rectangle2D> bounds = new ArrayList<Rectangle2D>();
+		for(NeededRoute nr : allRoutes) bounds.add(nr.getBounds());
+		List<List<NeededRoute>> waves = new ArrayList<List<NeededRoute>>();
+		int[] colors = colorRoutes(bounds, getRouteInteractionDistance());
+		for(int i=0; i<allRoutes.size(); i++)
+		{
+			while (waves.size() <= colors[i]) waves.add(new ArrayList<NeededRoute>());
+			waves.get(colors[i]).add(allRoutes.get(i));
+		}
+		trace("Routing " + allRoutes.size() + " paths in " + waves.size() + " waves");
+
+		// the search threads report errors through the user interface of this thread
+		final UserInterface ui = Job.getUserInterface();
+		ExecutorService pool = Executors.newFixedThreadPool(numberOfThreads, new ThreadFactory()
+		{
+			public Thread newThread(final Runnable r)
+			{
+				return new Thread(new Runnable()
+				{
+					public void run()
+					{
+						if (ui != null) Job.setUserInterface(ui);
+						r.run();
+					}
+				}, "Sea-of-Gates router");
+			}
+		});
+		try
+		{
+			int totalRoutes = allRoutes.size();
+			int routesDone = 0;
+			for(List<NeededRoute> wave : waves)
+			{
+				if (checkAbort())
+				{
+					info("Sea-of-gates routing aborted");
+					break;
+				}
+
+				// start the searches of the wave, in order
+				List<NeededRoute> started = new ArrayList<NeededRoute>();
+				List<Future<?>> searches = new ArrayList<Future<?>>();
+				for(NeededRoute nr : wave)
+				{
+					if (skipAlreadyRouted(nr)) continue;
+					nr.deferCompletion();
+					started.add(nr);
+					Runnable[] runnables = findPath(nr);
+					if (runnables == null) continue;
+					for(Runnable runnable : runnables)
+						searches.add(pool.submit(runnable));
+				}
+				for(Future<?> search : searches) waitFor(search);
+
+				// add the results to the circuit in order
+				for(NeededRoute nr : started) nr.commitRoute();
+				flush();
+				routesDone += wave.size();
+				setProgressValue(routesDone, totalRoutes);
+			}
+		} finally
+		{
+			pool.shutdown();
+		}
+	}
+
+	private static void waitFor(Future<?> search)
+	{
+		for(;;)
+		{
+			try
+			{
+				search.get();
+				return;
+			} catch (InterruptedException e)
+			{
+				// the search is aborted through checkAbort(), so keep waiting for it
+			} catch (ExecutionException e)
+			{
+				Throwable cause = e.getCause();
+				if (cause instanceof RuntimeException) throw (RuntimeException)cause;
+				if (cause instanceof Error) throw (Error)cause;
+				throw new RuntimeException(cause);
+			}
+		}
+	}
+
+	/**
+	 * Method to assign routes to waves.  Each route, in order, gets the lowest wave that
+	 * has no earlier route whose bounds come within the interaction distance of its own.
+	 * @param bounds the bounds of the routes.
+	 * @param interaction the distance at which the geometry of two routes interacts.
+	 * @return the wave of each route.
+	 */
+	static int[] colorRoutes(List<Rectangle2D> bounds, double interaction)
+	{
+		int numRoutes = bounds.size();
+		int[] colors = new int[numRoutes];
+		if (numRoutes == 0) return colors;
+
+		// expand each bound by half the interaction distance so that touching bounds interact
+		double grow = interaction / 2;
+		Rectangle2D[] expanded = new Rectangle2D[numRoutes];
+		double totalSize = 0;
+		for(int i=0; i<numRoutes; i++)
+		{
+			Rectangle2D b = bounds.get(i);
+			expanded[i] = new Rectangle2D.Double(b.getMinX() - grow, b.getMinY() - grow,
+				b.getWidth() + grow*2, b.getHeight() + grow*2);
+			totalSize += Math.max(expanded[i].getWidth(), expanded[i].getHeight());
+		}
+
+		// find neighbors with a grid whose cells are the size of an average route
+		double cellSize = Math.max(totalSize / numRoutes, 1);
+		Map<Long,List<Integer>> grid = new HashMap<Long,List<Integer>>();
+		int[] lastSeen = new int[numRoutes];
+		BitSet used = new BitSet();
+		for(int i=0; i<numRoutes; i++)
+		{
+			Rectangle2D r = expanded[i];
+			int lX = (int)Math.floor(r.getMinX() / cellSize), hX = (int)Math.floor(r.getMaxX() / cellSize);
+			int lY = (int)Math.floor(r.getMinY() / cellSize), hY = (int)Math.floor(r.getMaxY() / cellSize);
+			used.clear();
+			for(int x=lX; x<=hX; x++)
+			{
+				for(int y=lY; y<=hY; y++)
+				{
+					List<Integer> inCell = grid.get(Long.valueOf(((long)x << 32) | (y & 0xFFFFFFFFL)));
+					if (inCell == null) continue;
+					for(Integer other : inCell)
+					{
+						int j = other.intValue();
+						if (lastSeen[j] == i+1) continue;
+						lastSeen[j] = i+1;
+						if (touches(r, expanded[j])) used.set(colors[j]);
+					}
+				}
+			}
+			colors[i] = used.nextClearBit(0);
+			for(int x=lX; x<=hX; x++)
+			{
+				for(int y=lY; y<=hY; y++)
+				{
+					Long key = Long.valueOf(((long)x << 32) | (y & 0xFFFFFFFFL));
+					List<Integer> inCell = grid.get(key);
+					if (inCell == null) grid.put(key, inCell = new ArrayList<Integer>());
+					inCell.add(Integer.valueOf(i));
+				}
+			}
+		}
+		return colors;
+	}
+
+	private static boolean touches(Rectangle2D a, Rectangle2D b)
+	{
+		return a.getMinX() <= b.getMaxX() && b.getMinX() <= a.getMaxX() &&
+			a.getMinY() <= b.getMaxY() && b.getMinY() <= a.getMaxY();
+	}
+}
@@ -28,7 +28,7 @@ package com.sun.electric.tool.routing.seaOfGates;
 public class SeaOfGatesEngineFactory {
 
     public enum SeaOfGatesEngineType {
-        defaultVersion, oldThreads, batchInfrastructure, batchSemaphore
+        defaultVersion, oldThreads, batchInfrastructure, batchSemaphore, batchDeterministic
     }
 
     /**
@@ -47,6 +47,8 @@ public class SeaOfGatesEngineFactory {
             case batchInfrastructure:
             case batchSemaphore:
                 return new SeaOfGatesEngineNonoverlappingBatch(version);
+            case batchDeterministic:
+                return new SeaOfGatesEngineDeterministic();
             default:
                 return new SeaOfGatesEngineOld();
         }
@@ -37,45 +37,81 @@ abstract class BTreeSignal<S extends Sample> extends MutableSignal<S>
 {
 	private Signal.View<S> exactView = null;
 	private final BTree<Double,S,Pair<S,S>> tree;
+	/** the version of the tree which views read, so that they can be drawn while samples are still added */
+	private volatile BTree<Double,S,Pair<S,S>>.Version version;
+	/** true if the tree was changed after the version was published */
+	private volatile boolean changed;
 	private double minTime = Double.MAX_VALUE, maxTime = -Double.MAX_VALUE;
 	private double minValue = Double.MAX_VALUE, maxValue = -Double.MAX_VALUE;
+	private final PyramidSampleFactory<S> pyramidSamples;
+	private MinMaxPyramid pyramid;
 	public static int misses = 0;
 	public static int steps = 0;
 	public static int numLookups = 0;
 
 	public BTreeSignal(SignalCollection sc, Stimuli sd, String signalName, String signalContext,
 		boolean digital, BTree<Double,S,Pair<S,S>> tree)
+	{
+		this(sc, sd, signalName, signalContext, digital, tree, null);
+	}
+
+	/**
+	 * Constructor for a signal which may keep a MinMaxPyramid of its values, so that
+	 * zoomed-out raster views do not have to search the tree for every pixel.
+	 * @param pyramidSamples makes the samples of raster views drawn from the pyramid;
+	 * null to draw them from the tree only.
+	 */
+	public BTreeSignal(SignalCollection sc, Stimuli sd, String signalName, String signalContext,
+		boolean digital, BTree<Double,S,Pair<S,S>> tree, PyramidSampleFactory<S> pyramidSamples)
 	{
 		super(sc, sd, signalName, signalContext, digital);
 		if (tree == null) throw new RuntimeException();
 		this.tree = tree;
+		this.version = tree.publish();
+		this.pyramidSamples = pyramidSamples;
+		if (pyramidSamples != null) pyramid = new MinMaxPyramid();
 		this.exactView = new Signal.View<S>()
 		{
-			public int getNumEvents() { return BTreeSignal.this.tree.size(); }
+			public int getNumEvents() { return getVersion().size(); }
 			public double getTime(int index)
 			{
-				Double d = BTreeSignal.this.tree.getKeyFromOrd(index);
+				BTree<Double,S,Pair<S,S>>.Version v = getVersion();
+				Double d = v.getKeyFromOrd(index);
 				if (d == null)
-					throw new RuntimeException("Entry " + index + " not valid (tree size is " +
-						BTreeSignal.this.tree.size() + ")");
+					throw new RuntimeException("Entry " + index + " not valid (tree size is " + v.size() + ")");
 				return d.doubleValue();
 			}
 			public S getSample(int index)
 			{
-				S ret = BTreeSignal.this.tree.getValFromOrd(index);
+				BTree<Double,S,Pair<S,S>>.Version v = getVersion();
+				S ret = v.getValFromOrd(index);
 				if (ret == null)
-					throw new RuntimeException("Entry " + index + " not valid (tree size is " +
-						BTreeSignal.this.tree.size() + ")");
+					throw new RuntimeException("Entry " + index + " not valid (tree size is " + v.size() + ")");
 				return ret;
 			}
 		};
 	}
 
-	public S getSample(double time) { return tree.getValFromKey(new Double(time)); }
+	public S getSample(double time)
+	{
+		synchronized (tree) { return tree.getValFromKey(new Double(time)); }
+	}
 
 	public void addSample(double time, S sample)
 	{
-		tree.insert(new Double(time), sample);
+		synchronized (tree)
+		{
+			tree.insert(new Double(time), sample);
+			changed = true;
+			if (pyramid != null)
+			{
+				// the pyramid is built as samples arrive in order; anything else rebuilds it when next drawn.
+				// It holds the numbers as the tree stores them (UnboxedHalfDouble), so that it gives the same ranges
+				float t = (float)time;
+				if (t > pyramid.getLastTime()) pyramid.add(t, (float)sample.getMinValue(), (float)sample.getMaxValue()); else
+					pyramid = null;
+			}
+		}
 		minTime = Math.min(minTime, time);
 		maxTime = Math.max(maxTime, time);
 		minValue = Math.min(minValue, sample.getMinValue());
@@ -84,7 +120,12 @@ abstract class BTreeSignal<S extends Sample> extends MutableSignal<S>
 
 	public void replaceSample(double time, S sample)
 	{
-		tree.replace(new Double(time), sample);
+		synchronized (tree)
+		{
+			tree.replace(new Double(time), sample);
+			changed = true;
+			pyramid = null;
+		}
 		minTime = Math.min(minTime, time);
 		maxTime = Math.max(maxTime, time);
 		minValue = Math.min(minValue, sample.getMinValue());
@@ -95,10 +136,57 @@ abstract class BTreeSignal<S extends Sample> extends MutableSignal<S>
 
 	public Signal.View<RangeSample<S>> getRasterView(double t0, double t1, int numPixels)
 	{
-		return new BTreeRasterView(t0, t1, numPixels);
+		return new BTreeRasterView(t0, t1, numPixels, getPyramid(), getVersion());
 	}
 
-	public boolean isEmpty() { return tree.size()==0; }
+	/**
+	 * Method to return the latest version of the tree, publishing the changes made since the last call.
+	 * Views read the tree only through versions, so they never wait for a reader that is adding samples.
+	 */
+	private BTree<Double,S,Pair<S,S>>.Version getVersion()
+	{
+		if (changed)
+		{
+			synchronized (tree)
+			{
+				if (changed)
+				{
+					version = tree.publish();
+					changed = false;
+				}
+			}
+		}
+		return version;
+	}
+
+	/**
+	 * Creates samples with a given value, for raster views drawn from a MinMaxPyramid.
+	 */
+	interface PyramidSampleFactory<S extends Sample>
+	{
+		S createSample(double value);
+	}
+
+	private MinMaxPyramid getPyramid()
+	{
+		if (pyramidSamples == null) return null;
+		synchronized (tree)
+		{
+			if (pyramid == null)
+			{
+				MinMaxPyramid p = new MinMaxPyramid();
+				for(int i=0; i<tree.size(); i++)
+				{
+					S sample = tree.getValFromOrd(i);
+					p.add(tree.getKeyFromOrd(i).doubleValue(), sample.getMinValue(), sample.getMaxValue());
+				}
+				pyramid = p;
+			}
+			return pyramid;
+		}
+	}
+
+	public boolean isEmpty() { return getVersion().size()==0; }
 
 	public double getMinTime() { return minTime; }
 
@@ -110,7 +198,7 @@ abstract class BTreeSignal<S extends Sample> extends MutableSignal<S>
 
 	protected Pair<S,S> getSummaryFromKeys(Double t1, Double t2)
 	{
-		return tree.getSummaryFromKeys(t1, t2);
+		return getVersion().getSummaryFromKeys(t1, t2);
 	}
 
 	/**
@@ -119,29 +207,40 @@ abstract class BTreeSignal<S extends Sample> extends MutableSignal<S>
 	 *  or it has less than numRegions samples.  In the latter case we
 	 *  use "exact" mode and snap the raster samples to the actual
 	 *  samples.  In the former case we use range queries to summarize
-	 *  multiple actual samples in each raster sample.
+	 *  multiple actual samples in each raster sample.  When the signal
+	 *  has a MinMaxPyramid and a raster sample covers several of its
+	 *  blocks, the pyramid answers for those blocks and the tree for
+	 *  the samples at either end, with the same minimum and maximum.
+	 *  A view reads the version of the tree that was current when it
+	 *  was made.
 	 */
-	private class BTreeRasterView implements Signal.View<RangeSample<S>>
+	private class BTreeRasterView implements Signal.View<RangeSample<S>>, MinMaxPyramid.SampleRanges
 	{
 		private final double t0, t1;
 		private final int numRegions;
 		private final boolean exact;
+		private final MinMaxPyramid pyramid;
+		private final BTree<Double,S,Pair<S,S>>.Version version;
+		private final double[] range = new double[2];
 		private int t0_ord, t1_ord;
 
-		public BTreeRasterView(double t0, double t1, int numRegions)
+		public BTreeRasterView(double t0, double t1, int numRegions, MinMaxPyramid pyramid,
+			BTree<Double,S,Pair<S,S>>.Version version)
 		{
+			this.pyramid = pyramid;
+			this.version = version;
 			Double t0_ = new Double(Math.min(t0, t1));
 			Double t1_ = new Double(Math.max(t0, t1));
-			t0_ord = tree.getOrdFromKeyFloor(t0_);
-			t1_ord = tree.getOrdFromKeyFloor(t1_);
+			t0_ord = version.getOrdFromKeyFloor(t0_);
+			t1_ord = version.getOrdFromKeyFloor(t1_);
 
 			// "snap" t0 and t1 to the nearest actual sample strictly outside the viewfinder
-			t0_ = tree.getKeyFromOrd(t0_ord);
-			t1_ord = Math.min(tree.size()-1, t1_ord+1);
-			t1_ = tree.getKeyFromOrd(t1_ord);
+			t0_ = version.getKeyFromOrd(t0_ord);
+			t1_ord = Math.min(version.size()-1, t1_ord+1);
+			t1_ = version.getKeyFromOrd(t1_ord);
 
 			t0_ord = Math.max(t0_ord, 0);
-			t1_ord = Math.min(t1_ord, tree.size()-1);
+			t1_ord = Math.min(t1_ord, version.size()-1);
 
 			this.t0 = t0_.doubleValue();
 			this.t1 = t1_.doubleValue();
@@ -169,11 +268,11 @@ abstract class BTreeSignal<S extends Sample> extends MutableSignal<S>
 			if (index >= getNumEvents())
 				throw new RuntimeException("ERROR: getTime() called with number greater than or equal to getNumEvents()");
 			if (!exact) return t0+(((t1-t0)*index)/numRegions);
-			Double ret = tree.getKeyFromOrd(t0_ord + index);
+			Double ret = version.getKeyFromOrd(t0_ord + index);
 			if (ret == null)
 				throw new RuntimeException("ERROR: sample not found in BTree -- this should not happen;"+
 					" t0_ord="+t0_ord+" t1_ord="+t1_ord+
-					" exact="+exact+" index="+index+" tree.size()="+tree.size()+
+					" exact="+exact+" index="+index+" tree.size()="+version.size()+
 					" numRegions="+numRegions);
 			return ret.doubleValue();
 		}
@@ -182,12 +281,12 @@ abstract class BTreeSignal<S extends Sample> extends MutableSignal<S>
 		{
 			if (index >= getNumEvents()-1)
 			{
-				S sample = tree.getValFromOrd(t1_ord);
+				S sample = version.getValFromOrd(t1_ord);
 				return sample == null ? null : new RangeSample<S>(sample, sample);
 			}
 			if (exact)
 			{
-				S sample = tree.getValFromOrd(t0_ord+index);
+				S sample = version.getValFromOrd(t0_ord+index);
 				return sample == null ? null : new RangeSample<S>(sample, sample);
 			}
 			Double tfirst = new Double(getTime(index));
@@ -197,16 +296,29 @@ abstract class BTreeSignal<S extends Sample> extends MutableSignal<S>
 				// this case can occur if the signal's samples
 				// aren't evenly spaced; in effect we end up
 				// acting sort of like exact mode at times.
-				S sample = tree.getValFromKey(tfirst);
+				S sample = version.getValFromKey(tfirst);
 				return sample == null ? null : new RangeSample<S>(sample, sample);
+			} else if (pyramid != null && pyramid.getNumBlocks(tfirst.floatValue(), tsecond.floatValue()) >= 4 &&
+				pyramid.getRange(tfirst.floatValue(), tsecond.floatValue(), range, this))
+			{
+				return new RangeSample<S>(pyramidSamples.createSample(range[0]), pyramidSamples.createSample(range[1]));
 			} else
 			{
-				Pair<S,S> highlow = tree.getSummaryFromKeys(tfirst, tsecond);
+				Pair<S,S> highlow = version.getSummaryFromKeys(tfirst, tsecond);
 				return highlow == null
 					? null
 					: new RangeSample<S>(highlow.getKey(), highlow.getValue());
 			}
 		}
+
+		public boolean getRange(double t0, double t1, double[] result)
+		{
+			Pair<S,S> highlow = version.getSummaryFromKeys(new Double(t0), new Double(t1));
+			if (highlow == null) return false;
+			result[0] = highlow.getKey().getMinValue();
+			result[1] = highlow.getValue().getMaxValue();
+			return true;
+		}
 	}
 
 	// Page Storage //////////////////////////////////////////////////////////////////////////////
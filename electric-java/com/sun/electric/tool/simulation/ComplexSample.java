@@ -148,4 +148,33 @@ public class ComplexSample extends ScalarSample implements Sample
         return ret;
     }
 
+    /**
+     * Method to create a complex signal whose samples are read from a file when they are first needed.
+     * The loader returns the times, the real parts and the imaginary parts of the signal.
+     * @param minTime the smallest time of the signal, known without reading it.
+     * @param maxTime the largest time of the signal, known without reading it.
+     */
+    public static Signal<ComplexSample> createComplexSignal(SignalCollection sc, final Stimuli sd, final String signalName,
+    	final String signalContext, double minTime, double maxTime, LazySignal.Loader loader)
+    {
+        return new LazySignal<ComplexSample>(sc, sd, signalName, signalContext, false, minTime, maxTime, loader)
+        {
+            protected MutableSignal<ComplexSample> createStorage()
+            {
+                return (MutableSignal<ComplexSample>)createComplexSignal(null, sd, signalName, signalContext);
+            }
+
+            protected ComplexSample createSample(double[][] columns, int index)
+            {
+                return new ComplexSample(columns[1][index], columns[2][index]);
+            }
+
+            public void plot(Panel panel, Graphics g, WaveSignal ws, Color light, List<PolyBase> forPs,
+            	Rectangle2D bounds, List<WaveSelection> selectedObjects, Signal<?> xAxisSignal)
+            {
+            	ScalarSample.plotSig(this, panel, g, ws, light, forPs, bounds, selectedObjects, xAxisSignal);
+            }
+        };
+    }
+
 }
@@ -0,0 +1,201 @@
+/* -*- tab-width: 4 -*-
+ *
+ * Electric(tm) VLSI Design System
+ *
+ * File: LazySignal.java
+ *
+ * Copyright (c) 2012, Static Free Software. All rights reserved.
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sun.electric.tool.simulation;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * A Signal whose samples stay in the simulation output file until they
+ * are first needed.  Readers of large waveform files create one per
+ * column, together with the time range of the column, so that opening
+ * a file decodes no values at all.  When the signal is first shown, its
+ * column is read from the file and stored in an ordinary MutableSignal.
+ */
+public abstract class LazySignal<SS extends Sample> extends MutableSignal<SS>
+{
+	/**
+	 * Reads the samples of one signal from a file.
+	 */
+	public static interface Loader
+	{
+		/**
+		 * Method to read the samples of the signal.
+		 * May be called on any thread, and on several threads at once for different signals.
+		 * @return the columns of the signal: the times first, then one array per component of
+		 * the samples (one for scalar samples, the real and imaginary parts for complex samples).
+		 */
+		double[][] read() throws IOException;
+	}
+
+	// the samples of all signals go to the page storage of their Stimuli, which is not thread-safe
+	private static final Object storeLock = new Object();
+
+	private final Loader loader;
+	private final double minTime, maxTime;
+	private volatile MutableSignal<SS> samples;
+
+	protected LazySignal(SignalCollection sc, Stimuli sd, String signalName, String signalContext, boolean digital,
+		double minTime, double maxTime, Loader loader)
+	{
+		super(sc, sd, signalName, signalContext, digital);
+		this.loader = loader;
+		this.minTime = minTime;
+		this.maxTime = maxTime;
+	}
+
+	/** Method to create the signal which holds the samples once they are read. */
+	protected abstract MutableSignal<SS> createStorage();
+
+	/** Method to create the sample at the given index of the columns returned by the Loader. */
+	protected abstract SS createSample(double[][] columns, int index);
+
+	/** Returns true if the samples of this signal have been read. */
+	public boolean isLoaded() { return samples != null; }
+
+	private MutableSignal<SS> getSamples()
+	{
+		MutableSignal<SS> s = samples;
+		if (s == null) s = setColumns(readColumns());
+		return s;
+	}
+
+	private double[][] readColumns()
+	{
+		try
+		{
+			return loader.read();
+		} catch (IOException e)
+		{
+			System.out.println("Error reading signal " + getFullName() + ": " + e.getMessage());
+			return null;
+		}
+	}
+
+	private MutableSignal<SS> setColumns(double[][] columns)
+	{
+		synchronized (storeLock)
+		{
+			if (samples != null) return samples;
+			MutableSignal<SS> s = createStorage();
+			if (columns != null)
+			{
+				double[] time = columns[0];
+				for(int i=0; i<time.length; i++)
+				{
+					// the first sample wins if a time repeats
+					if (i > 0 && !(time[i] > time[i-1]) && s.getSample(time[i]) != null) continue;
+					s.addSample(time[i], createSample(columns, i));
+				}
+			}
+			samples = s;
+			return s;
+		}
+	}
+
+	public SS getSample(double time) { return getSamples().getSample(time); }
+
+	public void addSample(double time, SS sample) { getSamples().addSample(time, sample); }
+
+	public void replaceSample(double time, SS sample) { getSamples().replaceSample(time, sample); }
+
+	public Signal.View<SS> getExactView() { return getSamples().getExactView(); }
+
+	public Signal.View<RangeSample<SS>> getRasterView(double t0, double t1, int numPixels)
+	{
+		return getSamples().getRasterView(t0, t1, numPixels);
+	}
+
+	public boolean isEmpty() { return minTime > maxTime || getSamples().isEmpty(); }
+
+	public double getMinTime() { return samples != null ? samples.getMinTime() : minTime; }
+
+	public double getMaxTime() { return samples != null ? samples.getMaxTime() : maxTime; }
+
+	public double getMinValue() { return getSamples().getMinValue(); }
+
+	public double getMaxValue() { return getSamples().getMaxValue(); }
+
+	/**
+	 * Method to read the samples of the given signals, and of their bus members and sweeps,
+	 * which have not been read yet.  The columns are read in parallel.
+	 * @param signals the signals about to be shown.
+	 */
+	public static void loadAll(Collection<? extends Signal<?>> signals)
+	{
+		Set<LazySignal<?>> unloaded = new LinkedHashSet<LazySignal<?>>();
+		for(Signal<?> sig : signals) gatherUnloaded(sig, unloaded);
+		List<LazySignal<?>> toLoad = new ArrayList<LazySignal<?>>(unloaded);
+		if (toLoad.size() <= 1)
+		{
+			for(LazySignal<?> ls : toLoad) ls.getSamples();
+			return;
+		}
+
+		int numThreads = Math.min(toLoad.size(), Runtime.getRuntime().availableProcessors());
+		ExecutorService pool = Executors.newFixedThreadPool(numThreads);
+		try
+		{
+			List<Future<double[][]>> columns = new ArrayList<Future<double[][]>>();
+			for(final LazySignal<?> ls : toLoad)
+			{
+				columns.add(pool.submit(new Callable<double[][]>()
+				{
+					public double[][] call() { return ls.readColumns(); }
+				}));
+			}
+			// store in order, so the page storage sees one signal at a time
+			for(int i=0; i<toLoad.size(); i++)
+				toLoad.get(i).setColumns(columns.get(i).get());
+		} catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e)
+		{
+			throw new RuntimeException(e.getCause());
+		} finally
+		{
+			pool.shutdown();
+		}
+	}
+
+	private static void gatherUnloaded(Signal<?> sig, Set<LazySignal<?>> toLoad)
+	{
+		if (sig instanceof LazySignal && !((LazySignal<?>)sig).isLoaded())
+			toLoad.add((LazySignal<?>)sig);
+		Signal<?>[] members = sig.getBusMembers();
+		if (members != null)
+			for(Signal<?> m : members) gatherUnloaded(m, toLoad);
+		members = sig.getSweepMembers();
+		if (members != null)
+			for(Signal<?> m : members) gatherUnloaded(m, toLoad);
+	}
+}
@@ -0,0 +1,211 @@
+/* -*- tab-width: 4 -*-
+ *
+ * Electric(tm) VLSI Design System
+ *
+ * File: MinMaxPyramid.java
+ *
+ * Copyright (c) 2012, Static Free Software. All rights reserved.
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sun.electric.tool.simulation;
+
+import java.util.Arrays;
+
+/**
+ * A level-of-detail summary of the values of a signal, used to draw raster views.
+ * The samples, in time order, are grouped into blocks of BLOCK_SIZE; level 0 holds the
+ * minimum and maximum of each block, and each higher level holds the minimum and maximum
+ * of pairs of blocks of the level below.  Samples must be added in increasing time order.
+ * Only the blocks are kept: the samples themselves stay in the signal's tree.
+ *
+ * A range query covers the blocks that lie entirely inside the range with aligned blocks
+ * of the levels, at most two per level, and asks the caller for the samples of the partial
+ * blocks at either end.  The answer is exact.
+ */
+class MinMaxPyramid
+{
+	/** the log of the number of samples in a block of level 0 */
+	private static final int BLOCK_SHIFT = 4;
+	/** the number of samples in a block of level 0 */
+	static final int BLOCK_SIZE = 1 << BLOCK_SHIFT;
+
+	/**
+	 * Finds the range of values of the samples between two times, inclusive.
+	 * A pyramid uses it for the samples that are not in whole blocks of a range.
+	 */
+	interface SampleRanges
+	{
+		/**
+		 * @param result filled with the minimum and maximum value.
+		 * @return false if there are no samples between the two times.
+		 */
+		boolean getRange(double t0, double t1, double[] result);
+	}
+
+	/** the time of the first and last sample of each block */
+	private double[] blockStarts = new double[16];
+	private double[] blockEnds = new double[16];
+	/** the minimum and maximum of each block, by level */
+	private double[][] mins = new double[][] { new double[16] };
+	private double[][] maxs = new double[][] { new double[16] };
+	private int numSamples;
+	private double lastTime = Double.NEGATIVE_INFINITY;
+
+	/** Returns the number of samples in this pyramid. */
+	synchronized int size() { return numSamples; }
+
+	/** Returns the time of the last sample in this pyramid. */
+	synchronized double getLastTime() { return lastTime; }
+
+	/**
+	 * Method to add a sample after all of the others.
+	 * @param time the time of the sample, which must be greater than that of all previous samples.
+	 * @param min the smallest value of the sample.
+	 * @param max the largest value of the sample.
+	 */
+	synchronized void add(double time, double min, double max)
+	{
+		if (!(time > lastTime)) throw new IllegalArgumentException("samples out of order");
+		lastTime = time;
+		int index = numSamples++;
+		int block = index >> BLOCK_SHIFT;
+		if (block == blockStarts.length)
+		{
+			blockStarts = Arrays.copyOf(blockStarts, block*2);
+			blockEnds = Arrays.copyOf(blockEnds, block*2);
+		}
+		if ((index & (BLOCK_SIZE-1)) == 0) blockStarts[block] = time;
+		blockEnds[block] = time;
+
+		for(int level=0; level<mins.length; level++, block >>= 1)
+		{
+			if (block == mins[level].length)
+			{
+				mins[level] = Arrays.copyOf(mins[level], block*2);
+				maxs[level] = Arrays.copyOf(maxs[level], block*2);
+			}
+			boolean first = (index & ((BLOCK_SIZE << level) - 1)) == 0;
+			mins[level][block] = first ? min : Math.min(mins[level][block], min);
+			maxs[level][block] = first ? max : Math.max(maxs[level][block], max);
+		}
+
+		// start a new level once the top one has more than two blocks
+		int top = mins.length - 1;
+		int topBlocks = ((numSamples - 1) >> (BLOCK_SHIFT + top)) + 1;
+		if (topBlocks > 2)
+		{
+			int n = (topBlocks + 1) / 2;
+			double[] newMins = new double[Math.max(n, 16)];
+			double[] newMaxs = new double[newMins.length];
+			for(int i=0; i<n; i++)
+			{
+				int j = Math.min(i*2+1, topBlocks-1);
+				newMins[i] = Math.min(mins[top][i*2], mins[top][j]);
+				newMaxs[i] = Math.max(maxs[top][i*2], maxs[top][j]);
+			}
+			mins = Arrays.copyOf(mins, top+2);
+			maxs = Arrays.copyOf(maxs, top+2);
+			mins[top+1] = newMins;
+			maxs[top+1] = newMaxs;
+		}
+	}
+
+	/**
+	 * Method to return the number of whole blocks of samples between two times.
+	 * Raster views use the pyramid only when this is large enough to be worth it.
+	 */
+	synchronized int getNumBlocks(double t0, double t1)
+	{
+		int first = firstBlockAtOrAfter(Math.min(t0, t1));
+		int last = lastBlockAtOrBefore(Math.max(t0, t1));
+		return last < first ? 0 : last - first + 1;
+	}
+
+	/**
+	 * Method to find the range of values of the samples between two times, inclusive.
+	 * @param t0 the start of the range.
+	 * @param t1 the end of the range.
+	 * @param result filled with the minimum and maximum value.
+	 * @param edges finds the range of the samples of the partial blocks at either end.
+	 * @return false if there are no whole blocks between the two times.
+	 */
+	synchronized boolean getRange(double t0, double t1, double[] result, SampleRanges edges)
+	{
+		double tLo = Math.min(t0, t1), tHi = Math.max(t0, t1);
+		int b0 = firstBlockAtOrAfter(tLo);
+		int b1 = lastBlockAtOrBefore(tHi);
+		if (b1 < b0) return false;
+		double min = Double.POSITIVE_INFINITY, max = Double.NEGATIVE_INFINITY;
+
+		// the samples of the partial blocks at either end
+		if (b0 > 0 && blockEnds[b0-1] >= tLo && edges.getRange(tLo, blockEnds[b0-1], result))
+		{
+			min = result[0];
+			max = result[1];
+		}
+		if (b1 < getNumBlocks()-1 && blockStarts[b1+1] <= tHi && edges.getRange(blockStarts[b1+1], tHi, result))
+		{
+			min = Math.min(min, result[0]);
+			max = Math.max(max, result[1]);
+		}
+
+		// the whole blocks in between, taking unpaired blocks at each level before moving up
+		for(int level=0; b0 <= b1; level++, b0 >>= 1, b1 >>= 1)
+		{
+			if (level == mins.length-1)
+			{
+				for(int b = b0; b <= b1; b++)
+				{
+					min = Math.min(min, mins[level][b]);
+					max = Math.max(max, maxs[level][b]);
+				}
+				break;
+			}
+			if ((b0 & 1) != 0)
+			{
+				min = Math.min(min, mins[level][b0]);
+				max = Math.max(max, maxs[level][b0]);
+				b0++;
+			}
+			if ((b1 & 1) == 0 && b1 >= b0)
+			{
+				min = Math.min(min, mins[level][b1]);
+				max = Math.max(max, maxs[level][b1]);
+				b1--;
+			}
+			if (b1 < b0) break;
+		}
+		result[0] = min;
+		result[1] = max;
+		return true;
+	}
+
+	/** Returns the number of blocks of level 0, the last of which may not be full. */
+	private int getNumBlocks() { return (numSamples + BLOCK_SIZE - 1) >> BLOCK_SHIFT; }
+
+	/** Returns the index of the first block that starts at or after the given time. */
+	private int firstBlockAtOrAfter(double time)
+	{
+		int i = Arrays.binarySearch(blockStarts, 0, getNumBlocks(), time);
+		return i < 0 ? -i - 1 : i;
+	}
+
+	/** Returns the index of the last block that ends at or before the given time (-1 if there is none). */
+	private int lastBlockAtOrBefore(double time)
+	{
+		int i = Arrays.binarySearch(blockEnds, 0, getNumBlocks(), time);
+		return i < 0 ? -i - 2 : i;
+	}
+}
@@ -129,6 +129,12 @@ public class ScalarSample implements Sample, Comparable<Object>
         }
     };
 
+    private static final BTreeSignal.PyramidSampleFactory<ScalarSample> pyramidSamples =
+        new BTreeSignal.PyramidSampleFactory<ScalarSample>()
+    {
+        public ScalarSample createSample(double value) { return new ScalarSample(value); }
+    };
+
     public static void plotSig(MutableSignal<?> sig, Panel panel, Graphics g, WaveSignal ws, Color light,
         List<PolyBase> forPs, Rectangle2D bounds, List<WaveSelection> selectedObjects, Signal<?> xAxisSignal)
     {
@@ -229,7 +235,7 @@ public class ScalarSample implements Sample, Comparable<Object>
     	 *  instanceof checks.
     	 */
         MutableSignal<ScalarSample> ret =
-            new BTreeSignal<ScalarSample>(sc, sd, signalName, signalContext, false, BTreeSignal.getTree(unboxer, latticeOp, sd))
+            new BTreeSignal<ScalarSample>(sc, sd, signalName, signalContext, false, BTreeSignal.getTree(unboxer, latticeOp, sd), pyramidSamples)
         {
             public void plot(Panel panel, Graphics g, WaveSignal ws, Color light, List<PolyBase> forPs,
             	Rectangle2D bounds, List<WaveSelection> selectedObjects, Signal<?> xAxisSignal)
@@ -250,4 +256,27 @@ public class ScalarSample implements Sample, Comparable<Object>
                 as.addSample(time[i], new ScalarSample(values[i]));
 		return as;
 	}
+
+	/**
+	 * Method to create a signal whose samples are read from a file when they are first needed.
+	 * The loader returns the times and the values of the signal.
+	 * @param minTime the smallest time of the signal, known without reading it.
+	 * @param maxTime the largest time of the signal, known without reading it.
+	 */
+	public static MutableSignal<ScalarSample> createSignal(SignalCollection sc, final Stimuli sd, final String signalName,
+		final String signalContext, double minTime, double maxTime, LazySignal.Loader loader)
+	{
+		return new LazySignal<ScalarSample>(sc, sd, signalName, signalContext, false, minTime, maxTime, loader)
+		{
+			protected MutableSignal<ScalarSample> createStorage() { return createSignal(null, sd, signalName, signalContext); }
+
+			protected ScalarSample createSample(double[][] columns, int index) { return new ScalarSample(columns[1][index]); }
+
+			public void plot(Panel panel, Graphics g, WaveSignal ws, Color light, List<PolyBase> forPs,
+				Rectangle2D bounds, List<WaveSelection> selectedObjects, Signal<?> xAxisSignal)
+			{
+				plotSig(this, panel, g, ws, light, forPs, bounds, selectedObjects, xAxisSignal);
+			}
+		};
+	}
 }
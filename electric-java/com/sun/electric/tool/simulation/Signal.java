@@ -90,6 +90,9 @@ public abstract class Signal<SS extends Sample>
 	/** method to return the sub-signals in this bus (null if not a bus) */
     public Signal<?>[] getBusMembers() { return null; }
 
+	/** method to return the signals of the individual sweeps (null if not swept) */
+    public Signal<?>[] getSweepMembers() { return null; }
+
 	/** The name of this simulation signal, not including hierarchical path information */
 	public final String getSignalName() { return signalName; }
 
@@ -23,7 +23,7 @@ package com.sun.electric.tool.simulation;
 
 import com.sun.electric.database.geometry.btree.CachingPageStorage;
 import com.sun.electric.database.geometry.btree.CachingPageStorageWrapper;
-import com.sun.electric.database.geometry.btree.FilePageStorage;
+import com.sun.electric.database.geometry.btree.MappedPageStorage;
 import com.sun.electric.database.geometry.btree.MemoryPageStorage;
 import com.sun.electric.database.geometry.btree.OverflowPageStorage;
 import com.sun.electric.database.geometry.btree.PageStorage;
@@ -84,7 +84,7 @@ public class Stimuli
 		try
 		{
 			long highWaterMarkInBytes = 50 * 1024 * 1024;
-			PageStorage fps = FilePageStorage.create();
+			PageStorage fps = MappedPageStorage.createMapped(MappedPageStorage.DEFAULT_PAGE_SIZE);
 			PageStorage ops = new OverflowPageStorage(new MemoryPageStorage(fps.getPageSize()), fps, highWaterMarkInBytes);
 			ps = new CachingPageStorageWrapper(ops, 16 * 1024, false);
 		} catch (Exception e) {
@@ -173,6 +173,8 @@ public class SweptSample<S extends Sample> implements Sample
         {
             public boolean isEmpty() { for(Signal<SS> sig : subsignals) if (!sig.isEmpty()) return false; return true; }
 
+            public Signal<?>[] getSweepMembers() { return subsignals; }
+
             public Signal.View<RangeSample<SweptSample<SS>>> getRasterView(final double t0, final double t1, final int numPixels)
             {
                 final Signal.View<RangeSample<SS>>[] subviews = new Signal.View[subsignals.length];
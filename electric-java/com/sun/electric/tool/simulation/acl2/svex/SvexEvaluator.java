@@ -0,0 +1,797 @@
+/* -*- tab-width: 4 -*-
+ *
+ * Electric(tm) VLSI Design System
+ *
+ * File: SvexEvaluator.java
+ *
+ * Copyright (c) 2017, Static Free Software. All rights reserved.
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sun.electric.tool.simulation.acl2.svex;
+
+import com.sun.electric.tool.simulation.acl2.svex.funs.*;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A list of Svex expressions compiled for repeated evaluation.
+ * The expressions are toposorted into a flat array of instructions over slot indices:
+ * first the variables, then the constants, then one slot per function call.
+ * A slot keeps its 4vec as a pair of longs while both the upper and the lower integer
+ * fit into 64 bits, and as a Vec4 otherwise.
+ * Functions with a 64-bit implementation fall back to SvexFunction.apply
+ * when an argument or the result doesn't fit.
+ * An evaluator is not thread-safe.
+ *
+ * @param <N> Type of name of Svex variables
+ */
+public class SvexEvaluator<N extends SvarName>
+{
+    private static final int OP_GENERIC = 0;
+    private static final int OP_FIX = 1;
+    private static final int OP_FIX3 = 2;
+    private static final int OP_BITNOT = 3;
+    private static final int OP_BITAND = 4;
+    private static final int OP_BITOR = 5;
+    private static final int OP_BITXOR = 6;
+    private static final int OP_RES = 7;
+    private static final int OP_RESAND = 8;
+    private static final int OP_RESOR = 9;
+    private static final int OP_OVERRIDE = 10;
+    private static final int OP_ONSET = 11;
+    private static final int OP_OFFSET = 12;
+    private static final int OP_REDUCTION_AND = 13;
+    private static final int OP_REDUCTION_OR = 14;
+    private static final int OP_PARITY = 15;
+    private static final int OP_XDET = 16;
+    private static final int OP_ZERO_EXT = 17;
+    private static final int OP_SIGN_EXT = 18;
+    private static final int OP_CONCAT = 19;
+    private static final int OP_RSH = 20;
+    private static final int OP_LSH = 21;
+    private static final int OP_PLUS = 22;
+    private static final int OP_MINUS = 23;
+    private static final int OP_UMINUS = 24;
+    private static final int OP_LT = 25;
+    private static final int OP_EQUALITY = 26;
+    private static final int OP_CASE_EQUALITY = 27;
+    private static final int OP_ITE = 28;
+    private static final int OP_ITE_STMT = 29;
+    private static final int OP_ITE_BIT = 30;
+    private static final int OP_BIT_EXTRACT = 31;
+    private static final int OP_PART_SELECT = 32;
+
+    private static final Map<SvexFunction, Integer> OPCODES = new HashMap<>();
+
+    static
+    {
+        op(Vec4Fix.FUNCTION, OP_FIX);
+        op(Vec3Fix.FUNCTION, OP_FIX3);
+        op(Vec4Bitnot.FUNCTION, OP_BITNOT);
+        op(Vec4Bitand.FUNCTION, OP_BITAND);
+        op(Vec4Bitor.FUNCTION, OP_BITOR);
+        op(Vec4Bitxor.FUNCTION, OP_BITXOR);
+        op(Vec4Res.FUNCTION, OP_RES);
+        op(Vec4Resand.FUNCTION, OP_RESAND);
+        op(Vec4Resor.FUNCTION, OP_RESOR);
+        op(Vec4Override.FUNCTION, OP_OVERRIDE);
+        op(Vec4Onset.FUNCTION, OP_ONSET);
+        op(Vec4Offset.FUNCTION, OP_OFFSET);
+        op(Vec4ReductionAnd.FUNCTION, OP_REDUCTION_AND);
+        op(Vec4ReductionOr.FUNCTION, OP_REDUCTION_OR);
+        op(Vec4Parity.FUNCTION, OP_PARITY);
+        op(Vec4Xdet.FUNCTION, OP_XDET);
+        op(Vec4ZeroExt.FUNCTION, OP_ZERO_EXT);
+        op(Vec4SignExt.FUNCTION, OP_SIGN_EXT);
+        op(Vec4Concat.FUNCTION, OP_CONCAT);
+        op(Vec4Rsh.FUNCTION, OP_RSH);
+        op(Vec4Lsh.FUNCTION, OP_LSH);
+        op(Vec4Plus.FUNCTION, OP_PLUS);
+        op(Vec4Minus.FUNCTION, OP_MINUS);
+        op(Vec4Uminus.FUNCTION, OP_UMINUS);
+        op(Vec4Lt.FUNCTION, OP_LT);
+        op(Vec4Equality.FUNCTION, OP_EQUALITY);
+        op(Vec4CaseEquality.FUNCTION, OP_CASE_EQUALITY);
+        op(Vec4Ite.FUNCTION, OP_ITE);
+        op(Vec4IteStmt.FUNCTION, OP_ITE_STMT);
+        op(Vec4IteBit.FUNCTION, OP_ITE_BIT);
+        op(Vec4BitExtract.FUNCTION, OP_BIT_EXTRACT);
+        op(Vec4PartSelect.FUNCTION, OP_PART_SELECT);
+    }
+
+    private static void op(SvexFunction fun, int opcode)
+    {
+        Integer old = OPCODES.put(fun, opcode);
+        assert old == null;
+    }
+
+    private final List<Svar<N>> vars;
+    private final Map<Svar<N>, Integer> varIndices = new HashMap<>();
+    private final int firstCall;
+    private final int numSlots;
+    private final SvexFunction[] funs;
+    /* opcode and argument slots of each call */
+    private final int[] code;
+    private final int[] resultSlots;
+
+    private final long[] upper;
+    private final long[] lower;
+    /* values that don't fit in 64 bits, or null */
+    private final Vec4[] big;
+
+    public SvexEvaluator(Collection<Svex<N>> list)
+    {
+        Svex<N>[] topDown = Svex.listToposort(list);
+        List<Svar<N>> varList = new ArrayList<>();
+        List<SvexQuote<N>> consts = new ArrayList<>();
+        List<SvexCall<N>> calls = new ArrayList<>();
+        for (int i = topDown.length - 1; i >= 0; i--)
+        {
+            Svex<N> svex = topDown[i];
+            if (svex instanceof SvexVar)
+            {
+                Svar<N> svar = ((SvexVar<N>)svex).svar;
+                if (!varIndices.containsKey(svar))
+                {
+                    varIndices.put(svar, varList.size());
+                    varList.add(svar);
+                }
+            } else if (svex instanceof SvexQuote)
+            {
+                consts.add((SvexQuote<N>)svex);
+            } else
+            {
+                calls.add((SvexCall<N>)svex);
+            }
+        }
+        vars = Collections.unmodifiableList(varList);
+        int firstConst = varList.size();
+        firstCall = firstConst + consts.size();
+        numSlots = firstCall + calls.size();
+
+        upper = new long[numSlots];
+        lower = new long[numSlots];
+        big = new Vec4[numSlots];
+        Map<Svex<N>, Integer> slots = new HashMap<>();
+        for (int i = 0; i < firstConst; i++)
+        {
+            set(i, Vec4.X);
+        }
+        for (int i = 0; i < consts.size(); i++)
+        {
+            SvexQuote<N> sq = consts.get(i);
+            slots.put(sq, firstConst + i);
+            set(firstConst + i, sq.val);
+        }
+        for (int i = 0; i < calls.size(); i++)
+        {
+            slots.put(calls.get(i), firstCall + i);
+        }
+
+        funs = new SvexFunction[calls.size()];
+        int codeSize = 0;
+        for (SvexCall<N> call : calls)
+        {
+            codeSize += 1 + call.args.length;
+        }
+        code = new int[codeSize];
+        int pc = 0;
+        for (int i = 0; i < calls.size(); i++)
+        {
+            SvexCall<N> call = calls.get(i);
+            funs[i] = call.fun;
+            Integer opcode = OPCODES.get(call.fun);
+            code[pc++] = opcode != null ? opcode : OP_GENERIC;
+            for (Svex<N> arg : call.args)
+            {
+                code[pc++] = slot(arg, slots);
+            }
+        }
+        assert pc == code.length;
+
+        resultSlots = new int[list.size()];
+        int i = 0;
+        for (Svex<N> svex : list)
+        {
+            resultSlots[i++] = slot(svex, slots);
+        }
+    }
+
+    private int slot(Svex<N> svex, Map<Svex<N>, Integer> slots)
+    {
+        if (svex instanceof SvexVar)
+        {
+            return varIndices.get(((SvexVar<N>)svex).svar);
+        }
+        return slots.get(svex);
+    }
+
+    public List<Svar<N>> getVars()
+    {
+        return vars;
+    }
+
+    /**
+     * Returns the index of a variable of the expressions.
+     * @param svar a variable
+     * @return its index in getVars(), or -1 if the expressions don't depend on it
+     */
+    public int getVarIndex(Svar<N> svar)
+    {
+        Integer varIndex = varIndices.get(svar);
+        return varIndex != null ? varIndex : -1;
+    }
+
+    public int getNumResults()
+    {
+        return resultSlots.length;
+    }
+
+    public void setVar(int varIndex, Vec4 val)
+    {
+        checkVarIndex(varIndex);
+        set(varIndex, val);
+    }
+
+    public void setVar(int varIndex, long upper, long lower)
+    {
+        checkVarIndex(varIndex);
+        set(varIndex, upper, lower);
+    }
+
+    /**
+     * Sets a variable to a result of the last evaluation, for example
+     * a delayed variable to the next state of a register.
+     * @param varIndex index of the variable
+     * @param resultIndex index of the result
+     */
+    public void copyResultToVar(int resultIndex, int varIndex)
+    {
+        checkVarIndex(varIndex);
+        copy(varIndex, resultSlots[resultIndex]);
+    }
+
+    private void checkVarIndex(int varIndex)
+    {
+        if (varIndex < 0 || varIndex >= vars.size())
+        {
+            throw new IndexOutOfBoundsException();
+        }
+    }
+
+    public Vec4 getResult(int resultIndex)
+    {
+        return get(resultSlots[resultIndex]);
+    }
+
+    /**
+     * Evaluates the expressions like Svex.eval does.
+     * @param env values of variables, missing variables are X
+     * @return values of the expressions
+     */
+    public Vec4[] eval(Map<Svar<N>, Vec4> env)
+    {
+        for (int i = 0; i < vars.size(); i++)
+        {
+            Vec4 val = env.get(vars.get(i));
+            set(i, val != null ? val : Vec4.X);
+        }
+        eval();
+        Vec4[] result = new Vec4[resultSlots.length];
+        for (int i = 0; i < result.length; i++)
+        {
+            result[i] = getResult(i);
+        }
+        return result;
+    }
+
+    /**
+     * Evaluates the expressions with the current values of variables.
+     */
+    public void eval()
+    {
+        int pc = 0;
+        for (int i = 0; i < funs.length; i++)
+        {
+            int dst = firstCall + i;
+            int arity = funs[i].arity;
+            if (!evalLong(code[pc], dst, pc + 1, arity))
+            {
+                evalGeneric(funs[i], dst, pc + 1, arity);
+            }
+            pc += 1 + arity;
+        }
+    }
+
+    private void evalGeneric(SvexFunction fun, int dst, int argPc, int arity)
+    {
+        Vec4[] args = new Vec4[arity];
+        for (int k = 0; k < arity; k++)
+        {
+            args[k] = get(code[argPc + k]);
+        }
+        set(dst, fun.apply(args));
+    }
+
+    /**
+     * Evaluates an instruction on longs.
+     * @return false if it must be evaluated on BigIntegers
+     */
+    private boolean evalLong(int op, int dst, int argPc, int arity)
+    {
+        if (op == OP_GENERIC)
+        {
+            return false;
+        }
+        for (int k = 0; k < arity; k++)
+        {
+            if (big[code[argPc + k]] != null)
+            {
+                return false;
+            }
+        }
+        int a0 = code[argPc];
+        int a1 = arity > 1 ? code[argPc + 1] : a0;
+        int a2 = arity > 2 ? code[argPc + 2] : a0;
+        long u0 = upper[a0], l0 = lower[a0];
+        long u1 = upper[a1], l1 = lower[a1];
+        long u2 = upper[a2], l2 = lower[a2];
+        switch (op)
+        {
+            case OP_FIX:
+                set(dst, u0, l0);
+                return true;
+            case OP_FIX3:
+                set(dst, u0 | l0, u0 & l0);
+                return true;
+            case OP_BITNOT:
+                set(dst, ~(u0 & l0), ~(u0 | l0));
+                return true;
+            case OP_BITAND:
+                set(dst, (u0 | l0) & (u1 | l1), (u0 & l0) & (u1 & l1));
+                return true;
+            case OP_BITOR:
+                set(dst, (u0 | l0) | (u1 | l1), (u0 & l0) | (u1 & l1));
+                return true;
+            case OP_BITXOR:
+            {
+                long xmask = (u0 ^ l0) | (u1 ^ l1);
+                set(dst, (u0 ^ u1) | xmask, (l0 ^ l1) & ~xmask);
+                return true;
+            }
+            case OP_RES:
+                set(dst, u0 | u1, l0 & l1);
+                return true;
+            case OP_RESAND:
+                set(dst, (u0 | l0) & (u1 | l1) & (u0 | u1), l0 & l1);
+                return true;
+            case OP_RESOR:
+                set(dst, u0 | u1, (u0 & l0) | (u1 & l1) | (l0 & l1));
+                return true;
+            case OP_OVERRIDE:
+                set(dst, (l0 & u1) | u0, (u0 | l1) & l0);
+                return true;
+            case OP_ONSET:
+                set(dst, u0, u0 & l0);
+                return true;
+            case OP_OFFSET:
+                set(dst, ~l0, ~(u0 | l0));
+                return true;
+            case OP_REDUCTION_AND:
+            {
+                long fu = u0 | l0, fl = u0 & l0;
+                if (fu == fl)
+                {
+                    setBool(dst, fu == -1);
+                } else if (fu == -1)
+                {
+                    setX(dst);
+                } else
+                {
+                    set(dst, 0, 0);
+                }
+                return true;
+            }
+            case OP_REDUCTION_OR:
+            {
+                long fu = u0 | l0, fl = u0 & l0;
+                if (fu == fl)
+                {
+                    setBool(dst, fu != 0);
+                } else if (fl == 0)
+                {
+                    setX(dst);
+                } else
+                {
+                    set(dst, 1, 1);
+                }
+                return true;
+            }
+            case OP_PARITY:
+                if (u0 == l0 && u0 >= 0)
+                {
+                    setBool(dst, (Long.bitCount(u0) & 1) != 0);
+                } else
+                {
+                    setX(dst);
+                }
+                return true;
+            case OP_XDET:
+                if (u0 == l0)
+                {
+                    set(dst, u0, l0);
+                } else
+                {
+                    setX(dst);
+                }
+                return true;
+            case OP_ZERO_EXT:
+            {
+                if (u0 != l0)
+                {
+                    setX(dst);
+                    return true;
+                }
+                if (u0 < 0)
+                {
+                    if (u0 < Integer.MIN_VALUE)
+                    {
+                        return false;
+                    }
+                    setX(dst);
+                    return true;
+                }
+                if (u0 >= Vec4.BIT_LIMIT || !logheadFits(u0, u1) || !logheadFits(u0, l1))
+                {
+                    return false;
+                }
+                int w = (int)u0;
+                set(dst, loghead(w, u1), loghead(w, l1));
+                return true;
+            }
+            case OP_SIGN_EXT:
+            {
+                if (u0 != l0)
+                {
+                    setX(dst);
+                    return true;
+                }
+                if (u0 <= 0)
+                {
+                    if (u0 < Integer.MIN_VALUE)
+                    {
+                        return false;
+                    }
+                    setX(dst);
+                    return true;
+                }
+                if (u0 >= Vec4.BIT_LIMIT)
+                {
+                    return false;
+                }
+                if (u0 >= Long.SIZE)
+                {
+                    set(dst, u1, l1);
+                } else
+                {
+                    int sh = Long.SIZE - (int)u0;
+                    set(dst, (u1 << sh) >> sh, (l1 << sh) >> sh);
+                }
+                return true;
+            }
+            case OP_CONCAT:
+            {
+                if (u0 != l0)
+                {
+                    setX(dst);
+                    return true;
+                }
+                if (u0 < 0)
+                {
+                    if (u0 < Integer.MIN_VALUE)
+                    {
+                        return false;
+                    }
+                    setX(dst);
+                    return true;
+                }
+                if (u0 >= Long.SIZE)
+                {
+                    if (u0 > Integer.MAX_VALUE || u1 < 0 || l1 < 0 || u2 != 0 || l2 != 0)
+                    {
+                        return false;
+                    }
+                    set(dst, u1, l1);
+                    return true;
+                }
+                int w = (int)u0;
+                long hu = u2 << w;
+                long hl = l2 << w;
+                if ((hu >> w) != u2 || (hl >> w) != l2)
+                {
+                    return false;
+                }
+                set(dst, loghead(w, u1) | hu, loghead(w, l1) | hl);
+                return true;
+            }
+            case OP_RSH:
+            case OP_LSH:
+            {
+                if (u0 != l0)
+                {
+                    setX(dst);
+                    return true;
+                }
+                if (u0 < Integer.MIN_VALUE || u0 > Integer.MAX_VALUE
+                    || op == OP_RSH && u0 == Integer.MIN_VALUE)
+                {
+                    return false;
+                }
+                long amt = op == OP_RSH ? -u0 : u0;
+                if (amt <= 0)
+                {
+                    int sh = (int)Math.min(-amt, Long.SIZE - 1);
+                    set(dst, u1 >> sh, l1 >> sh);
+                    return true;
+                }
+                if (u1 == 0 && l1 == 0)
+                {
+                    set(dst, 0, 0);
+                    return true;
+                }
+                if (amt >= Long.SIZE)
+                {
+                    return false;
+                }
+                int sh = (int)amt;
+                long su = u1 << sh;
+                long sl = l1 << sh;
+                if ((su >> sh) != u1 || (sl >> sh) != l1)
+                {
+                    return false;
+                }
+                set(dst, su, sl);
+                return true;
+            }
+            case OP_PLUS:
+            {
+                if (u0 != l0 || u1 != l1)
+                {
+                    setX(dst);
+                    return true;
+                }
+                long r = u0 + u1;
+                if (((u0 ^ r) & (u1 ^ r)) < 0)
+                {
+                    return false;
+                }
+                set(dst, r, r);
+                return true;
+            }
+            case OP_MINUS:
+            {
+                if (u0 != l0 || u1 != l1)
+                {
+                    setX(dst);
+                    return true;
+                }
+                long r = u0 - u1;
+                if (((u0 ^ u1) & (u0 ^ r)) < 0)
+                {
+                    return false;
+                }
+                set(dst, r, r);
+                return true;
+            }
+            case OP_UMINUS:
+                if (u0 != l0)
+                {
+                    setX(dst);
+                    return true;
+                }
+                if (u0 == Long.MIN_VALUE)
+                {
+                    return false;
+                }
+                set(dst, -u0, -u0);
+                return true;
+            case OP_LT:
+                if (u0 != l0 || u1 != l1)
+                {
+                    setX(dst);
+                } else
+                {
+                    setBool(dst, u0 < u1);
+                }
+                return true;
+            case OP_EQUALITY:
+            {
+                if (u0 == l0 && u1 == l1)
+                {
+                    setBool(dst, u0 == u1);
+                    return true;
+                }
+                long xmask = (u0 ^ l0) | (u1 ^ l1);
+                long u = ~((l0 ^ l1) & ~xmask);
+                long l = ~((u0 ^ u1) | xmask);
+                if (u == l)
+                {
+                    setBool(dst, u == -1);
+                } else if (u == -1)
+                {
+                    setX(dst);
+                } else
+                {
+                    set(dst, 0, 0);
+                }
+                return true;
+            }
+            case OP_CASE_EQUALITY:
+                setBool(dst, u0 == u1 && l0 == l1);
+                return true;
+            case OP_ITE:
+            case OP_ITE_STMT:
+            {
+                long tu = u0 | l0, tl = u0 & l0;
+                if (tu == tl)
+                {
+                    copy(dst, tu != 0 ? a1 : a2);
+                } else if (tu == 0)
+                {
+                    copy(dst, a2);
+                } else if (tl != 0)
+                {
+                    copy(dst, a1);
+                } else if (op == OP_ITE)
+                {
+                    set(dst, u1 | u2 | l1 | l2, u1 & u2 & l1 & l2);
+                } else
+                {
+                    set(dst, u1 | u2 | (l1 ^ l2), l1 & l2 & ~(u1 ^ u2));
+                }
+                return true;
+            }
+            case OP_ITE_BIT:
+            {
+                long tu = u0 | l0, tl = u0 & l0;
+                long tx = tu & ~tl;
+                set(dst,
+                    (u1 & tl) | (u2 & ~tu) | (tx & (u1 | l1 | u2 | l2)),
+                    (l1 & tl) | (l2 & ~tu) | (tx & u1 & l1 & u2 & l2));
+                return true;
+            }
+            case OP_BIT_EXTRACT:
+            {
+                if (u0 != l0)
+                {
+                    set(dst, 1, 0);
+                    return true;
+                }
+                if (u0 < Integer.MIN_VALUE || u0 > Integer.MAX_VALUE)
+                {
+                    return false;
+                }
+                if (u0 < 0)
+                {
+                    set(dst, 1, 0);
+                    return true;
+                }
+                int sh = (int)Math.min(u0, Long.SIZE - 1);
+                set(dst, (u1 >> sh) & 1, (l1 >> sh) & 1);
+                return true;
+            }
+            case OP_PART_SELECT:
+            {
+                if (u0 != l0 || u1 != l1)
+                {
+                    setX(dst);
+                    return true;
+                }
+                if (u0 < 0 || u0 > Integer.MAX_VALUE || u1 < Integer.MIN_VALUE || u1 > Integer.MAX_VALUE)
+                {
+                    return false;
+                }
+                if (u1 < 0)
+                {
+                    setX(dst);
+                    return true;
+                }
+                int sh = (int)Math.min(u0, Long.SIZE - 1);
+                long u = u2 >> sh;
+                long l = l2 >> sh;
+                if (!logheadFits(u1, u) || !logheadFits(u1, l))
+                {
+                    return false;
+                }
+                set(dst, loghead((int)u1, u), loghead((int)u1, l));
+                return true;
+            }
+            default:
+                return false;
+        }
+    }
+
+    private static boolean logheadFits(long w, long x)
+    {
+        return w < Long.SIZE || x >= 0;
+    }
+
+    private static long loghead(int w, long x)
+    {
+        return w >= Long.SIZE ? x : x & ((1L << w) - 1);
+    }
+
+    private void set(int slot, long u, long l)
+    {
+        upper[slot] = u;
+        lower[slot] = l;
+        big[slot] = null;
+    }
+
+    private void setBool(int slot, boolean b)
+    {
+        long v = b ? -1 : 0;
+        set(slot, v, v);
+    }
+
+    private void setX(int slot)
+    {
+        set(slot, -1, 0);
+    }
+
+    private void copy(int dst, int src)
+    {
+        upper[dst] = upper[src];
+        lower[dst] = lower[src];
+        big[dst] = big[src];
+    }
+
+    private void set(int slot, Vec4 val)
+    {
+        BigInteger u = val.getUpper();
+        BigInteger l = val.getLower();
+        if (u.bitLength() < Long.SIZE && l.bitLength() < Long.SIZE)
+        {
+            set(slot, u.longValue(), l.longValue());
+        } else
+        {
+            big[slot] = val;
+        }
+    }
+
+    private Vec4 get(int slot)
+    {
+        Vec4 val = big[slot];
+        if (val != null)
+        {
+            return val;
+        }
+        long u = upper[slot];
+        long l = lower[slot];
+        return u == l ? Vec2.valueOf(u) : Vec4.valueOf(BigInteger.valueOf(u), BigInteger.valueOf(l));
+    }
+
+    @Override
+    public String toString()
+    {
+        return "SvexEvaluator(" + vars.size() + " vars, " + (firstCall - vars.size()) + " consts, "
+            + funs.length + " calls, " + resultSlots.length + " results)";
+    }
+}
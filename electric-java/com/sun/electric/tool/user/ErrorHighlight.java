@@ -81,6 +81,14 @@ public abstract class ErrorHighlight implements Serializable {
 
     boolean containsObject(Cell cell, Object obj) { return false; }
 
+    /**
+     * Method to return a key that identifies the node or arc of this highlight.
+     * @return the key, or null if this highlight is not a node or arc.
+     */
+    String getObjectKey() { return null; }
+
+    String getObjectKey(char kind, int id) { return kind + String.valueOf(cellId) + ":" + id; }
+
     Object getObject(EDatabase database) { return null; }
 
     static String getImplementedXmlHeaders() { return "ERRORTYPEGEOM|ERRORTYPETHICKLINE|ERRORTYPELINE|ERRORTYPEPOINT|ERRORTYPEPOLY";}
@@ -461,6 +469,9 @@ class ErrorHighNode extends ErrorHighlight {
         return cell.getNodeById(nodeId);
     }
 
+    @Override
+    String getObjectKey() { return getObjectKey('N', nodeId); }
+
     public static void writeXmlHeader(String indent, PrintStream ps)
     {
         ps.println(indent + "<!ELEMENT ERRORTYPEGEOM ANY>");
@@ -523,6 +534,9 @@ class ErrorHighArc extends ErrorHighlight {
         return cell.getArcById(arcId);
     }
 
+    @Override
+    String getObjectKey() { return getObjectKey('A', arcId); }
+
     void writeXmlDescription(String tabs, PrintStream msg, EDatabase database)
     {
         ArcInst ai = (ArcInst)getObject(database);
@@ -212,6 +212,32 @@ public class ErrorLogger implements Serializable
             return (false);
         }
 
+        /**
+         * Method to return a key that identifies the problem reported by this log.
+         * Two logs about the same pair of nodes or arcs get the same key
+         * (the same test as findGeometries()), otherwise the message is part of the key.
+         * It is used to merge logs of checks that ran on overlapping regions.
+         * @param includeMessage true to always include the message in the key.
+         * @return the key of this log.
+         */
+        public String getProblemKey(boolean includeMessage)
+        {
+            List<String> objectKeys = new ArrayList<String>();
+            for (ErrorHighlight eh : highlights)
+            {
+                String key = eh.getObjectKey();
+                if (key != null) objectKeys.add(key);
+            }
+            Collections.sort(objectKeys);
+            StringBuilder sb = new StringBuilder();
+            sb.append(getClass().getSimpleName()).append('|').append(logCellId);
+            if (includeMessage || objectKeys.size() < 2)
+                sb.append('|').append(message);
+            for (String key : objectKeys)
+                sb.append('|').append(key);
+            return sb.toString();
+        }
+
         /**
          * Method to describe this error.
          */
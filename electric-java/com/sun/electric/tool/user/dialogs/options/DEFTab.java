@@ -59,6 +59,7 @@ public class DEFTab extends PreferencePanel
 		defIgnoreUngeneratedPins.setSelected(IOTool.isDEFIgnoreUngeneratedPins());
 		defIgnoreViasBlock.setSelected(IOTool.isDEFIgnoreViasBlock());
 		defConnectAllPins.setSelected(IOTool.isDEFPlaceAndConnectAllPins());
+		defIndexedImport.setSelected(IOTool.isDEFIndexedImport());
 		
 		defUnknownLayers.addItem("Ignore");
 		defUnknownLayers.addItem("Convert to DRC Exclusion layer");
@@ -110,6 +111,10 @@ public class DEFTab extends PreferencePanel
 		currentValue = defConnectAllPins.isSelected();
 		if (currentValue != IOTool.isDEFPlaceAndConnectAllPins())
 			IOTool.setDEFPlaceAndConnectAllPins(currentValue);
+
+		currentValue = defIndexedImport.isSelected();
+		if (currentValue != IOTool.isDEFIndexedImport())
+			IOTool.setDEFIndexedImport(currentValue);
 	}
 
 	/**
@@ -135,6 +140,8 @@ public class DEFTab extends PreferencePanel
 			IOTool.setDEFInUnknownLayerHandling(IOTool.getFactoryDEFInUnknownLayerHandling());
 		if (IOTool.isFactoryDEFPlaceAndConnectAllPins() != IOTool.isDEFPlaceAndConnectAllPins())
 			IOTool.setDEFPlaceAndConnectAllPins(IOTool.isFactoryDEFPlaceAndConnectAllPins());
+		if (IOTool.isFactoryDEFIndexedImport() != IOTool.isDEFIndexedImport())
+			IOTool.setDEFIndexedImport(IOTool.isFactoryDEFIndexedImport());
 	}
 
 	/** This method is called from within the constructor to
@@ -159,6 +166,7 @@ public class DEFTab extends PreferencePanel
         jLabel3 = new javax.swing.JLabel();
         defUnknownLayers = new javax.swing.JComboBox();
         defConnectAllPins = new javax.swing.JCheckBox();
+        defIndexedImport = new javax.swing.JCheckBox();
 
         setTitle("IO Options");
         setName(""); // NOI18N
@@ -272,6 +280,16 @@ public class DEFTab extends PreferencePanel
         gridBagConstraints.insets = new java.awt.Insets(4, 4, 4, 4);
         def.add(defConnectAllPins, gridBagConstraints);
 
+        defIndexedImport.setText("Indexed import for large designs");
+        gridBagConstraints = new java.awt.GridBagConstraints();
+        gridBagConstraints.gridx = 0;
+        gridBagConstraints.gridy = 10;
+        gridBagConstraints.gridwidth = 2;
+        gridBagConstraints.fill = java.awt.GridBagConstraints.HORIZONTAL;
+        gridBagConstraints.anchor = java.awt.GridBagConstraints.WEST;
+        gridBagConstraints.insets = new java.awt.Insets(4, 4, 4, 4);
+        def.add(defIndexedImport, gridBagConstraints);
+
         gridBagConstraints = new java.awt.GridBagConstraints();
         gridBagConstraints.gridwidth = 2;
         getContentPane().add(def, gridBagConstraints);
@@ -293,6 +311,7 @@ public class DEFTab extends PreferencePanel
     private javax.swing.JCheckBox defIgnorePhysInNets;
     private javax.swing.JCheckBox defIgnoreUngeneratedPins;
     private javax.swing.JCheckBox defIgnoreViasBlock;
+    private javax.swing.JCheckBox defIndexedImport;
     private javax.swing.JCheckBox defMakeDummyCells;
     private javax.swing.JCheckBox defPlaceLogical;
     private javax.swing.JCheckBox defPlacePhysical;
@@ -539,6 +539,7 @@ public class FileMenu {
         private Library lib;
         private HashSet<Library> newLibs;
         private EditingPreferences ep;
+        private boolean parallelRead;
 
 		public ReadLibrary(URL fileURL, FileType type, String cellName) {
             this(fileURL, type, null, null, null, cellName);
@@ -553,6 +554,7 @@ public class FileMenu {
 			this.deleteLib = deleteLib;
             this.saveTask = saveTask;
             this.cellName = cellName;
+            this.parallelRead = IOTool.isJELIBInParallel();
             //this.ep = getEditingPreferences();
             if (settingsDirectory != null) {
                 projsettings = new File(settingsDirectory, "projsettings.xml");
@@ -589,7 +591,7 @@ public class FileMenu {
             for (Iterator<Library> it = getDatabase().getLibraries(); it.hasNext(); )
                 oldLibs.add(it.next());
             Map<Setting,Object> projectSettings = new HashMap<Setting,Object>();
-            lib = LibraryFiles.readLibrary(getEditingPreferences(), fileURL, null, type, false, projectSettings);
+            lib = LibraryFiles.readLibrary(getEditingPreferences(), fileURL, null, type, false, projectSettings, parallelRead);
             if (lib == null)
             {
                 System.out.println("Error reading " + fileURL.getFile() + " as " + type + " format.");
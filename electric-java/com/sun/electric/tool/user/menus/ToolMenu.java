@@ -241,12 +241,12 @@ public class ToolMenu {
 				},
 				new EMenuItem("Check Area _Coverage") {
 					public void run() {
-						LayerCoverageTool.layerCoverageCommand(WindowFrame.needCurCell(), GeometryHandler.GHMode.ALGO_SWEEP,
+						LayerCoverageTool.layerCoverageCommand(WindowFrame.needCurCell(), GeometryHandler.GHMode.ALGO_SCANLINE,
 							true, new LayerCoverageTool.LayerCoveragePreferences(false));
 					}
 				},
 				new EMenuItem("_List Layer Coverage on Cell") {
-					public void run() { layerCoverageCommand(LayerCoverageTool.LCMode.AREA, GeometryHandler.GHMode.ALGO_SWEEP); }
+					public void run() { layerCoverageCommand(LayerCoverageTool.LCMode.AREA, GeometryHandler.GHMode.ALGO_SCANLINE); }
 				},
 
 				SEPARATOR,
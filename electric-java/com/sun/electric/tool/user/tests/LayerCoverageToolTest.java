@@ -96,7 +96,7 @@ public class LayerCoverageToolTest extends AbstractTest
 	 */
 	public static boolean basicAreaCoverageTest(String logname)
 	{
-		boolean[] errorCounts = new boolean[2];
+		boolean[] errorCounts = new boolean[3];
 
 		try
 		{
@@ -109,7 +109,8 @@ public class LayerCoverageToolTest extends AbstractTest
 			Library rootLib = Library.findLibrary(libName);
 			Cell cell = rootLib.findNodeProto("higher{lay}");
 
-			GeometryHandler.GHMode[] modes = {GeometryHandler.GHMode.ALGO_MERGE, GeometryHandler.GHMode.ALGO_SWEEP};
+			GeometryHandler.GHMode[] modes = {GeometryHandler.GHMode.ALGO_MERGE, GeometryHandler.GHMode.ALGO_SWEEP,
+				GeometryHandler.GHMode.ALGO_SCANLINE};
 			for (int i = 0; i < modes.length; i++)
 			{
 				GeometryHandler.GHMode mode = modes[i];
@@ -124,7 +125,7 @@ public class LayerCoverageToolTest extends AbstractTest
 			e.printStackTrace();
 			return false;
 		}
-		return(!errorCounts[0] && !errorCounts[1]);
+		return(!errorCounts[0] && !errorCounts[1] && !errorCounts[2]);
 	}
 
 	public static void makeFakeCircuitryForCoverageCommand(String libName, String tech, boolean asJob, EditingPreferences ep)
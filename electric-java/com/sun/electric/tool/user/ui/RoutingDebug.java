@@ -53,6 +53,7 @@ import com.sun.electric.tool.routing.seaOfGates.SeaOfGatesEngine.RoutesOnNetwork
 import com.sun.electric.tool.routing.seaOfGates.SeaOfGatesEngine.SOGBound;
 import com.sun.electric.tool.routing.seaOfGates.SeaOfGatesEngine.SOGPoly;
 import com.sun.electric.tool.routing.seaOfGates.SeaOfGatesEngine.SearchVertex;
+import com.sun.electric.tool.routing.seaOfGates.SeaOfGatesEngine.SearchVertexPlane;
 import com.sun.electric.tool.routing.seaOfGates.SeaOfGatesEngine.Wavefront;
 import com.sun.electric.tool.routing.seaOfGates.SeaOfGatesEngineFactory;
 import com.sun.electric.tool.routing.seaOfGates.SeaOfGatesEngineFactory.SeaOfGatesEngineType;
@@ -1689,51 +1690,47 @@ public class RoutingDebug
 
 			// draw the search vertices
 			Map<String,Integer> lowestZ = new HashMap<String,Integer>();
-			Map<Integer, Map<Integer,SearchVertex>>[] searchVertexPlanes = wf.getSearchVertexPlanes();
+			SearchVertexPlane[] searchVertexPlanes = wf.getSearchVertexPlanes();
 			for(int z=0; z<router.getNumMetals(); z++)
 			{
-				Map<Integer, Map<Integer,SearchVertex>> plane = searchVertexPlanes[z];
+				SearchVertexPlane plane = searchVertexPlanes[z];
 				if (plane == null) continue;
-				for(Integer y : plane.keySet())
+				for(long key : plane.getSortedKeys())
 				{
-					Map<Integer,SearchVertex> row = plane.get(y);
-					for(Integer x : row.keySet())
-					{
-						SearchVertex sv = row.get(x);
-						SVState svs = ensureDebuggingShadow(sv, false);
-						svs.showLabel(h);
-
-						if (sv.getLast() == null) continue;
+					SearchVertex sv = plane.get(key);
+					SVState svs = ensureDebuggingShadow(sv, false);
+					svs.showLabel(h);
 
-						if (sv.getZ() != sv.getLast().getZ())
-						{
-							// draw white line at angle showing change of layer
-							int lowZ = Math.min(sv.getZ(), sv.getLast().getZ());
-							int highZ = Math.max(sv.getZ(), sv.getLast().getZ());
-							double lowOff = lowZ * layerOffset;
-							double highOff = highZ * layerOffset;
-							h.addLine(EPoint.fromLambda(sv.getX()+lowOff, sv.getY()+lowOff),
-								EPoint.fromLambda(sv.getX()+highOff, sv.getY()+highOff), cell, true, Color.WHITE, false);
-						} else
-						{
-							// draw line in proper metal color showing the motion
-							double off = sv.getZ() * layerOffset;
-							Color col = router.getPrimaryMetalLayer(sv.getZ()).getGraphics().getColor();
-							h.addLine(EPoint.fromLambda(sv.getX()+off, sv.getY()+off),
-								EPoint.fromLambda(sv.getLast().getX()+off, sv.getLast().getY()+off), cell, false, col, false);
-						}
+					if (sv.getLast() == null) continue;
 
-						// remember lowest Z coordinate at this place so that anchor line can be drawn if it is above Metal-1
-						String coordLoc = TextUtils.formatDistance(sv.getX()) + "/" + TextUtils.formatDistance(sv.getY());
-						Integer height = lowestZ.get(coordLoc);
+					if (sv.getZ() != sv.getLast().getZ())
+					{
+						// draw white line at angle showing change of layer
 						int lowZ = Math.min(sv.getZ(), sv.getLast().getZ());
-						if (height == null) height = Integer.valueOf(lowZ); else
-						{
-							int lowest = Math.min(height.intValue(), lowZ);
-							height = Integer.valueOf(lowest);
-						}
-						lowestZ.put(coordLoc, height);
+						int highZ = Math.max(sv.getZ(), sv.getLast().getZ());
+						double lowOff = lowZ * layerOffset;
+						double highOff = highZ * layerOffset;
+						h.addLine(EPoint.fromLambda(sv.getX()+lowOff, sv.getY()+lowOff),
+							EPoint.fromLambda(sv.getX()+highOff, sv.getY()+highOff), cell, true, Color.WHITE, false);
+					} else
+					{
+						// draw line in proper metal color showing the motion
+						double off = sv.getZ() * layerOffset;
+						Color col = router.getPrimaryMetalLayer(sv.getZ()).getGraphics().getColor();
+						h.addLine(EPoint.fromLambda(sv.getX()+off, sv.getY()+off),
+							EPoint.fromLambda(sv.getLast().getX()+off, sv.getLast().getY()+off), cell, false, col, false);
+					}
+
+					// remember lowest Z coordinate at this place so that anchor line can be drawn if it is above Metal-1
+					String coordLoc = TextUtils.formatDistance(sv.getX()) + "/" + TextUtils.formatDistance(sv.getY());
+					Integer height = lowestZ.get(coordLoc);
+					int lowZ = Math.min(sv.getZ(), sv.getLast().getZ());
+					if (height == null) height = Integer.valueOf(lowZ); else
+					{
+						int lowest = Math.min(height.intValue(), lowZ);
+						height = Integer.valueOf(lowest);
 					}
+					lowestZ.put(coordLoc, height);
 				}
 			}
 
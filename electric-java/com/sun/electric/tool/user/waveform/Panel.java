@@ -27,6 +27,7 @@ import com.sun.electric.database.variable.TextDescriptor;
 import com.sun.electric.technology.technologies.Artwork;
 import com.sun.electric.tool.simulation.BusSample;
 import com.sun.electric.tool.simulation.DigitalSample;
+import com.sun.electric.tool.simulation.LazySignal;
 import com.sun.electric.tool.simulation.RangeSample;
 import com.sun.electric.tool.simulation.Sample;
 import com.sun.electric.tool.simulation.ScalarSample;
@@ -1403,6 +1404,13 @@ public class Panel extends JPanel
 		Signal<?> xSignal = xAxisSignal;
 		if (waveWindow.isXAxisLocked()) xSignal = waveWindow.getXAxisSignalAll();
 		Collection<WaveSignal> sigs = waveSignals.values();
+
+		// read the signals that have not been read yet all at once, so that their columns are decoded in parallel
+		List<Signal<?>> shownSignals = new ArrayList<Signal<?>>();
+		for(WaveSignal ws : sigs) shownSignals.add(ws.getSignal());
+		if (xSignal != null) shownSignals.add(xSignal);
+		LazySignal.loadAll(shownSignals);
+
 		int sigIndex = 0;
         Color light = null;
 		for(WaveSignal ws : sigs)
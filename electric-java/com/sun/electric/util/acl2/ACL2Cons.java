@@ -21,8 +21,6 @@
  */
 package com.sun.electric.util.acl2;
 
-import java.util.Map;
-
 /**
  * Non-leaf node of ACL2 object.
  * Often a ACL2 object are used to represent a list.
@@ -64,15 +62,12 @@ class ACL2Cons extends ACL2Object
 
         car = car.honsOwner == hm ? car : car.internImpl(hm);
         cdr = cdr.honsOwner == hm ? cdr : cdr.internImpl(hm);
-        Key key = new Key(car, cdr);
-        Map<Key, ACL2Cons> allNormed = hm.conses;
-        ACL2Cons result = allNormed.get(key);
-        if (result == null)
-        {
-            result = new ACL2Cons(hm, car, cdr);
-            allNormed.put(key, result);
-        }
-        return result;
+        assert car.honsOwner == cdr.honsOwner
+            || car instanceof ACL2Symbol
+            || car instanceof ACL2Character
+            || cdr instanceof ACL2Symbol
+            || cdr instanceof ACL2Character;
+        return hm.conses.intern(hm, car, cdr);
     }
 
     @Override
@@ -138,48 +133,95 @@ class ACL2Cons extends ACL2Object
         return false;
     }
 
-    static class Key
+    /**
+     * Table of normed conses.
+     * Normed conses are equal when their cars and cdrs are identical,
+     * so the table is an open-addressing array of conses without keys.
+     */
+    static class Table
     {
-        final ACL2Object car;
-        final ACL2Object cdr;
+        private static final int MULT = 0x9E3779B9;
+        private ACL2Cons[] entries;
+        private int shift;
+        private int size;
+
+        Table()
+        {
+            clear();
+        }
+
+        int size()
+        {
+            return size;
+        }
+
+        void clear()
+        {
+            entries = new ACL2Cons[16];
+            shift = Integer.SIZE - 4;
+            size = 0;
+        }
 
-        Key(ACL2Object car, ACL2Object cdr)
+        /**
+         * Makes room for more conses, so that reading them doesn't rehash the table.
+         * @param n number of conses to be added
+         */
+        void ensureCapacity(int n)
         {
-            this.car = car;
-            this.cdr = cdr;
-            assert car.honsOwner != null && cdr.honsOwner != null;
-            assert car.honsOwner == cdr.honsOwner
-                || car instanceof ACL2Symbol
-                || car instanceof ACL2Character
-                || cdr instanceof ACL2Symbol
-                || cdr instanceof ACL2Character;
+            long needed = (long)size + n;
+            int newLength = entries.length;
+            while (needed > newLength / 4 * 3)
+            {
+                newLength <<= 1;
+            }
+            if (newLength != entries.length)
+            {
+                rehash(newLength);
+            }
         }
 
-        @Override
-        public boolean equals(Object o)
+        ACL2Cons intern(HonsManager hm, ACL2Object car, ACL2Object cdr)
         {
-            if (o instanceof Key)
+            int hashCode = hashCodeOfCons(car.hashCode, cdr.hashCode);
+            int mask = entries.length - 1;
+            for (int i = (hashCode * MULT) >>> shift;; i = (i + 1) & mask)
             {
-                Key that = (Key)o;
-                assert this.car.honsOwner == that.car.honsOwner
-                    || this.car instanceof ACL2Symbol
-                    || this.car instanceof ACL2Character
-                    || that.car instanceof ACL2Symbol
-                    || that.car instanceof ACL2Character;
-                assert this.cdr.honsOwner == that.cdr.honsOwner
-                    || this.cdr instanceof ACL2Symbol
-                    || this.cdr instanceof ACL2Character
-                    || that.cdr instanceof ACL2Symbol
-                    || that.cdr instanceof ACL2Character;
-                return this.car == that.car && this.cdr == that.cdr;
+                ACL2Cons cons = entries[i];
+                if (cons == null)
+                {
+                    cons = new ACL2Cons(hm, car, cdr);
+                    entries[i] = cons;
+                    if (++size > entries.length / 4 * 3)
+                    {
+                        rehash(entries.length << 1);
+                    }
+                    return cons;
+                }
+                if (cons.car == car && cons.cdr == cdr)
+                {
+                    return cons;
+                }
             }
-            return false;
         }
 
-        @Override
-        public int hashCode()
+        private void rehash(int newLength)
         {
-            return hashCodeOfCons(car.hashCode, cdr.hashCode);
+            ACL2Cons[] oldEntries = entries;
+            entries = new ACL2Cons[newLength];
+            shift = Integer.SIZE - Integer.numberOfTrailingZeros(newLength);
+            int mask = newLength - 1;
+            for (ACL2Cons cons : oldEntries)
+            {
+                if (cons != null)
+                {
+                    int i = (cons.hashCode * MULT) >>> shift;
+                    while (entries[i] != null)
+                    {
+                        i = (i + 1) & mask;
+                    }
+                    entries[i] = cons;
+                }
+            }
         }
     }
 }
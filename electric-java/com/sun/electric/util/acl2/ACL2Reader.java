@@ -21,18 +21,23 @@
  */
 package com.sun.electric.util.acl2;
 
-import java.io.DataInputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.math.BigInteger;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
 import java.util.Map;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
 
 /**
  * Reader of ACL2 serialized format.
+ * The file is memory-mapped in windows, so it may be larger than 2GB. The atoms are decoded in parallel and then interned in order.
+ * All strings and conses are interned in the current HonsManager, so the result is normed
+ * even if the file doesn't mark it so.
  */
 public class ACL2Reader
 {
@@ -48,13 +53,25 @@ public class ACL2Reader
     public final int nSym;
     public final int nCons;
     public final int nNormCons;
+    /**
+     * Number of strings that were equal to an earlier string of this file or of this HonsManager.
+     */
+    public final int nSharedStr;
+    /**
+     * Number of conses that were equal to an earlier cons of this file or of this HonsManager.
+     */
+    public final int nSharedCons;
 
     private static final int MAGIC_V1 = 0xAC120BC7;
     private static final int MAGIC_V2 = 0xAC120BC8;
     static final int MAGIC_V3 = 0xAC120BC9;
 
+    /* atoms decoded by one task */
+    private static final int CHUNK = 4096;
+    /* log2 of the bytes mapped by one buffer */
+    private static final int WINDOW_SHIFT = 30;
+
     private final int magic;
-    private final List<ACL2Object> allObjs = new ArrayList<>();
 
     private static void check(boolean p)
     {
@@ -64,195 +81,406 @@ public class ACL2Reader
         }
     }
 
-    private static BigInteger readInt(DataInputStream in) throws IOException
+    /**
+     * A file mapped into consecutive buffers, because one buffer can map at most 2GB.
+     * Absolute reads of the buffers allow cursors of different threads to share them.
+     */
+    private static class MappedFile
     {
-        BigInteger result = BigInteger.ZERO;
-        for (int n = 0;; n++)
+        private final int windowShift;
+        private final int windowMask;
+        private final MappedByteBuffer[] windows;
+
+        MappedFile(FileChannel fc, int windowShift) throws IOException
+        {
+            this.windowShift = windowShift;
+            windowMask = (1 << windowShift) - 1;
+            long size = fc.size();
+            windows = new MappedByteBuffer[(int)((size + windowMask) >>> windowShift)];
+            for (int i = 0; i < windows.length; i++)
+            {
+                long start = (long)i << windowShift;
+                windows[i] = fc.map(FileChannel.MapMode.READ_ONLY, start, Math.min(size - start, windowMask + 1L));
+            }
+        }
+
+        byte get(long pos)
+        {
+            return windows[(int)(pos >>> windowShift)].get((int)pos & windowMask);
+        }
+    }
+
+    /**
+     * Position in the mapped file.
+     */
+    private static class Cursor
+    {
+        private final MappedFile buf;
+        private long pos;
+
+        Cursor(MappedFile buf, long pos)
+        {
+            this.buf = buf;
+            this.pos = pos;
+        }
+
+        int readMagic()
+        {
+            int result = 0;
+            for (int i = 0; i < 4; i++)
+            {
+                result = (result << 8) | (buf.get(pos++) & 0xFF);
+            }
+            return result;
+        }
+
+        byte readByte()
+        {
+            return buf.get(pos++);
+        }
+
+        BigInteger readInt()
+        {
+            long result = 0;
+            int shift = 0;
+            for (; shift < Long.SIZE - 7; shift += 7)
+            {
+                byte b = buf.get(pos++);
+                result |= (long)(b & 0x7F) << shift;
+                if (b >= 0)
+                {
+                    return BigInteger.valueOf(result);
+                }
+            }
+            BigInteger big = BigInteger.valueOf(result);
+            for (;; shift += 7)
+            {
+                byte b = buf.get(pos++);
+                big = big.or(BigInteger.valueOf(b & 0x7F).shiftLeft(shift));
+                if (b >= 0)
+                {
+                    return big;
+                }
+            }
+        }
+
+        int readIntExact()
+        {
+            int result = 0;
+            for (int shift = 0;; shift += 7)
+            {
+                byte b = buf.get(pos++);
+                int bits = b & 0x7F;
+                if (shift >= Integer.SIZE || (bits << shift) >>> shift != bits)
+                {
+                    if (bits != 0)
+                    {
+                        throw new ArithmeticException("BigInteger out of int range");
+                    }
+                } else
+                {
+                    result |= bits << shift;
+                }
+                if (b >= 0)
+                {
+                    if (result < 0)
+                    {
+                        throw new ArithmeticException("BigInteger out of int range");
+                    }
+                    return result;
+                }
+            }
+        }
+
+        void skipInt()
+        {
+            while (buf.get(pos++) < 0)
+            {
+            }
+        }
+
+        String readString(int len)
+        {
+            char[] chars = new char[len];
+            for (int i = 0; i < len; i++)
+            {
+                chars[i] = (char)(buf.get(pos++) & 0xFF);
+            }
+            return new String(chars);
+        }
+
+        Rational readRational()
         {
-            byte b = in.readByte();
-            result = result.or(BigInteger.valueOf(b & 0x7F).shiftLeft(n * 7));
-            if (b >= 0)
+            BigInteger sign = readInt();
+            check(sign.equals(BigInteger.ZERO) || sign.equals(BigInteger.ONE));
+            BigInteger num = readInt();
+            BigInteger denom = readInt();
+            if (sign.signum() != 0)
             {
-                break;
+                num = num.negate();
             }
+            return Rational.valueOf(num, denom);
         }
-        return result;
     }
 
-    private String readStr(DataInputStream in) throws IOException
+    private int readStrLen(Cursor in)
     {
-        int len = readInt(in).intValueExact();
-        boolean normd = false;
+        int len = in.readIntExact();
         if (magic >= MAGIC_V3)
         {
-            normd = (len & 1) != 0;
             len >>>= 1;
         }
-        return readString(in, len);
+        return len;
     }
 
-    private static String readString(DataInputStream in, int len) throws IOException
+    private String readStr(Cursor in)
     {
-        StringBuilder sb = new StringBuilder();
-        for (int i = 0; i < len; i++)
+        return in.readString(readStrLen(in));
+    }
+
+    private void skipStr(Cursor in)
+    {
+        int len = readStrLen(in);
+        in.pos += len;
+    }
+
+    /**
+     * Runs a decoder on every index of a table, in parallel when the table is large.
+     * The decoders must not intern anything because a HonsManager is not thread-safe.
+     */
+    private static void decodeAll(int n, IntConsumer decoder)
+    {
+        if (n <= CHUNK)
         {
-            sb.append((char)(in.readByte() & 0xFF));
+            for (int i = 0; i < n; i++)
+            {
+                decoder.accept(i);
+            }
+            return;
         }
-        return sb.toString();
+        IntStream.range(0, (n + CHUNK - 1) / CHUNK).parallel().forEach(chunk ->
+        {
+            int end = Math.min(n, (chunk + 1) * CHUNK);
+            for (int i = chunk * CHUNK; i < end; i++)
+            {
+                decoder.accept(i);
+            }
+        });
     }
 
     public ACL2Reader(File f) throws IOException
+    {
+        this(f, WINDOW_SHIFT);
+    }
+
+    /**
+     * Reads a file mapped in windows of the given size.
+     * @param f the file
+     * @param windowShift log2 of the bytes mapped by one buffer
+     */
+    ACL2Reader(File f, int windowShift) throws IOException
     {
         HonsManager hm = HonsManager.current.get();
-        try (DataInputStream in = new DataInputStream(new FileInputStream(f)))
+        MappedFile buf;
+        try (FileChannel fc = FileChannel.open(f.toPath(), StandardOpenOption.READ))
         {
-            magic = in.readInt();
-            check(magic >= MAGIC_V1 && magic <= MAGIC_V3);
-            if (magic >= MAGIC_V2)
+            buf = new MappedFile(fc, windowShift);
+        }
+        Cursor in = new Cursor(buf, 0);
+        magic = in.readMagic();
+        check(magic >= MAGIC_V1 && magic <= MAGIC_V3);
+        int numObjs = magic >= MAGIC_V2 ? 2 : 0;
+        int len = in.readIntExact();
+
+        // Find the positions of atoms
+        nNat = in.readIntExact();
+        long[] natPos = new long[nNat];
+        for (int i = 0; i < nNat; i++)
+        {
+            natPos[i] = in.pos;
+            in.skipInt();
+        }
+        int ratsLen = in.readIntExact();
+        long[] ratPos = new long[ratsLen];
+        for (int i = 0; i < ratsLen; i++)
+        {
+            ratPos[i] = in.pos;
+            in.skipInt();
+            in.skipInt();
+            in.skipInt();
+        }
+        nComplex = in.readIntExact();
+        long[] complexPos = new long[nComplex];
+        for (int i = 0; i < nComplex; i++)
+        {
+            complexPos[i] = in.pos;
+            for (int k = 0; k < 6; k++)
             {
-                allObjs.add(ACL2Symbol.NIL);
-                allObjs.add(ACL2Symbol.T);
+                in.skipInt();
             }
-            int len = readInt(in).intValueExact();
-            nNat = readInt(in).intValueExact();
-            for (int i = 0; i < nNat; i++)
+        }
+        nChar = in.readIntExact();
+        long charPos = in.pos;
+        in.pos += nChar;
+        nStr = in.readIntExact();
+        long[] strPos = new long[nStr];
+        for (int i = 0; i < nStr; i++)
+        {
+            strPos[i] = in.pos;
+            skipStr(in);
+        }
+        nPkg = in.readIntExact();
+        String[] pkgNames = new String[nPkg];
+        int[] pkgSyms = new int[nPkg + 1];
+        long[] symPos = new long[16];
+        int numSymsTotal = 0;
+        for (int i = 0; i < nPkg; i++)
+        {
+            pkgNames[i] = readStr(in);
+            int numSyms = in.readIntExact();
+            if (numSymsTotal + numSyms > symPos.length)
             {
-                BigInteger n = readInt(in);
-                allObjs.add(ACL2Integer.intern(n, hm));
+                symPos = Arrays.copyOf(symPos, Math.max(numSymsTotal + numSyms, symPos.length * 2));
             }
-            int ratsLen = readInt(in).intValueExact();
-            int nNegInt = 0;
-            for (int i = 0; i < ratsLen; i++)
+            for (int j = 0; j < numSyms; j++)
             {
-                BigInteger sign = readInt(in);
-                check(sign.equals(BigInteger.ZERO) || sign.equals(BigInteger.ONE));
-                BigInteger num = readInt(in);
-                BigInteger denom = readInt(in);
-                if (sign.signum() != 0)
-                {
-                    num = num.negate();
-                }
-                if (denom.equals(BigInteger.ONE))
-                {
-                    allObjs.add(ACL2Integer.intern(num, hm));
-                    nNegInt++;
-                } else
-                {
-                    allObjs.add(ACL2Rational.intern(Rational.valueOf(num, denom), hm));
-                }
+                symPos[numSymsTotal++] = in.pos;
+                skipStr(in);
             }
-            nInt = nNat + nNegInt;
-            nRat = ratsLen - nNegInt;
-            nComplex = readInt(in).intValueExact();
-            for (int i = 0; i < nComplex; i++)
+            pkgSyms[i + 1] = numSymsTotal;
+        }
+        nSym = numSymsTotal;
+        nCons = in.readIntExact();
+        long consPos = in.pos;
+
+        // Decode atoms in parallel
+        BigInteger[] nats = new BigInteger[nNat];
+        decodeAll(nNat, i -> nats[i] = new Cursor(buf, natPos[i]).readInt());
+        Rational[] rats = new Rational[ratsLen];
+        decodeAll(ratsLen, i -> rats[i] = new Cursor(buf, ratPos[i]).readRational());
+        Complex[] complexes = new Complex[nComplex];
+        decodeAll(nComplex, i ->
+        {
+            Cursor c = new Cursor(buf, complexPos[i]);
+            Rational re = c.readRational();
+            Rational im = c.readRational();
+            complexes[i] = new Complex(re, im);
+        });
+        String[] strs = new String[nStr];
+        boolean[] strNormed = new boolean[nStr];
+        decodeAll(nStr, i ->
+        {
+            Cursor c = new Cursor(buf, strPos[i]);
+            int strlen = c.readIntExact();
+            if (magic >= MAGIC_V3)
             {
-                BigInteger signR = readInt(in);
-                check(signR.equals(BigInteger.ZERO) || signR.equals(BigInteger.ONE));
-                BigInteger numR = readInt(in);
-                BigInteger denomR = readInt(in);
-                if (signR.signum() != 0)
-                {
-                    numR = numR.negate();
-                }
-                Rational re = Rational.valueOf(numR, denomR);
-                BigInteger signI = readInt(in);
-                check(signI.equals(BigInteger.ZERO) || signI.equals(BigInteger.ONE));
-                BigInteger numI = readInt(in);
-                BigInteger denomI = readInt(in);
-                if (signI.signum() != 0)
-                {
-                    numI = numI.negate();
-                }
-                Rational im = Rational.valueOf(numI, denomI);
-                allObjs.add(ACL2Complex.intern(new Complex(re, im), hm));
+                strNormed[i] = (strlen & 1) != 0;
+                strlen >>>= 1;
             }
-            nChar = readInt(in).intValueExact();
-            for (int i = 0; i < nChar; i++)
+            strs[i] = c.readString(strlen);
+        });
+        String[] symNames = new String[nSym];
+        long[] symPosFinal = symPos;
+        decodeAll(nSym, i -> symNames[i] = readStr(new Cursor(buf, symPosFinal[i])));
+
+        // Intern atoms in order
+        ACL2Object[] allObjs = new ACL2Object[numObjs + nNat + ratsLen + nComplex + nChar + nStr + nSym + nCons];
+        if (magic >= MAGIC_V2)
+        {
+            allObjs[0] = ACL2Symbol.NIL;
+            allObjs[1] = ACL2Symbol.T;
+        }
+        for (BigInteger n : nats)
+        {
+            allObjs[numObjs++] = ACL2Integer.intern(n, hm);
+        }
+        int nNegInt = 0;
+        for (Rational r : rats)
+        {
+            if (r.isInteger())
             {
-                char c = (char)(in.readByte() & 0xFF);
-                allObjs.add(ACL2Character.intern(c));
+                allObjs[numObjs++] = ACL2Integer.intern(r.n, hm);
+                nNegInt++;
+            } else
+            {
+                allObjs[numObjs++] = ACL2Rational.intern(r, hm);
             }
-            nStr = readInt(in).intValueExact();
-            int nNormStrings = 0;
-            for (long i = 0; i < nStr; i++)
+        }
+        nInt = nNat + nNegInt;
+        nRat = ratsLen - nNegInt;
+        for (Complex c : complexes)
+        {
+            allObjs[numObjs++] = ACL2Complex.intern(c, hm);
+        }
+        for (int i = 0; i < nChar; i++)
+        {
+            allObjs[numObjs++] = ACL2Character.intern((char)(buf.get(charPos + i) & 0xFF));
+        }
+        int nNormStrings = 0;
+        int numStringsBefore = hm.strings.size();
+        for (int i = 0; i < nStr; i++)
+        {
+            if (strNormed[i])
             {
-                int strlen = readInt(in).intValueExact();
-                boolean normed = false;
-                if (magic >= MAGIC_V3)
-                {
-                    normed = (strlen & 1) != 0;
-                    strlen >>>= 1;
-                }
-                String s = readString(in, strlen);
-                if (normed)
-                {
-                    nNormStrings++;
-                } else
-                {
-//                    System.out.println("String " + s + " is not normed");
-                }
-                allObjs.add(normed ? ACL2String.intern(s, hm) : new ACL2String(s));
+                nNormStrings++;
             }
-            nNormStr = nNormStrings;
-            nPkg = readInt(in).intValueExact();
-            int numSymsTotal = 0;
-            for (int i = 0; i < nPkg; i++)
+            allObjs[numObjs++] = ACL2String.intern(strs[i], hm);
+        }
+        nNormStr = nNormStrings;
+        nSharedStr = nStr - (hm.strings.size() - numStringsBefore);
+        for (int i = 0; i < nPkg; i++)
+        {
+            ACL2Symbol.Package pkg = ACL2Symbol.getPackage(pkgNames[i]);
+            for (int j = pkgSyms[i]; j < pkgSyms[i + 1]; j++)
             {
-                String pkgName = readStr(in);
-                long numSyms = readInt(in).longValueExact();
-                for (int j = 0; j < numSyms; j++)
-                {
-                    String name = readStr(in);
-                    allObjs.add(ACL2Object.valueOf(pkgName, name));
-                }
-                numSymsTotal += numSyms;
+                allObjs[numObjs++] = pkg.getSymbol(symNames[j]);
             }
-            nSym = numSymsTotal;
-            nCons = readInt(in).intValueExact();
-            int nNormConses = 0;
-            for (int i = 0; i < nCons; i++)
+        }
+
+        // Intern conses in order
+        in.pos = consPos;
+        int nNormConses = 0;
+        hm.conses.ensureCapacity(nCons);
+        int numConsesBefore = hm.conses.size();
+        for (int i = 0; i < nCons; i++)
+        {
+            int car = in.readIntExact();
+            int cdr = in.readIntExact();
+            if (magic >= MAGIC_V2)
             {
-                int car = readInt(in).intValueExact();
-                int cdr = readInt(in).intValueExact();
-                boolean normed = false;
-                if (magic >= MAGIC_V2)
-                {
-                    normed = (car & 1) != 0;
-                    car >>>= 1;
-                }
-                ACL2Object carObj = allObjs.get(car);
-                ACL2Object cdrObj = allObjs.get(cdr);
-                if (normed)
+                if ((car & 1) != 0)
                 {
                     nNormConses++;
                 }
-                allObjs.add(normed ? ACL2Cons.intern(carObj, cdrObj, hm) : new ACL2Cons(carObj, cdrObj));
+                car >>>= 1;
             }
-            nNormCons = nNormConses;
-            if (magic >= MAGIC_V3)
+            check(car < numObjs && cdr < numObjs);
+            allObjs[numObjs++] = ACL2Cons.intern(allObjs[car], allObjs[cdr], hm);
+        }
+        nNormCons = nNormConses;
+        nSharedCons = nCons - (hm.conses.size() - numConsesBefore);
+        if (magic >= MAGIC_V3)
+        {
+            for (;;)
             {
-//            System.out.println("FALS");
-                for (;;)
+                int fal0 = in.readIntExact();
+                if (fal0 == 0)
                 {
-                    int fal0 = readInt(in).intValueExact();
-                    if (fal0 == 0)
-                    {
-                        break;
-                    }
-                    int fal1 = readInt(in).intValueExact();
-//                System.out.println(" " + fal0 + " " + fal1);
+                    break;
                 }
+                in.skipInt();
             }
-            int magicEnd = in.readInt();
-            check(magicEnd == magic);
-            root = allObjs.get(magic >= MAGIC_V2 ? len : len - 1);
         }
+        int magicEnd = in.readMagic();
+        check(magicEnd == magic);
+        root = allObjs[magic >= MAGIC_V2 ? len : len - 1];
     }
 
     public String getStats()
     {
         return ((nInt + nRat + nComplex + nChar + nStr + nSym) + " atoms and "
-            + nCons + " conses. TreeCount=" + treeCount(root, new HashMap<>()));
+            + nCons + " conses, " + nSharedStr + " strings and " + nSharedCons + " conses shared."
+            + " TreeCount=" + treeCount(root, new IdentityHashMap<>()));
     }
 
     private static BigInteger treeCount(ACL2Object top, Map<ACL2Cons, BigInteger> memoize)
@@ -35,7 +35,7 @@ class HonsManager
     Map<Rational, ACL2Rational> rationals = new HashMap<>();
     Map<Complex, ACL2Complex> complexes = new HashMap<>();
     Map<String, ACL2String> strings = new HashMap<>();
-    Map<ACL2Cons.Key, ACL2Cons> conses = new HashMap<>();
+    ACL2Cons.Table conses = new ACL2Cons.Table();
 
     final ACL2Integer ZERO = ACL2Integer.intern(BigInteger.ZERO, this);
     final ACL2String EMPTY_STR = ACL2String.intern("", this);
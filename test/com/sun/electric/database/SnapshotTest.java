@@ -22,19 +22,23 @@
  */
 package com.sun.electric.database;
 
+import com.sun.electric.database.geometry.EPoint;
 import com.sun.electric.database.geometry.ERectangle;
 import com.sun.electric.database.id.CellId;
 import com.sun.electric.database.id.IdManager;
 import com.sun.electric.database.id.IdReader;
 import com.sun.electric.database.id.IdWriter;
 import com.sun.electric.database.id.LibId;
+import com.sun.electric.database.id.PrimitiveNodeId;
 import com.sun.electric.database.id.TechId;
 import com.sun.electric.database.text.CellName;
+import com.sun.electric.database.text.Name;
 import com.sun.electric.technology.TechFactory;
 import com.sun.electric.technology.TechPool;
 import com.sun.electric.technology.Technology;
 import com.sun.electric.technology.technologies.Generic;
 import com.sun.electric.util.collections.ImmutableArrayList;
+import com.sun.electric.util.math.Orientation;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
@@ -289,6 +293,67 @@ public class SnapshotTest {
         assertEquals(expCellBackups, result.cellBackups);
     }
 
+    /**
+     * Test of writeDiff and readDiff methods, of class com.sun.electric.database.CellBackup.
+     */
+    @Test
+    public void testCellBackupDiff() throws Exception {
+        System.out.println("cellBackupDiff");
+
+        LibId libId = idManager.newLibId("libId0");
+        Generic generic = Generic.newInstance(idManager);
+        Technology schematic = TechFactory.getTechFactory("schematic").newInstance(generic);
+        TechPool techPool = idManager.getInitialEnvironment().addTech(generic).addTech(schematic).techPool;
+        CellId cellId = libId.newCellId(CellName.parseName("cell;1{sch}"));
+        ImmutableCell c = ImmutableCell.newInstance(cellId, 0).withTechId(schematicTechId);
+        PrimitiveNodeId pinId = schematic.findNodeProto("Wire_Pin").getId();
+        ImmutableNodeInst[] nodes = new ImmutableNodeInst[1000];
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i] = ImmutableNodeInst.newInstance(i, pinId, Name.findName("n" + i), null, Orientation.IDENT,
+                    EPoint.fromLambda(i, 0), EPoint.fromLambda(0, 0), 0, 0, null);
+        }
+        CellBackup oldBackup = CellBackup.newInstance(c, techPool).with(c, nodes, null, null, techPool);
+
+        // move one node, delete one and add one
+        ImmutableNodeInst[] newNodes = new ImmutableNodeInst[nodes.length];
+        for (int i = 0, j = 0; i < nodes.length; i++) {
+            if (i != 10) {
+                newNodes[j++] = i == 500 ? nodes[i].withAnchor(EPoint.fromLambda(i, 7)) : nodes[i];
+            }
+        }
+        newNodes[nodes.length - 1] = ImmutableNodeInst.newInstance(nodes.length, pinId, Name.findName("n" + nodes.length), null,
+                Orientation.IDENT, EPoint.fromLambda(0, 5), EPoint.fromLambda(0, 0), 0, 0, null);
+        CellBackup newBackup = oldBackup.with(c, newNodes, null, null, techPool);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        IdWriter writer = new IdWriter(idManager, new DataOutputStream(out));
+        newBackup.write(writer);
+        writer.flush();
+        int wholeLength = out.size();
+        out.reset();
+        writer = new IdWriter(idManager, new DataOutputStream(out));
+        newBackup.writeDiff(writer, oldBackup);
+        writer.flush();
+        byte[] diff = out.toByteArray();
+        System.out.println("whole cell " + wholeLength + " bytes, difference " + diff.length + " bytes");
+        assertTrue(diff.length * 20 < wholeLength);
+
+        IdReader reader = new IdReader(new DataInputStream(new ByteArrayInputStream(diff)), idManager);
+        CellBackup result = oldBackup.readDiff(reader, techPool);
+        assertEquals(newBackup.cellRevision.nodes.size(), result.cellRevision.nodes.size());
+        for (int i = 0; i < newNodes.length; i++) {
+            ImmutableNodeInst n = result.cellRevision.nodes.get(i);
+            int nodeId = newNodes[i].nodeId;
+            if (nodeId < nodes.length && newNodes[i] == nodes[nodeId]) {
+                assertSame(newNodes[i], n);
+            } else {
+                assertTrue(newNodes[i].equalsExceptVariables(n));
+            }
+        }
+        assertSame(c, result.cellRevision.d);
+        result.check();
+    }
+
     /**
      * Test of check method, of class com.sun.electric.database.Snapshot.
      */
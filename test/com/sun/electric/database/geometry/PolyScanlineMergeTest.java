@@ -0,0 +1,244 @@
+/* -*- tab-width: 4 -*-
+ *
+ * Electric(tm) VLSI Design System
+ *
+ * File: PolyScanlineMergeTest.java
+ *
+ * Copyright (c) 2012, Static Free Software. All rights reserved.
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sun.electric.database.geometry;
+
+import com.sun.electric.database.id.IdManager;
+import com.sun.electric.technology.Layer;
+import com.sun.electric.technology.technologies.Generic;
+import com.sun.electric.util.math.FixpTransform;
+import com.sun.electric.util.math.Orientation;
+
+import java.awt.geom.Area;
+import java.awt.geom.Rectangle2D;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Ignore;
+import org.junit.Test;
+
+/**
+ * Unit tests of PolyScanlineMerge against PolyMerge.
+ */
+public class PolyScanlineMergeTest {
+
+    private Layer layerA, layerB, layerC;
+
+    @Before
+    public void setUp() {
+        Generic generic = Generic.newInstance(new IdManager());
+        layerA = generic.getLayer(0);
+        layerB = generic.getLayer(1);
+        layerC = generic.getLayer(2);
+    }
+
+    @Test
+    public void testAddSubtract() {
+        Random random = new Random(1);
+        PolyMerge expected = new PolyMerge();
+        PolyScanlineMerge merge = new PolyScanlineMerge();
+        for (int i = 0; i < 300; i++) {
+            PolyBase poly = new PolyBase(randomRect(random));
+            if (i % 5 == 4) {
+                expected.subtract(layerA, poly);
+                merge.subtract(layerA, poly);
+            } else {
+                expected.add(layerA, poly);
+                merge.add(layerA, poly);
+            }
+        }
+        assertSameArea(expected, merge, layerA);
+    }
+
+    @Test
+    public void testManhattanPolygon() {
+        // an L-shaped polygon in clockwise order and a rectangle over its corner
+        PolyBase lShape = new PolyBase(PolyBase.fromLambda(0, 0), PolyBase.fromLambda(0, 10), PolyBase.fromLambda(4, 10),
+            PolyBase.fromLambda(4, 4), PolyBase.fromLambda(10, 4), PolyBase.fromLambda(10, 0));
+        PolyBase rect = new PolyBase(new Rectangle2D.Double(3, 3, 3, 3));
+        PolyMerge expected = new PolyMerge();
+        PolyScanlineMerge merge = new PolyScanlineMerge();
+        expected.add(layerA, lShape);
+        merge.add(layerA, lShape);
+        expected.add(layerA, rect);
+        merge.add(layerA, rect);
+        assertSameArea(expected, merge, layerA);
+    }
+
+    @Test
+    public void testLayerOperations() {
+        Random random = new Random(2);
+        PolyMerge expected = new PolyMerge();
+        PolyScanlineMerge merge = new PolyScanlineMerge();
+        for (int i = 0; i < 100; i++) {
+            Layer layer = (i % 2 == 0) ? layerA : layerB;
+            PolyBase poly = new PolyBase(randomRect(random));
+            expected.add(layer, poly);
+            merge.add(layer, poly);
+        }
+        expected.intersectLayers(layerA, layerB, layerC);
+        merge.intersectLayers(layerA, layerB, layerC);
+        assertSameArea(expected, merge, layerC);
+        expected.subtractLayers(layerA, layerB, layerC);
+        merge.subtractLayers(layerA, layerB, layerC);
+        assertSameArea(expected, merge, layerC);
+    }
+
+    @Test
+    public void testInset() {
+        // an L shape and a separate rectangle
+        PolyMerge expected = new PolyMerge();
+        PolyScanlineMerge merge = new PolyScanlineMerge();
+        Rectangle2D[] rects = {
+            new Rectangle2D.Double(30, 0, 10, 3),
+            new Rectangle2D.Double(30, 0, 3, 12),
+            new Rectangle2D.Double(50, 0, 6, 6),
+        };
+        for (Rectangle2D rect : rects) {
+            expected.add(layerA, new PolyBase(rect));
+            merge.add(layerA, new PolyBase(rect));
+        }
+        expected.insetLayer(layerA, layerB, 1);
+        merge.insetLayer(layerA, layerB, 1);
+        assertSameArea(expected, merge, layerB);
+        assertFalse(merge.isEmpty(layerB));
+        merge.insetLayer(layerA, layerC, 3);
+        assertTrue(merge.isEmpty(layerC));
+    }
+
+    @Test
+    public void testInsetHole() {
+        // a frame: the concave corners of the hole keep a square, as with PolyMerge
+        PolyScanlineMerge merge = new PolyScanlineMerge();
+        merge.add(layerA, new PolyBase(new Rectangle2D.Double(0, 0, 20, 4)));
+        merge.add(layerA, new PolyBase(new Rectangle2D.Double(0, 16, 20, 4)));
+        merge.add(layerA, new PolyBase(new Rectangle2D.Double(0, 0, 4, 20)));
+        merge.add(layerA, new PolyBase(new Rectangle2D.Double(16, 0, 4, 20)));
+        merge.insetLayer(layerA, layerB, 1);
+        PolyMerge expected = new PolyMerge();
+        expected.add(layerB, new PolyBase(new Rectangle2D.Double(1, 1, 18, 18)));
+        expected.subtract(layerB, new PolyBase(new Rectangle2D.Double(3, 3, 14, 14)));
+        expected.add(layerB, new PolyBase(new Rectangle2D.Double(3, 3, 1, 1)));
+        expected.add(layerB, new PolyBase(new Rectangle2D.Double(16, 3, 1, 1)));
+        expected.add(layerB, new PolyBase(new Rectangle2D.Double(3, 16, 1, 1)));
+        expected.add(layerB, new PolyBase(new Rectangle2D.Double(16, 16, 1, 1)));
+        assertSameArea(expected, merge, layerB);
+    }
+
+    @Test
+    public void testAddAll() {
+        Random random = new Random(3);
+        PolyMerge expectedSub = new PolyMerge();
+        PolyScanlineMerge sub = new PolyScanlineMerge();
+        for (int i = 0; i < 50; i++) {
+            PolyBase poly = new PolyBase(randomRect(random));
+            expectedSub.add(layerA, poly);
+            sub.add(layerA, poly);
+        }
+        FixpTransform trans = Orientation.fromC(900, true).rotateAbout(7, -3);
+        PolyMerge expected = new PolyMerge();
+        PolyScanlineMerge merge = new PolyScanlineMerge();
+        PolyBase poly = new PolyBase(randomRect(random));
+        expected.add(layerA, poly);
+        merge.add(layerA, poly);
+        expected.addAll(expectedSub, trans);
+        merge.addAll(sub, trans);
+        assertSameArea(expected, merge, layerA);
+    }
+
+    @Test
+    public void testDisjointPolygons() {
+        // two pairs of overlapping rectangles give two polygons that don't overlap
+        PolyMerge expected = new PolyMerge();
+        PolyScanlineMerge merge = new PolyScanlineMerge();
+        Rectangle2D[] rects = {
+            new Rectangle2D.Double(0, 0, 10, 10),
+            new Rectangle2D.Double(5, 5, 10, 10),
+            new Rectangle2D.Double(30, 0, 5, 5),
+            new Rectangle2D.Double(32, 2, 5, 5),
+        };
+        for (Rectangle2D rect : rects) {
+            expected.add(layerA, new PolyBase(rect));
+            merge.add(layerA, new PolyBase(rect));
+        }
+        merge.postProcess(false);
+        PolyBase[] polys = merge.getObjects(layerA, false, false).toArray(new PolyBase[0]);
+        assertEquals(2, polys.length);
+        Area overlap = new Area(polys[0]);
+        overlap.intersect(new Area(polys[1]));
+        assertTrue(overlap.isEmpty());
+        assertSameArea(expected, merge, layerA);
+    }
+
+    @Ignore
+    @Test
+    public void benchMerge() {
+        Random random = new Random(4);
+        int num = 3000;
+        PolyBase[] polys = new PolyBase[num];
+        for (int i = 0; i < num; i++)
+            polys[i] = new PolyBase(new Rectangle2D.Double(random.nextInt(10000), random.nextInt(10000), 1 + random.nextInt(20), 1 + random.nextInt(20)));
+        for (int k = 0; k < 3; k++) {
+            long startTime = System.currentTimeMillis();
+            PolyMerge pm = new PolyMerge();
+            for (PolyBase poly : polys)
+                pm.add(layerA, poly);
+            int n1 = pm.getObjects(layerA, false, false).size();
+            long midTime = System.currentTimeMillis();
+            PolyScanlineMerge sm = new PolyScanlineMerge();
+            for (PolyBase poly : polys)
+                sm.add(layerA, poly);
+            int n2 = sm.getObjects(layerA, false, false).size();
+            long stopTime = System.currentTimeMillis();
+            System.out.println("PolyMerge " + n1 + " polys t=" + (midTime - startTime) +
+                " PolyScanlineMerge " + n2 + " polys t=" + (stopTime - midTime));
+        }
+    }
+
+    private static Rectangle2D randomRect(Random random) {
+        return new Rectangle2D.Double(random.nextInt(100), random.nextInt(100), 1 + random.nextInt(30), 1 + random.nextInt(30));
+    }
+
+    private static void assertSameArea(PolyMerge expected, PolyScanlineMerge merge, Layer layer) {
+        Area expectedArea = (Area)expected.layers.get(layer);
+        Area area = new Area();
+        if (merge.getTreeObjects(layer) != null)
+            addTrees(area, merge.getTreeObjects(layer), true);
+        if (expectedArea == null) {
+            assertTrue(area.isEmpty());
+            return;
+        }
+        Area diff = new Area(expectedArea);
+        diff.exclusiveOr(area);
+        assertTrue(diff.isEmpty());
+    }
+
+    private static void addTrees(Area area, Iterable<PolyBase.PolyBaseTree> trees, boolean outer) {
+        for (PolyBase.PolyBaseTree t : trees) {
+            if (outer)
+                area.add(new Area(t.getPoly()));
+            else
+                area.subtract(new Area(t.getPoly()));
+            addTrees(area, t.getSons(), !outer);
+        }
+    }
+}
@@ -0,0 +1,192 @@
+/* -*- tab-width: 4 -*-
+ *
+ * Electric(tm) VLSI Design System
+ *
+ * File: BTreeVersionTest.java
+ *
+ * Copyright (c) 2012, Static Free Software. All rights reserved.
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sun.electric.database.geometry.btree;
+
+import com.sun.electric.database.geometry.btree.unboxed.MinMaxOperation;
+import com.sun.electric.database.geometry.btree.unboxed.Pair;
+import com.sun.electric.database.geometry.btree.unboxed.UnboxedInt;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * Unit tests of published versions of BTree.
+ */
+public class BTreeVersionTest {
+
+    private static class MinMax extends MinMaxOperation<Integer,Integer>
+        implements BTree.Summary<Integer,Integer,Pair<Pair<Integer,Integer>,Pair<Integer,Integer>>> {
+        MinMax() {
+            super(UnboxedInt.instance, UnboxedInt.instance);
+        }
+    }
+
+    private static BTree<Integer,Integer,Pair<Pair<Integer,Integer>,Pair<Integer,Integer>>> newTree() {
+        CachingPageStorage ps = new MemoryPageStorage(1024);
+        return new BTree<Integer,Integer,Pair<Pair<Integer,Integer>,Pair<Integer,Integer>>>(ps,
+            UnboxedInt.instance, UnboxedInt.instance, new MinMax());
+    }
+
+    @Test
+    public void testVersionIsUnchanged() {
+        Random rand = new Random(1);
+        BTree<Integer,Integer,Pair<Pair<Integer,Integer>,Pair<Integer,Integer>>> tree = newTree();
+        TreeMap<Integer,Integer> expected = new TreeMap<Integer,Integer>();
+        assertNull(tree.getPublishedVersion());
+        BTree<Integer,Integer,Pair<Pair<Integer,Integer>,Pair<Integer,Integer>>>.Version version = null;
+        TreeMap<Integer,Integer> versionExpected = null;
+        for (int round = 0; round < 5; round++) {
+            for (int i = 0; i < 3000; i++) {
+                int key = rand.nextInt(100000);
+                int val = rand.nextInt(1000);
+                if (expected.containsKey(key)) {
+                    tree.replace(key, val);
+                } else {
+                    tree.insert(key, val);
+                }
+                expected.put(key, val);
+            }
+            if (version != null) {
+                checkVersion(version, versionExpected);
+            }
+            version = tree.publish();
+            assertSame(version, tree.getPublishedVersion());
+            versionExpected = new TreeMap<Integer,Integer>(expected);
+            checkVersion(version, versionExpected);
+        }
+        // the live tree has the latest contents
+        assertEquals(expected.size(), tree.size());
+        for (Map.Entry<Integer,Integer> e : expected.entrySet()) {
+            assertEquals(e.getValue(), tree.getValFromKey(e.getKey()));
+        }
+    }
+
+    /** splitting interior nodes after publish() leaves every page of the version untouched */
+    @Test
+    public void testSplitKeepsVersionPages() {
+        Random rand = new Random(2);
+        CachingPageStorage ps = new MemoryPageStorage(1024);
+        BTree<Integer,Integer,Pair<Pair<Integer,Integer>,Pair<Integer,Integer>>> tree =
+            new BTree<Integer,Integer,Pair<Pair<Integer,Integer>,Pair<Integer,Integer>>>(ps,
+                UnboxedInt.instance, UnboxedInt.instance, new MinMax());
+        TreeMap<Integer,Integer> expected = new TreeMap<Integer,Integer>();
+        for (int i = 0; i < 20000; i++) {
+            int key = rand.nextInt();
+            if (expected.containsKey(key)) continue;
+            tree.insert(key, i);
+            expected.put(key, i);
+        }
+        BTree<Integer,Integer,Pair<Pair<Integer,Integer>,Pair<Integer,Integer>>>.Version version = tree.publish();
+        int numPages = ps.getNumPages();
+        byte[][] pages = new byte[numPages][];
+        for (int i = 0; i < numPages; i++) {
+            pages[i] = ps.getPage(i, true).getBuf().clone();
+        }
+
+        // inserts into a narrow range split an interior node whose other children are still shared
+        for (int i = 0; i < 40000; i++) {
+            int key = rand.nextInt(1 << 24);
+            if (expected.containsKey(key) || tree.getValFromKey(key) != null) continue;
+            tree.insert(key, i);
+        }
+        assertTrue(ps.getNumPages() > numPages + 300);
+        for (int i = 0; i < numPages; i++) {
+            assertArrayEquals("page " + i, pages[i], ps.getPage(i, true).getBuf());
+        }
+        checkVersion(version, expected);
+    }
+
+    @Test
+    public void testConcurrentReaders() throws Exception {
+        final BTree<Integer,Integer,Pair<Pair<Integer,Integer>,Pair<Integer,Integer>>> tree = newTree();
+        final int numValues = 200000;
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        tree.publish();
+        Thread[] readers = new Thread[4];
+        for (int t = 0; t < readers.length; t++) {
+            readers[t] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        Random rand = new Random(getId());
+                        int lastSize = 0;
+                        while (lastSize < numValues) {
+                            BTree<Integer,Integer,Pair<Pair<Integer,Integer>,Pair<Integer,Integer>>>.Version v = tree.getPublishedVersion();
+                            int size = v.size();
+                            assertTrue(size >= lastSize);
+                            lastSize = size;
+                            if (size == 0) continue;
+                            // appended keys are 2*i with value i
+                            int ord = rand.nextInt(size);
+                            assertEquals(Integer.valueOf(2*ord), v.getKeyFromOrd(ord));
+                            assertEquals(Integer.valueOf(ord), v.getValFromKey(2*ord));
+                            assertEquals(ord, v.getOrdFromKeyFloor(2*ord + 1));
+                            Pair<Pair<Integer,Integer>,Pair<Integer,Integer>> minMax = v.getSummaryFromKeys(null, null);
+                            assertEquals(Integer.valueOf(0), minMax.getKey().getValue());
+                            assertEquals(Integer.valueOf(size - 1), minMax.getValue().getValue());
+                        }
+                    } catch (Throwable e) {
+                        failure.compareAndSet(null, e);
+                    }
+                }
+            };
+            readers[t].start();
+        }
+        for (int i = 0; i < numValues; i++) {
+            tree.insert(2*i, i);
+            if (i % 1000 == 999) {
+                tree.publish();
+            }
+        }
+        tree.publish();
+        for (Thread t : readers) {
+            t.join();
+        }
+        if (failure.get() != null) {
+            throw new AssertionError(failure.get());
+        }
+    }
+
+    private static void checkVersion(BTree<Integer,Integer,Pair<Pair<Integer,Integer>,Pair<Integer,Integer>>>.Version version,
+        TreeMap<Integer,Integer> expected) {
+        assertEquals(expected.size(), version.size());
+        int ord = 0;
+        int min = Integer.MAX_VALUE;
+        int max = Integer.MIN_VALUE;
+        for (Map.Entry<Integer,Integer> e : expected.entrySet()) {
+            assertEquals(e.getValue(), version.getValFromKey(e.getKey()));
+            assertEquals(ord, version.getOrdFromKey(e.getKey()));
+            assertEquals(e.getKey(), version.getKeyFromOrd(ord));
+            min = Math.min(min, e.getValue());
+            max = Math.max(max, e.getValue());
+            ord++;
+        }
+        Pair<Pair<Integer,Integer>,Pair<Integer,Integer>> minMax = version.getSummaryFromKeys(null, null);
+        assertEquals(Integer.valueOf(min), minMax.getKey().getValue());
+        assertEquals(Integer.valueOf(max), minMax.getValue().getValue());
+    }
+}
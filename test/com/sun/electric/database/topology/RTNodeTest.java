@@ -0,0 +1,112 @@
+/* -*- tab-width: 4 -*-
+ *
+ * Electric(tm) VLSI Design System
+ *
+ * File: RTNodeTest.java
+ *
+ * Copyright (c) 2012, Static Free Software. All rights reserved.
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sun.electric.database.topology;
+
+import com.sun.electric.util.math.AbstractFixpRectangle;
+import com.sun.electric.util.math.FixpRectangle;
+
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * Tests of R-Trees built by RTNode.bulkLoad.
+ */
+public class RTNodeTest {
+
+    private static class Box implements RTBounds {
+
+        private final FixpRectangle bounds;
+
+        Box(double x, double y, double w, double h) {
+            bounds = FixpRectangle.from(new Rectangle2D.Double(x, y, w, h));
+        }
+
+        @Override
+        public AbstractFixpRectangle getBounds() {
+            return bounds;
+        }
+    }
+
+    @Test
+    public void testBulkLoad() {
+        Random random = new Random(1);
+        for (int n : new int[]{0, 1, 7, 8, 9, 17, 100, 1000, 12345}) {
+            List<Box> boxes = new ArrayList<Box>();
+            for (int i = 0; i < n; i++) {
+                boxes.add(new Box(random.nextInt(1000), random.nextInt(1000), 1 + random.nextInt(20), 1 + random.nextInt(20)));
+            }
+            RTNode<Box> root = RTNode.bulkLoad(boxes);
+            assertEquals(n, checkNode(root, true, depth(root)));
+            for (int k = 0; k < 20; k++) {
+                Rectangle2D area = new Rectangle2D.Double(random.nextInt(1000), random.nextInt(1000), random.nextInt(100), random.nextInt(100));
+                Set<Box> expected = new HashSet<Box>();
+                for (Box b : boxes) {
+                    Rectangle2D r = b.getBounds();
+                    if (r.getMinX() <= area.getMaxX() && r.getMaxX() >= area.getMinX()
+                            && r.getMinY() <= area.getMaxY() && r.getMaxY() >= area.getMinY()) {
+                        expected.add(b);
+                    }
+                }
+                Set<Box> found = new HashSet<Box>();
+                for (Iterator<Box> it = new RTNode.Search<Box>(area, root, true); it.hasNext();) {
+                    found.add(it.next());
+                }
+                assertEquals(expected, found);
+            }
+        }
+    }
+
+    private static int depth(RTNode<Box> rtn) {
+        return rtn.getFlag() ? 0 : 1 + depth(rtn.getChildTree(0));
+    }
+
+    /**
+     * Checks the node sizes, the bounds and the depth of the leaves, and returns the number of objects.
+     */
+    private static int checkNode(RTNode<Box> rtn, boolean isRoot, int depth) {
+        assertTrue(rtn.getTotal() <= 8);
+        if (!isRoot) {
+            assertTrue(rtn.getTotal() >= 4);
+        }
+        if (rtn.getFlag()) {
+            assertEquals(0, depth);
+            for (int i = 0; i < rtn.getTotal(); i++) {
+                assertTrue(rtn.contains(rtn.getChildLeaf(i).getBounds()));
+            }
+            return rtn.getTotal();
+        }
+        int count = 0;
+        for (int i = 0; i < rtn.getTotal(); i++) {
+            assertTrue(rtn.contains(rtn.getChildTree(i)));
+            count += checkNode(rtn.getChildTree(i), false, depth - 1);
+        }
+        return count;
+    }
+}
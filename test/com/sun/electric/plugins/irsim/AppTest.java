@@ -112,6 +112,98 @@ public class AppTest
         reader.close();
     }
 
+    /**
+     * The event wheel gives the same simulation for any size, including one so small
+     * that almost every event passes through the list of far events.
+     */
+    public void testSmallEventWheel() {
+        Sim wide = makeInverterChains(20, 30, 0);
+        Sim narrow = makeInverterChains(20, 30, 4);
+        simulateToggles(wide, "in", 10, 20000);
+        simulateToggles(narrow, "in", 10, 20000);
+        assertTrue(wide.getNumEvents() > 20 * 30 * 10);
+        assertEquals(wide.getNumEvents(), narrow.getNumEvents());
+        for (SimAPI.Node n : wide.getNodes()) {
+            Sim.Node a = (Sim.Node) n;
+            Sim.Node b = narrow.findNode(a.getName());
+            assertEquals(a.getName(), a.getPot(), b.getPot());
+            Sim.HistEnt ha = a.getHead(), hb = b.getHead();
+            for (;;) {
+                assertEquals(a.getName(), ha.getTime(), hb.getTime());
+                assertEquals(a.getName(), ha.getVal(), hb.getVal());
+                if (ha.next == ha || hb.next == hb) break;
+                ha = ha.next;
+                hb = hb.next;
+            }
+            assertTrue(a.getName(), ha.next == ha && hb.next == hb);
+        }
+    }
+
+    /**
+     * Measures the event rate on a netlist of inverter chains (not run by default:
+     * use "java junit.textui.TestRunner -m com.sun.electric.plugins.irsim.AppTest.benchEventsPerSecond").
+     */
+    public void benchEventsPerSecond() {
+        Sim sim = makeInverterChains(2000, 250, 0);
+        simulateToggles(sim, "in", 2, 100000);
+        long events = sim.getNumEvents();
+        long start = System.nanoTime();
+        simulateToggles(sim, "in", 20, 100000);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        events = sim.getNumEvents() - events;
+        System.out.println("IRSIM: " + events + " events on " + (2000 * 250 * 2) + " transistors in " + seconds +
+            " s = " + (long) (events / seconds) + " events/second");
+    }
+
+    /**
+     * Builds a simulator of chains of inverters all driven by node "in".
+     * @param wheelSize the size of the event wheel, or 0 for the default.
+     */
+    private Sim makeInverterChains(int numChains, int length, int wheelSize) {
+        Sim sim = new Sim(0, "RC", false);
+        Analyzer analyzer = new Analyzer(new FakeGUI(), sim, 0, false);
+        sim.loadConfig(AppTest.class.getResource("scmos0.3.prm"), analyzer);
+        sim.initNetwork();
+        analyzer.initRSim();
+        for (int c = 0; c < numChains; c++) {
+            String prev = "in";
+            for (int i = 0; i < length; i++) {
+                String out = "c" + c + "_" + i;
+                analyzer.putTransistor(prev, "gnd", out, 2.0, 3.0, 9.0, 12.0, c * 20, i * 10, true);
+                analyzer.putTransistor(prev, "vdd", out, 2.0, 6.0, 18.0, 18.0, c * 20, i * 10 + 5, false);
+                prev = out;
+            }
+        }
+        analyzer.finishNetwork();
+        if (wheelSize != 0) {
+            sim.getModel().setWheelSize(wheelSize);
+        }
+        return sim;
+    }
+
+    /**
+     * Drives an input node low and high, settling for a period (in DELTAs) after each change.
+     */
+    private void simulateToggles(Sim sim, String inputName, int numToggles, long period) {
+        Sim.Node in = sim.findNode(inputName);
+        List<SimAPI.Node> xInputs = new ArrayList<SimAPI.Node>();
+        List<SimAPI.Node> hInputs = new ArrayList<SimAPI.Node>();
+        List<SimAPI.Node> lInputs = new ArrayList<SimAPI.Node>();
+        List<SimAPI.Node> uInputs = new ArrayList<SimAPI.Node>();
+        for (int i = 0; i < numToggles; i++) {
+            in.clearFlags(SimAPI.INPUT_MASK);
+            if (i % 2 == 0) {
+                in.setFlags(SimAPI.L_INPUT);
+                lInputs.add(in);
+            } else {
+                in.setFlags(SimAPI.H_INPUT);
+                hInputs.add(in);
+            }
+            long stopTime = sim.getCurDelta() + period;
+            while (sim.step(stopTime, xInputs, hInputs, lInputs, uInputs)) ;
+        }
+    }
+
     private class FakeGUI implements IAnalyzer.GUI {
 
         private List<TestSignal> signals = new ArrayList<TestSignal>();
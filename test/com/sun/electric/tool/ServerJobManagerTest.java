@@ -0,0 +1,99 @@
+/* -*- tab-width: 4 -*-
+ *
+ * Electric(tm) VLSI Design System
+ *
+ * File: ServerJobManagerTest.java
+ *
+ * Copyright (c) 2010, Static Free Software. All rights reserved.
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sun.electric.tool;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.sun.electric.database.Snapshot;
+import com.sun.electric.database.id.IdManager;
+
+/**
+ * Tests that examine jobs which opted in run beside a CHANGE job.
+ */
+public class ServerJobManagerTest {
+
+	private int lastJobId;
+
+	private static class TestJob extends Job {
+		TestJob(String name, Job.Type type) {
+			super(name, null, type, null, null, Job.Priority.USER);
+		}
+
+		@Override
+		public boolean doIt() {
+			return true;
+		}
+	}
+
+	private EJob newEJob(String name, Job.Type type, boolean examineDuringChanges) {
+		TestJob job = new TestJob(name, type);
+		job.setExamineDuringChanges(examineDuringChanges);
+		// negative ids are jobs started by the client
+		job.ejob.jobKey = new Job.Key(0, --lastJobId, true);
+		return job.ejob;
+	}
+
+	@Test
+	public void testExamineDuringChanges() {
+		ServerJobManager jobManager = new ServerJobManager();
+		Snapshot committed = new IdManager().getInitialSnapshot();
+
+		// a finished change job commits its snapshot
+		EJob firstChange = newEJob("first change", Job.Type.CHANGE, false);
+		jobManager.queueJob(firstChange, false);
+		assertSame(firstChange, jobManager.selectEJob());
+		firstChange.newSnapshot = committed;
+		jobManager.finishEJob(firstChange);
+
+		// start another change job and keep it running
+		EJob change = newEJob("change", Job.Type.CHANGE, false);
+		jobManager.queueJob(change, false);
+		assertTrue(jobManager.canStartJob());
+		assertSame(change, jobManager.selectEJob());
+
+		// an examine job which didn't opt in waits for the change job
+		EJob waiting = newEJob("waiting examine", Job.Type.SERVER_EXAMINE, false);
+		jobManager.queueJob(waiting, false);
+		assertFalse(jobManager.canStartJob());
+		jobManager.removeJob(waiting.getJob());
+
+		// an examine job which opted in starts on the committed snapshot
+		EJob examine = newEJob("examine", Job.Type.SERVER_EXAMINE, true);
+		jobManager.queueJob(examine, false);
+		assertTrue(jobManager.canStartJob());
+		assertSame(examine, jobManager.selectEJob());
+		assertEquals(EJob.State.RUNNING, examine.state);
+		assertNotNull(examine.database);
+		assertSame(committed, examine.database.backup());
+
+		// it still waits when it was started on the result of the running job
+		EJob onMySnapshot = newEJob("on my snapshot", Job.Type.SERVER_EXAMINE, true);
+		jobManager.queueJob(onMySnapshot, true);
+		assertFalse(jobManager.canStartJob());
+	}
+}
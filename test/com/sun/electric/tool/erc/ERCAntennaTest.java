@@ -0,0 +1,98 @@
+/* -*- tab-width: 4 -*-
+ *
+ * Electric(tm) VLSI Design System
+ *
+ * File: ERCAntennaTest.java
+ *
+ * Copyright (c) 2010, Static Free Software. All rights reserved.
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sun.electric.tool.erc;
+
+import static org.junit.Assert.assertEquals;
+
+import java.awt.geom.Point2D;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.sun.electric.database.EditingPreferences;
+import com.sun.electric.database.hierarchy.Cell;
+import com.sun.electric.database.hierarchy.EDatabase;
+import com.sun.electric.database.hierarchy.Library;
+import com.sun.electric.database.topology.ArcInst;
+import com.sun.electric.database.topology.NodeInst;
+import com.sun.electric.technology.ArcProto;
+import com.sun.electric.technology.PrimitiveNode;
+import com.sun.electric.technology.Technology;
+import com.sun.electric.tool.erc.ERCAntenna.AntennaPreferences;
+import com.sun.electric.tool.user.ErrorLogger;
+import com.sun.electric.tool.util.test.AbstractJunitBaseClass;
+
+/**
+ * Tests that the antenna check finds the same errors with one and with several threads.
+ */
+public class ERCAntennaTest extends AbstractJunitBaseClass {
+
+	@Test
+	public void testParallelMeasure() throws Exception {
+		Cell cell = makeGateNets(12);
+		AntennaPreferences antennaPrefs = new AntennaPreferences(true, EDatabase.serverDatabase().getTechPool());
+		// low ratios make every net that reaches only gates an error
+		for (Iterator<ArcProto> it = cell.getTechnology().getArcs(); it.hasNext(); )
+			antennaPrefs.antennaRatio.put(it.next().getId(), Double.valueOf(0.01));
+
+		antennaPrefs.numThreads = 1;
+		List<String> serial = getMessages(ERCAntenna.checkERCAntennaErrors(cell, antennaPrefs));
+		antennaPrefs.numThreads = 4;
+		List<String> parallel = getMessages(ERCAntenna.checkERCAntennaErrors(cell, antennaPrefs));
+
+		assertEquals(12, serial.size());
+		assertEquals(serial, parallel);
+	}
+
+	/**
+	 * Makes a layout cell with transistors whose gates connect only to poly wires of different lengths.
+	 */
+	private static Cell makeGateNets(int numNets) {
+		EDatabase database = EDatabase.serverDatabase();
+		database.lowLevelBeginChanging(null);
+		EditingPreferences ep = new EditingPreferences(true, database.getTechPool());
+		Technology tech = Technology.findTechnology("mocmos");
+		PrimitiveNode transistor = tech.findNodeProto("N-Transistor");
+		PrimitiveNode pin = tech.findNodeProto("Polysilicon-1-Pin");
+		ArcProto poly = tech.findArcProto("Polysilicon-1");
+
+		Library lib = Library.newInstance("antennaTest", null);
+		Cell cell = Cell.makeInstance(ep, lib, "gates{lay}");
+		for (int i = 0; i < numNets; i++) {
+			NodeInst tran = NodeInst.makeInstance(transistor, ep, new Point2D.Double(i * 30, 0),
+				transistor.getDefWidth(ep), transistor.getDefHeight(ep), cell);
+			NodeInst end = NodeInst.makeInstance(pin, ep, new Point2D.Double(i * 30, 20 + i * 10),
+				pin.getDefWidth(ep), pin.getDefHeight(ep), cell);
+			ArcInst.makeInstance(poly, ep, tran.getTransistorGatePort(), end.getOnlyPortInst());
+		}
+		return cell;
+	}
+
+	private static List<String> getMessages(ErrorLogger errorLogger) {
+		List<String> messages = new ArrayList<String>();
+		for (Iterator<ErrorLogger.MessageLog> it = errorLogger.getLogs(); it.hasNext(); )
+			messages.add(it.next().getMessageString());
+		return messages;
+	}
+}
@@ -0,0 +1,86 @@
+/* -*- tab-width: 4 -*-
+ *
+ * Electric(tm) VLSI Design System
+ *
+ * File: ConcurrentUnionFindTest.java
+ *
+ * Copyright (c) 2010, Static Free Software. All rights reserved.
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sun.electric.tool.erc.wellcheck;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Unions random pairs from several threads and compares the classes with a serial labeling.
+ */
+public class ConcurrentUnionFindTest {
+
+	@Test
+	public void testConcurrentUnions() throws Exception {
+		final int size = 100000;
+		final int numThreads = 4;
+		final int[][] pairs = new int[numThreads][];
+		Random rand = new Random(1);
+		for (int t = 0; t < numThreads; t++) {
+			pairs[t] = new int[size / 2];
+			for (int i = 0; i < pairs[t].length; i++)
+				pairs[t][i] = rand.nextInt(size);
+		}
+
+		// serial labeling: every element points to the smallest element of its class
+		int[] label = new int[size];
+		for (int i = 0; i < size; i++)
+			label[i] = i;
+		boolean changed = true;
+		while (changed) {
+			changed = false;
+			for (int[] p : pairs) {
+				for (int i = 0; i < p.length; i += 2) {
+					int min = Math.min(label[p[i]], label[p[i + 1]]);
+					if (label[p[i]] != min || label[p[i + 1]] != min) {
+						label[p[i]] = label[p[i + 1]] = min;
+						changed = true;
+					}
+				}
+			}
+			for (int i = 0; i < size; i++)
+				label[i] = label[label[i]];
+		}
+
+		final ConcurrentUnionFind uf = new ConcurrentUnionFind(size);
+		Thread[] threads = new Thread[numThreads];
+		for (int t = 0; t < numThreads; t++) {
+			final int[] p = pairs[t];
+			threads[t] = new Thread() {
+				public void run() {
+					for (int i = 0; i < p.length; i += 2)
+						uf.union(p[i], p[i + 1]);
+				}
+			};
+			threads[t].start();
+		}
+		for (Thread thread : threads)
+			thread.join();
+
+		assertEquals(size, uf.size());
+		for (int i = 0; i < size; i++)
+			assertEquals(label[i], uf.find(i));
+	}
+}
@@ -0,0 +1,129 @@
+/* -*- tab-width: 4 -*-
+ *
+ * Electric(tm) VLSI Design System
+ *
+ * File: DEFIndexedImportTest.java
+ *
+ * Copyright (c) 2012, Static Free Software. All rights reserved.
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sun.electric.tool.io.input;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.HashMap;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.electric.database.EditingPreferences;
+import com.sun.electric.database.hierarchy.Cell;
+import com.sun.electric.database.hierarchy.EDatabase;
+import com.sun.electric.database.hierarchy.Library;
+import com.sun.electric.technology.Technology;
+import com.sun.electric.tool.user.ErrorLogger;
+import com.sun.electric.tool.util.test.AbstractJunitBaseClass;
+
+/**
+ * Tests that the indexed DEF import makes the same cell as the default import.
+ */
+public class DEFIndexedImportTest extends AbstractJunitBaseClass {
+
+	private static final int NUM_COMPONENTS = 40;
+
+	private File defFile;
+
+	@Before
+	public void setUp() throws IOException {
+		defFile = File.createTempFile("defImport", ".def");
+	}
+
+	@After
+	public void tearDown() {
+		defFile.delete();
+	}
+
+	@Test
+	public void testSameCell() throws IOException {
+		writeDEF(true);
+		Cell plain = importDEF("plainImport", false);
+		Cell indexed = importDEF("indexedImport", true);
+		// one instance per component and the cell center
+		assertEquals(NUM_COMPONENTS + 1, plain.getNumNodes());
+		assertEquals(NUM_COMPONENTS - 1, plain.getNumArcs());
+		assertEquals(plain.getNumNodes(), indexed.getNumNodes());
+		assertEquals(plain.getNumArcs(), indexed.getNumArcs());
+	}
+
+	@Test
+	public void testTruncatedComponents() throws IOException {
+		// the components read before the error are still created
+		writeDEF(false);
+		Cell plain = importDEF("plainTruncated", false);
+		Cell indexed = importDEF("indexedTruncated", true);
+		assertEquals(NUM_COMPONENTS + 1, plain.getNumNodes());
+		assertEquals(plain.getNumNodes(), indexed.getNumNodes());
+	}
+
+	/**
+	 * Writes a design of dummy cell instances in a row, each connected to the next one.
+	 * @param complete false to stop the file inside the COMPONENTS section.
+	 */
+	private void writeDEF(boolean complete) throws IOException {
+		Writer out = new FileWriter(defFile);
+		out.write("VERSION 5.7 ;\n");
+		out.write("DIVIDERCHAR \"/\" ;\n");
+		out.write("BUSBITCHARS \"[]\" ;\n");
+		out.write("DESIGN top ;\n");
+		out.write("UNITS DISTANCE MICRONS 1000 ;\n");
+		out.write("DIEAREA ( 0 0 ) ( " + (NUM_COMPONENTS * 200000) + " 200000 ) ;\n");
+		out.write("COMPONENTS " + NUM_COMPONENTS + " ;\n");
+		for (int i = 0; i < NUM_COMPONENTS; i++)
+			out.write("- u" + i + " INV + PLACED ( " + (i * 200000) + " 0 ) N ;\n");
+		if (complete) {
+			out.write("END COMPONENTS\n");
+			out.write("NETS " + (NUM_COMPONENTS - 1) + " ;\n");
+			for (int i = 0; i + 1 < NUM_COMPONENTS; i++)
+				out.write("- n" + i + " ( u" + i + " dummyPort ) ( u" + (i + 1) + " dummyPort ) ;\n");
+			out.write("END NETS\n");
+			out.write("END DESIGN\n");
+		}
+		out.close();
+	}
+
+	private Cell importDEF(String libName, boolean indexedImport) throws IOException {
+		EDatabase database = EDatabase.serverDatabase();
+		database.lowLevelBeginChanging(null);
+		EditingPreferences ep = new EditingPreferences(true, database.getTechPool());
+		Technology tech = Technology.findTechnology("mocmos");
+		Library lib = Library.newInstance(libName, null);
+
+		DEF.DEFPreferences prefs = new DEF.DEFPreferences(true);
+		prefs.makeDummyCells = true;
+		prefs.indexedImport = indexedImport;
+		Input.errorLogger = ErrorLogger.newInstance("DEF Import");
+		prefs.doInput(defFile.toURI().toURL(), lib, tech, ep, new HashMap<Library,Cell>(), null, null);
+
+		Cell cell = lib.findNodeProto("top{lay}");
+		assertNotNull(cell);
+		return cell;
+	}
+}
@@ -0,0 +1,176 @@
+/* -*- tab-width: 4 -*-
+ *
+ * Electric(tm) VLSI Design System
+ *
+ * File: GDSParallelReadTest.java
+ *
+ * Copyright (c) 2012, Static Free Software. All rights reserved.
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sun.electric.tool.io.input;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.BitSet;
+import java.util.HashMap;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.electric.database.EditingPreferences;
+import com.sun.electric.database.hierarchy.Cell;
+import com.sun.electric.database.hierarchy.EDatabase;
+import com.sun.electric.database.hierarchy.Library;
+import com.sun.electric.database.id.CellId;
+import com.sun.electric.technology.Technology;
+import com.sun.electric.tool.user.ErrorLogger;
+import com.sun.electric.tool.util.test.AbstractJunitBaseClass;
+
+/**
+ * Tests that the parallel GDS reader makes the same cells as the serial one.
+ */
+public class GDSParallelReadTest extends AbstractJunitBaseClass {
+
+	private static final int NUM_CELLS = 30;
+	private static final int NUM_BOXES = 50;
+
+	private File gdsFile;
+	private DataOutputStream out;
+
+	@Before
+	public void setUp() throws IOException {
+		gdsFile = File.createTempFile("gdsRead", ".gds");
+	}
+
+	@After
+	public void tearDown() {
+		gdsFile.delete();
+	}
+
+	@Test
+	public void testSameCells() throws IOException {
+		writeGDS();
+		Library serial = readGDS("serialRead", false);
+		Library parallel = readGDS("parallelRead", true);
+		assertEquals(NUM_CELLS, serial.getNumCells());
+		assertEquals(serial.getNumCells(), parallel.getNumCells());
+		for (int c = 0; c < NUM_CELLS; c++) {
+			Cell serialCell = serial.findNodeProto("sub" + c + "{lay}");
+			Cell parallelCell = parallel.findNodeProto("sub" + c + "{lay}");
+			assertNotNull(serialCell);
+			assertNotNull(parallelCell);
+			assertEquals(serialCell.getNumNodes(), parallelCell.getNumNodes());
+		}
+	}
+
+	/**
+	 * Writes a chain of cells, each with boxes on a known and two unknown layers
+	 * and an instance of the previous cell.
+	 */
+	private void writeGDS() throws IOException {
+		out = new DataOutputStream(new FileOutputStream(gdsFile));
+		shorts(0x00, 600);                                    // HEADER
+		shorts(0x01, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0);     // BGNLIB
+		string(0x02, "LIB");                                  // LIBNAME
+		out.writeShort(20);                                   // UNITS
+		out.writeShort(0x0305);
+		out.writeLong(real(0.001));
+		out.writeLong(real(1e-9));
+		for (int c = 0; c < NUM_CELLS; c++) {
+			shorts(0x05, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0); // BGNSTR
+			string(0x06, "sub" + c);                          // STRNAME
+			for (int i = 0; i < NUM_BOXES; i++)
+				box(i % 3 == 0 ? 49 : 199 + i % 3, i * 1000, c * 100, 500, 500);
+			if (c > 0) {
+				shorts(0x0A);                                 // SREF
+				string(0x12, "sub" + (c - 1));                // SNAME
+				ints(0x10, 0, 5000);                          // XY
+				shorts(0x11);                                 // ENDEL
+			}
+			shorts(0x07);                                     // ENDSTR
+		}
+		shorts(0x04);                                         // ENDLIB
+		out.close();
+	}
+
+	private void box(int layer, int x, int y, int w, int h) throws IOException {
+		shorts(0x08);                                         // BOUNDARY
+		shorts(0x0D, layer);                                  // LAYER
+		shorts(0x0E, 0);                                      // DATATYPE
+		ints(0x10, x, y, x + w, y, x + w, y + h, x, y + h, x, y);
+		shorts(0x11);                                         // ENDEL
+	}
+
+	private void shorts(int record, int... values) throws IOException {
+		out.writeShort(4 + 2 * values.length);
+		out.writeByte(record);
+		out.writeByte(values.length == 0 ? 0 : 2);
+		for (int v : values)
+			out.writeShort(v);
+	}
+
+	private void ints(int record, int... values) throws IOException {
+		out.writeShort(4 + 4 * values.length);
+		out.writeByte(record);
+		out.writeByte(3);
+		for (int v : values)
+			out.writeInt(v);
+	}
+
+	private void string(int record, String s) throws IOException {
+		if (s.length() % 2 != 0)
+			s += "\0";
+		out.writeShort(4 + s.length());
+		out.writeByte(record);
+		out.writeByte(6);
+		out.writeBytes(s);
+	}
+
+	/**
+	 * Encodes a GDS 8-byte real: a sign bit, a base-16 exponent in excess 64, and a 56-bit mantissa.
+	 */
+	private static long real(double value) {
+		int exponent = 64;
+		while (value >= 1) {
+			value /= 16;
+			exponent++;
+		}
+		while (value < 1.0 / 16) {
+			value *= 16;
+			exponent--;
+		}
+		return ((long) exponent << 56) | (long) (value * (1L << 56));
+	}
+
+	private Library readGDS(String libName, boolean parallelRead) throws IOException {
+		EDatabase database = EDatabase.serverDatabase();
+		database.lowLevelBeginChanging(null);
+		EditingPreferences ep = new EditingPreferences(true, database.getTechPool());
+		Technology tech = Technology.findTechnology("mocmos");
+		Library lib = Library.newInstance(libName, null);
+
+		GDS.GDSPreferences prefs = new GDS.GDSPreferences(true);
+		prefs.parallelRead = parallelRead;
+		Input.errorLogger = ErrorLogger.newInstance("GDS Import");
+		prefs.doInput(gdsFile.toURI().toURL(), lib, tech, ep, new HashMap<Library,Cell>(), new HashMap<CellId,BitSet>(), null);
+		return lib;
+	}
+}
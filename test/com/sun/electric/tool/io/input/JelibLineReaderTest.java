@@ -0,0 +1,196 @@
+/* -*- tab-width: 4 -*-
+ *
+ * Electric(tm) VLSI Design System
+ *
+ * File: JelibLineReaderTest.java
+ *
+ * Copyright (c) 2012, Static Free Software. All rights reserved.
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sun.electric.tool.io.input;
+
+import java.io.IOException;
+import java.io.LineNumberReader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+import org.junit.Ignore;
+import org.junit.Test;
+
+/**
+ * Unit tests of JelibLineReader.
+ */
+public class JelibLineReaderTest {
+
+    private static final String[] LINES = {
+        "Hmylib|9.07",
+        "Nnmos@0|pin@0||-12.5|7|2.5|3|RRR|0|ART_message(D5G2;)S\"a|b\"",
+        "Igate;1{ic}|\"sig\"2|D5G1;|0|-0|||D0G4;",
+        "Ametal-1|net@3|\\\"esc\\|aped\\\"|1.5|S1800|pin@0||0.000001|123456789.125|pin@1|a|1e3|.5",
+        "",
+        "N",
+        "Eout||D5G2;|pin@0||O",
+    };
+
+    @Test
+    public void testLineTerminators() throws IOException {
+        String text = "a\nbb\r\nccc\r\rd";
+        JelibLineReader reader = new JelibLineReader(new StringReader(text));
+        LineNumberReader expected = new LineNumberReader(new StringReader(text));
+        for (;;) {
+            String line = reader.readLine();
+            assertEquals(expected.readLine(), line);
+            assertEquals(expected.getLineNumber(), reader.getLineNumber());
+            if (line == null) break;
+        }
+    }
+
+    @Test
+    public void testSplitFields() throws IOException {
+        JelibLineReader reader = new JelibLineReader(new StringReader(join(LINES)));
+        for (String line : LINES) {
+            assertTrue(reader.nextLine());
+            assertEquals(line, reader.getLine());
+            if (line.length() == 0) continue;
+            List<String> expected = parseLine(line, '\\');
+            int numFields = reader.splitFields('\\');
+            assertEquals(expected.size(), numFields);
+            for (int i = 0; i < numFields; i++)
+                assertEquals(expected.get(i), reader.getField(i));
+            assertEquals(expected.subList(1, numFields), reader.getFields(1));
+        }
+        assertFalse(reader.nextLine());
+    }
+
+    @Test
+    public void testUnQuotedField() throws IOException {
+        JelibLineReader reader = new JelibLineReader(new StringReader("N\"abc\"|abc|\"a\\\"c\"|\"x\"2"));
+        reader.nextLine();
+        reader.splitFields('\\');
+        assertEquals("abc", reader.getUnQuotedField(0, true, '\\'));
+        assertEquals("abc", reader.getUnQuotedField(1, true, '\\'));
+        assertNull(reader.getUnQuotedField(2, true, '\\'));
+        assertNull(reader.getUnQuotedField(3, true, '\\'));
+    }
+
+    @Test
+    public void testSharedStrings() throws IOException {
+        JelibLineReader reader = new JelibLineReader(new StringReader("Npin|D5G1;\nNpin|D5G1;"));
+        reader.nextLine();
+        reader.splitFields('\\');
+        String name = reader.getField(0);
+        String td = reader.getField(1);
+        reader.nextLine();
+        reader.splitFields('\\');
+        assertSame(name, reader.getField(0));
+        assertSame(td, reader.getField(1));
+    }
+
+    @Test
+    public void testGetDouble() throws IOException {
+        Random random = new Random(7);
+        StringBuilder sb = new StringBuilder("N");
+        List<String> values = new ArrayList<String>();
+        String[] special = { "0", "-0", "1.", ".5", "-.25", "007.100", "1e3", "-2.5E-4", "12345678901234567890.5",
+            "0.000000000000000000000000001", "3.14159265358979", "9007199254740993" };
+        for (String s : special)
+            values.add(s);
+        for (int i = 0; i < 2000; i++) {
+            double v = (random.nextDouble() - 0.5) * Math.pow(10, random.nextInt(12) - 4);
+            values.add(Double.toString(v));
+            values.add(String.format(Locale.US, "%.3f", v));
+        }
+        for (int i = 0; i < values.size(); i++) {
+            if (i > 0) sb.append('|');
+            sb.append(values.get(i));
+        }
+        JelibLineReader reader = new JelibLineReader(new StringReader(sb.toString()));
+        reader.nextLine();
+        assertEquals(values.size(), reader.splitFields('\\'));
+        for (int i = 0; i < values.size(); i++) {
+            double expected = Double.parseDouble(values.get(i));
+            assertEquals(values.get(i), Double.doubleToLongBits(expected), Double.doubleToLongBits(reader.getDouble(i)));
+        }
+    }
+
+    @Ignore
+    @Test
+    public void benchTokenize() throws IOException {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 200000; i++) {
+            sb.append("Nnmos@0|n").append(i % 5000).append("||").append(i * 0.5).append("|-7.5|2.5|3|RRR|0|\n");
+            sb.append("Ametal-1|net@").append(i).append("|D5G1;|1.5|S1800|n").append(i % 5000)
+                .append("|s|12.5|7|n").append((i + 1) % 5000).append("|d|13|7\n");
+        }
+        String text = sb.toString();
+        for (int k = 0; k < 5; k++) {
+            long startTime = System.currentTimeMillis();
+            LineNumberReader lineReader = new LineNumberReader(new StringReader(text));
+            double sum = 0;
+            for (String line; (line = lineReader.readLine()) != null; ) {
+                List<String> pieces = parseLine(line, '\\');
+                sum += Double.parseDouble(pieces.get(3));
+            }
+            long midTime = System.currentTimeMillis();
+            JelibLineReader reader = new JelibLineReader(new StringReader(text));
+            double sum2 = 0;
+            while (reader.nextLine()) {
+                reader.splitFields('\\');
+                reader.getField(1);
+                sum2 += reader.getDouble(3);
+            }
+            long stopTime = System.currentTimeMillis();
+            assertEquals(sum, sum2, 0);
+            System.out.println("LineNumberReader+parseLine t=" + (midTime - startTime) + " JelibLineReader t=" + (stopTime - midTime));
+        }
+    }
+
+    private static String join(String[] lines) {
+        StringBuilder sb = new StringBuilder();
+        for (String line : lines)
+            sb.append(line).append('\n');
+        return sb.toString();
+    }
+
+    /**
+     * The field splitting of JelibParser.parseLine().
+     */
+    private static List<String> parseLine(String line, char escapeChar) {
+        List<String> stringPieces = new ArrayList<String>();
+        int len = line.length();
+        int pos = 1;
+        int startPos = 1;
+        boolean inQuote = false;
+        while (pos < len) {
+            char chr = line.charAt(pos++);
+            if (chr == escapeChar) {
+                pos++;
+                continue;
+            }
+            if (chr == '"') inQuote = !inQuote;
+            if (chr == '|' && !inQuote) {
+                stringPieces.add(line.substring(startPos, pos - 1));
+                startPos = pos;
+            }
+        }
+        if (pos > len) pos = len;
+        stringPieces.add(line.substring(startPos, pos));
+        return stringPieces;
+    }
+}
@@ -0,0 +1,200 @@
+/* -*- tab-width: 4 -*-
+ *
+ * Electric(tm) VLSI Design System
+ *
+ * File: MappedWaveformTest.java
+ *
+ * Copyright (c) 2012, Static Free Software. All rights reserved.
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sun.electric.tool.io.input;
+
+import com.sun.electric.tool.Job;
+import com.sun.electric.tool.simulation.LazySignal;
+import com.sun.electric.tool.simulation.ScalarSample;
+import com.sun.electric.tool.simulation.Signal;
+import com.sun.electric.tool.simulation.SignalCollection;
+import com.sun.electric.tool.simulation.Stimuli;
+import com.sun.electric.tool.util.test.TstUserInterface;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests of the memory-mapped HSpice and raw waveform readers.
+ */
+public class MappedWaveformTest {
+
+    private static final int NUM_ROWS = 1000;
+
+    private File dir;
+
+    @Before
+    public void setUp() throws IOException {
+        Job.setUserInterface(new TstUserInterface());
+        dir = File.createTempFile("waveform", "");
+        dir.delete();
+        dir.mkdir();
+    }
+
+    @After
+    public void tearDown() {
+        deleteAll(dir);
+    }
+
+    @Test
+    public void testHSpice() throws IOException {
+        // HSpice files cannot be compressed, so compare with the values that were written
+        Stimuli sd = new HSpiceOut().processInput(write("mapped", "test.tr0", makeHSpiceFile(), false).toURI().toURL(), null, new Stimuli());
+        SignalCollection sc = sd.findSignalCollection("TRANS SIGNALS");
+        assertEquals(2, sc.getSignals().size());
+        for (Signal<?> sig : sc.getSignals()) {
+            assertFalse(((LazySignal<?>)sig).isLoaded());
+            assertEquals(0, sig.getMinTime(), 0);
+            assertEquals((NUM_ROWS - 1) * 1e-9f, sig.getMaxTime(), 0);
+            assertFalse(((LazySignal<?>)sig).isLoaded());
+        }
+        Signal.View<?> a = sc.findSignal("a").getExactView();
+        Signal.View<?> b = sc.findSignal("b").getExactView();
+        assertEquals(NUM_ROWS, a.getNumEvents());
+        assertEquals(NUM_ROWS, b.getNumEvents());
+        for (int i = 0; i < NUM_ROWS; i++) {
+            assertEquals(i * 1e-9f, a.getTime(i), 0);
+            assertEquals((float)Math.sin(i * 0.01), ((ScalarSample)a.getSample(i)).getValue(), 1e-4);
+            assertEquals(i % 7, ((ScalarSample)b.getSample(i)).getValue(), 1e-4);
+        }
+    }
+
+    @Test
+    public void testRaw() throws IOException {
+        byte[] contents = makeRawFile();
+        Stimuli mapped = new RawSpiceOut().processInput(write("mapped", "test.raw", contents, false).toURI().toURL(), null, new Stimuli());
+        Stimuli streamed = new RawSpiceOut().processInput(write("streamed", "test.raw.gz", contents, true).toURI().toURL(), null, new Stimuli());
+        checkSame(streamed.findSignalCollection("TRANS SIGNALS"), mapped.findSignalCollection("TRANS SIGNALS"), 2);
+    }
+
+    /** the mapped signals are read only when needed, and then have the same samples */
+    private static void checkSame(SignalCollection expected, SignalCollection mapped, int numSignals) {
+        assertEquals(numSignals, expected.getSignals().size());
+        assertEquals(numSignals, mapped.getSignals().size());
+        List<Signal<?>> signals = new ArrayList<Signal<?>>();
+        for (Signal<?> sig : mapped.getSignals()) {
+            assertTrue(sig instanceof LazySignal);
+            assertFalse(((LazySignal<?>)sig).isLoaded());
+            Signal<?> exp = expected.findSignal(sig.getFullName());
+            assertEquals(exp.getMinTime(), sig.getMinTime(), 0);
+            assertEquals(exp.getMaxTime(), sig.getMaxTime(), 0);
+            assertFalse(((LazySignal<?>)sig).isLoaded());
+            signals.add(sig);
+        }
+        LazySignal.loadAll(signals);
+        for (Signal<?> sig : signals) {
+            assertTrue(((LazySignal<?>)sig).isLoaded());
+            Signal.View<?> view = sig.getExactView();
+            Signal.View<?> expView = expected.findSignal(sig.getFullName()).getExactView();
+            assertEquals(expView.getNumEvents(), view.getNumEvents());
+            for (int i = 0; i < view.getNumEvents(); i++) {
+                assertEquals(expView.getTime(i), view.getTime(i), 0);
+                assertEquals(expView.getSample(i), view.getSample(i));
+            }
+        }
+    }
+
+    /** an HSpice 9601 binary file with nodes "a" and "b", in blocks whose size splits some numbers */
+    private static byte[] makeHSpiceFile() throws IOException {
+        StringBuilder header = new StringBuilder();
+        header.append("   3").append("   0").append("   0").append("   0").append("9601");
+        header.append(pad("title", 76)).append(pad("date", 16)).append(pad("copyright", 72));
+        header.append("   0").append(pad("", 76));
+        for (int i = 0; i < 3; i++) header.append(pad("       1", 8));
+        header.append(pad("TIME", 16)).append(pad("v(a)", 16)).append(pad("v(b)", 16));
+        header.append("$&%#");
+        ByteBuffer data = ByteBuffer.allocate((NUM_ROWS * 3 + 1) * 4);
+        for (int i = 0; i < NUM_ROWS; i++) {
+            data.putFloat(i * 1e-9f);
+            data.putFloat((float)Math.sin(i * 0.01));
+            data.putFloat(i % 7);
+        }
+        data.putFloat(1.00000001E30f);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writeHSpiceBlock(out, header.toString().getBytes("US-ASCII"), 0, header.length());
+        for (int pos = 0; pos < data.capacity(); pos += 1001)
+            writeHSpiceBlock(out, data.array(), pos, Math.min(1001, data.capacity() - pos));
+        return out.toByteArray();
+    }
+
+    private static void writeHSpiceBlock(ByteArrayOutputStream out, byte[] buf, int ofs, int len) {
+        ByteBuffer header = ByteBuffer.allocate(16);
+        header.putInt(4).putInt((len + 7) / 8).putInt(4).putInt(len);
+        out.write(header.array(), 0, 16);
+        out.write(buf, ofs, len);
+        out.write(header.array(), 12, 4);
+    }
+
+    /** a Spice3 raw file with a binary section of doubles in native byte order */
+    private static byte[] makeRawFile() throws IOException {
+        String header = "Title: test\nDate: today\nPlotname: Transient Analysis\nFlags: real\n" +
+            "No. Variables: 3\nNo. Points: " + NUM_ROWS + "\nVariables:\n" +
+            "\t0\ttime\ttime\n\t1\ta\tvoltage\n\t2\tb\tvoltage\nBinary:\n";
+        ByteBuffer data = ByteBuffer.allocate(NUM_ROWS * 3 * 8).order(ByteOrder.nativeOrder());
+        for (int i = 0; i < NUM_ROWS; i++) {
+            data.putDouble(i * 1e-9);
+            data.putDouble(Math.cos(i * 0.01));
+            data.putDouble(i % 5);
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(header.getBytes("US-ASCII"));
+        out.write(data.array());
+        return out.toByteArray();
+    }
+
+    private static String pad(String s, int len) {
+        StringBuilder sb = new StringBuilder(s);
+        while (sb.length() < len) sb.append(' ');
+        return sb.toString();
+    }
+
+    private File write(String subdir, String name, byte[] contents, boolean gzip) throws IOException {
+        File d = new File(dir, subdir);
+        d.mkdir();
+        File f = new File(d, name);
+        OutputStream out = new FileOutputStream(f);
+        if (gzip) out = new GZIPOutputStream(out);
+        out.write(contents);
+        out.close();
+        return f;
+    }
+
+    private static void deleteAll(File f) {
+        File[] files = f.listFiles();
+        if (files != null)
+            for (File c : files) deleteAll(c);
+        f.delete();
+    }
+}
@@ -0,0 +1,197 @@
+/* -*- tab-width: 4 -*-
+ *
+ * Electric(tm) VLSI Design System
+ *
+ * File: ArrayHashCodePartitioningTest.java
+ *
+ * Copyright (c) 2012, Static Free Software. All rights reserved.
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sun.electric.tool.ncc.processing;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+import org.junit.Ignore;
+import org.junit.Test;
+
+/**
+ * Unit tests of ArrayHashCodePartitioning on generated NAND2 logic.
+ */
+public class ArrayHashCodePartitioningTest {
+
+    private static final int NMOS = 1, PMOS = 2;
+    /** drain, gate, source: the diffusions are interchangeable */
+    private static final int[] NMOS_COEFFS = {31, 37, 31};
+    private static final int[] PMOS_COEFFS = {41, 43, 41};
+
+    /**
+     * NAND2 gates whose inputs are primary inputs or outputs of earlier gates.
+     * Wires 0 and 1 are power and ground, then the primary inputs, then the
+     * output and the series node of each gate.
+     */
+    private static class Nands {
+        final int numInputs, numGates;
+        final int[] inA, inB;
+
+        Nands(int numInputs, int numGates, long seed) {
+            this.numInputs = numInputs;
+            this.numGates = numGates;
+            inA = new int[numGates];
+            inB = new int[numGates];
+            Random rand = new Random(seed);
+            for (int g = 0; g < numGates; g++) {
+                inA[g] = pickInput(rand, g);
+                inB[g] = pickInput(rand, g);
+            }
+        }
+        private int pickInput(Random rand, int g) {
+            int i = rand.nextInt(numInputs + Math.min(g, 1000));
+            return i < numInputs ? 2 + i : out(g - 1 - (i - numInputs));
+        }
+        int numWires() { return 2 + numInputs + 2 * numGates; }
+        int numParts() { return 4 * numGates; }
+        int out(int g) { return 2 + numInputs + 2 * g; }
+        int mid(int g) { return out(g) + 1; }
+        /** the wires and type of a part: 2 PMOS in parallel, 2 NMOS in series */
+        int[] pins(int part) {
+            int g = part / 4;
+            switch (part % 4) {
+                case 0: return new int[] {out(g), inA[g], 0};
+                case 1: return new int[] {out(g), inB[g], 0};
+                case 2: return new int[] {out(g), inA[g], mid(g)};
+                default: return new int[] {mid(g), inB[g], 1};
+            }
+        }
+        int type(int part) { return part % 4 < 2 ? PMOS : NMOS; }
+
+        /**
+         * Add the netlist with its wires and parts in the order of the permutations,
+         * swapping the diffusions of some transistors.
+         * @return the number given by the builder to each part, then to each wire
+         */
+        int[][] addTo(ArrayHashCodePartitioning.Builder b, int netlist, int[] wireOrder, int[] partOrder, Random swap) {
+            int[] wireNums = new int[numWires()];
+            for (int w : wireOrder) wireNums[w] = b.addWire(netlist, 0);
+            int[] partNums = new int[numParts()];
+            for (int p : partOrder) {
+                int[] pins = pins(p);
+                int[] wires = new int[3];
+                for (int i = 0; i < 3; i++) wires[i] = wireNums[pins[i]];
+                if (swap != null && swap.nextBoolean()) {
+                    int t = wires[0]; wires[0] = wires[2]; wires[2] = t;
+                }
+                partNums[p] = b.addPart(netlist, type(p), wires, type(p) == PMOS ? PMOS_COEFFS : NMOS_COEFFS);
+            }
+            return new int[][] {partNums, wireNums};
+        }
+    }
+
+    private static int[] identity(int n) {
+        int[] a = new int[n];
+        for (int i = 0; i < n; i++) a[i] = i;
+        return a;
+    }
+    private static int[] shuffled(int n, Random rand) {
+        int[] a = identity(n);
+        for (int i = n - 1; i > 0; i--) {
+            int j = rand.nextInt(i + 1);
+            int t = a[i]; a[i] = a[j]; a[j] = t;
+        }
+        return a;
+    }
+
+    /** the generated netlist, and a copy in another order */
+    private static class Compared {
+        final ArrayHashCodePartitioning partitioning;
+        final int[][] nums0, nums1;
+
+        Compared(Nands n0, Nands n1, int numThreads) {
+            Random rand = new Random(7);
+            ArrayHashCodePartitioning.Builder b = new ArrayHashCodePartitioning.Builder(2);
+            nums0 = n0.addTo(b, 0, identity(n0.numWires()), identity(n0.numParts()), null);
+            nums1 = n1.addTo(b, 1, shuffled(n1.numWires(), rand), shuffled(n1.numParts(), rand), rand);
+            partitioning = b.build(numThreads);
+            partitioning.partition();
+        }
+    }
+
+    /** corresponding parts and wires of identical netlists end up in the same classes */
+    @Test
+    public void testIdentical() {
+        Nands nands = new Nands(20, 3000, 1);
+        Compared c = new Compared(nands, nands, 1);
+        ArrayHashCodePartitioning p = c.partitioning;
+        assertFalse(p.hasMismatch());
+        for (int i = 0; i < nands.numParts(); i++)
+            assertEquals(p.getPartClass(c.nums0[0][i]), p.getPartClass(c.nums1[0][i]));
+        for (int i = 0; i < nands.numWires(); i++)
+            assertEquals(p.getWireClass(c.nums0[1][i]), p.getWireClass(c.nums1[1][i]));
+        // random logic has few symmetries left to break
+        assertTrue(p.numMatchedPartClasses() > nands.numParts() * 9 / 10);
+    }
+
+    @Test
+    public void testMismatch() {
+        Nands nands = new Nands(20, 3000, 1);
+        Nands changed = new Nands(20, 3000, 1);
+        changed.inA[2000] = changed.out(1500);
+        assertTrue(new Compared(nands, changed, 1).partitioning.hasMismatch());
+    }
+
+    /** the classes don't depend on the number of threads */
+    @Test
+    public void testThreads() {
+        Nands nands = new Nands(20, 3000, 2);
+        ArrayHashCodePartitioning p1 = new Compared(nands, nands, 1).partitioning;
+        ArrayHashCodePartitioning p3 = new Compared(nands, nands, 3).partitioning;
+        assertEquals(p1.numPartClasses(), p3.numPartClasses());
+        for (int i = 0; i < p1.numParts(); i++) assertEquals(p1.getPartClass(i), p3.getPartClass(i));
+        for (int i = 0; i < p1.numWires(); i++) assertEquals(p1.getWireClass(i), p3.getWireClass(i));
+    }
+
+    private static long usedMemory() {
+        Runtime rt = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) System.gc();
+        return rt.totalMemory() - rt.freeMemory();
+    }
+
+    /** a 5M transistor netlist compared with a copy of itself (needs about 3GB of heap) */
+    @Ignore
+    @Test
+    public void benchGenerated() {
+        int numThreads = Runtime.getRuntime().availableProcessors();
+        Nands nands = new Nands(1000, 5000000 / 4, 3);
+        for (int threads : numThreads > 1 ? new int[] {1, numThreads} : new int[] {1}) {
+            long before = usedMemory();
+            long start = System.nanoTime();
+            Random rand = new Random(7);
+            ArrayHashCodePartitioning.Builder b = new ArrayHashCodePartitioning.Builder(2);
+            nands.addTo(b, 0, identity(nands.numWires()), identity(nands.numParts()), null);
+            nands.addTo(b, 1, shuffled(nands.numWires(), rand), shuffled(nands.numParts(), rand), rand);
+            ArrayHashCodePartitioning p = b.build(threads);
+            b = null;
+            long built = System.nanoTime();
+            long memory = usedMemory() - before;
+            int rounds = p.partition();
+            long done = System.nanoTime();
+            System.out.println(threads + " threads: " + p.numParts() + " parts, " + p.numWires() + " wires in " +
+                memory / (1024 * 1024) + " MB, built in " + (built - start) / 1000000 + " ms, partitioned in " +
+                rounds + " rounds, " + (done - built) / 1000000 + " ms: " + p.numMatchedPartClasses() + " of " +
+                p.numPartClasses() + " part classes matched");
+            assertFalse(p.hasMismatch());
+        }
+    }
+}
@@ -23,10 +23,13 @@ package com.sun.electric.tool.routing.seaOfGates;
 
 import com.sun.electric.database.EditingPreferences;
 import com.sun.electric.database.hierarchy.Cell;
+import com.sun.electric.database.topology.ArcInst;
+import com.sun.electric.technology.technologies.Generic;
 import com.sun.electric.tool.routing.Routing;
 import com.sun.electric.tool.routing.SeaOfGates.SeaOfGatesOptions;
 import com.sun.electric.tool.routing.seaOfGates.SeaOfGatesEngineFactory.SeaOfGatesEngineType;
 import com.sun.electric.tool.util.test.AbstractJunitBaseClass;
+import java.util.Iterator;
 import org.junit.Ignore;
 
 import org.junit.Test;
@@ -63,6 +66,29 @@ public abstract class SeaOfGatesBase extends AbstractJunitBaseClass/*AbstractRou
         testRouter(options);
     }
     
+    /**
+     * Benchmark of the search: routes the test cell on one thread and reports routes per second.
+     */
+    @Ignore
+    @Test
+    public void benchRoutesPerSecond() throws Exception {
+        Cell cell = this.loadCell("placementTests", "PlacementTest4");
+        int numRoutes = 0;
+        for (Iterator<ArcInst> it = cell.getArcs(); it.hasNext(); ) {
+            if (it.next().getProto() == Generic.tech().unrouted_arc) numRoutes++;
+        }
+        SeaOfGatesOptions options = new SeaOfGatesOptions();
+        options.useParallelRoutes = false;
+        options.useParallelFromToRoutes = false;
+        EditingPreferences ep = new EditingPreferences(true, cell.getTechPool());
+        SeaOfGatesEngine router = SeaOfGatesEngineFactory.createSeaOfGatesEngine(getType());
+        router.setPrefs(options);
+        long start = System.nanoTime();
+        router.routeIt(SeaOfGatesHandlers.getDefault(cell, null, Routing.SoGContactsStrategy.SOGCONTACTSATTOPLEVEL, null, ep), cell, true);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.println(getType() + ": " + numRoutes + " routes in " + seconds + " seconds = " + (numRoutes / seconds) + " routes/second");
+    }
+
     private void testRouter(SeaOfGatesOptions options) throws Exception {
         System.out.println("=============== " + getType() + " useParallelRoutes=" + options.useParallelRoutes + " useParallelFromToRoutes=" + options.useParallelFromToRoutes);
 		Cell cell = this.loadCell("placementTests", "PlacementTest4");
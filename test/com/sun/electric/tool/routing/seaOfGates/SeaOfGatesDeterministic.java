@@ -0,0 +1,68 @@
+/* -*- tab-width: 4 -*-
+ *
+ * Electric(tm) VLSI Design System
+ *
+ * File: SeaOfGatesDeterministic.java
+ *
+ * Copyright (c) 2012, Static Free Software. All rights reserved.
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sun.electric.tool.routing.seaOfGates;
+
+import com.sun.electric.tool.routing.seaOfGates.SeaOfGatesEngineFactory.SeaOfGatesEngineType;
+
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class SeaOfGatesDeterministic extends SeaOfGatesBase {
+
+	@Override
+	protected SeaOfGatesEngineType getType() {
+		return SeaOfGatesEngineType.batchDeterministic;
+	}
+
+	/** routes in the same wave never come within the interaction distance, and each route takes the lowest free wave */
+	@Test
+	public void testColorRoutes() {
+		Random rand = new Random(3);
+		List<Rectangle2D> bounds = new ArrayList<Rectangle2D>();
+		for (int i = 0; i < 2000; i++) {
+			double w = rand.nextDouble() * (i % 10 == 0 ? 500 : 50);
+			double h = rand.nextDouble() * 50;
+			bounds.add(new Rectangle2D.Double(rand.nextDouble() * 1000, rand.nextDouble() * 1000, w, h));
+		}
+		double interaction = 4;
+		int[] colors = SeaOfGatesEngineDeterministic.colorRoutes(bounds, interaction);
+		for (int i = 0; i < bounds.size(); i++) {
+			Rectangle2D a = bounds.get(i);
+			boolean[] below = new boolean[colors[i]];
+			for (int j = 0; j < i; j++) {
+				Rectangle2D b = bounds.get(j);
+				boolean conflict = a.getMinX() - interaction <= b.getMaxX() && b.getMinX() <= a.getMaxX() + interaction &&
+					a.getMinY() - interaction <= b.getMaxY() && b.getMinY() <= a.getMaxY() + interaction;
+				if (!conflict) continue;
+				assertTrue(colors[i] != colors[j]);
+				if (colors[j] < colors[i]) below[colors[j]] = true;
+			}
+			for (boolean b : below) assertTrue(b);
+		}
+		assertArrayEquals(colors, SeaOfGatesEngineDeterministic.colorRoutes(bounds, interaction));
+	}
+}
@@ -30,7 +30,7 @@ import org.junit.runners.Suite.SuiteClasses;
  * 
  */
 @RunWith(Suite.class)
-@SuiteClasses( { SeaOfGatesOldTest.class, SeaOfGatesInfrastructure.class, SeaOfGatesSemaphore.class })
+@SuiteClasses( { SeaOfGatesOldTest.class, SeaOfGatesInfrastructure.class, SeaOfGatesSemaphore.class, SeaOfGatesDeterministic.class })
 public class SeaOfGatesTestSuite {
 
 }
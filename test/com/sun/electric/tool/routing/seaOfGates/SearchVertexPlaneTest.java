@@ -0,0 +1,113 @@
+/* -*- tab-width: 4 -*-
+ *
+ * Electric(tm) VLSI Design System
+ *
+ * File: SearchVertexPlaneTest.java
+ *
+ * Copyright (c) 2012, Static Free Software. All rights reserved.
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sun.electric.tool.routing.seaOfGates;
+
+import com.sun.electric.tool.routing.seaOfGates.SeaOfGatesEngine.OrderedSearchVertex;
+import com.sun.electric.tool.routing.seaOfGates.SeaOfGatesEngine.SearchVertex;
+import com.sun.electric.tool.routing.seaOfGates.SeaOfGatesEngine.SearchVertexPlane;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * Unit tests of the search vertex store and the active list of the Sea-of-Gates wavefront.
+ */
+public class SearchVertexPlaneTest {
+
+    private static SearchVertex makeVertex(int x, int y, int cost) {
+        SearchVertex sv = new SearchVertex(x, y, 0, 0, 0, null, null, 0, null, 0, null);
+        try {
+            // the wavefront sets the cost directly
+            Field f = SearchVertex.class.getDeclaredField("cost");
+            f.setAccessible(true);
+            f.setInt(sv, cost);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+        return sv;
+    }
+
+    @Test
+    public void testPlane() {
+        Random rand = new Random(5);
+        SearchVertexPlane plane = new SearchVertexPlane();
+        Map<Long, SearchVertex> expected = new TreeMap<Long, SearchVertex>();
+        for (int i = 0; i < 10000; i++) {
+            int x = rand.nextInt(2000) - 1000, y = rand.nextInt(2000) - 1000;
+            SearchVertex sv = makeVertex(x, y, 0);
+            plane.put(x, y, sv);
+            expected.put(Long.valueOf(SearchVertexPlane.makeKey(x, y)), sv);
+        }
+        assertEquals(expected.size(), plane.size());
+        long[] keys = plane.getSortedKeys();
+        assertEquals(expected.size(), keys.length);
+        int i = 0;
+        int lastX = 0, lastY = Integer.MIN_VALUE;
+        for (Map.Entry<Long, SearchVertex> e : expected.entrySet()) {
+            long key = keys[i++];
+            assertEquals(e.getKey().longValue(), key);
+            int x = SearchVertexPlane.getKeyX(key), y = SearchVertexPlane.getKeyY(key);
+            assertTrue(y > lastY || (y == lastY && x > lastX));
+            lastX = x;
+            lastY = y;
+            assertSame(e.getValue(), plane.get(x, y));
+            assertEquals(x, (int)e.getValue().getX());
+            assertEquals(y, (int)e.getValue().getY());
+        }
+        assertNull(plane.get(5000, 5000));
+    }
+
+    /** vertices come out by cost, and in the order they were added when costs are equal */
+    @Test
+    public void testActiveOrder() {
+        Random rand = new Random(9);
+        OrderedSearchVertex active = new OrderedSearchVertex();
+        List<SearchVertex> added = new ArrayList<SearchVertex>();
+        for (int i = 0; i < 2000; i++) {
+            SearchVertex sv = makeVertex(i, 0, rand.nextInt(50));
+            active.add(sv);
+            added.add(sv);
+            assertTrue(active.inList(sv));
+        }
+        for (int i = 0; i < 500; i++) {
+            SearchVertex sv = added.remove(rand.nextInt(added.size()));
+            active.remove(sv);
+            assertFalse(active.inList(sv));
+        }
+        while (!added.isEmpty()) {
+            SearchVertex best = added.get(0);
+            for (SearchVertex sv : added)
+                if (sv.getCost() < best.getCost()) best = sv;
+            assertSame(best, active.getFirst());
+            active.remove(best);
+            added.remove(best);
+        }
+        assertNull(active.getFirst());
+    }
+}
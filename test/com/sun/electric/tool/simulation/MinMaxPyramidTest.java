@@ -0,0 +1,126 @@
+/* -*- tab-width: 4 -*-
+ *
+ * Electric(tm) VLSI Design System
+ *
+ * File: MinMaxPyramidTest.java
+ *
+ * Copyright (c) 2012, Static Free Software. All rights reserved.
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sun.electric.tool.simulation;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+import org.junit.Ignore;
+import org.junit.Test;
+
+/**
+ * Unit tests of MinMaxPyramid.
+ */
+public class MinMaxPyramidTest {
+
+    private static final int NUM_SAMPLES = 100000;
+
+    /** the samples of a test, which answer the partial blocks of a range */
+    private static class Samples implements MinMaxPyramid.SampleRanges {
+        final double[] times = new double[NUM_SAMPLES];
+        final double[] mins = new double[NUM_SAMPLES];
+        final double[] maxs = new double[NUM_SAMPLES];
+        int numSamples;
+
+        public boolean getRange(double t0, double t1, double[] result) {
+            double min = Double.POSITIVE_INFINITY, max = Double.NEGATIVE_INFINITY;
+            boolean any = false;
+            for (int i = 0; i < numSamples; i++) {
+                if (times[i] < t0 || times[i] > t1) continue;
+                any = true;
+                min = Math.min(min, mins[i]);
+                max = Math.max(max, maxs[i]);
+            }
+            result[0] = min;
+            result[1] = max;
+            return any;
+        }
+    }
+
+    /** every range with whole blocks gives the same minimum and maximum as a scan of its samples */
+    @Test
+    public void testExact() {
+        Random rand = new Random(12);
+        Samples samples = new Samples();
+        MinMaxPyramid pyramid = new MinMaxPyramid();
+        double time = 0;
+        for (int i = 0; i < NUM_SAMPLES; i++) {
+            time += 0.5 + rand.nextDouble();
+            samples.times[i] = time;
+            samples.mins[i] = rand.nextGaussian();
+            samples.maxs[i] = i < NUM_SAMPLES / 2 ? samples.mins[i] : samples.mins[i] + rand.nextDouble();
+            samples.numSamples++;
+            pyramid.add(time, samples.mins[i], samples.maxs[i]);
+        }
+        assertEquals(NUM_SAMPLES, pyramid.size());
+        double[] range = new double[2];
+        double[] expected = new double[2];
+        for (int k = 0; k < 5000; k++) {
+            double t0 = k % 5 == 0 ? samples.times[rand.nextInt(NUM_SAMPLES)] : rand.nextDouble() * time;
+            double t1 = t0 + rand.nextDouble() * (k % 3 == 0 ? 100 : k % 3 == 1 ? 5000 : time);
+            boolean whole = pyramid.getNumBlocks(t0, t1) > 0;
+            assertEquals(whole, pyramid.getRange(t0, t1, range, samples));
+            if (!whole) continue;
+            assertTrue(samples.getRange(t0, t1, expected));
+            assertEquals(expected[0], range[0], 0);
+            assertEquals(expected[1], range[1], 0);
+        }
+    }
+
+    @Test
+    public void testSmall() {
+        Samples samples = new Samples();
+        MinMaxPyramid pyramid = new MinMaxPyramid();
+        double[] range = new double[2];
+        assertFalse(pyramid.getRange(0, 1, range, samples));
+        pyramid.add(1, 3, 5);
+        pyramid.add(2, -1, 0);
+        assertTrue(pyramid.getRange(0, 10, range, samples));
+        assertEquals(-1, range[0], 0);
+        assertEquals(5, range[1], 0);
+        // the only block is not entirely inside the range
+        assertFalse(pyramid.getRange(1.5, 10, range, samples));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testOutOfOrder() {
+        MinMaxPyramid pyramid = new MinMaxPyramid();
+        pyramid.add(2, 0, 0);
+        pyramid.add(1, 0, 0);
+    }
+
+    @Ignore
+    @Test
+    public void benchRange() {
+        MinMaxPyramid pyramid = new MinMaxPyramid();
+        for (int i = 0; i < 10000000; i++)
+            pyramid.add(i, Math.sin(i * 0.001), Math.sin(i * 0.001));
+        Samples samples = new Samples();
+        double[] range = new double[2];
+        long start = System.nanoTime();
+        int numPixels = 1000;
+        for (int rep = 0; rep < 100; rep++)
+            for (int p = 0; p < numPixels; p++)
+                pyramid.getRange(p * 10000.0, (p + 1) * 10000.0, range, samples);
+        System.out.println("pyramid: " + (System.nanoTime() - start) / 100 / 1000 + " us per 1000-pixel raster of 10M samples");
+    }
+}
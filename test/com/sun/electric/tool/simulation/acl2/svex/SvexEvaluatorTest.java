@@ -0,0 +1,321 @@
+/* -*- tab-width: 4 -*-
+ *
+ * Electric(tm) VLSI Design System
+ *
+ * File: SvexEvaluatorTest.java
+ *
+ * Copyright (c) 2017, Static Free Software. All rights reserved.
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sun.electric.tool.simulation.acl2.svex;
+
+import com.sun.electric.tool.simulation.acl2.mods.IndexName;
+import com.sun.electric.tool.simulation.acl2.svex.funs.*;
+import com.sun.electric.util.acl2.ACL2;
+import com.sun.electric.util.acl2.ACL2Object;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Ignore;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Compares SvexEvaluator with Svex.eval.
+ */
+public class SvexEvaluatorTest
+{
+    /* functions whose first argument is a width, shift or index */
+    private static SvexFunction[] CONTROLLED;
+    private static SvexFunction[] OTHERS;
+
+    @BeforeClass
+    public static void setUpClass()
+    {
+        ACL2Object.initHonsMananger("SvexEvaluatorTest");
+        // SvexFunction must be initialized before the function classes
+        SvexFunction.isFnSym(ACL2.NIL);
+        CONTROLLED = new SvexFunction[]
+        {
+            Vec4ZeroExt.FUNCTION, Vec4SignExt.FUNCTION, Vec4Concat.FUNCTION, Vec4Rsh.FUNCTION,
+            Vec4Lsh.FUNCTION, Vec4BitExtract.FUNCTION, Vec4PartSelect.FUNCTION
+        };
+        OTHERS = new SvexFunction[]
+        {
+            Vec4Fix.FUNCTION, Vec3Fix.FUNCTION, Vec4Bitnot.FUNCTION, Vec4Bitand.FUNCTION,
+            Vec4Bitor.FUNCTION, Vec4Bitxor.FUNCTION, Vec4Res.FUNCTION, Vec4Resand.FUNCTION,
+            Vec4Resor.FUNCTION, Vec4Override.FUNCTION, Vec4Onset.FUNCTION, Vec4Offset.FUNCTION,
+            Vec4ReductionAnd.FUNCTION, Vec4ReductionOr.FUNCTION, Vec4Parity.FUNCTION, Vec4Xdet.FUNCTION,
+            Vec4Plus.FUNCTION, Vec4Minus.FUNCTION, Vec4Uminus.FUNCTION, Vec4Lt.FUNCTION,
+            Vec4Equality.FUNCTION, Vec4CaseEquality.FUNCTION, Vec4Ite.FUNCTION, Vec4IteStmt.FUNCTION,
+            Vec4IteBit.FUNCTION, Vec4Times.FUNCTION, Vec4Countones.FUNCTION, Vec4Onehot.FUNCTION,
+            Vec4Wildeq.FUNCTION
+        };
+    }
+
+    @AfterClass
+    public static void tearDownClass()
+    {
+        ACL2Object.closeHonsManager();
+    }
+
+    private static BigInteger randomInteger(Random rand)
+    {
+        switch (rand.nextInt(6))
+        {
+            case 0:
+                return BigInteger.valueOf(rand.nextInt(5) - 2);
+            case 1:
+                return BigInteger.valueOf(rand.nextLong());
+            case 2:
+                return new BigInteger(64 + rand.nextInt(40), rand).subtract(BigInteger.ONE.shiftLeft(70));
+            default:
+                return BigInteger.valueOf(rand.nextInt(1 << 16));
+        }
+    }
+
+    private static Vec4 randomVec4(Random rand)
+    {
+        switch (rand.nextInt(8))
+        {
+            case 0:
+                return Vec4.X;
+            case 1:
+                return Vec4.Z;
+            case 2:
+            case 3:
+            {
+                BigInteger upper = randomInteger(rand);
+                BigInteger xz = BigInteger.valueOf(rand.nextInt(256));
+                return Vec4.valueOf(upper.or(xz), upper.andNot(xz).xor(rand.nextBoolean() ? xz : BigInteger.ZERO));
+            }
+            default:
+                return Vec2.valueOf(randomInteger(rand));
+        }
+    }
+
+    private static Svex<IndexName> randomControl(Random rand)
+    {
+        switch (rand.nextInt(10))
+        {
+            case 0:
+                return SvexQuote.valueOf(Vec4.X);
+            case 1:
+                return SvexQuote.valueOf(rand.nextInt(3) - 2);
+            case 2:
+                return SvexQuote.valueOf(60 + rand.nextInt(50));
+            default:
+                return SvexQuote.valueOf(rand.nextInt(40));
+        }
+    }
+
+    private static List<Svex<IndexName>> randomSvexes(Random rand, SvexManager<IndexName> sm, int numVars, int numCalls)
+    {
+        List<Svex<IndexName>> nodes = new ArrayList<>();
+        for (int i = 0; i < numVars; i++)
+        {
+            nodes.add(sm.getSvex(IndexName.valueOf(i)));
+        }
+        for (int i = 0; i < 10; i++)
+        {
+            nodes.add(SvexQuote.valueOf(randomVec4(rand)));
+        }
+        List<Svex<IndexName>> calls = new ArrayList<>();
+        for (int i = 0; i < numCalls; i++)
+        {
+            boolean controlled = rand.nextInt(3) == 0;
+            SvexFunction fun = controlled ? CONTROLLED[rand.nextInt(CONTROLLED.length)] : OTHERS[rand.nextInt(OTHERS.length)];
+            Svex<IndexName>[] args = Svex.newSvexArray(fun.arity);
+            for (int k = 0; k < args.length; k++)
+            {
+                boolean control = controlled && (k == 0 || k == 1 && fun == Vec4PartSelect.FUNCTION);
+                args[k] = control ? randomControl(rand) : nodes.get(nodes.size() - 1 - rand.nextInt(Math.min(nodes.size(), 30)));
+            }
+            Svex<IndexName> call = sm.newCall(fun, args);
+            nodes.add(call);
+            calls.add(call);
+        }
+        List<Svex<IndexName>> result = new ArrayList<>();
+        for (int i = 0; i < calls.size(); i += 7)
+        {
+            result.add(calls.get(i));
+        }
+        return result;
+    }
+
+    @Test
+    public void testRandom()
+    {
+        Random rand = new Random(1);
+        for (int iter = 0; iter < 50; iter++)
+        {
+            SvexManager<IndexName> sm = new SvexManager<>();
+            List<Svex<IndexName>> svexes = randomSvexes(rand, sm, 8, 300);
+            SvexEvaluator<IndexName> evaluator = new SvexEvaluator<>(svexes);
+            assertEquals(svexes.size(), evaluator.getNumResults());
+            for (int run = 0; run < 10; run++)
+            {
+                Map<Svar<IndexName>, Vec4> env = new HashMap<>();
+                for (Svar<IndexName> svar : evaluator.getVars())
+                {
+                    if (rand.nextInt(10) != 0)
+                    {
+                        env.put(svar, randomVec4(rand));
+                    }
+                }
+                Vec4[] vals = evaluator.eval(env);
+                for (int i = 0; i < svexes.size(); i++)
+                {
+                    assertEquals(svexes.get(i).eval(env), vals[i]);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testVars()
+    {
+        SvexManager<IndexName> sm = new SvexManager<>();
+        Svex<IndexName> a = sm.getSvex(IndexName.valueOf(0));
+        Svex<IndexName> b = sm.getSvex(IndexName.valueOf(1), 1, false);
+        List<Svex<IndexName>> svexes = new ArrayList<>();
+        svexes.add(sm.newCall(Vec4Plus.FUNCTION, a, b));
+        svexes.add(a);
+        svexes.add(SvexQuote.valueOf(5));
+        SvexEvaluator<IndexName> evaluator = new SvexEvaluator<>(svexes);
+        assertEquals(2, evaluator.getVars().size());
+        assertEquals(-1, evaluator.getVarIndex(sm.getVar(IndexName.valueOf(1))));
+        int ia = evaluator.getVarIndex(((SvexVar<IndexName>)a).svar);
+        int ib = evaluator.getVarIndex(((SvexVar<IndexName>)b).svar);
+        evaluator.eval();
+        assertEquals(Vec4.X, evaluator.getResult(0));
+        assertEquals(Vec2.valueOf(5), evaluator.getResult(2));
+        evaluator.setVar(ia, Vec2.valueOf(Long.MAX_VALUE));
+        evaluator.setVar(ib, 1, 1);
+        evaluator.eval();
+        assertEquals(Vec2.valueOf(BigInteger.valueOf(Long.MAX_VALUE).add(BigInteger.ONE)), evaluator.getResult(0));
+        evaluator.copyResultToVar(0, ib);
+        evaluator.setVar(ia, 1, 1);
+        evaluator.eval();
+        assertEquals(Vec2.valueOf(BigInteger.valueOf(Long.MAX_VALUE).add(BigInteger.valueOf(2))), evaluator.getResult(0));
+        assertEquals(Vec2.ONE, evaluator.getResult(1));
+    }
+
+    /**
+     * A synchronous design: a chain of 32-bit registers, each loaded with a mix of its
+     * neighbors and an input, and a 96-bit register that doesn't fit in longs.
+     */
+    private static List<Svex<IndexName>> nextStates(SvexManager<IndexName> sm, int numRegs)
+    {
+        Svex<IndexName> in = sm.getSvex(IndexName.valueOf(numRegs + 1));
+        Svex<IndexName> w32 = SvexQuote.valueOf(32);
+        List<Svex<IndexName>> result = new ArrayList<>();
+        for (int i = 0; i < numRegs; i++)
+        {
+            Svex<IndexName> prev = sm.getSvex(IndexName.valueOf((i + numRegs - 1) % numRegs), 1, false);
+            Svex<IndexName> self = sm.getSvex(IndexName.valueOf(i), 1, false);
+            Svex<IndexName> next = sm.getSvex(IndexName.valueOf((i + 1) % numRegs), 1, false);
+            Svex<IndexName> sum = sm.newCall(Vec4Plus.FUNCTION, prev, sm.newCall(Vec4Bitxor.FUNCTION, self, in));
+            Svex<IndexName> rot = sm.newCall(Vec4Concat.FUNCTION, SvexQuote.valueOf(27),
+                sm.newCall(Vec4Rsh.FUNCTION, SvexQuote.valueOf(5), self), self);
+            Svex<IndexName> test = sm.newCall(Vec4Equality.FUNCTION,
+                sm.newCall(Vec4BitExtract.FUNCTION, SvexQuote.valueOf(i % 32), next), SvexQuote.valueOf(1));
+            Svex<IndexName> mux = sm.newCall(Vec4Ite.FUNCTION, test, sum, sm.newCall(Vec4Bitand.FUNCTION, rot, next));
+            result.add(sm.newCall(Vec4ZeroExt.FUNCTION, w32, mux));
+        }
+        Svex<IndexName> wide = sm.getSvex(IndexName.valueOf(numRegs), 1, false);
+        result.add(sm.newCall(Vec4ZeroExt.FUNCTION, SvexQuote.valueOf(96),
+            sm.newCall(Vec4Concat.FUNCTION, w32, result.get(0), wide)));
+        return result;
+    }
+
+    /** cycles per second of SvexEvaluator and of Svex.eval */
+    @Ignore
+    @Test
+    public void benchCycles()
+    {
+        int numRegs = 1000;
+        SvexManager<IndexName> sm = new SvexManager<>();
+        List<Svex<IndexName>> svexes = nextStates(sm, numRegs);
+        SvexEvaluator<IndexName> evaluator = new SvexEvaluator<>(svexes);
+        System.out.println(evaluator);
+        Svar<IndexName> in = sm.getVar(IndexName.valueOf(numRegs + 1));
+        Svar<IndexName>[] regs = Svar.newSvarArray(numRegs + 1);
+        int[] regVars = new int[regs.length];
+        for (int i = 0; i < regs.length; i++)
+        {
+            regs[i] = sm.getVar(IndexName.valueOf(i), 1, false);
+            regVars[i] = evaluator.getVarIndex(regs[i]);
+        }
+        int inVar = evaluator.getVarIndex(in);
+
+        int interpretedCycles = 200;
+        Map<Svar<IndexName>, Vec4> env = new HashMap<>();
+        for (int i = 0; i < regs.length; i++)
+        {
+            env.put(regs[i], Vec2.valueOf(i));
+            evaluator.setVar(regVars[i], i, i);
+        }
+        long start = System.nanoTime();
+        for (int cycle = 0; cycle < interpretedCycles; cycle++)
+        {
+            env.put(in, Vec2.valueOf(cycle * 12345));
+            Vec4[] vals = new Vec4[regs.length];
+            for (int i = 0; i < regs.length; i++)
+            {
+                vals[i] = svexes.get(i).eval(env);
+            }
+            for (int i = 0; i < regs.length; i++)
+            {
+                env.put(regs[i], vals[i]);
+            }
+        }
+        long interpreted = System.nanoTime() - start;
+
+        for (int cycle = 0; cycle < interpretedCycles; cycle++)
+        {
+            evaluator.setVar(inVar, cycle * 12345, cycle * 12345);
+            evaluator.eval();
+            for (int i = 0; i < regs.length; i++)
+            {
+                evaluator.copyResultToVar(i, regVars[i]);
+            }
+        }
+        for (int i = 0; i < regs.length; i++)
+        {
+            assertEquals(env.get(regs[i]), evaluator.getResult(i));
+        }
+
+        int compiledCycles = 20000;
+        start = System.nanoTime();
+        for (int cycle = 0; cycle < compiledCycles; cycle++)
+        {
+            evaluator.setVar(inVar, cycle, cycle);
+            evaluator.eval();
+            for (int i = 0; i < regs.length; i++)
+            {
+                evaluator.copyResultToVar(i, regVars[i]);
+            }
+        }
+        long compiled = System.nanoTime() - start;
+        System.out.println("Svex.eval: " + (interpretedCycles * 1000000000L / interpreted) + " cycles/s, SvexEvaluator: "
+            + (compiledCycles * 1000000000L / compiled) + " cycles/s");
+    }
+}
@@ -0,0 +1,178 @@
+/* -*- tab-width: 4 -*-
+ *
+ * Electric(tm) VLSI Design System
+ *
+ * File: ACL2ReaderTest.java
+ *
+ * Copyright (c) 2017, Static Free Software. All rights reserved.
+ *
+ * Electric(tm) is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Electric(tm) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sun.electric.util.acl2;
+
+import static com.sun.electric.util.acl2.ACL2.*;
+import java.io.File;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.Random;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Ignore;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Writes ACL2 objects with ACL2Writer and reads them back with ACL2Reader.
+ */
+public class ACL2ReaderTest
+{
+    private File file;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        ACL2Object.initHonsMananger("ACL2ReaderTest");
+        file = File.createTempFile("ACL2ReaderTest", ".sao");
+    }
+
+    @After
+    public void tearDown()
+    {
+        ACL2Object.closeHonsManager();
+        file.delete();
+    }
+
+    /**
+     * A list of atoms of all kinds, with more than a chunk of integers and strings.
+     */
+    private static ACL2Object atoms(int n)
+    {
+        ACL2Object result = NIL;
+        for (int i = 0; i < n; i++)
+        {
+            result = cons(ACL2Object.valueOf(BigInteger.valueOf(i).shiftLeft(i % 100)), result);
+            result = cons(ACL2Object.valueOf("s" + i), result);
+        }
+        result = cons(ACL2Object.valueOf(-7), result);
+        result = cons(ACL2Object.valueOf(BigInteger.ONE.shiftLeft(63)), result);
+        result = cons(ACL2Object.valueOf(Rational.valueOf(BigInteger.valueOf(-3), BigInteger.valueOf(4))), result);
+        result = cons(ACL2Object.valueOf(new Complex(Rational.valueOf(BigInteger.ONE, BigInteger.valueOf(2)),
+            Rational.valueOf(BigInteger.valueOf(5), BigInteger.ONE))), result);
+        result = cons(ACL2Object.valueOf('x'), result);
+        result = cons(ACL2Object.valueOf("KEYWORD", "WIRE"), result);
+        result = cons(ACL2Object.valueOf("ACL2", "FOO"), result);
+        result = cons(T, result);
+        return result;
+    }
+
+    private static void checkNormed(ACL2Object x)
+    {
+        while (consp(x).bool())
+        {
+            assertTrue(x.isNormed());
+            checkNormed(car(x));
+            x = cdr(x);
+        }
+        assertTrue(x.isNormed());
+    }
+
+    @Test
+    public void testAtoms() throws IOException
+    {
+        ACL2Object x = atoms(10000);
+        ACL2Writer.write(x, file);
+        ACL2Reader reader = new ACL2Reader(file);
+        assertEquals(x, reader.root);
+        checkNormed(reader.root);
+        assertEquals(10000 + 2, reader.nStr + reader.nSym);
+        assertEquals(0, reader.nSharedCons);
+    }
+
+    /** values that cross the boundaries of the mapped windows */
+    @Test
+    public void testSmallWindows() throws IOException
+    {
+        ACL2Object x = atoms(1000);
+        ACL2Writer.write(x, file);
+        ACL2Reader reader = new ACL2Reader(file, 5);
+        assertEquals(x, reader.root);
+        checkNormed(reader.root);
+    }
+
+    @Test
+    public void testSharing() throws IOException
+    {
+        // two equal lists that are not identical, the strings in them are not normed
+        ACL2Object a = atoms(100);
+        ACL2Object b = atoms(100);
+        assertNotSame(a, b);
+        ACL2Writer.write(cons(a, b), file);
+        ACL2Reader reader = new ACL2Reader(file);
+        assertEquals(cons(a, b), reader.root);
+        assertSame(car(reader.root), cdr(reader.root));
+        checkNormed(reader.root);
+        assertEquals(2 * 208, reader.nCons - 1);
+        assertEquals(208, reader.nSharedCons);
+        assertEquals(reader.nStr / 2, reader.nSharedStr);
+
+        // a second reading shares everything with the first one
+        ACL2Reader again = new ACL2Reader(file);
+        assertSame(reader.root, again.root);
+        assertEquals(again.nCons, again.nSharedCons);
+    }
+
+    /** reading time of a large file with many shared subtrees */
+    @Ignore
+    @Test
+    public void benchRead() throws IOException
+    {
+        Random rand = new Random(1);
+        ACL2Object[] leaves = new ACL2Object[100000];
+        for (int i = 0; i < leaves.length; i++)
+        {
+            leaves[i] = rand.nextInt(4) == 0 ? ACL2Object.valueOf("n" + i) : ACL2Object.valueOf(rand.nextInt(1 << 20));
+        }
+        ACL2Object[] nodes = new ACL2Object[5000000];
+        for (int i = 0; i < nodes.length; i++)
+        {
+            ACL2Object l = i < 1000 ? leaves[rand.nextInt(leaves.length)] : nodes[i - 1 - rand.nextInt(1000)];
+            ACL2Object r = i < 1000 || rand.nextBoolean() ? leaves[rand.nextInt(leaves.length)] : nodes[i - 1 - rand.nextInt(1000)];
+            nodes[i] = hons(l, r);
+        }
+        ACL2Object top = NIL;
+        for (int i = nodes.length - 1000; i < nodes.length; i++)
+        {
+            top = cons(nodes[i], top);
+        }
+        nodes = null;
+        ACL2Writer.write(top, file);
+        top = null;
+        System.out.println(file.length() + " bytes");
+        for (int i = 0; i < 3; i++)
+        {
+            ACL2Object.closeHonsManager();
+            ACL2Object.initHonsMananger("ACL2ReaderTest");
+            Runtime rt = Runtime.getRuntime();
+            System.gc();
+            long before = rt.totalMemory() - rt.freeMemory();
+            long start = System.nanoTime();
+            ACL2Reader reader = new ACL2Reader(file);
+            long time = System.nanoTime() - start;
+            System.gc();
+            long memory = rt.totalMemory() - rt.freeMemory() - before;
+            System.out.println("Read in " + time / 1000000 + " ms, " + memory / (1024 * 1024) + " MB: "
+                + reader.nCons + " conses, " + reader.nSharedCons + " shared");
+        }
+    }
+}